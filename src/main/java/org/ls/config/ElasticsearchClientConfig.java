@@ -8,9 +8,11 @@
 //   1.0 (2024-05-27): 初始版本，支持基本认证和 CA 证书配置。
 //   1.1 (2024-05-28): 增强日志输出，添加文件头部注释。
 //   1.2 (2024-05-28): 解决 Lambda 表达式中变量非 final 的编译错误。
+//   1.3 (2026-10-19): 连接池大小、keep-alive 和超时改为可配置；新增 ElasticsearchAsyncClient。
 // -----------------------------------------------------------------------------------------
 package org.ls.config;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
 import co.elastic.clients.transport.ElasticsearchTransport;
@@ -20,6 +22,7 @@ import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
 import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.ssl.SSLContexts;
 import org.elasticsearch.client.RestClient;
@@ -94,20 +97,28 @@ public class ElasticsearchClientConfig {
                     } else if ("https".equalsIgnoreCase(elasticsearchProperties.getScheme())) {
                         logger.warn("Elasticsearch Scheme 为 HTTPS，但自定义 SSLContext (例如用于 CA 证书) 未能成功构建或未配置。将使用默认 SSLContext。");
                     }
-                    // 可选: 配置 keep-alive 策略, 连接超时等.
-                    // httpClientBuilder.setKeepAliveStrategy(...)
-                    // httpClientBuilder.setDefaultIOReactorConfig(IOReactorConfig.custom().setSoKeepAlive(true).build());
+                    // 连接池大小: RestClient 默认仅 30 个连接 (每节点 10 个)，并发搜索较多时会在连接池上排队
+                    httpClientBuilder.setMaxConnTotal(elasticsearchProperties.getMaxConnTotal());
+                    httpClientBuilder.setMaxConnPerRoute(elasticsearchProperties.getMaxConnPerRoute());
+                    // 空闲连接的保持时间，避免复用已被服务端或负载均衡器关闭的连接
+                    httpClientBuilder.setKeepAliveStrategy((response, context) -> elasticsearchProperties.getKeepAliveMillis());
+                    httpClientBuilder.setDefaultIOReactorConfig(IOReactorConfig.custom().setSoKeepAlive(true).build());
+                    logger.info("HttpClient 连接池: 最大连接数 {}, 每节点最大连接数 {}, keep-alive {} 毫秒",
+                            elasticsearchProperties.getMaxConnTotal(), elasticsearchProperties.getMaxConnPerRoute(),
+                            elasticsearchProperties.getKeepAliveMillis());
                     logger.debug("HttpClient 配置回调完成。");
                     return httpClientBuilder;
                 });
 
-        // 可选: 配置请求超时
-        // builder.setRequestConfigCallback(requestConfigBuilder -> {
-        // requestConfigBuilder.setConnectTimeout(5000); // 连接超时时间 (毫秒)
-        // requestConfigBuilder.setSocketTimeout(60000); // Socket 超时时间 (毫秒)
-        // logger.debug("配置请求超时: 连接超时 {}ms, Socket 超时 {}ms", 5000, 60000);
-        // return requestConfigBuilder;
-        // });
+        builder.setRequestConfigCallback(requestConfigBuilder -> {
+            requestConfigBuilder.setConnectTimeout(elasticsearchProperties.getConnectTimeoutMillis()); // 连接超时时间 (毫秒)
+            requestConfigBuilder.setSocketTimeout(elasticsearchProperties.getSocketTimeoutMillis()); // Socket 超时时间 (毫秒)
+            requestConfigBuilder.setConnectionRequestTimeout(elasticsearchProperties.getConnectionRequestTimeoutMillis()); // 获取连接超时时间 (毫秒)
+            logger.debug("配置请求超时: 连接超时 {}ms, Socket 超时 {}ms, 获取连接超时 {}ms",
+                    elasticsearchProperties.getConnectTimeoutMillis(), elasticsearchProperties.getSocketTimeoutMillis(),
+                    elasticsearchProperties.getConnectionRequestTimeoutMillis());
+            return requestConfigBuilder;
+        });
 
         logger.info("Elasticsearch RestClient 构建完成。");
         return builder.build();
@@ -170,4 +181,14 @@ public class ElasticsearchClientConfig {
         logger.info("ElasticsearchClient 创建成功，准备与 Elasticsearch 集群交互。");
         return client;
     }
+
+    /**
+     * 异步客户端，与同步客户端共用同一个 transport (连接池)。
+     * 全文搜索使用异步客户端，等待 Elasticsearch 响应期间不占用 Web 请求线程。
+     */
+    @Bean
+    public ElasticsearchAsyncClient elasticsearchAsyncClient(ElasticsearchTransport transport) {
+        logger.info("创建 ElasticsearchAsyncClient...");
+        return new ElasticsearchAsyncClient(transport);
+    }
 }
@@ -0,0 +1,96 @@
+/**
+ * 目录: src/main/java/org/ls/config/IndexerKafkaConfig.java
+ * 文件名: IndexerKafkaConfig.java
+ * 开发时间: 2026-10-19 19:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 内置索引服务的 Kafka 消费者配置。仅在 dms.indexer.enabled=true 时生效，
+ * 使用批量监听容器，每次拉取的一批事件合并为 _bulk 请求写入 Elasticsearch。
+ * 本次更新: max.poll.interval.ms 按批次大小、抽取线程数和单文件超时推算，避免慢批次超过拉取间隔引发再均衡后反复重新处理。
+ */
+package org.ls.config;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.ls.config.properties.IndexerProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+import java.util.Map;
+
+@Configuration
+@EnableKafka
+@ConditionalOnProperty(name = "dms.indexer.enabled", havingValue = "true")
+public class IndexerKafkaConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexerKafkaConfig.class);
+
+    public static final String CONTAINER_FACTORY = "indexerKafkaListenerContainerFactory";
+
+    /**
+     * 推算 max.poll.interval.ms 时，在抽取和重试耗时之外为 _bulk 请求等预留的时间 (毫秒)。
+     */
+    private static final long POLL_INTERVAL_MARGIN_MILLIS = 5 * 60_000L;
+
+    @Bean
+    public ConsumerFactory<String, String> indexerConsumerFactory(KafkaProperties kafkaProperties, IndexerProperties indexerProperties) {
+        Map<String, Object> props = kafkaProperties.buildConsumerProperties(null);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, indexerProperties.getGroupId());
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, indexerProperties.getMaxPollRecords());
+        // 偏移量由监听容器在整批写入 Elasticsearch 成功后提交 (至少一次语义)
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.putIfAbsent(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        // 处理一批的时间超过 max.poll.interval.ms 时消费者被移出消费组，同一批会被反复重新处理，因此不低于一批的最长处理时间
+        long maxPollInterval = Math.max(configuredMaxPollInterval(props), maxBatchMillis(indexerProperties));
+        props.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, (int) Math.min(Integer.MAX_VALUE, maxPollInterval));
+        logger.info("内置索引服务 Kafka 消费者配置完成。消费组: {}, 每批最多 {} 条消息, max.poll.interval.ms: {}",
+                indexerProperties.getGroupId(), indexerProperties.getMaxPollRecords(), maxPollInterval);
+        return new DefaultKafkaConsumerFactory<>(props);
+    }
+
+    private static long configuredMaxPollInterval(Map<String, Object> props) {
+        Object value = props.get(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG);
+        return value != null ? Long.parseLong(value.toString()) : 300_000L;
+    }
+
+    /**
+     * 一批事件的最长处理时间: 所有消费线程共用抽取线程池，最坏情况下每个文件都抽取到超时，
+     * 再加上被拒绝文档的退避重试时间和固定余量。
+     */
+    static long maxBatchMillis(IndexerProperties properties) {
+        int workers = properties.getExtractWorkers() > 0
+                ? properties.getExtractWorkers() : Runtime.getRuntime().availableProcessors();
+        long files = (long) properties.getMaxPollRecords() * Math.max(1, properties.getConcurrency());
+        long extractRounds = (files + workers - 1) / workers;
+        long retryBackoff = properties.getRejectedRetryBackoffMillis() * ((1L << Math.min(properties.getMaxRejectedRetries(), 10)) - 1);
+        return extractRounds * properties.getExtractTimeoutMillis() + retryBackoff + POLL_INTERVAL_MARGIN_MILLIS;
+    }
+
+    @Bean(CONTAINER_FACTORY)
+    public ConcurrentKafkaListenerContainerFactory<String, String> indexerKafkaListenerContainerFactory(
+            ConsumerFactory<String, String> indexerConsumerFactory, IndexerProperties indexerProperties) {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(indexerConsumerFactory);
+        factory.setBatchListener(true);
+        factory.setConcurrency(Math.max(1, indexerProperties.getConcurrency()));
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        // Elasticsearch 不可用时整批重试 (指数退避，最长间隔 1 分钟)，重试耗尽后记录日志并跳过该批
+        ExponentialBackOff backOff = new ExponentialBackOff(1000L, 2.0);
+        backOff.setMaxInterval(60_000L);
+        backOff.setMaxElapsedTime(10 * 60_000L);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(backOff));
+        return factory;
+    }
+}
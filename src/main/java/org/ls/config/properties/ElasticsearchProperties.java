@@ -62,9 +62,100 @@ public class ElasticsearchProperties {
      */
     private boolean ifSeqNoEnabled = true;
 
-    // 可根据需要添加更多ES相关配置，例如连接超时、socket超时等
-    // private int connectTimeout = 5000; // ms
-    // private int socketTimeout = 30000; // ms
+    /**
+     * 文件类型筛选是否使用索引的 extension keyword 字段 (terms 查询)。
+     * 默认 false (按 filename 执行 Painless 脚本的旧筛选方式)：已有索引中的存量文档没有 extension 字段，
+     * 需执行 extension 字段回填并确认任务完成后再设为 true，否则筛选结果为空。
+     * 对应配置文件中的 dms.elasticsearch.extension-field-enabled
+     */
+    private boolean extensionFieldEnabled = false;
+
+    /**
+     * 游标分页 (PIT + search_after) 时 point-in-time 的保持时间，每次翻页都会续期。
+     * 对应配置文件中的 dms.elasticsearch.pit-keep-alive
+     */
+    private String pitKeepAlive = "5m";
+
+    /**
+     * 页码分页 (from/size) 允许的最大结果窗口，应与索引的 index.max_result_window 一致。
+     * 超出该窗口的页码需要改用游标分页。
+     * 对应配置文件中的 dms.elasticsearch.max-result-window
+     */
+    private int maxResultWindow = 10000;
+
+    /**
+     * 建立连接的超时时间 (毫秒)。
+     * 对应配置文件中的 dms.elasticsearch.connect-timeout-millis
+     */
+    private int connectTimeoutMillis = 5000;
+
+    /**
+     * 等待响应数据的 socket 超时时间 (毫秒)，作为所有请求的兜底超时。
+     * 对应配置文件中的 dms.elasticsearch.socket-timeout-millis
+     */
+    private int socketTimeoutMillis = 30000;
+
+    /**
+     * 从连接池获取连接的超时时间 (毫秒)，连接池耗尽时请求快速失败而不是无限等待。
+     * 对应配置文件中的 dms.elasticsearch.connection-request-timeout-millis
+     */
+    private int connectionRequestTimeoutMillis = 1000;
+
+    /**
+     * 连接池最大连接总数。
+     * 对应配置文件中的 dms.elasticsearch.max-conn-total
+     */
+    private int maxConnTotal = 50;
+
+    /**
+     * 每个节点 (路由) 的最大连接数。
+     * 对应配置文件中的 dms.elasticsearch.max-conn-per-route
+     */
+    private int maxConnPerRoute = 20;
+
+    /**
+     * 空闲连接的保持时间 (毫秒)，应小于服务端或中间负载均衡器的空闲断开时间。
+     * 对应配置文件中的 dms.elasticsearch.keep-alive-millis
+     */
+    private long keepAliveMillis = 60000;
+
+    /**
+     * 单次全文搜索请求的超时时间 (毫秒)，超时后返回降级响应。
+     * 对应配置文件中的 dms.elasticsearch.search-timeout-millis
+     */
+    private long searchTimeoutMillis = 5000;
+
+    /**
+     * 同时进行中的全文搜索请求上限 (舱壁隔离)，超出时立即返回降级响应。
+     * 对应配置文件中的 dms.elasticsearch.max-concurrent-searches
+     */
+    private int maxConcurrentSearches = 20;
+
+    /**
+     * 连续失败多少次后打开熔断器。
+     * 对应配置文件中的 dms.elasticsearch.circuit-breaker-failure-threshold
+     */
+    private int circuitBreakerFailureThreshold = 5;
+
+    /**
+     * 熔断器打开后的持续时间 (毫秒)，之后放行一个试探请求，成功则关闭熔断器。
+     * 对应配置文件中的 dms.elasticsearch.circuit-breaker-open-millis
+     */
+    private long circuitBreakerOpenMillis = 30000;
+
+    /**
+     * 正文高亮是否使用 content.offsets 子字段 (index_options: offsets) 中存储的偏移量。
+     * 需要先通过维护接口添加子字段并回填存量文档。
+     * 对应配置文件中的 dms.elasticsearch.highlight-offsets-enabled
+     */
+    private boolean highlightOffsetsEnabled = false;
+
+    /**
+     * 每个文档参与高亮的最大字符数 (请求级 max_analyzed_offset)，不能大于索引设置 index.highlight.max_analyzed_offset，
+     * 小于等于 0 时不设置。
+     * 对应配置文件中的 dms.elasticsearch.highlight-max-analyzed-offset
+     */
+    private int highlightMaxAnalyzedOffset = 1_000_000;
 
     /**
      * CA 证书路径。
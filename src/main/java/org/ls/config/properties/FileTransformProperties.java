@@ -0,0 +1,36 @@
+/**
+ * 目录: src/main/java/org/ls/config/properties/FileTransformProperties.java
+ * 文件名: FileTransformProperties.java
+ * 开发时间: 2026-10-19 15:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 文件同步转换阶段 (临时目录 -> 目标目录) 的配置属性类。
+ * 本次更新: 移除内置 aes-gcm 转换器的缓冲区和密钥库配置，只保留转换器选择和并行度。
+ */
+package org.ls.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 文件转换阶段相关配置属性。
+ * 通过 {@link ConfigurationProperties} 注解将配置文件中以 "file.sync.transform" 为前缀的属性映射到此类成员。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "file.sync.transform")
+public class FileTransformProperties {
+
+    /**
+     * 使用的转换器名称。
+     * none: 直接移动 (原有行为，默认)；其他值对应部署时注册的 FileTransformer 实现的 getName()。
+     * 对应配置文件中的 file.sync.transform.type
+     */
+    private String type = "none";
+
+    /**
+     * 手动同步时并行处理文件的工作线程数 (文件级并行)，1 表示按顺序处理。
+     * 对应配置文件中的 file.sync.transform.workers
+     */
+    private int workers = 1;
+}
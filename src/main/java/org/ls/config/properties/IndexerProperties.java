@@ -0,0 +1,108 @@
+/**
+ * 目录: src/main/java/org/ls/config/properties/IndexerProperties.java
+ * 文件名: IndexerProperties.java
+ * 开发时间: 2026-10-19 19:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 内置全文索引服务 (消费文件同步事件并写入 Elasticsearch) 的配置属性类。
+ * 本次更新: 增加文本抽取的并行度、文件大小、超时和正文分片配置。
+ * 本次更新: 增加 _bulk 条目被拒绝 (429/5xx) 时的重试次数和退避间隔配置。
+ */
+package org.ls.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 内置索引服务相关配置属性。
+ * 通过 {@link ConfigurationProperties} 注解将配置文件中以 "dms.indexer" 为前缀的属性映射到此类成员。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "dms.indexer")
+public class IndexerProperties {
+
+    /**
+     * 是否启用内置索引服务。默认关闭，继续使用外部索引服务时不要启用，避免重复消费。
+     * 对应配置文件中的 dms.indexer.enabled
+     */
+    private boolean enabled = false;
+
+    /**
+     * Kafka 消费组 ID。
+     * 对应配置文件中的 dms.indexer.group-id
+     */
+    private String groupId = "dms-fulltext-indexer";
+
+    /**
+     * 消费线程数 (不超过主题分区数才有意义)。
+     * 对应配置文件中的 dms.indexer.concurrency
+     */
+    private int concurrency = 1;
+
+    /**
+     * 每次拉取的最大消息数，即一个处理批次的上限。
+     * 对应配置文件中的 dms.indexer.max-poll-records
+     */
+    private int maxPollRecords = 200;
+
+    /**
+     * 单个 _bulk 请求的最大文档数。
+     * 对应配置文件中的 dms.indexer.bulk-max-documents
+     */
+    private int bulkMaxDocuments = 500;
+
+    /**
+     * 单个 _bulk 请求的最大字节数 (按序列化后的文档大小计算)，单个文档超过该值时单独发送。
+     * 对应配置文件中的 dms.indexer.bulk-max-bytes
+     */
+    private long bulkMaxBytes = 5L * 1024 * 1024;
+
+    /**
+     * if_seq_no 冲突 (文档在读取后被其他写入修改) 时重新读取并重试的次数。
+     * 对应配置文件中的 dms.indexer.max-conflict-retries
+     */
+    private int maxConflictRetries = 3;
+
+    /**
+     * _bulk 中被拒绝 (429) 或服务端出错 (5xx) 的文档的重试次数，耗尽后整批交给 Kafka 错误处理器重试。
+     * 对应配置文件中的 dms.indexer.max-rejected-retries
+     */
+    private int maxRejectedRetries = 3;
+
+    /**
+     * 被拒绝文档第一次重试前的等待时间 (毫秒)，之后每次翻倍。
+     * 对应配置文件中的 dms.indexer.rejected-retry-backoff-millis
+     */
+    private long rejectedRetryBackoffMillis = 1000;
+
+    /**
+     * 每个文档抽取的最大字符数，超出部分截断。
+     * 对应配置文件中的 dms.indexer.max-content-chars
+     */
+    private int maxContentChars = 100_000;
+
+    /**
+     * 文本抽取工作线程数，小于等于 0 时使用 CPU 核数。
+     * 对应配置文件中的 dms.indexer.extract-workers
+     */
+    private int extractWorkers = 0;
+
+    /**
+     * 参与文本抽取的最大文件大小 (字节)，更大的文件只索引元数据。
+     * 对应配置文件中的 dms.indexer.max-extract-file-bytes
+     */
+    private long maxExtractFileBytes = 100L * 1024 * 1024;
+
+    /**
+     * 单个文件文本抽取的超时时间 (毫秒)，超时的文件只索引元数据。
+     * 对应配置文件中的 dms.indexer.extract-timeout-millis
+     */
+    private long extractTimeoutMillis = 60_000;
+
+    /**
+     * content 字段每个片段的最大字符数。正文按片段写入 content 数组，单个值不会过大。
+     * 对应配置文件中的 dms.indexer.content-chunk-chars
+     */
+    private int contentChunkChars = 10_000;
+}
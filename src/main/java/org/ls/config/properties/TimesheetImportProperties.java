@@ -0,0 +1,58 @@
+/**
+ * 目录: src/main/java/org/ls/config/properties/TimesheetImportProperties.java
+ * 文件名: TimesheetImportProperties.java
+ * 开发时间: 2026-10-19 21:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 工时文件服务端导入 (上传 XLSX / CSV 后在后台流式解析并分批写入 t_wkt) 的配置属性类。
+ */
+package org.ls.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 工时文件导入相关配置属性。
+ * 通过 {@link ConfigurationProperties} 注解将配置文件中以 "timesheet.import" 为前缀的属性映射到此类成员。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "timesheet.import")
+public class TimesheetImportProperties {
+
+    /**
+     * 同时执行的导入任务数，超出的任务排队等待。
+     * 对应配置文件中的 timesheet.import.workers
+     */
+    private int workers = 2;
+
+    /**
+     * 每批写入数据库的行数。
+     * 对应配置文件中的 timesheet.import.chunk-size
+     */
+    private int chunkSize = 1000;
+
+    /**
+     * 每个任务最多保留的失败行明细数，超出后只计数，避免错误很多的文件占用大量内存。
+     * 对应配置文件中的 timesheet.import.max-errors
+     */
+    private int maxErrors = 1000;
+
+    /**
+     * 任务结束后状态保留的时间 (分钟)，过期后无法再查询。
+     * 对应配置文件中的 timesheet.import.job-retention-minutes
+     */
+    private long jobRetentionMinutes = 60;
+
+    /**
+     * 上传文件暂存目录，为空时使用系统临时目录。
+     * 对应配置文件中的 timesheet.import.temp-dir
+     */
+    private String tempDir;
+
+    /**
+     * 导入完成后 (有新增或更新的行时) 是否自动执行维度数据同步 (部门、员工、工时编码、利润中心)。
+     * 对应配置文件中的 timesheet.import.sync-dimensions
+     */
+    private boolean syncDimensions = true;
+}
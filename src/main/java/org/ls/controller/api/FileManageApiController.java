@@ -4,31 +4,43 @@
  * 开发时间: 2025-06-03 23:00:00 (Asia/Shanghai)
  * 作者: Gemini
  * 用途: 提供文件管理和同步相关的 RESTful API 端点。
- * 本次更新: 添加了全文搜索的API端点 /api/filemanage/fulltext/search。
+ * 本次更新: 全文搜索改为异步返回，降级响应使用 503 状态码。
+ * 本次更新: 全文搜索页码超出最大结果窗口时返回 400。
+ * 本次更新: 目录浏览读取目录失败时返回 500，不再返回空列表。
  */
 package org.ls.controller.api;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid; // 引入 @Valid 进行请求体验证
 import lombok.extern.slf4j.Slf4j;
+import org.apache.catalina.connector.ClientAbortException;
 import org.ls.dto.*;
 import org.ls.service.FileManagementService;
 import org.ls.service.FileSyncService;
+import org.ls.service.FulltextIndexMaintenanceService;
+import org.ls.service.FulltextReconciliationService;
 import org.ls.service.FulltextSearchService; // 引入新的服务接口
+import org.ls.utils.FileDownloadUtils;
 // import org.ls.utils.StringUtils; // 如果需要，可以取消注释
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/filemanage")
@@ -38,14 +50,20 @@ public class FileManageApiController {
     private final FileManagementService fileManagementService;
     private final FileSyncService fileSyncService;
     private final FulltextSearchService fulltextSearchService; // 新注入的服务
+    private final FulltextIndexMaintenanceService fulltextIndexMaintenanceService;
+    private final FulltextReconciliationService fulltextReconciliationService;
 
     @Autowired
     public FileManageApiController(FileManagementService fileManagementService,
                                    FileSyncService fileSyncService,
-                                   FulltextSearchService fulltextSearchService) { // 构造函数注入
+                                   FulltextSearchService fulltextSearchService,
+                                   FulltextIndexMaintenanceService fulltextIndexMaintenanceService,
+                                   FulltextReconciliationService fulltextReconciliationService) { // 构造函数注入
         this.fileManagementService = fileManagementService;
         this.fileSyncService = fileSyncService;
         this.fulltextSearchService = fulltextSearchService;
+        this.fulltextIndexMaintenanceService = fulltextIndexMaintenanceService;
+        this.fulltextReconciliationService = fulltextReconciliationService;
     }
 
     // --- Decrypted File Search and Download Endpoints (保持不变) ---
@@ -72,34 +90,35 @@ public class FileManageApiController {
     }
 
     /**
-     * 下载指定的解密文件
+     * 下载指定的解密文件。
+     * 支持 Range 断点续传 (206)、ETag / Last-Modified 条件请求 (304)，文件内容以零拷贝方式写出。
      * @param relativePath 文件相对路径 (URL-encoded)
      * @param filename 文件名 (URL-encoded)
-     * @return 文件资源或 404 错误
+     * @param request HttpServletRequest 对象
+     * @param response HttpServletResponse 对象，文件内容或 404 错误直接写入其中
      */
     @GetMapping("/decrypted/download")
-    public ResponseEntity<Resource> downloadDecryptedFile(
+    public void downloadDecryptedFile(
             @RequestParam String relativePath,
-            @RequestParam String filename) {
-        log.debug("API 请求: 下载解密文件。相对路径: '{}', 文件名: '{}'", relativePath, filename);
+            @RequestParam String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        log.debug("API 请求: 下载解密文件。相对路径: '{}', 文件名: '{}', Range: '{}'", relativePath, filename, request.getHeader(HttpHeaders.RANGE));
         try {
             String decodedFilepath = URLDecoder.decode(relativePath, StandardCharsets.UTF_8);
             String decodedFilename = URLDecoder.decode(filename, StandardCharsets.UTF_8);
             log.debug("解码后的文件目录: '{}', 解码后的文件名: '{}'", decodedFilepath, decodedFilename);
 
             Resource resource = fileManagementService.getDecryptedFileResource(decodedFilepath, decodedFilename);
-            String encodedFilenameDisposition = URLEncoder.encode(decodedFilename, StandardCharsets.UTF_8).replace("+", "%20");
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + encodedFilenameDisposition)
-                    .body(resource);
+            FileDownloadUtils.writeFile(resource.getFile().toPath(), decodedFilename, request, response);
         } catch (FileNotFoundException e) {
             log.warn("请求下载的解密文件未找到: Path='{}', Filename='{}'", relativePath, filename, e);
-            return ResponseEntity.notFound().build();
+            setErrorStatus(response, HttpServletResponse.SC_NOT_FOUND);
+        } catch (ClientAbortException e) {
+            log.debug("客户端中断了解密文件下载: Path='{}', Filename='{}'", relativePath, filename);
         } catch (Exception e) {
             log.error("准备解密文件下载时出错: Path='{}', Filename='{}'", relativePath, filename, e);
-            return ResponseEntity.internalServerError().build();
+            setErrorStatus(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         }
     }
 
@@ -125,39 +144,198 @@ public class FileManageApiController {
     }
 
     /**
-     * 下载指定的加密源文件
+     * 下载指定的加密源文件。
+     * 支持 Range 断点续传 (206)、ETag / Last-Modified 条件请求 (304)，文件内容以零拷贝方式写出。
      * @param relativePath 文件相对路径 (URL-encoded)
      * @param filename 文件名 (URL-encoded)
-     * @return 文件资源或 404 错误
+     * @param request HttpServletRequest 对象
+     * @param response HttpServletResponse 对象，文件内容或错误状态直接写入其中
      */
     @GetMapping("/encrypted/download")
-    public ResponseEntity<Resource> downloadEncryptedFile(
+    public void downloadEncryptedFile(
             @RequestParam String relativePath,
-            @RequestParam String filename) {
-        log.debug("API 请求: 下载加密文件。相对路径: '{}', 原始文件名参数: '{}'", relativePath, filename);
+            @RequestParam String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        log.debug("API 请求: 下载加密文件。相对路径: '{}', 原始文件名参数: '{}', Range: '{}'", relativePath, filename, request.getHeader(HttpHeaders.RANGE));
         try {
             String decodedFilepath = URLDecoder.decode(relativePath, StandardCharsets.UTF_8);
             String decodedFilename = URLDecoder.decode(filename, StandardCharsets.UTF_8);
             log.debug("解码后的加密文件路径: '{}', 解码后的加密文件名: '{}'", decodedFilepath, decodedFilename);
 
             Resource resource = fileManagementService.getEncryptedFileResource(decodedFilepath, decodedFilename);
-            String encodedFilenameDisposition = URLEncoder.encode(decodedFilename, StandardCharsets.UTF_8)
-                    .replace("+", "%20");
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + encodedFilenameDisposition)
-                    .body(resource);
+            FileDownloadUtils.writeFile(resource.getFile().toPath(), decodedFilename, request, response);
         } catch (FileNotFoundException e) {
             log.warn("请求下载的加密文件未找到: Path='{}', Original Filename Param='{}', Decoded Attempt='{}'",
                     relativePath, filename, URLDecoder.decode(filename, StandardCharsets.UTF_8), e);
-            return ResponseEntity.notFound().build();
+            setErrorStatus(response, HttpServletResponse.SC_NOT_FOUND);
         } catch (IllegalArgumentException e) {
             log.error("下载请求中的文件名参数解码失败: '{}'", filename, e);
-            return ResponseEntity.badRequest().build();
+            setErrorStatus(response, HttpServletResponse.SC_BAD_REQUEST);
+        } catch (ClientAbortException e) {
+            log.debug("客户端中断了加密文件下载: Path='{}', Filename='{}'", relativePath, filename);
         } catch (Exception e) {
             log.error("准备加密文件下载时出错: Path='{}', Filename='{}'", relativePath, filename, e);
-            return ResponseEntity.internalServerError().build();
+            setErrorStatus(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // --- 目录浏览端点 ---
+
+    /**
+     * 浏览解密目录中的单层目录（分页，目录在前）。
+     * @param relativePath 目录相对路径 (URL-encoded，默认为根目录)
+     * @param sortBy 排序方式 (name_asc, name_desc, size_asc, size_desc, modified_asc, modified_desc)
+     * @param page 页码 (默认为 1)
+     * @param size 每页大小 (默认为 50)
+     * @return 目录浏览结果，目录不存在时返回 404，读取失败时返回 500
+     */
+    @GetMapping("/decrypted/browse")
+    public ResponseEntity<DirectoryListingDto> browseDecryptedDirectory(
+            @RequestParam(required = false, defaultValue = "") String relativePath,
+            @RequestParam(defaultValue = "name_asc") String sortBy,
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        log.debug("API 请求: 浏览解密目录。相对路径: '{}', 排序: {}, 页码: {}, 大小: {}", relativePath, sortBy, page, size);
+        try {
+            String decodedPath = URLDecoder.decode(relativePath, StandardCharsets.UTF_8);
+            return ResponseEntity.ok(fileManagementService.browseDecryptedDirectory(decodedPath, sortBy, page, size));
+        } catch (FileNotFoundException e) {
+            log.warn("请求浏览的解密目录未找到: Path='{}'", relativePath);
+            return ResponseEntity.notFound().build();
+        } catch (IOException e) {
+            log.error("读取解密目录失败: Path='{}'", relativePath, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * 浏览加密源目录中的单层目录（分页，目录在前）。
+     * @param relativePath 目录相对路径 (URL-encoded，默认为根目录)
+     * @param sortBy 排序方式 (name_asc, name_desc, size_asc, size_desc, modified_asc, modified_desc)
+     * @param page 页码 (默认为 1)
+     * @param size 每页大小 (默认为 50)
+     * @return 目录浏览结果，目录不存在时返回 404，读取失败时返回 500
+     */
+    @GetMapping("/encrypted/browse")
+    public ResponseEntity<DirectoryListingDto> browseEncryptedDirectory(
+            @RequestParam(required = false, defaultValue = "") String relativePath,
+            @RequestParam(defaultValue = "name_asc") String sortBy,
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        log.debug("API 请求: 浏览加密目录。相对路径: '{}', 排序: {}, 页码: {}, 大小: {}", relativePath, sortBy, page, size);
+        try {
+            String decodedPath = URLDecoder.decode(relativePath, StandardCharsets.UTF_8);
+            return ResponseEntity.ok(fileManagementService.browseEncryptedDirectory(decodedPath, sortBy, page, size));
+        } catch (FileNotFoundException e) {
+            log.warn("请求浏览的加密目录未找到: Path='{}'", relativePath);
+            return ResponseEntity.notFound().build();
+        } catch (IOException e) {
+            log.error("读取加密目录失败: Path='{}'", relativePath, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // --- 打包下载端点 ---
+
+    /**
+     * 将解密目录中的多个文件和/或整个目录打包为 ZIP 流式下载。
+     * GET 方式用于下载整个目录 (?relativePath=目录)，POST 方式可在请求体中指定文件列表。
+     * @param relativePath 要打包的目录相对路径 (URL-encoded，可选，GET 方式使用)
+     * @param zipRequest 打包请求体 (可选，POST 方式使用)
+     * @param response HttpServletResponse 对象，ZIP 内容直接写入其中
+     */
+    @RequestMapping(value = "/decrypted/zip", method = {RequestMethod.GET, RequestMethod.POST})
+    public void downloadDecryptedZip(
+            @RequestParam(required = false) String relativePath,
+            @RequestBody(required = false) FileZipRequestDto zipRequest,
+            HttpServletResponse response) {
+        FileZipRequestDto request = mergeZipRequest(relativePath, zipRequest);
+        log.info("API 请求: 打包下载解密文件。目录: '{}', 文件数: {}", request.getDirectory(),
+                request.getFiles() != null ? request.getFiles().size() : 0);
+        try {
+            prepareZipResponse(response, request);
+            fileManagementService.writeDecryptedFilesAsZip(request, response.getOutputStream());
+        } catch (FileNotFoundException e) {
+            log.warn("打包下载解密文件失败，目录或文件无效: {}", e.getMessage());
+            setErrorStatus(response, HttpServletResponse.SC_NOT_FOUND);
+        } catch (ClientAbortException e) {
+            log.debug("客户端中断了解密文件打包下载。目录: '{}'", request.getDirectory());
+        } catch (Exception e) {
+            log.error("打包下载解密文件时出错。目录: '{}'", request.getDirectory(), e);
+            setErrorStatus(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * 将加密源目录中的多个文件和/或整个目录打包为 ZIP 流式下载 (用于全文搜索结果的批量下载)。
+     * @param relativePath 要打包的目录相对路径 (URL-encoded，可选，GET 方式使用)
+     * @param zipRequest 打包请求体 (可选，POST 方式使用)
+     * @param response HttpServletResponse 对象，ZIP 内容直接写入其中
+     */
+    @RequestMapping(value = "/encrypted/zip", method = {RequestMethod.GET, RequestMethod.POST})
+    public void downloadEncryptedZip(
+            @RequestParam(required = false) String relativePath,
+            @RequestBody(required = false) FileZipRequestDto zipRequest,
+            HttpServletResponse response) {
+        FileZipRequestDto request = mergeZipRequest(relativePath, zipRequest);
+        log.info("API 请求: 打包下载加密文件。目录: '{}', 文件数: {}", request.getDirectory(),
+                request.getFiles() != null ? request.getFiles().size() : 0);
+        try {
+            prepareZipResponse(response, request);
+            fileManagementService.writeEncryptedFilesAsZip(request, response.getOutputStream());
+        } catch (FileNotFoundException e) {
+            log.warn("打包下载加密文件失败，目录或文件无效: {}", e.getMessage());
+            setErrorStatus(response, HttpServletResponse.SC_NOT_FOUND);
+        } catch (ClientAbortException e) {
+            log.debug("客户端中断了加密文件打包下载。目录: '{}'", request.getDirectory());
+        } catch (Exception e) {
+            log.error("打包下载加密文件时出错。目录: '{}'", request.getDirectory(), e);
+            setErrorStatus(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * 合并查询参数与请求体中的打包条件。
+     */
+    private FileZipRequestDto mergeZipRequest(String relativePath, FileZipRequestDto zipRequest) {
+        FileZipRequestDto request = zipRequest != null ? zipRequest : new FileZipRequestDto();
+        if (relativePath != null && request.getDirectory() == null) {
+            request.setDirectory(URLDecoder.decode(relativePath, StandardCharsets.UTF_8));
+        }
+        return request;
+    }
+
+    /**
+     * 设置 ZIP 下载的响应头。由于内容是流式生成的，不设置 Content-Length (使用分块传输)。
+     */
+    private void prepareZipResponse(HttpServletResponse response, FileZipRequestDto request) {
+        String zipFilename = request.getZipFilename();
+        if (zipFilename == null || zipFilename.isBlank()) {
+            String directory = request.getDirectory();
+            String dirName = directory != null ? directory.replaceAll("/+$", "") : "";
+            dirName = dirName.substring(dirName.lastIndexOf('/') + 1);
+            zipFilename = !dirName.isEmpty() ? dirName
+                    : "files_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
+        }
+        if (!zipFilename.toLowerCase().endsWith(".zip")) {
+            zipFilename += ".zip";
+        }
+        String encodedFilename = URLEncoder.encode(zipFilename, StandardCharsets.UTF_8).replace("+", "%20");
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + encodedFilename);
+    }
+
+    /**
+     * 在响应尚未提交时设置错误状态码 (文件已开始写出后无法再更改状态码)。
+     * @param response HttpServletResponse 对象
+     * @param status HTTP 状态码
+     */
+    private void setErrorStatus(HttpServletResponse response, int status) {
+        if (!response.isCommitted()) {
+            response.reset();
+            response.setStatus(status);
         }
     }
 
@@ -265,37 +443,185 @@ public class FileManageApiController {
      * @return 分页的全文搜索结果。
      */
     @PostMapping("/fulltext/search")
-    public ResponseEntity<PageDto<FulltextSearchResultDto>> fulltextSearch(
+    public CompletableFuture<ResponseEntity<FulltextSearchPageDto>> fulltextSearch(
             @Valid @RequestBody FulltextSearchRequestDto requestDto) { // 使用 @Valid 进行基本校验 (如果DTO中有校验注解)
         log.info("API 请求: 执行全文搜索。请求参数: {}", requestDto);
+        // 参数校验 (虽然 @Valid 会做一些，但可以补充业务校验)
+        if (requestDto.getPage() < 1) {
+            requestDto.setPage(1);
+        }
+        if (requestDto.getSize() < 1) {
+            requestDto.setSize(10); // 或者使用设计文档中定义的默认值 50
+        }
+        if (requestDto.getSize() > 200) { // 设置一个合理的上限
+            requestDto.setSize(200);
+        }
+
+        // 异步返回：等待 Elasticsearch 响应期间释放 Web 请求线程。
+        // Service 层总是返回分页结果，超时、熔断或出错时为 degraded = true 的空分页，此时返回 503 以便前端提示稍后重试；
+        // 页码超出最大结果窗口时返回 400 (响应体包含实际总数和改用游标分页的提示)，避免被当作“没有结果”。
+        return fulltextSearchService.searchAsync(requestDto)
+                .thenApply(results -> {
+                    if (results.isDegraded()) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(results);
+                    }
+                    if (results.isResultWindowExceeded()) {
+                        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(results);
+                    }
+                    return ResponseEntity.ok(results);
+                });
+    }
+
+    /**
+     * 获取全文搜索结果缓存的统计信息 (命中、未命中、淘汰、失效次数等)。
+     * @return 缓存统计 DTO
+     */
+    @GetMapping("/fulltext/cache/stats")
+    public ResponseEntity<FulltextSearchCacheStatsDto> getFulltextCacheStats() {
+        log.trace("API 请求: 获取全文搜索结果缓存统计。");
+        return ResponseEntity.ok(fulltextSearchService.getResultCacheStats());
+    }
+
+    /**
+     * 获取内置索引服务的索引统计和 Kafka 消费延迟。
+     * @return 统计信息 (未启用内置索引服务时 enabled 为 false)
+     */
+    @GetMapping("/fulltext/indexer/metrics")
+    public ResponseEntity<FulltextIndexerMetricsDto> getFulltextIndexerMetrics() {
+        log.trace("API 请求: 获取内置索引服务统计。");
+        return ResponseEntity.ok(fulltextIndexMaintenanceService.getIndexerMetrics());
+    }
+
+    /**
+     * 为全文索引添加 extension 字段并异步回填存量文档。
+     * @return 包含 Elasticsearch 任务 ID 的响应 (可通过 _tasks API 查看进度)
+     */
+    @PostMapping("/fulltext/maintenance/extension-backfill")
+    public ResponseEntity<?> backfillExtensionField() {
+        log.info("API 请求: 回填全文索引 extension 字段。");
+        try {
+            String taskId = fulltextIndexMaintenanceService.backfillExtensionField();
+            return ResponseEntity.ok(Map.of("taskId", taskId, "message", "回填任务已提交。"));
+        } catch (Exception e) {
+            log.error("提交 extension 字段回填任务时发生错误: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of("message", "提交回填任务失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 为全文索引添加 summary 字段并异步回填存量文档 (无高亮片段时展示的摘要)。
+     * @return 包含 Elasticsearch 任务 ID 的响应
+     */
+    @PostMapping("/fulltext/maintenance/summary-backfill")
+    public ResponseEntity<?> backfillSummaryField() {
+        log.info("API 请求: 回填全文索引 summary 字段。");
         try {
-            // 参数校验 (虽然 @Valid 会做一些，但可以补充业务校验)
-            if (requestDto.getPage() < 1) {
-                requestDto.setPage(1);
-            }
-            if (requestDto.getSize() < 1) {
-                requestDto.setSize(10); // 或者使用设计文档中定义的默认值 50
-            }
-            if (requestDto.getSize() > 200) { // 设置一个合理的上限
-                requestDto.setSize(200);
-            }
-
-            PageDto<FulltextSearchResultDto> results = fulltextSearchService.search(requestDto);
-            return ResponseEntity.ok(results);
+            String taskId = fulltextIndexMaintenanceService.backfillSummaryField();
+            return ResponseEntity.ok(Map.of("taskId", taskId, "message", "回填任务已提交。"));
         } catch (Exception e) {
-            // 更具体的异常可以在 FulltextSearchServiceImpl 中捕获并包装，或者在这里统一处理
-            log.error("全文搜索 API 处理时发生错误: {}", e.getMessage(), e);
-            // 返回一个表示错误的 PageDto，或者根据 GlobalExceptionHandler 的行为来决定
-            // 这里我们假设 Service 层会处理大部分错误并返回合适的 PageDto，
-            // 或者 GlobalExceptionHandler 会捕获并转换特定异常。
-            // 如果 Service 层可能抛出未被 GlobalExceptionHandler 特定处理的运行时异常，
-            // 则需要一个更通用的错误响应。
-            // 为简单起见，如果 FulltextSearchService 抛出未捕获的异常，让 GlobalExceptionHandler 处理。
-            // 如果 FulltextSearchService 设计为总是返回 PageDto（即使是空的或带错误信息的），则这里不需要额外的 catch。
-            // 假设 service 层会处理好，或者 GlobalExceptionHandler 会捕获
-            // 此处可以返回一个通用的错误响应，如果不想依赖 GlobalExceptionHandler 对所有 Exception 的处理
-            return ResponseEntity.internalServerError()
-                    .body(new PageDto<>(null, requestDto.getPage(), requestDto.getSize(), 0L)); // 返回空的错误分页
+            log.error("提交 summary 字段回填任务时发生错误: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of("message", "提交回填任务失败: " + e.getMessage()));
         }
     }
+
+    /**
+     * 为全文索引的 content 字段添加 offsets 子字段并异步回填存量文档。
+     * @return 包含 Elasticsearch 任务 ID 的响应 (可通过 _tasks API 查看进度)
+     */
+    @PostMapping("/fulltext/maintenance/content-offsets-backfill")
+    public ResponseEntity<?> backfillContentOffsets() {
+        log.info("API 请求: 回填全文索引 content.offsets 子字段。");
+        try {
+            String taskId = fulltextIndexMaintenanceService.backfillContentOffsets();
+            return ResponseEntity.ok(Map.of("taskId", taskId, "message", "回填任务已提交。"));
+        } catch (Exception e) {
+            log.error("提交 content.offsets 子字段回填任务时发生错误: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of("message", "提交回填任务失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 在大文档上对比正文高亮两种模式 (重新分析 vs 读取 offsets) 的耗时。
+     * @param query 查询关键字
+     * @param minFileSizeBytes 参与对比的文档的最小文件大小 (字节)，默认 1MB
+     * @param iterations 每种模式的执行次数
+     * @return 对比结果
+     */
+    @GetMapping("/fulltext/maintenance/highlight-benchmark")
+    public ResponseEntity<?> benchmarkHighlight(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "1048576") long minFileSizeBytes,
+            @RequestParam(defaultValue = "20") int iterations) {
+        log.info("API 请求: 正文高亮耗时对比。关键字: {}, 最小文件大小: {}, 次数: {}", query, minFileSizeBytes, iterations);
+        try {
+            return ResponseEntity.ok(fulltextIndexMaintenanceService.benchmarkHighlight(query, minFileSizeBytes, iterations));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("正文高亮耗时对比时发生错误: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of("message", "耗时对比失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 对比文件类型筛选的脚本方式和 extension terms 查询方式的耗时。
+     * @param fileTypes 文件类型列表 (例如 pdf,docx)
+     * @param iterations 每种方式的执行次数 (默认为 20，最多 200)
+     * @return 对比结果
+     */
+    @GetMapping("/fulltext/maintenance/file-type-filter-benchmark")
+    public ResponseEntity<?> benchmarkFileTypeFilter(
+            @RequestParam List<String> fileTypes,
+            @RequestParam(defaultValue = "20") int iterations) {
+        log.info("API 请求: 文件类型筛选耗时对比。类型: {}, 次数: {}", fileTypes, iterations);
+        try {
+            return ResponseEntity.ok(fulltextIndexMaintenanceService.benchmarkFileTypeFilter(fileTypes, iterations));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("文件类型筛选耗时对比时发生错误: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of("message", "耗时对比失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 在后台启动全文索引与同步记录的对账任务，为缺失、过期和多余的文档补发索引事件。
+     * @param fullReindex 为 true 时所有已同步记录都重新发布 upsert 事件 (全量重建)
+     * @param resume 为 true 时从上次未完成的断点继续
+     * @return 任务状态；任务已在运行或未启用 Kafka 事件时返回 409
+     */
+    @PostMapping("/fulltext/reconcile/start")
+    public ResponseEntity<?> startFulltextReconcile(
+            @RequestParam(defaultValue = "false") boolean fullReindex,
+            @RequestParam(defaultValue = "true") boolean resume) {
+        log.info("API 请求: 启动全文索引对账。全量重建: {}, 断点续跑: {}", fullReindex, resume);
+        try {
+            return ResponseEntity.ok(fulltextReconciliationService.start(fullReindex, resume));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("启动全文索引对账时发生错误: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of("message", "启动对账任务失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 请求停止正在运行的全文索引对账任务 (当前批次完成后停止，可从断点继续)。
+     * @return 任务状态
+     */
+    @PostMapping("/fulltext/reconcile/stop")
+    public ResponseEntity<FulltextReconcileStatusDto> stopFulltextReconcile() {
+        log.info("API 请求: 停止全文索引对账。");
+        return ResponseEntity.ok(fulltextReconciliationService.stop());
+    }
+
+    /**
+     * 获取全文索引对账任务的状态和统计。
+     * @return 任务状态
+     */
+    @GetMapping("/fulltext/reconcile/status")
+    public ResponseEntity<FulltextReconcileStatusDto> getFulltextReconcileStatus() {
+        log.trace("API 请求: 获取全文索引对账状态。");
+        return ResponseEntity.ok(fulltextReconciliationService.getStatus());
+    }
 }
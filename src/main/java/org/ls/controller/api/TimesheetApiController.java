@@ -1,72 +1,112 @@
 package org.ls.controller.api;
 
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.connector.ClientAbortException;
 import org.ls.dto.BatchInsertResult; // 导入 DTO
+import org.ls.dto.TimesheetImportJobDto;
+import org.ls.dto.TimesheetStatisticsCountDto;
+import org.ls.dto.TimesheetUpsertSummary;
 import org.ls.entity.TimesheetWork;
+import org.ls.exception.ExportLimitExceededException;
+import org.ls.service.TimesheetImportService;
 import org.ls.service.TimesheetService;
+import org.ls.utils.KeysetCursorUtils;
 import org.ls.utils.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Collections; // 引入 Collections
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects; // 引入 Objects 用于比较
+import java.util.Set;
 
 /**
  * 处理工时数据 (t_wkt) 相关 API 请求的控制器 (主键修正版)
  * 文件路径: src/main/java/org/ls/controller/TimesheetApiController.java
  * 修正：适配新的四列组合主键 (ts_id, employee, ts_date, ts_bm)。
+ * 更新：增加上传 XLSX / CSV 文件由服务端流式导入的端点，并按任务 ID 查询导入进度。
+ * 更新：增加按组合主键批量 upsert 的端点，文件导入支持 upsert 模式。
+ * 更新：工时统计支持键集分页游标 (cursor / nextCursor)，并增加执行计划检查端点。
+ * 更新：工时统计的总数按过滤条件缓存，结果集较大时返回估算值 (totalApproximate)。
+ * 更新：增加按统计过滤条件流式导出 CSV / XLSX 的端点。
+ * 更新：批量新增和批量 upsert 写入数据后同步维度数据 (与文件导入一致)。
+ * 更新：移除执行计划检查端点 (对任意调用方暴露执行计划)，索引使用改由 TimesheetStatisticsPlanTest 回归检查。
+ * 更新：导出先写入临时文件，完成后带 Content-Length 发送；超出行数或耗时上限时返回 400，导出失败时返回 500。
  */
 @RestController
 @RequestMapping("/api/timesheets")
 public class TimesheetApiController {
 
     private static final Logger log = LoggerFactory.getLogger(TimesheetApiController.class);
+    private static final Set<String> EXPORT_FORMATS = Set.of("csv", "xlsx");
 
     private final TimesheetService timesheetService;
+    private final TimesheetImportService timesheetImportService;
 
     @Autowired
-    public TimesheetApiController(TimesheetService timesheetService) {
+    public TimesheetApiController(TimesheetService timesheetService, TimesheetImportService timesheetImportService) {
         this.timesheetService = timesheetService;
+        this.timesheetImportService = timesheetImportService;
     }
 
     /**
      * 获取工时统计数据（分页和过滤）
-     * (此方法不受主键变更影响，保持不变)
+     * 传入上一页响应中的 nextCursor 作为 cursor 参数时按键集分页 (不再使用 OFFSET，深翻页不变慢)，
+     * 否则按 page 计算 OFFSET (用于跳页)。
      */
     @GetMapping("/statistics")
     public ResponseEntity<Map<String, Object>> getTimesheetStatistics(
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) String cursor,
             @RequestParam Map<String, Object> params
     ) {
         log.debug("接收到工时统计查询请求: page={}, size={}, params={}", page, size, params);
-        params.forEach((key, value) -> {
-            if (value instanceof String) {
-                params.put(key, StringUtils.simpleSanitize((String) value));
-            }
-        });
-        int offset = (page - 1) * size;
-        params.put("offset", offset);
-        params.put("limit", size);
+        try {
+            prepareStatisticsParams(params, page, size, cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "查询参数无效", "message", e.getMessage()));
+        }
 
         try {
             List<Map<String, Object>> data = timesheetService.findTimesheetStatistics(params);
-            long totalRecords = timesheetService.countTimesheetStatistics(params);
+            TimesheetStatisticsCountDto count = timesheetService.countTimesheetStatisticsForPaging(params);
+            long totalRecords = count.getTotal();
             long totalPages = (totalRecords + size - 1) / size;
             Map<String, Object> response = new HashMap<>();
             response.put("data", data);
             response.put("totalRecords", totalRecords);
+            // 为 true 时 totalRecords / totalPages 是规划器的估算值
+            response.put("totalApproximate", count.isApproximate());
             response.put("currentPage", page);
             response.put("pageSize", size);
             response.put("totalPages", totalPages);
+            // 本页已满时返回下一页的游标 (本页最后一行的排序键)
+            if (data.size() == size) {
+                Map<String, Object> lastRow = data.get(data.size() - 1);
+                response.put("nextCursor", KeysetCursorUtils.encode(List.of(String.valueOf(lastRow.get("ts_date")),
+                        String.valueOf(lastRow.get("employee")), String.valueOf(lastRow.get("ts_id")), String.valueOf(lastRow.get("ts_bm")))));
+            }
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             log.error("查询工时统计数据时发生错误", e);
@@ -74,6 +114,114 @@ public class TimesheetApiController {
         }
     }
 
+    /**
+     * 按工时统计的过滤条件导出全部记录 (不分页)。
+     * 文件先完整写入临时文件 (数据库事务随之结束，不受客户端下载速度影响)，再带 Content-Length 发送，
+     * 导出失败时响应尚未提交，可以返回错误状态码而不是截断的文件。
+     * @param format 导出格式: xlsx (默认) 或 csv
+     * @param params 过滤条件，与 /statistics 相同
+     * @param response HttpServletResponse 对象，导出内容直接写入其中
+     */
+    @GetMapping("/statistics/export")
+    public void exportTimesheetStatistics(
+            @RequestParam(defaultValue = "xlsx") String format,
+            @RequestParam Map<String, Object> params,
+            HttpServletResponse response
+    ) {
+        String exportFormat = format.trim().toLowerCase();
+        if (!EXPORT_FORMATS.contains(exportFormat)) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        params.remove("format");
+        sanitizeStatisticsFilters(params);
+        log.info("接收到工时统计导出请求: format={}, params={}", exportFormat, params);
+        String filename = "工时统计_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss")) + "." + exportFormat;
+        String encodedFilename = URLEncoder.encode(filename, StandardCharsets.UTF_8).replace("+", "%20");
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile("timesheet-export-", "." + exportFormat);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+                timesheetService.exportTimesheetStatistics(params, exportFormat, out);
+            }
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType("csv".equals(exportFormat) ? "text/csv;charset=UTF-8"
+                    : "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + encodedFilename);
+            // 客户端据 Content-Length 判断下载是否完整
+            response.setContentLengthLong(Files.size(tempFile));
+            Files.copy(tempFile, response.getOutputStream());
+        } catch (ClientAbortException e) {
+            log.debug("客户端中断了工时统计导出下载");
+        } catch (ExportLimitExceededException e) {
+            log.warn("工时统计导出超出上限: {}", e.getMessage());
+            writeExportError(response, HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            log.error("导出工时统计数据时发生错误", e);
+            writeExportError(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "导出失败，请稍后重试");
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    log.warn("删除导出临时文件 {} 失败: {}", tempFile, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 以纯文本返回导出错误 (导出由浏览器直接下载，错误信息显示在页面上)。响应已提交时无法再修改，只能放弃。
+     */
+    private void writeExportError(HttpServletResponse response, int status, String message) {
+        if (response.isCommitted()) {
+            return;
+        }
+        response.reset();
+        response.setStatus(status);
+        response.setContentType("text/plain;charset=UTF-8");
+        try {
+            response.getWriter().write(message);
+        } catch (IOException e) {
+            log.debug("写出导出错误信息失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 清理过滤参数，并设置分页参数: 有游标时解码为 cursorTsDate 等键集条件，否则按页码计算 offset。
+     *
+     * @throws IllegalArgumentException 游标无效
+     */
+    private void prepareStatisticsParams(Map<String, Object> params, int page, int size, String cursor) {
+        params.remove("cursor");
+        sanitizeStatisticsFilters(params);
+        params.put("limit", size);
+        if (StringUtils.isNotBlank(cursor)) {
+            List<String> keys = KeysetCursorUtils.decode(cursor, 4);
+            try {
+                params.put("cursorTsDate", LocalDate.parse(keys.get(0)).toString());
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("分页游标无效");
+            }
+            params.put("cursorEmployee", keys.get(1));
+            params.put("cursorTsId", keys.get(2));
+            params.put("cursorTsBm", keys.get(3));
+        } else {
+            params.put("offset", (Math.max(page, 1) - 1) * size);
+        }
+    }
+
+    /**
+     * 对字符串类型的过滤参数做基础清理。
+     */
+    private void sanitizeStatisticsFilters(Map<String, Object> params) {
+        params.forEach((key, value) -> {
+            if (value instanceof String) {
+                params.put(key, StringUtils.simpleSanitize((String) value));
+            }
+        });
+    }
+
     /**
      * 根据复合主键获取单个工时记录
      * (修正：URL 路径和方法签名增加 tsBm)
@@ -251,6 +399,8 @@ public class TimesheetApiController {
             // 调用 Service 层进行批量处理
             List<BatchInsertResult> results = timesheetService.batchAddTimesheets(timesheets);
             log.info("批量导入处理完成，返回 {} 条结果。", results.size());
+            timesheetImportService.syncDimensionsAfterImport("批量导入",
+                    results.stream().filter(BatchInsertResult::isSuccess).count());
             // 直接返回 Service 层处理的结果列表
             return ResponseEntity.ok(results);
         } catch (Exception e) {
@@ -269,6 +419,63 @@ public class TimesheetApiController {
         }
     }
 
+    /**
+     * 按组合主键批量 upsert 工时数据: 新记录插入，内容有变化的记录更新，内容相同的记录跳过。
+     * @param timesheets 从请求体 JSON 数组映射的 TimesheetWork 对象列表。
+     * @return 新增、更新、未变化、失败的行数及每条记录的处理结果。
+     */
+    @PostMapping("/upsert")
+    public ResponseEntity<TimesheetUpsertSummary> upsertTimesheets(@RequestBody List<TimesheetWork> timesheets) {
+        if (timesheets == null || timesheets.isEmpty()) {
+            log.warn("接收到空的批量 upsert 请求。");
+            return ResponseEntity.badRequest().build();
+        }
+        log.info("接收到批量 upsert 请求，共 {} 条记录。", timesheets.size());
+        try {
+            TimesheetUpsertSummary summary = timesheetService.upsertTimesheets(timesheets);
+            timesheetImportService.syncDimensionsAfterImport("批量 upsert", summary.getInserted() + summary.getUpdated());
+            return ResponseEntity.ok(summary);
+        } catch (Exception e) {
+            log.error("批量 upsert 时发生意外错误: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * 上传工时文件 (.xlsx 或 .csv，列顺序与导入模板一致) 并在后台导入。
+     * 文件在服务端流式解析并分批写入，立即返回任务 ID，通过 {@link #getImportJob(String)} 查询进度和失败行。
+     * @param file 上传的文件
+     * @param charset CSV 文件的字符集，默认 UTF-8 (Excel 另存的 CSV 通常为 GBK)
+     * @param mode insert (默认，主键已存在的行记为失败) 或 upsert (更新内容有变化的行，跳过内容相同的行)
+     * @return 202 Accepted 和任务状态；文件类型、字符集或模式无效时返回 400
+     */
+    @PostMapping("/import")
+    public ResponseEntity<?> importTimesheetFile(@RequestParam("file") MultipartFile file,
+                                                 @RequestParam(required = false) String charset,
+                                                 @RequestParam(defaultValue = TimesheetImportJobDto.MODE_INSERT) String mode) {
+        try {
+            TimesheetImportJobDto job = timesheetImportService.submit(file, charset, mode);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (IllegalArgumentException e) {
+            log.warn("工时文件导入请求无效: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", "导入请求无效", "message", e.getMessage()));
+        } catch (IllegalStateException | IOException e) {
+            log.error("提交工时文件导入任务失败", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "提交导入任务失败", "message", e.getMessage()));
+        }
+    }
+
+    /**
+     * 查询工时文件导入任务的进度和结果。
+     * @param jobId 任务 ID
+     * @return 任务状态；任务不存在或已过期时返回 404
+     */
+    @GetMapping("/import/{jobId}")
+    public ResponseEntity<TimesheetImportJobDto> getImportJob(@PathVariable String jobId) {
+        TimesheetImportJobDto job = timesheetImportService.getJob(jobId);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
     // --- 用于数据同步准备的 API 端点 (保持不变) ---
     @GetMapping("/distinct/departments")
     public ResponseEntity<List<String>> getDistinctDepartments() {
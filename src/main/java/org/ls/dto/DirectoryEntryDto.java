@@ -0,0 +1,53 @@
+/**
+ * 目录: src/main/java/org/ls/dto/DirectoryEntryDto.java
+ * 文件名: DirectoryEntryDto.java
+ * 开发时间: 2026-10-19 13:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 数据传输对象 (DTO)，表示目录浏览时的单个子项 (文件或子目录)。
+ */
+package org.ls.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 目录浏览子项 DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DirectoryEntryDto {
+
+    /**
+     * 文件名或子目录名 (不含路径)
+     */
+    private String name;
+
+    /**
+     * 所在目录相对于根目录的相对路径
+     * 例如: "project_a/reports/" 或 ""
+     */
+    private String relativePath;
+
+    /**
+     * 是否为目录
+     */
+    private boolean directory;
+
+    /**
+     * 文件大小 (字节)，目录为 0
+     */
+    private long size;
+
+    /**
+     * 最后修改日期 (格式化后的字符串，例如 "yyyy-MM-dd HH:mm:ss")
+     */
+    private String lastModifiedDateFormatted;
+
+    /**
+     * 子目录的直接子项数量 (仅目录有效，文件为 null)
+     */
+    private Integer childCount;
+
+}
@@ -0,0 +1,52 @@
+/**
+ * 目录: src/main/java/org/ls/dto/DirectoryListingDto.java
+ * 文件名: DirectoryListingDto.java
+ * 开发时间: 2026-10-19 13:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 数据传输对象 (DTO)，封装单层目录浏览结果：当前目录的汇总信息和分页的子项列表。
+ */
+package org.ls.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 目录浏览结果 DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DirectoryListingDto {
+
+    /**
+     * 当前目录相对于根目录的相对路径 ("" 表示根目录)
+     */
+    private String relativePath;
+
+    /**
+     * 上级目录的相对路径 (当前为根目录时为 null)
+     */
+    private String parentPath;
+
+    /**
+     * 当前目录下的直接子目录数量
+     */
+    private long directoryCount;
+
+    /**
+     * 当前目录下的直接文件数量
+     */
+    private long fileCount;
+
+    /**
+     * 当前目录下直接文件的总大小 (字节，不含子目录)
+     */
+    private long totalFileSize;
+
+    /**
+     * 分页的子项列表 (目录在前，文件在后)
+     */
+    private PageDto<DirectoryEntryDto> entries;
+
+}
@@ -11,6 +11,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * 文件同步状态 DTO
  */
@@ -54,6 +56,11 @@ public class FileSyncStatusDto {
      */
     private int failedInCurrentRun;
 
+    /**
+     * 各文件转换器 (临时目录 -> 目标目录) 的吞吐量统计
+     */
+    private List<FileTransformMetricsDto> transformMetrics;
+
     // 可以根据需要添加更多状态信息，例如上次同步时间等
 
 }
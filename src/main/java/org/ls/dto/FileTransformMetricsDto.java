@@ -0,0 +1,56 @@
+/**
+ * 目录: src/main/java/org/ls/dto/FileTransformMetricsDto.java
+ * 文件名: FileTransformMetricsDto.java
+ * 开发时间: 2026-10-19 15:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 单个文件转换器 (例如 none) 自应用启动以来的吞吐量统计。
+ */
+package org.ls.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 文件转换器吞吐量统计 DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileTransformMetricsDto {
+
+    /**
+     * 转换器名称
+     */
+    private String transformer;
+
+    /**
+     * 成功转换的文件数
+     */
+    private long filesTransformed;
+
+    /**
+     * 转换失败的文件数
+     */
+    private long filesFailed;
+
+    /**
+     * 成功转换的输入字节数 (临时文件大小之和)
+     */
+    private long bytesIn;
+
+    /**
+     * 成功转换的输出字节数 (目标文件大小之和)
+     */
+    private long bytesOut;
+
+    /**
+     * 转换累计耗时 (毫秒，多个工作线程的耗时累加)
+     */
+    private long totalMillis;
+
+    /**
+     * 平均吞吐量 (MB/s，按输入字节和累计耗时计算，即单个工作线程的平均速度)
+     */
+    private double throughputMbPerSecond;
+}
@@ -0,0 +1,78 @@
+/**
+ * 目录结构: src/main/java/org/ls/dto/FileTypeFilterBenchmarkDto.java
+ * 文件名称: FileTypeFilterBenchmarkDto.java
+ * 开发时间: 2026-10-19 16:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 代码用途: 文件类型筛选 (Painless 脚本 vs extension terms 查询) 性能对比结果 DTO。
+ */
+package org.ls.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileTypeFilterBenchmarkDto {
+
+    /**
+     * 参与对比的文件类型 (已规范化)
+     */
+    private List<String> fileTypes;
+
+    /**
+     * 每种查询的执行次数
+     */
+    private int iterations;
+
+    /**
+     * Painless 脚本筛选的统计
+     */
+    private Stats scriptFilter;
+
+    /**
+     * extension terms 查询筛选的统计
+     */
+    private Stats termsFilter;
+
+    /**
+     * 两种方式的命中数是否一致 (不一致通常表示存量文档尚未回填完成)
+     */
+    private boolean hitCountsMatch;
+
+    /**
+     * 单种查询方式的耗时统计。
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Stats {
+        /**
+         * 命中文档数
+         */
+        private long totalHits;
+
+        /**
+         * Elasticsearch 返回的 took (毫秒) 平均值
+         */
+        private double avgTookMillis;
+
+        /**
+         * took 中位数 (毫秒)
+         */
+        private long p50TookMillis;
+
+        /**
+         * took 最大值 (毫秒)
+         */
+        private long maxTookMillis;
+
+        /**
+         * 客户端往返耗时平均值 (毫秒)
+         */
+        private double avgRoundTripMillis;
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * 目录: src/main/java/org/ls/dto/FileZipRequestDto.java
+ * 文件名: FileZipRequestDto.java
+ * 开发时间: 2026-10-19 11:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 多文件 / 目录打包下载请求的数据传输对象 (DTO)。
+ */
+package org.ls.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 打包下载请求 DTO。
+ * directory 与 files 可单独使用，也可同时使用 (同时指定时两者的文件都会被打包)。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileZipRequestDto {
+
+    /**
+     * 要整体打包的目录 (相对于根目录的相对路径，例如 "project_a/reports/")。
+     * 空字符串表示根目录；null 表示不打包目录。
+     * 可选。
+     */
+    private String directory;
+
+    /**
+     * 要打包的单个文件列表 (例如搜索结果中勾选的文件)。
+     * 可选。
+     */
+    private List<FileRef> files;
+
+    /**
+     * 是否对已压缩格式 (zip、jpg、mp4、docx 等) 直接存储而不再压缩。
+     * 默认为 true，可显著降低 CPU 占用。
+     */
+    private boolean storeCompressedFormats = true;
+
+    /**
+     * 下载时使用的 ZIP 文件名 (可选，不含 .zip 后缀时会自动补全)。
+     */
+    private String zipFilename;
+
+    /**
+     * 内部类，表示单个文件的位置。
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FileRef {
+        /**
+         * 文件相对于根目录的目录路径 (例如 "project_a/reports/" 或 "")。
+         */
+        private String relativePath;
+
+        /**
+         * 文件名。
+         */
+        private String filename;
+    }
+}
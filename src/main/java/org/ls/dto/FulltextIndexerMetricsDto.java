@@ -0,0 +1,120 @@
+/**
+ * 目录: src/main/java/org/ls/dto/FulltextIndexerMetricsDto.java
+ * 文件名: FulltextIndexerMetricsDto.java
+ * 开发时间: 2026-10-19 19:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 内置全文索引服务自应用启动以来的索引统计和消费延迟。
+ * 本次更新: 增加文本抽取阶段的统计。
+ */
+package org.ls.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 内置索引服务统计 DTO
+ */
+@Data
+@NoArgsConstructor
+public class FulltextIndexerMetricsDto {
+
+    /**
+     * 内置索引服务是否启用 (dms.indexer.enabled)，未启用时其余字段均为默认值
+     */
+    private boolean enabled;
+
+    /**
+     * 已消费的事件数
+     */
+    private long eventsConsumed;
+
+    /**
+     * 成功写入 (新增或更新) 的文档数
+     */
+    private long documentsIndexed;
+
+    /**
+     * 成功删除的文档数 (包括本来就不存在的文档)
+     */
+    private long documentsDeleted;
+
+    /**
+     * 因索引中已有更新版本而跳过的事件数
+     */
+    private long staleSkipped;
+
+    /**
+     * 目标文件不存在而跳过的事件数
+     */
+    private long missingFiles;
+
+    /**
+     * if_seq_no 版本冲突次数
+     */
+    private long conflicts;
+
+    /**
+     * 失败次数 (无法解析的事件、文本抽取失败、写入失败)
+     */
+    private long failures;
+
+    /**
+     * 已发送的 _bulk 请求数
+     */
+    private long bulkRequests;
+
+    /**
+     * 已发送的 _bulk 请求字节数 (估算值)
+     */
+    private long bulkBytes;
+
+    /**
+     * _bulk 请求平均耗时 (毫秒)
+     */
+    private double avgBulkMillis;
+
+    /**
+     * 文本抽取工作线程数
+     */
+    private int extractWorkers;
+
+    /**
+     * 已完成文本抽取 (包括失败和超时) 的文件数
+     */
+    private long extractedFiles;
+
+    /**
+     * 每个文件的平均文本抽取耗时 (毫秒，包括在线程池中排队的时间)
+     */
+    private double avgExtractMillis;
+
+    /**
+     * 文本抽取超时的文件数
+     */
+    private long extractTimeouts;
+
+    /**
+     * 超过大小上限、未抽取文本的文件数
+     */
+    private long oversizedFiles;
+
+    /**
+     * 正文超过字符上限被截断的文档数
+     */
+    private long truncatedDocuments;
+
+    /**
+     * 自启动以来平均每秒写入和删除的文档数
+     */
+    private double documentsPerSecond;
+
+    /**
+     * Kafka 消费者各分区中最大的落后消息数 (records-lag-max)，尚无数据时为 null
+     */
+    private Long consumerLag;
+
+    /**
+     * 最近一个事件从发布到被消费的时间差 (毫秒)
+     */
+    private long lastEventDelayMillis;
+}
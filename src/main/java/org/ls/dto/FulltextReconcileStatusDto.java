@@ -0,0 +1,91 @@
+/**
+ * 目录: src/main/java/org/ls/dto/FulltextReconcileStatusDto.java
+ * 文件名: FulltextReconcileStatusDto.java
+ * 开发时间: 2026-10-19 20:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 全文索引对账任务的运行状态和本次运行的统计。
+ */
+package org.ls.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 全文索引对账任务状态 DTO
+ */
+@Data
+@NoArgsConstructor
+public class FulltextReconcileStatusDto {
+
+    /**
+     * 任务是否正在运行
+     */
+    private boolean running;
+
+    /**
+     * 当前 (或最后) 阶段: records、documents、done
+     */
+    private String phase;
+
+    /**
+     * 是否为全量重建
+     */
+    private boolean fullReindex;
+
+    /**
+     * 本次运行开始时间
+     */
+    private LocalDateTime startedAt;
+
+    /**
+     * 本次运行结束时间，运行中为 null
+     */
+    private LocalDateTime finishedAt;
+
+    /**
+     * records 阶段已处理的最后一条记录 ID (断点)
+     */
+    private Long lastSyncMapId;
+
+    /**
+     * documents 阶段已处理的最后一个文档的 source_path (断点)
+     */
+    private String lastSourcePath;
+
+    /**
+     * 已检查的已同步记录数
+     */
+    private long recordsChecked;
+
+    /**
+     * 已检查的索引文档数
+     */
+    private long documentsChecked;
+
+    /**
+     * 索引中缺失的文档数 (已补发 upsert 事件)
+     */
+    private long missingDocuments;
+
+    /**
+     * 索引中与记录不一致 (修改时间或大小不同) 的文档数 (已补发 upsert 事件)
+     */
+    private long staleDocuments;
+
+    /**
+     * 索引中没有对应已同步记录的文档数 (已补发 delete 事件)
+     */
+    private long orphanDocuments;
+
+    /**
+     * 已发布的事件数
+     */
+    private long eventsPublished;
+
+    /**
+     * 结束说明或错误信息
+     */
+    private String message;
+}
@@ -0,0 +1,58 @@
+/**
+ * 目录: src/main/java/org/ls/dto/FulltextSearchCacheStatsDto.java
+ * 文件名: FulltextSearchCacheStatsDto.java
+ * 开发时间: 2026-10-19 17:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 全文搜索结果缓存的统计信息。
+ */
+package org.ls.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FulltextSearchCacheStatsDto {
+
+    /**
+     * 缓存是否启用
+     */
+    private boolean enabled;
+
+    /**
+     * 当前缓存的结果页数量 (估算值)
+     */
+    private long size;
+
+    /**
+     * 命中次数
+     */
+    private long hitCount;
+
+    /**
+     * 未命中次数
+     */
+    private long missCount;
+
+    /**
+     * 命中率 (0 ~ 1)
+     */
+    private double hitRate;
+
+    /**
+     * 因容量或过期被淘汰的条目数
+     */
+    private long evictionCount;
+
+    /**
+     * 因文件变更事件整体失效的次数
+     */
+    private long invalidationCount;
+
+    /**
+     * 失效保护期内未写入缓存的查询次数
+     */
+    private long bypassCount;
+}
@@ -0,0 +1,54 @@
+/**
+ * 目录结构: src/main/java/org/ls/dto/FulltextSearchFacetsDto.java
+ * 文件名称: FulltextSearchFacetsDto.java
+ * 开发时间: 2026-10-19 18:30:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 代码用途: 全文搜索的分面统计 (按文件类型、顶层目录、修改月份的命中数)，与搜索结果在同一次请求中返回。
+ */
+package org.ls.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FulltextSearchFacetsDto {
+
+    /**
+     * 按文件类型 (扩展名) 统计，按命中数降序
+     */
+    private List<Bucket> fileTypes = new ArrayList<>();
+
+    /**
+     * 按顶层目录统计，按命中数降序。根目录下的文件归入 "/"
+     */
+    private List<Bucket> directories = new ArrayList<>();
+
+    /**
+     * 按修改月份 (yyyy-MM) 统计，按月份升序，只包含有命中的月份
+     */
+    private List<Bucket> modifiedMonths = new ArrayList<>();
+
+    /**
+     * 单个分面取值及其命中数。
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Bucket {
+        /**
+         * 取值 (例如 "pdf"、"departmentA"、"2025-06")
+         */
+        private String key;
+
+        /**
+         * 命中文档数
+         */
+        private long count;
+    }
+}
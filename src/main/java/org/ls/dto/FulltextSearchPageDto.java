@@ -0,0 +1,48 @@
+/**
+ * 目录结构: src/main/java/org/ls/dto/FulltextSearchPageDto.java
+ * 文件名称: FulltextSearchPageDto.java
+ * 开发时间: 2026-10-19 18:30:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 代码用途: 全文搜索的分页结果，在通用分页信息之外附带可选的分面统计。
+ * 本次更新: 增加 resultWindowExceeded 和 pitId。
+ */
+package org.ls.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper = true)
+public class FulltextSearchPageDto extends PageDto<FulltextSearchResultDto> {
+
+    /**
+     * 分面统计。仅当请求 includeFacets = true 时返回 (游标分页只在第一页返回)，否则为 null
+     */
+    private FulltextSearchFacetsDto facets;
+
+    /**
+     * 页码分页请求的页码超出最大结果窗口。此时 content 为空，totalElements 为实际命中总数，需改用游标分页
+     */
+    private boolean resultWindowExceeded;
+
+    /**
+     * 游标分页使用的 point-in-time ID，可在下一次 scroll 请求中通过 pitId 复用。最后一页 (PIT 已关闭) 时为 null
+     */
+    private String pitId;
+
+    /**
+     * @param content       当前页内容
+     * @param pageNumber    当前页码 (基于 1)
+     * @param pageSize      每页大小
+     * @param totalElements 总记录数
+     */
+    public FulltextSearchPageDto(List<FulltextSearchResultDto> content, int pageNumber, int pageSize, long totalElements) {
+        super(content, pageNumber, pageSize, totalElements);
+    }
+}
@@ -5,6 +5,7 @@
  * 作者: Gemini
  * 代码用途: 定义发送给后端的全文搜索请求的数据传输对象 (DTO)。
  * 包含搜索关键词、分页信息、筛选条件和排序方式。
+ * 本次更新: 增加 pitId，游标分页可复用已打开的 point-in-time。
  */
 package org.ls.dto;
 
@@ -48,6 +49,30 @@ public class FulltextSearchRequestDto {
      */
     private String sortBy = "relevance";
 
+    /**
+     * 是否使用游标分页 (point-in-time + search_after)。
+     * 为 true 且未提供 cursor 时返回第一页和 nextCursor，之后每次携带上一页返回的 nextCursor 获取下一页，
+     * 每页的查询代价与翻到第几页无关。为 false 时使用页码分页 (适合浅层分页)。
+     */
+    private boolean scroll;
+
+    /**
+     * 上一页响应中的 nextCursor。提供该值时忽略 page，查询条件和排序方式需与第一页保持一致。
+     */
+    private String cursor;
+
+    /**
+     * 上一次游标分页响应中的 pitId。scroll = true 且未提供 cursor 时复用该 point-in-time 重新从第一页开始
+     * (例如修改排序或筛选条件)，不再打开新的 PIT；已失效时自动打开新的 PIT。
+     */
+    private String pitId;
+
+    /**
+     * 是否同时返回分面统计 (文件类型、顶层目录、修改月份的命中数)。
+     * 统计与搜索在同一次请求中完成，统计范围为当前查询和筛选条件命中的全部文档。
+     */
+    private boolean includeFacets;
+
     /**
      * 内部类，用于封装筛选条件。
      */
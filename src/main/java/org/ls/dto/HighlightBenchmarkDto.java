@@ -0,0 +1,53 @@
+/**
+ * 目录: src/main/java/org/ls/dto/HighlightBenchmarkDto.java
+ * 文件名: HighlightBenchmarkDto.java
+ * 开发时间: 2026-10-19 20:30:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 正文高亮两种模式 (查询时重新分析 vs 读取 offsets) 在大文档上的耗时对比结果。
+ */
+package org.ls.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HighlightBenchmarkDto {
+
+    /**
+     * 查询关键字
+     */
+    private String query;
+
+    /**
+     * 参与对比的文档的最小文件大小 (字节)
+     */
+    private long minFileSizeBytes;
+
+    /**
+     * 每种模式的执行次数
+     */
+    private int iterations;
+
+    /**
+     * 请求中的 max_analyzed_offset (小于等于 0 表示未设置)
+     */
+    private int maxAnalyzedOffset;
+
+    /**
+     * 高亮 content 字段 (查询时重新分析正文) 的统计
+     */
+    private FileTypeFilterBenchmarkDto.Stats analyzed;
+
+    /**
+     * 高亮 content.offsets 子字段 (读取倒排索引中的偏移量) 的统计
+     */
+    private FileTypeFilterBenchmarkDto.Stats offsets;
+
+    /**
+     * offsets 模式下有高亮片段的命中数与命中总数之比 (小于 1 通常表示存量文档尚未回填完成)
+     */
+    private double offsetsCoverage;
+}
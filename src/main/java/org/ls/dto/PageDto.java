@@ -62,6 +62,21 @@ public class PageDto<T> {
      */
     private int numberOfElements;
 
+    /**
+     * 游标分页时用于获取下一页的不透明令牌，没有下一页或使用页码分页时为 null
+     */
+    private String nextCursor;
+
+    /**
+     * 是否为降级响应 (依赖的服务超时、熔断或繁忙，content 为空且不代表没有匹配的数据)
+     */
+    private boolean degraded;
+
+    /**
+     * 提示信息 (例如降级原因、游标失效)，正常结果为 null
+     */
+    private String message;
+
     // 可以根据需要添加更多分页相关信息
 
     /**
@@ -40,12 +40,12 @@ public class PendingFileSyncDto {
     private String relativeDirPath;
 
     /**
-     * 临时文件的大小 (字节)
+     * 源文件的大小 (字节)，复制到临时目录时记录 (与临时文件大小一致)，未知时为 -1
      */
     private long size;
 
     /**
-     * 临时文件的最后修改日期 (格式化后的字符串)
+     * 源文件的最后修改日期 (格式化后的字符串)，复制到临时目录时记录
      */
     private String lastModifiedDateFormatted;
 
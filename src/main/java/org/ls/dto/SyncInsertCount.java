@@ -0,0 +1,28 @@
+/**
+ * 目录: src/main/java/org/ls/dto/SyncInsertCount.java
+ * 文件名: SyncInsertCount.java
+ * 开发时间: 2026-10-20 00:30:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 维表集合式同步 (INSERT ... SELECT ... ON CONFLICT) 单条语句的执行结果。
+ */
+package org.ls.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncInsertCount {
+
+    /**
+     * 新增的记录数
+     */
+    private long inserted;
+
+    /**
+     * 源数据无效而跳过的记录数 (例如无法拆分工号和姓名的员工、空的工时编码)
+     */
+    private long skipped;
+}
@@ -0,0 +1,122 @@
+/**
+ * 目录: src/main/java/org/ls/dto/TimesheetImportJobDto.java
+ * 文件名: TimesheetImportJobDto.java
+ * 开发时间: 2026-10-19 21:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 工时文件导入任务的进度和结果快照。
+ * 本次更新: 增加导入模式 (insert / upsert) 以及新增、更新、未变化的行数。
+ */
+package org.ls.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 工时文件导入任务状态 DTO
+ */
+@Data
+@NoArgsConstructor
+public class TimesheetImportJobDto {
+
+    public static final String STATE_QUEUED = "QUEUED";
+    public static final String STATE_RUNNING = "RUNNING";
+    public static final String STATE_COMPLETED = "COMPLETED";
+    public static final String STATE_FAILED = "FAILED";
+
+    public static final String MODE_INSERT = "insert";
+    public static final String MODE_UPSERT = "upsert";
+
+    /**
+     * 任务 ID
+     */
+    private String jobId;
+
+    /**
+     * 上传的文件名
+     */
+    private String fileName;
+
+    /**
+     * 上传文件大小 (字节)
+     */
+    private long fileSizeBytes;
+
+    /**
+     * 导入模式: insert (主键已存在的行记为失败) 或 upsert (更新内容有变化的行，跳过内容相同的行)
+     */
+    private String mode;
+
+    /**
+     * 任务状态: QUEUED、RUNNING、COMPLETED、FAILED
+     */
+    private String state;
+
+    /**
+     * 已读取的数据行数 (不含表头和空行)
+     */
+    private long rowsRead;
+
+    /**
+     * 已处理 (写入或判定失败) 的数据行数
+     */
+    private long rowsProcessed;
+
+    /**
+     * 导入成功的行数
+     */
+    private long succeeded;
+
+    /**
+     * 导入失败的行数 (解析错误、验证错误、主键冲突等)
+     */
+    private long failed;
+
+    /**
+     * 新插入的行数
+     */
+    private long inserted;
+
+    /**
+     * 已更新的行数 (仅 upsert 模式)
+     */
+    private long updated;
+
+    /**
+     * 内容未变化而跳过的行数 (仅 upsert 模式，计入成功)
+     */
+    private long unchanged;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createdAt;
+
+    /**
+     * 开始处理时间
+     */
+    private LocalDateTime startedAt;
+
+    /**
+     * 结束时间，未结束为 null
+     */
+    private LocalDateTime finishedAt;
+
+    /**
+     * 结束说明或导致任务失败的错误信息
+     */
+    private String message;
+
+    /**
+     * 失败行明细 (最多 timesheet.import.max-errors 条)。
+     * originalIndex 为该行在工作表中的行号 (从 0 开始，表头为第 0 行)，即 Excel 中显示的行号减 1。
+     */
+    private List<BatchInsertResult> errors;
+
+    /**
+     * 失败行数超过保留上限，errors 未包含全部失败行
+     */
+    private boolean errorsTruncated;
+}
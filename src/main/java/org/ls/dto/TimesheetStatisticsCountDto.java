@@ -0,0 +1,28 @@
+/**
+ * 目录: src/main/java/org/ls/dto/TimesheetStatisticsCountDto.java
+ * 文件名: TimesheetStatisticsCountDto.java
+ * 开发时间: 2026-10-19 23:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 工时统计分页使用的总记录数，可能是精确值，也可能是查询规划器的估算值。
+ */
+package org.ls.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimesheetStatisticsCountDto {
+
+    /**
+     * 总记录数
+     */
+    private long total;
+
+    /**
+     * 是否为估算值 (来自 PostgreSQL 统计信息，结果集较大时不执行精确 COUNT)
+     */
+    private boolean approximate;
+}
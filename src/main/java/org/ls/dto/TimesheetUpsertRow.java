@@ -0,0 +1,31 @@
+/**
+ * 目录: src/main/java/org/ls/dto/TimesheetUpsertRow.java
+ * 文件名: TimesheetUpsertRow.java
+ * 开发时间: 2026-10-19 22:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 工时记录多行 upsert 语句 (RETURNING) 返回的一行: 被写入记录的主键以及是插入还是更新。
+ */
+package org.ls.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * 工时 upsert 写入结果行
+ */
+@Data
+@NoArgsConstructor
+public class TimesheetUpsertRow {
+
+    private String tsId;
+    private String employee;
+    private LocalDate tsDate;
+    private String tsBm;
+
+    /**
+     * true 为新插入，false 为内容有变化而更新
+     */
+    private boolean inserted;
+}
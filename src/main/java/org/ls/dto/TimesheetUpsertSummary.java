@@ -0,0 +1,48 @@
+/**
+ * 目录: src/main/java/org/ls/dto/TimesheetUpsertSummary.java
+ * 文件名: TimesheetUpsertSummary.java
+ * 开发时间: 2026-10-19 22:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 工时记录批量 upsert 的汇总结果: 新增、更新、内容未变化和失败的行数，以及每条记录的处理结果。
+ */
+package org.ls.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 工时批量 upsert 结果 DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimesheetUpsertSummary {
+
+    /**
+     * 新插入的行数
+     */
+    private long inserted;
+
+    /**
+     * 主键已存在且内容有变化、已更新的行数
+     */
+    private long updated;
+
+    /**
+     * 主键已存在且内容相同、未写入的行数 (视为成功)
+     */
+    private long unchanged;
+
+    /**
+     * 验证失败、批内主键重复或写入出错的行数
+     */
+    private long failed;
+
+    /**
+     * 每条记录的处理结果，顺序与提交的列表一致
+     */
+    private List<BatchInsertResult> results;
+}
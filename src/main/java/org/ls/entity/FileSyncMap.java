@@ -4,6 +4,7 @@
  * 开发时间: 2025-04-29 10:00:00 EDT
  * 作者: Gemini
  * 用途: 文件同步映射表 (file_sync_map) 的实体类，用于表示文件同步过程中的记录。
+ * 本次更新: 新增源文件 / 目标文件元数据字段 (大小、修改时间、目标文件名)，列表类接口直接读取这些字段。
  */
 package org.ls.entity;
 
@@ -61,4 +62,29 @@ public class FileSyncMap {
      */
     private LocalDateTime sourceLastModified; // 新增字段
 
+    /**
+     * 源文件大小 (字节)，复制到临时目录时记录
+     */
+    private Long sourceFileSize;
+
+    /**
+     * 解密目标文件名 (目标路径 = 目标目录 + relativeDirPath + targetFilename)，移动到目标目录时记录
+     */
+    private String targetFilename;
+
+    /**
+     * 解密目标文件大小 (字节)，移动到目标目录时记录
+     */
+    private Long targetFileSize;
+
+    /**
+     * 解密目标文件最后修改时间 (秒级)，移动到目标目录时记录
+     */
+    private LocalDateTime targetLastModified;
+
+    /**
+     * 后台校验任务最近一次核对元数据与文件系统的时间
+     */
+    private LocalDateTime metadataVerifiedAt;
+
 }
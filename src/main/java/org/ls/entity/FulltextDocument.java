@@ -0,0 +1,69 @@
+/**
+ * 目录: src/main/java/org/ls/entity/FulltextDocument.java
+ * 文件名: FulltextDocument.java
+ * 开发时间: 2026-10-19 17:30:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 全文索引 (dms_files) 文档 _source 中搜索结果列表用到的字段。
+ * 不包含全文 content 字段，搜索时只取回这些字段，避免传输和解析大文档的完整内容。
+ */
+package org.ls.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 全文索引文档 (搜索结果展示用的字段子集)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class FulltextDocument {
+
+    public static final String FIELD_FILENAME = "filename";
+    public static final String FIELD_SOURCE_PATH = "source_path";
+    public static final String FIELD_LAST_MODIFIED = "last_modified";
+    public static final String FIELD_FILE_SIZE = "file_size_bytes";
+    public static final String FIELD_SUMMARY = "summary";
+
+    /**
+     * 搜索结果列表实际展示的字段，作为 _source includes 使用
+     */
+    public static final List<String> SOURCE_FIELDS = List.of(
+            FIELD_FILENAME, FIELD_SOURCE_PATH, FIELD_LAST_MODIFIED, FIELD_FILE_SIZE, FIELD_SUMMARY);
+
+    /**
+     * 源文件名
+     */
+    @JsonProperty(FIELD_FILENAME)
+    private String filename;
+
+    /**
+     * 源文件相对路径
+     */
+    @JsonProperty(FIELD_SOURCE_PATH)
+    private String sourcePath;
+
+    /**
+     * 最后修改时间。通常为纪元秒 (数字)，早期索引的文档可能是字符串
+     */
+    @JsonProperty(FIELD_LAST_MODIFIED)
+    private Object lastModified;
+
+    /**
+     * 文件大小 (字节)
+     */
+    @JsonProperty(FIELD_FILE_SIZE)
+    private Long fileSizeBytes;
+
+    /**
+     * 内容摘要 (content 的前若干个字符)，没有高亮片段时作为匹配段落展示
+     */
+    @JsonProperty(FIELD_SUMMARY)
+    private String summary;
+}
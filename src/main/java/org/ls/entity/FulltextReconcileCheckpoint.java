@@ -0,0 +1,58 @@
+/**
+ * 目录: src/main/java/org/ls/entity/FulltextReconcileCheckpoint.java
+ * 文件名: FulltextReconcileCheckpoint.java
+ * 开发时间: 2026-10-19 20:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 全文索引对账任务断点表 (fulltext_reconcile_checkpoint) 的实体类。任务中断或重启后从断点继续。
+ */
+package org.ls.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 全文索引对账断点实体类
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FulltextReconcileCheckpoint {
+
+    /**
+     * 任务名称 (主键)
+     */
+    private String jobName;
+
+    /**
+     * 当前阶段: "records" (按记录检查缺失和过期的文档)、"documents" (按文档检查多余的文档)、"done"
+     */
+    private String phase;
+
+    /**
+     * 是否为全量重建 (所有已同步记录都重新发布 upsert 事件)
+     */
+    private Boolean fullReindex;
+
+    /**
+     * records 阶段已处理的最后一条 file_sync_map 记录 ID
+     */
+    private Long lastSyncMapId;
+
+    /**
+     * documents 阶段已处理的最后一个文档的 source_path (search_after 的排序值)
+     */
+    private String lastSourcePath;
+
+    /**
+     * 任务开始时间
+     */
+    private LocalDateTime startedAt;
+
+    /**
+     * 断点更新时间
+     */
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,15 @@
+/**
+ * 目录: src/main/java/org/ls/exception/ExportLimitExceededException.java
+ * 文件名: ExportLimitExceededException.java
+ * 开发时间: 2026-10-22 10:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 导出的记录数或耗时超过配置的上限时抛出的异常，调用方据此提示用户缩小过滤条件。
+ */
+package org.ls.exception;
+
+public class ExportLimitExceededException extends RuntimeException {
+
+    public ExportLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * 目录: src/main/java/org/ls/exception/SearchUnavailableException.java
+ * 文件名: SearchUnavailableException.java
+ * 开发时间: 2026-10-19 18:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 全文搜索暂时不可用 (熔断器打开、并发已满或请求超时) 时抛出的异常，调用方据此返回降级响应。
+ */
+package org.ls.exception;
+
+public class SearchUnavailableException extends RuntimeException {
+
+    public SearchUnavailableException(String message) {
+        super(message);
+    }
+
+    public SearchUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
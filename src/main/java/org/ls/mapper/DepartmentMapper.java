@@ -1,6 +1,7 @@
 package org.ls.mapper;
 
 import org.apache.ibatis.annotations.Mapper;
+import org.ls.dto.SyncInsertCount;
 import org.ls.entity.Department;
 import org.apache.ibatis.annotations.Param;
 
@@ -100,4 +101,13 @@ public interface DepartmentMapper {
      */
     List<Department> findActiveStatsDepartmentsSorted();
 
+    /**
+     * 以单条 INSERT ... SELECT 语句把 t_wkt 中新出现的部门名称同步到 t_department。
+     *
+     * @param incremental 为 true 时只检查自上次同步水位以来新登记的值并推进水位 (见 db/6.sync-watermark.sql)，
+     *                    为 false 时检查 t_wkt 全部数据
+     * @return 新增的部门数
+     */
+    SyncInsertCount syncFromTimesheets(@Param("incremental") boolean incremental);
+
 }
@@ -3,6 +3,7 @@ package org.ls.mapper;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.ls.dto.EmployeeTimesheetRow; // 引入 DTO
+import org.ls.dto.SyncInsertCount;
 import org.ls.entity.Employee;
 
 import java.time.LocalDate;
@@ -106,9 +107,20 @@ public interface EmployeeMapper {
      * 查询员工工时统计明细。
      * @param startDate 开始日期
      * @param endDate 结束日期
+     * @param rollupAvailable 是否读取按月汇总表 (TimesheetWorkMapper.isMonthlyRollupAvailable)
      * @return 包含员工工时统计信息的 DTO 列表。
      */
     List<EmployeeTimesheetRow> findEmployeeTimesheetStats(
             @Param("startDate") LocalDate startDate,
-            @Param("endDate") LocalDate endDate);
+            @Param("endDate") LocalDate endDate,
+            @Param("rollupAvailable") boolean rollupAvailable);
+
+    /**
+     * 以单条 INSERT ... SELECT 语句把 t_wkt 中新出现的员工同步到 t_employee，部门取该员工最近一条工时记录的部门。
+     *
+     * @param incremental 为 true 时只检查自上次同步水位以来新登记的值并推进水位 (见 db/6.sync-watermark.sql)，
+     *                    为 false 时检查 t_wkt 全部数据
+     * @return 新增的员工数，以及无法拆分工号和姓名而跳过的员工数
+     */
+    SyncInsertCount syncFromTimesheets(@Param("incremental") boolean incremental);
 }
@@ -64,6 +64,66 @@ public interface FileSyncMapMapper {
      */
     int updateStatusAndTimestampsById(@Param("id") Long id, @Param("status") String status, @Param("sourceLastModified") LocalDateTime sourceLastModified); // New method
 
+    /**
+     * 根据 ID 更新记录的状态和源文件元数据 (复制到临时目录后调用)
+     *
+     * @param id                 记录 ID
+     * @param status             新的状态
+     * @param sourceLastModified 源文件的最后修改时间
+     * @param sourceFileSize     源文件大小 (字节)
+     * @return 影响的行数
+     */
+    int updateSourceMetadataById(@Param("id") Long id, @Param("status") String status,
+                                 @Param("sourceLastModified") LocalDateTime sourceLastModified,
+                                 @Param("sourceFileSize") Long sourceFileSize);
+
+    /**
+     * 根据 ID 更新记录的状态和解密目标文件元数据 (移动到目标目录后调用)
+     *
+     * @param id                 记录 ID
+     * @param status             新的状态
+     * @param targetFilename     目标文件名
+     * @param targetFileSize     目标文件大小 (字节)
+     * @param targetLastModified 目标文件最后修改时间 (秒级)
+     * @return 影响的行数
+     */
+    int updateSyncedMetadataById(@Param("id") Long id, @Param("status") String status,
+                                 @Param("targetFilename") String targetFilename,
+                                 @Param("targetFileSize") Long targetFileSize,
+                                 @Param("targetLastModified") LocalDateTime targetLastModified);
+
+    /**
+     * 后台校验任务发现元数据与文件系统不一致时，写回实际的元数据并记录校验时间
+     *
+     * @param id                 记录 ID
+     * @param sourceFileSize     源文件大小，源文件不存在时为 null
+     * @param targetFilename     目标文件名，目标文件不存在时为 null
+     * @param targetFileSize     目标文件大小，目标文件不存在时为 null
+     * @param targetLastModified 目标文件最后修改时间，目标文件不存在时为 null
+     * @return 影响的行数
+     */
+    int updateVerifiedMetadataById(@Param("id") Long id, @Param("sourceFileSize") Long sourceFileSize,
+                                   @Param("targetFilename") String targetFilename,
+                                   @Param("targetFileSize") Long targetFileSize,
+                                   @Param("targetLastModified") LocalDateTime targetLastModified);
+
+    /**
+     * 元数据校验一致时仅记录校验时间
+     *
+     * @param id 记录 ID
+     * @return 影响的行数
+     */
+    int touchMetadataVerifiedById(@Param("id") Long id);
+
+    /**
+     * 为添加 target_filename 列之前已同步的记录补写目标文件名 (由源文件名按配置移除后缀得到)，
+     * 使文件搜索和索引对账无需等待元数据校验任务即可覆盖这些记录。已有目标文件名的记录不变。
+     *
+     * @param removeSuffix 目标文件名需要移除的后缀，未配置时为 null
+     * @return 补写的记录数
+     */
+    int backfillTargetFilenames(@Param("removeSuffix") String removeSuffix);
+
 
     /**
      * 根据 ID 删除记录
@@ -163,4 +223,69 @@ public interface FileSyncMapMapper {
      */
     List<FileSyncMap> selectAllRelevantForScan(); // New method
 
+    /**
+     * 按目标文件名关键字分页查询已同步的记录 (按目标文件修改时间倒序)，用于解密文件搜索
+     *
+     * @param keyword 文件名关键字 (已转义 LIKE 通配符，可为空)
+     * @param offset  偏移量
+     * @param limit   数量
+     * @return 匹配的 FileSyncMap 实体列表
+     */
+    List<FileSyncMap> selectSyncedByTargetFilenameKeyword(@Param("keyword") String keyword,
+                                                          @Param("offset") int offset, @Param("limit") int limit);
+
+    /**
+     * 统计目标文件名匹配关键字的已同步记录数量
+     *
+     * @param keyword 文件名关键字 (已转义 LIKE 通配符，可为空)
+     * @return 记录数
+     */
+    long countSyncedByTargetFilenameKeyword(@Param("keyword") String keyword);
+
+    /**
+     * 按源文件名关键字分页查询记录 (排除待删除，按源文件修改时间倒序)，用于加密文件搜索
+     *
+     * @param keyword 文件名关键字 (已转义 LIKE 通配符，可为空)
+     * @param offset  偏移量
+     * @param limit   数量
+     * @return 匹配的 FileSyncMap 实体列表
+     */
+    List<FileSyncMap> selectSourceByFilenameKeyword(@Param("keyword") String keyword,
+                                                    @Param("offset") int offset, @Param("limit") int limit);
+
+    /**
+     * 统计源文件名匹配关键字的记录数量 (排除待删除)
+     *
+     * @param keyword 文件名关键字 (已转义 LIKE 通配符，可为空)
+     * @return 记录数
+     */
+    long countSourceByFilenameKeyword(@Param("keyword") String keyword);
+
+    /**
+     * 按 ID 顺序 (键集分页) 查询需要校验元数据的记录
+     *
+     * @param afterId 上一批最后一条记录的 ID (首批传 0)
+     * @param limit   每批数量
+     * @return FileSyncMap 实体列表
+     */
+    List<FileSyncMap> selectForMetadataVerification(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * 按 ID 顺序 (键集分页) 查询已同步且记录了目标文件元数据的记录，用于全文索引对账
+     *
+     * @param afterId 上一批最后一条记录的 ID (首批传 0)
+     * @param limit   每批数量
+     * @return FileSyncMap 实体列表
+     */
+    List<FileSyncMap> selectSyncedForReconciliation(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * 在给定的源路径中查询存在有效记录 (任意非 pending_deletion 状态，包括正在重新同步和出错的记录) 的路径，
+     * 用于找出索引中已没有对应记录或记录已待删除的文档
+     *
+     * @param sourcePaths 源路径列表，每项只需设置 relativeDirPath 和 originalFilename
+     * @return 存在有效记录的 FileSyncMap (只包含 relativeDirPath 和 originalFilename)
+     */
+    List<FileSyncMap> selectIndexableBySourcePaths(@Param("sourcePaths") List<FileSyncMap> sourcePaths);
+
 }
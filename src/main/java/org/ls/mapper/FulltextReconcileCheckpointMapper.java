@@ -0,0 +1,32 @@
+/**
+ * 目录: src/main/java/org/ls/mapper/FulltextReconcileCheckpointMapper.java
+ * 文件名: FulltextReconcileCheckpointMapper.java
+ * 开发时间: 2026-10-19 20:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: FulltextReconcileCheckpoint 实体对应的数据访问层接口 (MyBatis Mapper)。
+ */
+package org.ls.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.ls.entity.FulltextReconcileCheckpoint;
+
+@Mapper
+public interface FulltextReconcileCheckpointMapper {
+
+    /**
+     * 根据任务名称查询断点
+     *
+     * @param jobName 任务名称
+     * @return 断点，不存在时返回 null
+     */
+    FulltextReconcileCheckpoint selectByJobName(@Param("jobName") String jobName);
+
+    /**
+     * 保存断点 (不存在时插入，存在时更新)
+     *
+     * @param checkpoint 断点
+     * @return 影响的行数
+     */
+    int upsert(FulltextReconcileCheckpoint checkpoint);
+}
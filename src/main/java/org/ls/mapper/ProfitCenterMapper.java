@@ -1,6 +1,8 @@
 package org.ls.mapper;
 
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.ls.dto.SyncInsertCount;
 import org.ls.entity.ProfitCenter;
 
 import java.util.List;
@@ -83,4 +85,13 @@ public interface ProfitCenterMapper {
      */
     List<Map<String, Object>> findDistinctRemarksSorted();
 
+    /**
+     * 以单条 INSERT ... SELECT 语句把 t_wkt 中新出现的利润中心同步到 t_profit_center，并拆分 zone 字符串。
+     *
+     * @param incremental 为 true 时只检查自上次同步水位以来新登记的值并推进水位 (见 db/6.sync-watermark.sql)，
+     *                    为 false 时检查 t_wkt 全部数据
+     * @return 新增的利润中心数
+     */
+    SyncInsertCount syncFromTimesheets(@Param("incremental") boolean incremental);
+
 }
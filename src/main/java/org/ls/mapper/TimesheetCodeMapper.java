@@ -1,6 +1,8 @@
 package org.ls.mapper;
 
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.ls.dto.SyncInsertCount;
 import org.ls.entity.TimesheetCode;
 
 import java.util.List;
@@ -62,4 +64,13 @@ public interface TimesheetCodeMapper {
      * @return 影响的行数
      */
     int delete(String tsBm);
+
+    /**
+     * 以单条 INSERT ... SELECT 语句把 t_wkt 中新出现的工时编码同步到 t_timesheet_code，名称取最近一条工时记录。
+     *
+     * @param incremental 为 true 时只检查自上次同步水位以来新登记的值并推进水位 (见 db/6.sync-watermark.sql)，
+     *                    为 false 时检查 t_wkt 全部数据
+     * @return 新增的工时编码数，以及空编码而跳过的数量
+     */
+    SyncInsertCount syncFromTimesheets(@Param("incremental") boolean incremental);
 }
@@ -2,8 +2,10 @@ package org.ls.mapper;
 
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 import org.ls.entity.TimesheetWork;
 import org.ls.dto.MonthlyProjectCount; // 导入新的 DTO
+import org.ls.dto.TimesheetUpsertRow;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -33,13 +35,69 @@ public interface TimesheetWorkMapper {
 
     /**
      * 查询用于工时统计页面的数据 (选择特定字段)
-     * 支持分页和过滤
+     * 支持分页和过滤。按 (ts_date DESC, employee, ts_id, ts_bm) 排序；
+     * 传入 cursorTsDate、cursorEmployee、cursorTsId、cursorTsBm 时按键集分页，忽略 offset。
      *
      * @param params 包含过滤条件和分页参数的 Map
      * @return Map 列表
      */
     List<Map<String, Object>> findTimesheetStatistics(Map<String, Object> params);
 
+    /**
+     * 返回 {@link #findTimesheetStatistics(Map)} 在相同参数下的执行计划 (EXPLAIN 文本，每行一个元素)，
+     * 供 TimesheetStatisticsPlanTest 检查分页和子串过滤是否使用索引。
+     *
+     * @param params 与 findTimesheetStatistics 相同的参数
+     * @return 执行计划各行
+     */
+    List<String> explainTimesheetStatistics(Map<String, Object> params);
+
+    /**
+     * 以游标方式读取符合过滤条件的全部工时统计记录 (用于导出)，须在事务中使用并在读取完毕后关闭。
+     *
+     * @param params 包含过滤条件的 Map
+     * @return 逐行读取的游标
+     */
+    Cursor<Map<String, Object>> streamTimesheetStatistics(Map<String, Object> params);
+
+    /**
+     * t_wkt 是否为分区表 (已执行 db/4.partition-timesheet.sql)。
+     *
+     * @return 是分区表时为 true
+     */
+    boolean isTimesheetPartitioned();
+
+    /**
+     * 按月创建日期范围内缺少的 t_wkt 分区，并迁出默认分区中对应月份的行。仅在 t_wkt 为分区表时调用。
+     *
+     * @param from 起始日期 (所在月份)
+     * @param to   结束日期 (所在月份)
+     * @return 新建的分区数
+     */
+    int createMonthlyPartitions(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * 按月汇总表和增量队列是否存在 (已执行 db/5.rollup-timesheet.sql)。不存在时部门统计直接读取 t_wkt 明细。
+     *
+     * @return 存在时为 true
+     */
+    boolean isMonthlyRollupAvailable();
+
+    /**
+     * 把触发器追加的汇总增量合并到按月汇总表。仅在 isMonthlyRollupAvailable 时调用。
+     *
+     * @return 合并的汇总键数，其他实例正在合并时为 0
+     */
+    long applyRollupDeltas();
+
+    /**
+     * 由查询规划器估算符合过滤条件的记录数 (不执行查询)。
+     *
+     * @param params 包含过滤条件的 Map
+     * @return JSON 格式的执行计划，顶层节点的 "Plan Rows" 为估算行数
+     */
+    String explainTimesheetStatisticsCount(Map<String, Object> params);
+
     /**
      * 统计符合条件的记录总数 (用于分页)
      *
@@ -80,6 +138,42 @@ public interface TimesheetWorkMapper {
     List<Map<String, String>> findDistinctTimesheetCodes();
     List<String> findDistinctProfitCenters();
 
+    /**
+     * 一次扫描统计 t_wkt 中各维度的不重复值数量 (不把值列表读入内存)。
+     *
+     * @return 键为 departments、employees、timesheet_codes、profit_centers 的数量
+     */
+    Map<String, Long> countDistinctDimensions();
+
+    /**
+     * 维度增量同步的登记表和水位表是否存在 (已执行 db/6.sync-watermark.sql)。
+     *
+     * @return 存在时为 true
+     */
+    boolean isIncrementalSyncAvailable();
+
+    /**
+     * 按触发器维护的维度值登记表统计 t_wkt 中各维度的不重复值数量，不扫描 t_wkt。仅在 isIncrementalSyncAvailable 时调用。
+     * 各值的明细行数为登记表中已合并的行数加上队列中尚未合并的增量，删除后已没有明细行的值不计入。
+     *
+     * @return 键为 departments、employees、timesheet_codes、profit_centers 的数量
+     */
+    Map<String, Long> countDimensionValues();
+
+    /**
+     * 把维度值行数增量队列合并到登记表 (多个实例同时调用时只有一个执行，不锁 t_wkt)。仅在 isIncrementalSyncAvailable 时调用。
+     *
+     * @return 合并的维度值数量，其他实例正在合并时为 0
+     */
+    long applyDimensionDeltas();
+
+    /**
+     * 获取维度同步的事务级咨询锁 (阻塞到其他同步事务结束)，同一事务中随后执行各维度 Mapper 的 syncFromTimesheets。
+     *
+     * @return 固定为 1
+     */
+    int lockDimensionSync();
+
     // --- CUD 操作 ---
 
     /**
@@ -90,6 +184,23 @@ public interface TimesheetWorkMapper {
      */
     int insert(TimesheetWork timesheetWork);
 
+    /**
+     * 多行插入工时记录，主键已存在的行跳过 (INSERT ... ON CONFLICT DO NOTHING)。
+     * 一条语句插入整批记录，替代逐条 insert 的多次往返。
+     *
+     * @param records 工时记录列表 (单批不超过 1000 条，避免超过 PostgreSQL 单条语句的参数个数上限)
+     * @return 实际插入的记录的主键 (只填充 tsId、employee、tsDate、tsBm)，未返回的记录即主键冲突
+     */
+    List<TimesheetWork> insertIgnoringDuplicates(@Param("records") List<TimesheetWork> records);
+
+    /**
+     * 多行 upsert 工时记录: 主键不存在时插入，已存在且内容有变化时更新，内容相同的行不写入。
+     *
+     * @param records 工时记录列表 (单批不超过 1000 条，且批内主键不能重复)
+     * @return 实际插入或更新的记录的主键及是否为插入，未返回的记录即内容未变化
+     */
+    List<TimesheetUpsertRow> upsertChanged(@Param("records") List<TimesheetWork> records);
+
     /**
      * 更新工时记录 (方法签名不变，WHERE 条件依赖对象中的所有主键字段)
      *
@@ -117,35 +228,41 @@ public interface TimesheetWorkMapper {
      * @param startDate 开始日期
      * @param endDate 结束日期
      * @param minHours 最小工时数阈值
+     * @param rollupAvailable 是否读取按月汇总表 (isMonthlyRollupAvailable)
      * @return 包含项目编码(ts_bm)、项目名称(custom_project_name)、总工时(total_hours) 的 Map 列表。
      */
     List<Map<String, Object>> findKeyProjectsAboveThreshold(
             @Param("startDate") LocalDate startDate,
             @Param("endDate") LocalDate endDate,
-            @Param("minHours") int minHours);
+            @Param("minHours") int minHours,
+            @Param("rollupAvailable") boolean rollupAvailable);
 
     /**
      * 查询指定项目在指定时间范围内，按部门分组的参与员工列表。
      * @param tsBm 项目工时编码
      * @param startDate 开始日期
      * @param endDate 结束日期
+     * @param rollupAvailable 是否读取按月汇总表 (isMonthlyRollupAvailable)
      * @return 包含部门ID(dep_id)、部门名称(dep_name)、员工列表(employee_list - 逗号分隔) 的 Map 列表。
      */
     List<Map<String, Object>> findEmployeesForProjectByDept(
             @Param("tsBm") String tsBm,
             @Param("startDate") LocalDate startDate,
-            @Param("endDate") LocalDate endDate);
+            @Param("endDate") LocalDate endDate,
+            @Param("rollupAvailable") boolean rollupAvailable);
 
     /**
      * 查询按利润中心和部门分组的项目工时（人天）。
      * @param startDate 开始日期
      * @param endDate 结束日期
+     * @param rollupAvailable 是否读取按月汇总表 (isMonthlyRollupAvailable)
      * @return 包含利润中心备注(custom_zone_remark)、区域分类(region_category)、大区名称(region_name)、
      * 部门ID(dep_id)、部门名称(dep_name)、总人天数(total_workdays) 的 Map 列表。
      */
     List<Map<String, Object>> findProfitCenterWorkdaysByDept(
             @Param("startDate") LocalDate startDate,
-            @Param("endDate") LocalDate endDate);
+            @Param("endDate") LocalDate endDate,
+            @Param("rollupAvailable") boolean rollupAvailable);
 
     // --- 新增方法 (用于数据统计 - 图表) ---
 
@@ -153,10 +270,12 @@ public interface TimesheetWorkMapper {
      * 查询指定时间范围内，每个月参与的项目数量（按项目 ts_bm 去重）。
      * @param startDate 开始日期
      * @param endDate 结束日期
+     * @param rollupAvailable 是否读取按月汇总表 (isMonthlyRollupAvailable)
      * @return 月份和对应项目数的 DTO 列表。
      */
     List<MonthlyProjectCount> findMonthlyProjectCounts(
             @Param("startDate") LocalDate startDate,
-            @Param("endDate") LocalDate endDate);
+            @Param("endDate") LocalDate endDate,
+            @Param("rollupAvailable") boolean rollupAvailable);
 
 }
@@ -8,10 +8,14 @@
 package org.ls.service;
 
 import org.ls.dto.DecryptedFileDto; // Reuse DTO for simplicity, represents source file info here
+import org.ls.dto.DirectoryListingDto;
+import org.ls.dto.FileZipRequestDto;
 import org.ls.dto.PageDto;
 import org.springframework.core.io.Resource;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
 
 public interface FileManagementService {
 
@@ -57,4 +61,55 @@ public interface FileManagementService {
      */
     Resource getEncryptedFileResource(String relativePath, String filename) throws FileNotFoundException;
 
+    // --- 目录浏览 ---
+
+    /**
+     * 浏览解密目录中的单层目录 (不递归)，结果来自目录列表缓存。
+     *
+     * @param relativePath 目录相对于解密目录的相对路径 ("" 表示根目录)
+     * @param sortBy       排序方式 (name_asc, name_desc, size_asc, size_desc, modified_asc, modified_desc)，目录始终在前
+     * @param page         页码 (从 1 开始)
+     * @param size         每页大小
+     * @return 当前目录的汇总信息和分页的子项列表
+     * @throws FileNotFoundException 如果目录不存在或路径无效
+     * @throws IOException 如果读取目录失败
+     */
+    DirectoryListingDto browseDecryptedDirectory(String relativePath, String sortBy, int page, int size) throws IOException;
+
+    /**
+     * 浏览加密源目录中的单层目录 (不递归)，结果来自目录列表缓存。
+     *
+     * @param relativePath 目录相对于加密目录的相对路径 ("" 表示根目录)
+     * @param sortBy       排序方式，同 {@link #browseDecryptedDirectory}
+     * @param page         页码 (从 1 开始)
+     * @param size         每页大小
+     * @return 当前目录的汇总信息和分页的子项列表
+     * @throws FileNotFoundException 如果目录不存在或路径无效
+     * @throws IOException 如果读取目录失败
+     */
+    DirectoryListingDto browseEncryptedDirectory(String relativePath, String sortBy, int page, int size) throws IOException;
+
+    // --- 打包下载 ---
+
+    /**
+     * 将解密目录中的指定文件和/或目录以 ZIP 格式流式写出。
+     * 不使用临时文件，内存占用与文件数量和大小无关。
+     *
+     * @param request 打包请求 (目录和/或文件列表)
+     * @param out     输出流 (通常为 HTTP 响应流，方法结束后不会被关闭)
+     * @throws FileNotFoundException 如果请求的目录或文件无效 (此时尚未写出任何数据)
+     * @throws IOException           如果读取文件或写出数据时发生 IO 错误
+     */
+    void writeDecryptedFilesAsZip(FileZipRequestDto request, OutputStream out) throws IOException;
+
+    /**
+     * 将加密源目录中的指定文件和/或目录以 ZIP 格式流式写出。
+     *
+     * @param request 打包请求 (目录和/或文件列表)
+     * @param out     输出流 (通常为 HTTP 响应流，方法结束后不会被关闭)
+     * @throws FileNotFoundException 如果请求的目录或文件无效 (此时尚未写出任何数据)
+     * @throws IOException           如果读取文件或写出数据时发生 IO 错误
+     */
+    void writeEncryptedFilesAsZip(FileZipRequestDto request, OutputStream out) throws IOException;
+
 }
@@ -71,6 +71,13 @@ public interface FileSyncService {
      */
     void performFullScan(); // 新增方法
 
+    /**
+     * 校验 file_sync_map 中记录的文件元数据 (大小、修改时间、目标文件名) 与文件系统是否一致，
+     * 不一致时写回实际值。列表类接口只读取元数据，本任务用于修正在应用外部对文件的修改造成的偏差。
+     * 通常由 @Scheduled 定时任务调用，按 ID 分批执行并限速。
+     */
+    void verifyFileMetadata();
+
     /**
      * (新增) 处理用户确认删除的文件。
      *
@@ -0,0 +1,33 @@
+/**
+ * 目录: src/main/java/org/ls/service/FileTransformer.java
+ * 文件名: FileTransformer.java
+ * 开发时间: 2026-10-19 15:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 文件同步转换阶段的扩展接口。同步任务把临时文件交给转换器生成目标文件 (例如解密)。
+ * 本次更新: 项目只内置直接移动的 none 转换器；解密等转换由部署方按上游实际使用的文件格式实现并注册为 Bean。
+ */
+package org.ls.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface FileTransformer {
+
+    /**
+     * 转换器名称，与配置项 file.sync.transform.type 对应。
+     *
+     * @return 名称 (例如 "none")
+     */
+    String getName();
+
+    /**
+     * 将临时文件转换为目标文件。
+     * 实现必须以流式方式处理，不能把整个文件读入内存；成功后目标文件完整可见 (先写入临时文件再原子替换)，
+     * 并删除输入的临时文件。失败时不应留下不完整的目标文件。
+     *
+     * @param input  临时目录中的输入文件
+     * @param output 目标文件路径 (上级目录已存在)
+     * @throws IOException 读取、转换或写出失败 (包括解密认证失败)
+     */
+    void transform(Path input, Path output) throws IOException;
+}
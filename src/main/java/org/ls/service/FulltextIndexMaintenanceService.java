@@ -0,0 +1,89 @@
+/**
+ * 目录结构: src/main/java/org/ls/service/FulltextIndexMaintenanceService.java
+ * 文件名称: FulltextIndexMaintenanceService.java
+ * 开发时间: 2026-10-19 16:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 代码用途: 全文索引 (dms_files) 的维护操作接口，例如字段回填和查询性能对比。
+ * 本次更新: 增加正文 offsets 子字段的回填和高亮耗时对比。
+ * 本次更新: 增加 ensureFieldMappings，应用启动时和内置索引服务写入前预先创建 extension、summary 字段映射。
+ */
+package org.ls.service;
+
+import org.ls.dto.FileTypeFilterBenchmarkDto;
+import org.ls.dto.FulltextIndexerMetricsDto;
+import org.ls.dto.HighlightBenchmarkDto;
+
+import java.io.IOException;
+import java.util.List;
+
+public interface FulltextIndexMaintenanceService {
+
+    /**
+     * 为索引添加 extension (keyword) 和 summary (只存储、不索引) 字段映射。
+     * 必须在任何文档写入这两个字段之前执行，否则动态映射会先把它们映射为 text + keyword 子字段，之后无法再修改类型。
+     * 应用启动时自动执行一次；执行成功后再次调用直接返回。
+     *
+     * @throws IOException 与 Elasticsearch 通信失败，或字段已被映射为其他类型
+     */
+    void ensureFieldMappings() throws IOException;
+
+    /**
+     * 为索引添加 extension keyword 字段映射，并提交一个异步 update_by_query 任务，
+     * 为尚未包含 extension 字段的存量文档根据 filename 回填扩展名。
+     * 任务可重复提交，已回填的文档不会被再次处理。
+     *
+     * @return Elasticsearch 任务 ID (可通过 _tasks API 查看进度)
+     * @throws IOException 与 Elasticsearch 通信失败
+     */
+    String backfillExtensionField() throws IOException;
+
+    /**
+     * 为索引添加 summary 字段映射 (只存储、不索引)，并提交一个异步 update_by_query 任务，
+     * 为尚未包含 summary 字段的存量文档截取 content 的开头部分作为摘要。
+     * 搜索结果不再取回完整的 content，没有高亮片段时使用该摘要。
+     *
+     * @return Elasticsearch 任务 ID (可通过 _tasks API 查看进度)
+     * @throws IOException 与 Elasticsearch 通信失败
+     */
+    String backfillSummaryField() throws IOException;
+
+    /**
+     * 对比文件类型筛选的两种实现 (Painless 脚本 vs extension terms 查询) 的查询耗时。
+     * 两种查询交替执行，禁用请求缓存，并比较命中数以确认结果一致。
+     *
+     * @param fileTypes  要筛选的文件类型 (例如 pdf、docx)
+     * @param iterations 每种查询的执行次数
+     * @return 对比结果
+     * @throws IOException 与 Elasticsearch 通信失败
+     */
+    FileTypeFilterBenchmarkDto benchmarkFileTypeFilter(List<String> fileTypes, int iterations) throws IOException;
+
+    /**
+     * 为 content 字段添加 offsets 子字段 (index_options: offsets，分析器与 content 相同)，
+     * 并提交一个异步 update_by_query 任务重新索引尚未包含该子字段的存量文档。
+     * 完成后可启用 dms.elasticsearch.highlight-offsets-enabled，高亮时直接读取偏移量。
+     *
+     * @return Elasticsearch 任务 ID (可通过 _tasks API 查看进度)
+     * @throws IOException 与 Elasticsearch 通信失败
+     */
+    String backfillContentOffsets() throws IOException;
+
+    /**
+     * 在文件大小不小于指定值的文档上，对比正文高亮两种模式 (content 重新分析 vs content.offsets 读取偏移量) 的查询耗时。
+     * 两种模式交替执行。
+     *
+     * @param query            查询关键字
+     * @param minFileSizeBytes 参与对比的文档的最小文件大小 (字节)
+     * @param iterations       每种模式的执行次数
+     * @return 对比结果
+     * @throws IOException 与 Elasticsearch 通信失败
+     */
+    HighlightBenchmarkDto benchmarkHighlight(String query, long minFileSizeBytes, int iterations) throws IOException;
+
+    /**
+     * 获取内置索引服务 (dms.indexer.enabled) 的索引统计和 Kafka 消费延迟。
+     *
+     * @return 统计信息；未启用内置索引服务时 enabled 为 false
+     */
+    FulltextIndexerMetricsDto getIndexerMetrics();
+}
@@ -0,0 +1,40 @@
+/**
+ * 目录: src/main/java/org/ls/service/FulltextReconciliationService.java
+ * 文件名: FulltextReconciliationService.java
+ * 开发时间: 2026-10-19 20:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 全文索引 (dms_files) 与 file_sync_map 对账任务的服务接口。
+ */
+package org.ls.service;
+
+import org.ls.dto.FulltextReconcileStatusDto;
+
+public interface FulltextReconciliationService {
+
+    /**
+     * 在后台启动对账任务。任务分两个阶段:
+     * <ol>
+     *     <li>records: 按 ID 顺序分批读取已同步记录，使用 mget 与索引比对，为缺失或过期的文档发布 upsert 事件；</li>
+     *     <li>documents: 使用 PIT + search_after 按 source_path 顺序遍历索引，为没有对应已同步记录的文档发布 delete 事件。</li>
+     * </ol>
+     * 事件按配置的速率发布，由索引服务异步写入，不影响在线搜索。每批完成后保存断点。
+     *
+     * @param fullReindex 为 true 时所有已同步记录都发布 upsert 事件 (全量重建)
+     * @param resume      为 true 且存在未完成的断点时从断点继续，否则从头开始
+     * @return 启动后的任务状态
+     * @throws IllegalStateException 任务已在运行，或未启用 Kafka 事件发布
+     */
+    FulltextReconcileStatusDto start(boolean fullReindex, boolean resume);
+
+    /**
+     * 请求停止正在运行的对账任务。当前批次完成并保存断点后停止。
+     *
+     * @return 任务状态
+     */
+    FulltextReconcileStatusDto stop();
+
+    /**
+     * @return 任务状态和最近一次运行的统计
+     */
+    FulltextReconcileStatusDto getStatus();
+}
@@ -8,9 +8,11 @@
  */
 package org.ls.service;
 
+import org.ls.dto.FulltextSearchCacheStatsDto;
+import org.ls.dto.FulltextSearchPageDto;
 import org.ls.dto.FulltextSearchRequestDto;
-import org.ls.dto.FulltextSearchResultDto;
-import org.ls.dto.PageDto; // 假设 PageDto 是一个通用的分页结果封装类
+
+import java.util.concurrent.CompletableFuture;
 
 public interface FulltextSearchService {
 
@@ -18,9 +20,25 @@ public interface FulltextSearchService {
      * 执行全文搜索。
      *
      * @param requestDto 包含搜索关键词、分页信息、筛选条件和排序方式的请求对象。
-     * @return 返回一个 PageDto 对象，其中包含 FulltextSearchResultDto 列表和分页信息。
+     * @return 返回一个 FulltextSearchPageDto 对象，其中包含 FulltextSearchResultDto 列表、分页信息和可选的分面统计。
      * 如果搜索过程中发生错误，具体行为取决于实现类（例如，可能抛出自定义异常或返回空的PageDto）。
      */
-    PageDto<FulltextSearchResultDto> search(FulltextSearchRequestDto requestDto);
+    FulltextSearchPageDto search(FulltextSearchRequestDto requestDto);
+
+    /**
+     * 异步执行全文搜索，等待 Elasticsearch 响应期间不占用调用线程。
+     * 返回的 Future 总是正常完成：Elasticsearch 超时、熔断、繁忙或出错时返回 degraded = true 的空分页。
+     *
+     * @param requestDto 包含搜索关键词、分页信息、筛选条件和排序方式的请求对象。
+     * @return 分页结果的 Future
+     */
+    CompletableFuture<FulltextSearchPageDto> searchAsync(FulltextSearchRequestDto requestDto);
+
+    /**
+     * 获取搜索结果缓存的命中/未命中等统计信息。
+     *
+     * @return 缓存统计
+     */
+    FulltextSearchCacheStatsDto getResultCacheStats();
 
 }
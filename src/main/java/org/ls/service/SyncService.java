@@ -3,6 +3,8 @@ package org.ls.service;
 import org.ls.dto.SyncCounts;
 import org.ls.dto.SyncResult;
 
+import java.util.List;
+
 /**
  * 数据同步服务接口。
  * 定义了获取同步统计信息和执行各维度数据同步的方法。
@@ -51,6 +53,14 @@ public interface SyncService {
      */
     SyncResult syncProfitCenters();
 
+    /**
+     * 依次执行部门、员工、工时编码、利润中心同步。
+     * 工时文件导入完成后自动调用，已执行 db/6.sync-watermark.sql 时只检查上次同步以来新出现的维度值。
+     *
+     * @return 各维度的同步结果，顺序为部门、员工、工时编码、利润中心。
+     */
+    List<SyncResult> syncAll();
+
 }
 
 
@@ -0,0 +1,53 @@
+/**
+ * 目录: src/main/java/org/ls/service/TimesheetImportService.java
+ * 文件名: TimesheetImportService.java
+ * 开发时间: 2026-10-19 21:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 工时文件服务端导入的服务接口。
+ * 本次更新: 提交任务时可选择 upsert 模式。
+ * 本次更新: 增加批量导入后的维度同步入口，文件导入和 /batch、/upsert 批量接口共用。
+ */
+package org.ls.service;
+
+import org.ls.dto.TimesheetImportJobDto;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+/**
+ * 工时文件导入服务接口。
+ * 上传的 XLSX / CSV 文件先保存到临时目录，再由后台线程流式读取、逐行校验并分批写入 t_wkt，
+ * 调用方通过任务 ID 查询进度和失败行明细。
+ */
+public interface TimesheetImportService {
+
+    /**
+     * 保存上传文件并提交导入任务。
+     * 列顺序与页面导入模板一致，第一行为表头。
+     *
+     * @param file    上传的 .xlsx 或 .csv 文件
+     * @param charset CSV 文件的字符集 (例如 UTF-8、GBK)，为空时使用 UTF-8，XLSX 忽略此参数
+     * @param mode    {@link TimesheetImportJobDto#MODE_INSERT} 或 {@link TimesheetImportJobDto#MODE_UPSERT}
+     * @return 新建任务的状态
+     * @throws IllegalArgumentException 文件为空、类型不支持、字符集或模式无效
+     * @throws IOException              保存上传文件失败
+     */
+    TimesheetImportJobDto submit(MultipartFile file, String charset, String mode) throws IOException;
+
+    /**
+     * 查询导入任务的状态。
+     *
+     * @param jobId 任务 ID
+     * @return 任务状态，任务不存在或已过期时返回 null
+     */
+    TimesheetImportJobDto getJob(String jobId);
+
+    /**
+     * 批量导入 (文件导入、批量新增、批量 upsert) 写入了新行或更新了行时，把新出现的部门、员工、工时编码、利润中心同步到各维表。
+     * timesheet.import.sync-dimensions 为 false 或没有写入时不做任何操作；同步失败只记录日志，可在数据同步页面手工重试。
+     *
+     * @param source      导入来源 (用于日志)
+     * @param changedRows 新增和更新的行数
+     */
+    void syncDimensionsAfterImport(String source, long changedRows);
+}
@@ -1,8 +1,12 @@
 package org.ls.service;
 
 import org.ls.dto.BatchInsertResult;
+import org.ls.dto.TimesheetStatisticsCountDto;
+import org.ls.dto.TimesheetUpsertSummary;
 import org.ls.entity.TimesheetWork;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
@@ -12,6 +16,7 @@ import java.util.Map;
  * 定义工时主表 (t_wkt) 相关的业务逻辑操作。
  * 文件路径: src/main/java/org/ls/service/TimesheetService.java
  * 修正：适配新的四列组合主键 (ts_id, employee, ts_date, ts_bm)。
+ * 更新：工时统计导出限制最大行数和耗时。
  */
 public interface TimesheetService {
 
@@ -29,7 +34,8 @@ public interface TimesheetService {
     /**
      * 查询用于工时统计的数据列表（包含特定字段）。
      *
-     * @param params 包含过滤条件和分页参数 (offset, limit) 的 Map。
+     * @param params 包含过滤条件和分页参数 (offset, limit) 的 Map，
+     *               或键集分页游标 (cursorTsDate, cursorEmployee, cursorTsId, cursorTsBm)。
      * @return 包含工时统计数据的 Map 列表。
      */
     List<Map<String, Object>> findTimesheetStatistics(Map<String, Object> params);
@@ -42,6 +48,31 @@ public interface TimesheetService {
      */
     long countTimesheetStatistics(Map<String, Object> params);
 
+    /**
+     * 按统计查询的过滤条件导出全部记录，边读取边写出，内存占用与导出行数无关。
+     * 读取期间保持数据库事务，输出流应写入本地临时文件而不是直接写给客户端，避免慢速下载长时间占用事务。
+     *
+     * @param params 包含过滤条件的 Map (分页参数被忽略)。
+     * @param format 导出格式: csv 或 xlsx。
+     * @param out    导出内容写入的输出流 (不会被关闭)。
+     * @return 导出的记录数。
+     * @throws IllegalArgumentException 导出格式不支持
+     * @throws org.ls.exception.ExportLimitExceededException 记录数超过 timesheet.statistics.export-max-rows
+     *         或耗时超过 timesheet.statistics.export-timeout-seconds
+     * @throws IOException 写出失败
+     */
+    long exportTimesheetStatistics(Map<String, Object> params, String format, OutputStream out) throws IOException;
+
+    /**
+     * 获取工时统计分页使用的总记录数。
+     * 按过滤条件缓存；规划器估算的行数不小于 timesheet.statistics.exact-count-threshold 时直接返回估算值
+     * (approximate = true)，否则执行精确 COUNT。
+     *
+     * @param params 包含过滤条件的 Map。
+     * @return 总记录数及是否为估算值。
+     */
+    TimesheetStatisticsCountDto countTimesheetStatisticsForPaging(Map<String, Object> params);
+
     /**
      * 查询所有工时记录（分页和可选过滤）。
      *
@@ -99,10 +130,19 @@ public interface TimesheetService {
 
     /**
      * 批量添加工时记录。
-     * 逐条尝试插入，并返回每条记录的处理结果。
+     * 按组执行多行插入 (主键已存在的记录被跳过)，并返回每条记录的处理结果。
      *
      * @param timesheets 要导入的工时记录列表。
      * @return 包含每条记录导入结果的列表。
      */
     List<BatchInsertResult> batchAddTimesheets(List<TimesheetWork> timesheets);
+
+    /**
+     * 批量 upsert 工时记录 (按组合主键)。
+     * 主键不存在时插入，已存在且内容不同时更新，内容相同时不写入，适合重复导入每月重新导出的数据。
+     *
+     * @param timesheets 要导入的工时记录列表。
+     * @return 新增、更新、未变化、失败的行数及每条记录的处理结果。
+     */
+    TimesheetUpsertSummary upsertTimesheets(List<TimesheetWork> timesheets);
 }
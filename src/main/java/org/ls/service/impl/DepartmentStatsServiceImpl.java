@@ -26,6 +26,7 @@ import java.util.stream.Collectors;
  * 部门工作统计服务实现类。(完整修正版)
  * 文件路径: src/main/java/org/ls/service/impl/DepartmentStatsServiceImpl.java
  * 修正：添加 import，修正字符串格式化，确保 depId 可用。
+ * 更新：工时统计查询按是否已执行 db/5.rollup-timesheet.sql 选择读取按月汇总表或 t_wkt 明细，未执行时不再查询失败返回空数据。
  */
 @Service
 public class DepartmentStatsServiceImpl implements DepartmentStatsService {
@@ -93,7 +94,7 @@ public class DepartmentStatsServiceImpl implements DepartmentStatsService {
         LocalDate finalEndDate = (endDate == null) ? LocalDate.now() : endDate;
         try {
             // 调用 Mapper 获取数据 (Mapper SQL 已包含 depId)
-            List<EmployeeTimesheetRow> details = employeeMapper.findEmployeeTimesheetStats(finalStartDate, finalEndDate);
+            List<EmployeeTimesheetRow> details = employeeMapper.findEmployeeTimesheetStats(finalStartDate, finalEndDate, isMonthlyRollupAvailable());
             log.info("成功获取 {} 条员工工时明细记录。", details.size());
             return details;
         } catch (Exception e) {
@@ -204,7 +205,9 @@ public class DepartmentStatsServiceImpl implements DepartmentStatsService {
         LocalDate finalEndDate = (endDate == null) ? LocalDate.now() : endDate;
 
         try {
-            List<Map<String, Object>> projects = timesheetWorkMapper.findKeyProjectsAboveThreshold(finalStartDate, finalEndDate, KEY_PROJECT_MIN_HOURS);
+            boolean rollupAvailable = isMonthlyRollupAvailable();
+            List<Map<String, Object>> projects = timesheetWorkMapper.findKeyProjectsAboveThreshold(finalStartDate, finalEndDate,
+                    KEY_PROJECT_MIN_HOURS, rollupAvailable);
             log.debug("发现 {} 个重点项目。", projects.size());
             if (projects.isEmpty()) return keyProjectList;
 
@@ -228,7 +231,7 @@ public class DepartmentStatsServiceImpl implements DepartmentStatsService {
                 }
                 row.setTotalWorkdays(totalHours.divide(HOURS_PER_WORKDAY, 2, RoundingMode.HALF_UP));
 
-                List<Map<String, Object>> employeesData = timesheetWorkMapper.findEmployeesForProjectByDept(tsBm, finalStartDate, finalEndDate);
+                List<Map<String, Object>> employeesData = timesheetWorkMapper.findEmployeesForProjectByDept(tsBm, finalStartDate, finalEndDate, rollupAvailable);
                 Map<String, List<String>> employeesByDeptName = new HashMap<>();
                 for (Map<String, Object> empData : employeesData) {
                     String depName = (String) empData.get("dep_name");
@@ -267,7 +270,7 @@ public class DepartmentStatsServiceImpl implements DepartmentStatsService {
             List<Map<String, Object>> distinctRemarks = profitCenterMapper.findDistinctRemarksSorted();
             log.debug("获取到 {} 个不同的利润中心备注作为交叉表行。", distinctRemarks.size());
 
-            List<Map<String, Object>> rawData = timesheetWorkMapper.findProfitCenterWorkdaysByDept(finalStartDate, finalEndDate);
+            List<Map<String, Object>> rawData = timesheetWorkMapper.findProfitCenterWorkdaysByDept(finalStartDate, finalEndDate, isMonthlyRollupAvailable());
             log.debug("获取到 {} 条按利润中心和部门分组的工时数据。", rawData.size());
 
             Map<String, Map<String, BigDecimal>> pivotDataMap = new HashMap<>();
@@ -331,7 +334,7 @@ public class DepartmentStatsServiceImpl implements DepartmentStatsService {
         LocalDate finalEndDate = (endDate == null) ? LocalDate.now() : endDate;
 
         try {
-            List<MonthlyProjectCount> counts = timesheetWorkMapper.findMonthlyProjectCounts(finalStartDate, finalEndDate);
+            List<MonthlyProjectCount> counts = timesheetWorkMapper.findMonthlyProjectCounts(finalStartDate, finalEndDate, isMonthlyRollupAvailable());
             log.info("成功获取 {} 条月度项目统计记录。", counts.size());
             // 可以在这里补充缺失月份的数据为 0，如果需要的话
             Map<Integer, Long> countsMap = counts.stream()
@@ -346,6 +349,13 @@ public class DepartmentStatsServiceImpl implements DepartmentStatsService {
             return Collections.emptyList(); // 返回空列表表示出错
         }
     }
+
+    /**
+     * 是否已执行 db/5.rollup-timesheet.sql，可以读取按月汇总表。
+     */
+    private boolean isMonthlyRollupAvailable() {
+        return timesheetWorkMapper.isMonthlyRollupAvailable();
+    }
 }
 //
 //        * **修改说明:**
@@ -0,0 +1,281 @@
+/**
+ * 目录: src/main/java/org/ls/service/impl/DirectoryListingCache.java
+ * 文件名: DirectoryListingCache.java
+ * 开发时间: 2026-10-19 13:10:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 单层目录列表缓存。目录浏览 API 从这里读取子项列表，避免每次请求都遍历文件系统；
+ * 文件监控线程、同步任务和删除确认在目录内容变化时使对应目录的缓存失效。
+ * 本次更新: 子目录的子项数量随上级目录列表缓存 (首次需要时统计)，子目录失效时同步清除上级目录中的计数。
+ */
+package org.ls.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+@Slf4j
+public class DirectoryListingCache {
+
+    private final Cache<Path, Listing> cache;
+
+    /**
+     * 构造函数。
+     *
+     * @param maxEntries    缓存中所有目录的子项总数上限 (按子项数量计权，超大目录不会挤占全部内存)
+     * @param expireMinutes 缓存过期时间 (分钟)，作为外部修改目录时的兜底刷新机制
+     */
+    public DirectoryListingCache(@Value("${file.browse.cache.max-entries:500000}") long maxEntries,
+                                 @Value("${file.browse.cache.expire-minutes:10}") long expireMinutes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxEntries)
+                .weigher((Path dir, Listing listing) -> Math.max(1, listing.getEntries().size()))
+                .expireAfterWrite(Duration.ofMinutes(expireMinutes))
+                .build();
+        log.info("目录列表缓存初始化完成。子项总数上限: {}, 过期时间: {} 分钟", maxEntries, expireMinutes);
+    }
+
+    /**
+     * 获取目录的单层列表，缓存未命中时读取文件系统。
+     *
+     * @param directory 目录的绝对路径
+     * @return 目录列表
+     * @throws IOException 如果读取目录失败
+     */
+    public Listing getListing(Path directory) throws IOException {
+        try {
+            return cache.get(directory.normalize(), this::loadListing);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 如果目录列表已被缓存则返回，否则返回 null (不会触发文件系统读取)。
+     *
+     * @param directory 目录的绝对路径
+     * @return 已缓存的目录列表或 null
+     */
+    public Listing getIfPresent(Path directory) {
+        return cache.getIfPresent(directory.normalize());
+    }
+
+    /**
+     * 使单个目录的缓存失效 (目录内有文件新增、修改或删除时调用)。
+     *
+     * @param directory 目录的绝对路径
+     */
+    public void invalidate(Path directory) {
+        if (directory != null) {
+            Path normalized = directory.normalize();
+            cache.invalidate(normalized);
+            forgetChildCount(normalized);
+        }
+    }
+
+    /**
+     * 使目录及其直到根目录的所有上级目录的缓存失效。
+     * 用于新建或删除目录的场景 (上级目录的子项和子目录计数都会变化)。
+     *
+     * @param directory 目录的绝对路径
+     * @param root      根目录，失效操作到此为止 (包含根目录)
+     */
+    public void invalidateWithAncestors(Path directory, Path root) {
+        Path current = directory != null ? directory.normalize() : null;
+        while (current != null && current.startsWith(root)) {
+            cache.invalidate(current);
+            forgetChildCount(current);
+            current = current.getParent();
+        }
+    }
+
+    /**
+     * 获取目录列表中某个子目录的直接子项数量。
+     * 子目录列表已缓存时直接使用其子项数；否则只读取目录项名称 (不读取属性) 统计一次，并记录在上级目录列表中，
+     * 之后的翻页请求不再访问文件系统。
+     *
+     * @param listing      上级目录列表
+     * @param subDirectory 子目录的绝对路径
+     * @return 子项数量
+     * @throws IOException 如果读取子目录失败 (失败结果不缓存)
+     */
+    public int getChildCount(Listing listing, Path subDirectory) throws IOException {
+        Path normalized = subDirectory.normalize();
+        Listing cached = cache.getIfPresent(normalized);
+        if (cached != null) {
+            return cached.getEntries().size();
+        }
+        String name = normalized.getFileName().toString();
+        try {
+            return listing.childCounts.computeIfAbsent(name, k -> countEntries(normalized));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 清除上级目录列表中记录的该目录子项数量 (该目录内容变化时调用)。
+     */
+    private void forgetChildCount(Path directory) {
+        Path parent = directory.getParent();
+        Path fileName = directory.getFileName();
+        if (parent == null || fileName == null) {
+            return;
+        }
+        Listing parentListing = cache.getIfPresent(parent);
+        if (parentListing != null) {
+            parentListing.childCounts.remove(fileName.toString());
+        }
+    }
+
+    private static int countEntries(Path directory) {
+        int count = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path ignored : stream) {
+                count++;
+            }
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Listing loadListing(Path directory) {
+        long startTime = System.currentTimeMillis();
+        List<Entry> entries = new ArrayList<>();
+        try {
+            // maxDepth = 1 时子目录也通过 visitFile 回调，属性随遍历一并获取，无需逐个 stat
+            Files.walkFileTree(directory, EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    entries.add(new Entry(file.getFileName().toString(), attrs.isDirectory(),
+                            attrs.isDirectory() ? 0 : attrs.size(), attrs.lastModifiedTime().toMillis()));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    if (file.equals(directory)) {
+                        throw new UncheckedIOException(exc);
+                    }
+                    log.warn("读取目录项 {} 失败，跳过: {}", file, exc.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.debug("已加载目录 {} 的列表，共 {} 项，耗时 {} 毫秒", directory, entries.size(), System.currentTimeMillis() - startTime);
+        return new Listing(Collections.unmodifiableList(entries));
+    }
+
+    /**
+     * 单个目录子项 (不可变)。
+     */
+    public record Entry(String name, boolean directory, long size, long lastModifiedMillis) {
+    }
+
+    /**
+     * 单层目录列表，包含汇总信息以及按排序方式惰性生成并复用的排序视图。
+     */
+    public static class Listing {
+        private final List<Entry> entries;
+        private final long directoryCount;
+        private final long fileCount;
+        private final long totalFileSize;
+        private final Map<String, List<Entry>> sortedViews = new ConcurrentHashMap<>();
+        private final Map<String, Integer> childCounts = new ConcurrentHashMap<>(); // 子目录名 -> 直接子项数量
+
+        Listing(List<Entry> entries) {
+            this.entries = entries;
+            long dirs = 0;
+            long files = 0;
+            long totalSize = 0;
+            for (Entry entry : entries) {
+                if (entry.directory()) {
+                    dirs++;
+                } else {
+                    files++;
+                    totalSize += entry.size();
+                }
+            }
+            this.directoryCount = dirs;
+            this.fileCount = files;
+            this.totalFileSize = totalSize;
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        public long getDirectoryCount() {
+            return directoryCount;
+        }
+
+        public long getFileCount() {
+            return fileCount;
+        }
+
+        public long getTotalFileSize() {
+            return totalFileSize;
+        }
+
+        /**
+         * 获取按指定方式排序的子项列表 (目录始终在前)。同一排序方式只排序一次。
+         *
+         * @param sortBy 排序方式: name_asc, name_desc, size_asc, size_desc, modified_asc, modified_desc
+         * @return 排序后的不可变列表
+         */
+        public List<Entry> getSorted(String sortBy) {
+            String key = normalizeSortKey(sortBy);
+            return sortedViews.computeIfAbsent(key, k -> {
+                List<Entry> sorted = new ArrayList<>(entries);
+                sorted.sort(Comparator.comparing((Entry e) -> !e.directory()).thenComparing(comparatorFor(k)));
+                return Collections.unmodifiableList(sorted);
+            });
+        }
+
+        private static String normalizeSortKey(String sortBy) {
+            if (sortBy == null) {
+                return "name_asc";
+            }
+            String key = sortBy.toLowerCase();
+            return switch (key) {
+                case "name_asc", "name_desc", "size_asc", "size_desc", "modified_asc", "modified_desc" -> key;
+                default -> "name_asc";
+            };
+        }
+
+        private static Comparator<Entry> comparatorFor(String key) {
+            Comparator<Entry> byName = Comparator.comparing(Entry::name, String.CASE_INSENSITIVE_ORDER);
+            return switch (key) {
+                case "name_desc" -> byName.reversed();
+                case "size_asc" -> Comparator.comparingLong(Entry::size).thenComparing(byName);
+                case "size_desc" -> Comparator.comparingLong(Entry::size).reversed().thenComparing(byName);
+                case "modified_asc" -> Comparator.comparingLong(Entry::lastModifiedMillis).thenComparing(byName);
+                case "modified_desc" -> Comparator.comparingLong(Entry::lastModifiedMillis).reversed().thenComparing(byName);
+                default -> byName;
+            };
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * 目录: src/main/java/org/ls/service/impl/ElasticsearchSearchGuard.java
+ * 文件名: ElasticsearchSearchGuard.java
+ * 开发时间: 2026-10-19 18:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 全文搜索请求的保护层：单次请求超时、并发上限 (舱壁隔离) 和熔断器。
+ * Elasticsearch 集群变慢或不可用时快速失败，避免请求堆积占满连接池和 Web 线程。
+ */
+package org.ls.service.impl;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import lombok.extern.slf4j.Slf4j;
+import org.ls.config.properties.ElasticsearchProperties;
+import org.ls.exception.SearchUnavailableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+@Component
+@Slf4j
+public class ElasticsearchSearchGuard {
+
+    private final long timeoutMillis;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final Semaphore permits;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger(0);
+    private final AtomicBoolean halfOpenProbeInFlight = new AtomicBoolean(false);
+    private volatile long openedAtMillis = 0; // 0 表示熔断器关闭
+
+    public ElasticsearchSearchGuard(ElasticsearchProperties properties) {
+        this.timeoutMillis = properties.getSearchTimeoutMillis();
+        this.failureThreshold = Math.max(1, properties.getCircuitBreakerFailureThreshold());
+        this.openMillis = properties.getCircuitBreakerOpenMillis();
+        this.permits = new Semaphore(Math.max(1, properties.getMaxConcurrentSearches()));
+        log.info("全文搜索保护层初始化完成。超时: {} 毫秒, 并发上限: {}, 熔断阈值: {} 次连续失败, 熔断时长: {} 毫秒",
+                timeoutMillis, properties.getMaxConcurrentSearches(), failureThreshold, openMillis);
+    }
+
+    /**
+     * 在保护层内执行一次异步请求。
+     * 熔断器打开或并发已满时不发起请求，直接返回以 {@link SearchUnavailableException} 失败的 Future；
+     * 请求超时时取消底层 HTTP 请求。
+     *
+     * @param call 发起异步请求的函数
+     * @return 请求结果
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call) {
+        boolean probe = false;
+        if (openedAtMillis != 0) {
+            if (System.currentTimeMillis() - openedAtMillis < openMillis || !halfOpenProbeInFlight.compareAndSet(false, true)) {
+                return CompletableFuture.failedFuture(new SearchUnavailableException("全文搜索服务暂时不可用 (熔断中)，请稍后重试。"));
+            }
+            probe = true;
+            log.info("熔断时长已到，放行一个试探请求。");
+        }
+        if (!permits.tryAcquire()) {
+            if (probe) {
+                halfOpenProbeInFlight.set(false);
+            }
+            return CompletableFuture.failedFuture(new SearchUnavailableException("全文搜索请求过多，请稍后重试。"));
+        }
+
+        CompletableFuture<T> source;
+        try {
+            source = call.get();
+        } catch (RuntimeException e) {
+            permits.release();
+            onComplete(e, probe);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        boolean isProbe = probe;
+        return source.copy()
+                .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((result, ex) -> {
+                    permits.release();
+                    if (unwrap(ex) instanceof TimeoutException) {
+                        // 放弃等待的同时中止底层 HTTP 请求，释放连接
+                        source.cancel(true);
+                    }
+                    onComplete(ex, isProbe);
+                })
+                .exceptionallyCompose(ex -> {
+                    Throwable cause = unwrap(ex);
+                    if (cause instanceof TimeoutException) {
+                        return CompletableFuture.failedFuture(
+                                new SearchUnavailableException("全文搜索超时 (" + timeoutMillis + " 毫秒)，请稍后重试或缩小查询范围。", cause));
+                    }
+                    return CompletableFuture.failedFuture(cause);
+                });
+    }
+
+    /**
+     * @return 熔断器当前状态: closed、open 或 half_open
+     */
+    public String getCircuitState() {
+        if (openedAtMillis == 0) {
+            return "closed";
+        }
+        return System.currentTimeMillis() - openedAtMillis < openMillis ? "open" : "half_open";
+    }
+
+    private void onComplete(Throwable ex, boolean probe) {
+        if (probe) {
+            halfOpenProbeInFlight.set(false);
+        }
+        if (ex == null || !isClusterFailure(unwrap(ex))) {
+            if (openedAtMillis != 0) {
+                log.info("Elasticsearch 请求恢复正常，熔断器关闭。");
+            }
+            consecutiveFailures.set(0);
+            openedAtMillis = 0;
+            return;
+        }
+        int failures = consecutiveFailures.incrementAndGet();
+        if (probe || failures >= failureThreshold) {
+            openedAtMillis = System.currentTimeMillis();
+            log.warn("Elasticsearch 请求连续失败 {} 次，熔断器打开 {} 毫秒。最近一次错误: {}", failures, openMillis, unwrap(ex).toString());
+        }
+    }
+
+    /**
+     * 超时、网络错误和服务端 5xx 视为集群故障；4xx (例如查询语法错误、PIT 过期) 说明集群可以正常响应，不计入熔断。
+     */
+    private static boolean isClusterFailure(Throwable cause) {
+        if (cause instanceof ElasticsearchException esException) {
+            return esException.status() >= 500;
+        }
+        return cause instanceof TimeoutException || cause instanceof IOException
+                || cause.getCause() instanceof IOException;
+    }
+
+    static Throwable unwrap(Throwable ex) {
+        Throwable current = ex;
+        while ((current instanceof CompletionException || current instanceof ExecutionException) && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+}
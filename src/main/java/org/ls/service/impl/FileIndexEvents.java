@@ -0,0 +1,111 @@
+/**
+ * 目录: src/main/java/org/ls/service/impl/FileIndexEvents.java
+ * 文件名: FileIndexEvents.java
+ * 开发时间: 2026-10-19 20:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 文件索引事件 (FILE_UPSERTED / FILE_DELETED) 的主题、文档 ID 和消息体构建方法。
+ * 文件同步发布事件、索引对账补发事件以及内置索引服务消费事件共用同一份定义。
+ */
+package org.ls.service.impl;
+
+import org.ls.entity.FileSyncMap;
+import org.ls.utils.FileExtensionUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+
+final class FileIndexEvents {
+
+    static final String TOPIC_FILE_UPSERT_EVENTS = "dms-file-upsert-events";
+    static final String TOPIC_FILE_DELETE_EVENTS = "dms-file-delete-events";
+    static final String EVENT_TYPE_UPSERTED = "FILE_UPSERTED";
+    static final String EVENT_TYPE_DELETED = "FILE_DELETED";
+
+    private FileIndexEvents() {
+    }
+
+    /**
+     * 根据源文件的相对目录路径和原始文件名生成 Elasticsearch 文档 ID。
+     * 使用 SHA-256 哈希以确保唯一性和固定长度。
+     *
+     * @param sourceRelativeDirPath  源文件的相对目录路径 (例如 "docs/projectA/")
+     * @param sourceOriginalFilename 源文件的原始文件名 (例如 "report.docx.enc")
+     * @return SHA-256 哈希字符串作为 ES 文档 ID
+     */
+    static String documentId(String sourceRelativeDirPath, String sourceOriginalFilename) {
+        String uniqueFileIdentifier = sourcePath(sourceRelativeDirPath, sourceOriginalFilename);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(uniqueFileIdentifier.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 是 JDK 必须提供的算法，不会发生
+            throw new IllegalStateException("未找到 SHA-256 算法，无法生成 Elasticsearch 文档 ID", e);
+        }
+    }
+
+    /**
+     * @return 源文件相对路径 (包含文件名)，即索引中的 source_path 字段值
+     */
+    static String sourcePath(String sourceRelativeDirPath, String sourceOriginalFilename) {
+        String normalizedDirPath = sourceRelativeDirPath != null ? sourceRelativeDirPath : "";
+        if (!normalizedDirPath.isEmpty() && !normalizedDirPath.endsWith("/")) {
+            normalizedDirPath += "/";
+        }
+        if (normalizedDirPath.equals("/")) { // 避免根目录变成 "//"
+            normalizedDirPath = "";
+        }
+        return normalizedDirPath + sourceOriginalFilename;
+    }
+
+    /**
+     * 构建 FILE_UPSERTED 事件消息体。
+     *
+     * @param fileRecord                同步记录 (源路径、源文件名、ID)
+     * @param targetRelativePath        目标文件所在目录相对于目标根目录的路径 (以 "/" 结尾，根目录为 "")
+     * @param targetFilename            目标文件名
+     * @param targetSize                目标文件大小 (字节)
+     * @param targetModTimeEpochSeconds 目标文件最后修改时间 (纪元秒)
+     */
+    static Map<String, Object> upsertPayload(FileSyncMap fileRecord, String targetRelativePath, String targetFilename,
+                                             long targetSize, long targetModTimeEpochSeconds) {
+        Map<String, Object> messagePayload = new HashMap<>();
+        messagePayload.put("eventId", UUID.randomUUID().toString());
+        messagePayload.put("eventType", EVENT_TYPE_UPSERTED);
+        messagePayload.put("eventTimestamp", Instant.now().toString());
+        messagePayload.put("fileSyncMapId", fileRecord.getId());
+        messagePayload.put("sourceRelativePath", fileRecord.getRelativeDirPath());
+        messagePayload.put("sourceFilename", fileRecord.getOriginalFilename());
+        messagePayload.put("targetRelativePath", targetRelativePath);
+        messagePayload.put("targetFilename", targetFilename);
+        // 索引时写入 keyword 类型的 extension 字段，全文搜索用 terms 查询按文件类型筛选
+        messagePayload.put("extension", FileExtensionUtils.getExtension(targetFilename));
+        messagePayload.put("targetFileSizeInBytes", targetSize);
+        messagePayload.put("targetFileLastModifiedEpochSeconds", targetModTimeEpochSeconds);
+        messagePayload.put("elasticsearchDocumentId", documentId(fileRecord.getRelativeDirPath(), fileRecord.getOriginalFilename()));
+        return messagePayload;
+    }
+
+    /**
+     * 构建 FILE_DELETED 事件消息体。
+     *
+     * @param esDocumentId       要删除的文档 ID
+     * @param sourceRelativePath 源文件相对目录路径 (仅供消费方记录日志)
+     * @param sourceFilename     源文件名 (仅供消费方记录日志)
+     */
+    static Map<String, Object> deletePayload(String esDocumentId, String sourceRelativePath, String sourceFilename) {
+        Map<String, Object> messagePayload = new HashMap<>();
+        messagePayload.put("eventId", UUID.randomUUID().toString());
+        messagePayload.put("eventType", EVENT_TYPE_DELETED);
+        messagePayload.put("eventTimestamp", Instant.now().toString());
+        messagePayload.put("elasticsearchDocumentId", esDocumentId);
+        messagePayload.put("sourceRelativePath", sourceRelativePath);
+        messagePayload.put("sourceFilename", sourceFilename);
+        return messagePayload;
+    }
+}
@@ -4,33 +4,48 @@
  * 开发时间: 2025-04-30 13:55:00 EDT (Final Version with Encrypted/Decrypted methods)
  * 作者: Gemini
  * 用途: 文件管理服务实现类，负责处理解密目录和加密源目录的文件搜索和下载。
+ * 本次更新: 打包下载不再跟随符号链接 (防止打包根目录以外的文件)，单个文件和目录内文件按同一路径去重，目录遍历中的 I/O 错误按文件跳过。
+ * 本次更新: 目录浏览的子目录子项数量改为随目录列表缓存；读取目录失败时抛出 IOException，不再返回空列表。
  */
 package org.ls.service.impl;
 
 import lombok.extern.slf4j.Slf4j;
 import org.ls.dto.DecryptedFileDto; // 复用 DTO
+import org.ls.dto.DirectoryEntryDto;
+import org.ls.dto.DirectoryListingDto;
+import org.ls.dto.FileZipRequestDto;
 import org.ls.dto.PageDto;
+import org.ls.entity.FileSyncMap;
+import org.ls.mapper.FileSyncMapMapper;
 import org.ls.service.FileManagementService;
 import org.ls.utils.DateUtils;
+import org.ls.utils.FileExtensionUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 import org.springframework.core.io.PathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils; // Spring StringUtils
 
+import java.io.BufferedOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.nio.file.attribute.FileTime;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @Service
 @Slf4j // 使用 Lombok 添加日志记录 (SLF4J)
@@ -38,13 +53,29 @@ public class FileManagementServiceImpl implements FileManagementService {
 
     private final Path sourceDirectory; // 加密源文件目录
     private final Path targetDirectory; // 解密目标文件目录
+    private final DirectoryListingCache directoryListingCache; // 单层目录列表缓存 (由文件监控和同步任务负责失效)
+    private final FileSyncMapMapper fileSyncMapMapper; // 文件搜索直接读取同步记录中的元数据
+
+    // 打包下载时的复制缓冲区大小
+    private static final int ZIP_COPY_BUFFER_SIZE = 64 * 1024;
+    // 已压缩的文件格式，打包时不再重复压缩
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "zip", "rar", "7z", "gz", "tgz", "bz2", "xz", "zst", "jar",
+            "jpg", "jpeg", "png", "gif", "webp", "heic",
+            "mp3", "mp4", "m4a", "avi", "mkv", "mov", "wmv",
+            "docx", "xlsx", "pptx", "odt", "ods", "odp", "pdf");
 
     /**
      * 构造函数，注入 Environment 以获取配置属性。
      * @param env Spring Environment 对象
+     * @param directoryListingCache 目录列表缓存
+     * @param fileSyncMapMapper 文件同步记录 Mapper
      */
     @Autowired
-    public FileManagementServiceImpl(Environment env) {
+    public FileManagementServiceImpl(Environment env, DirectoryListingCache directoryListingCache,
+                                     FileSyncMapMapper fileSyncMapMapper) {
+        this.directoryListingCache = directoryListingCache;
+        this.fileSyncMapMapper = fileSyncMapMapper;
         // 获取并验证加密源目录路径
         String sourceDirPath = env.getProperty("file.sync.source-dir");
         if (!StringUtils.hasText(sourceDirPath)) {
@@ -125,8 +156,8 @@ public class FileManagementServiceImpl implements FileManagementService {
     @Override
     public PageDto<DecryptedFileDto> searchDecryptedFiles(String keyword, int page, int size) {
         log.debug("搜索解密文件 (Target Dir)。关键字: '{}', 页码: {}, 大小: {}", keyword, page, size);
-        // 调用内部辅助方法，传入目标目录
-        return searchFilesInternal(this.targetDirectory, keyword, page, size);
+        // 调用内部辅助方法，从同步记录的目标文件元数据中查询
+        return searchFilesInternal(true, keyword, page, size);
     }
 
     /**
@@ -155,8 +186,8 @@ public class FileManagementServiceImpl implements FileManagementService {
     @Override
     public PageDto<DecryptedFileDto> searchEncryptedFiles(String keyword, int page, int size) {
         log.debug("搜索加密文件 (Source Dir)。关键字: '{}', 页码: {}, 大小: {}", keyword, page, size);
-        // 调用内部辅助方法，传入源目录
-        return searchFilesInternal(this.sourceDirectory, keyword, page, size);
+        // 调用内部辅助方法，从同步记录的源文件元数据中查询
+        return searchFilesInternal(false, keyword, page, size);
     }
 
     /**
@@ -174,98 +205,214 @@ public class FileManagementServiceImpl implements FileManagementService {
     }
 
 
+    // --- 目录浏览 ---
+
+    /**
+     * 浏览解密目录中的单层目录。
+     * @param relativePath 目录相对路径
+     * @param sortBy 排序方式
+     * @param page 页码 (从 1 开始)
+     * @param size 每页大小
+     * @return 目录浏览结果
+     * @throws FileNotFoundException 如果目录不存在或路径无效
+     * @throws IOException 如果读取目录失败
+     */
+    @Override
+    public DirectoryListingDto browseDecryptedDirectory(String relativePath, String sortBy, int page, int size) throws IOException {
+        log.debug("浏览解密目录 (Target Dir)。相对路径: '{}', 排序: {}, 页码: {}, 大小: {}", relativePath, sortBy, page, size);
+        return browseDirectoryInternal(this.targetDirectory, relativePath, sortBy, page, size);
+    }
+
+    /**
+     * 浏览加密源目录中的单层目录。
+     * @param relativePath 目录相对路径
+     * @param sortBy 排序方式
+     * @param page 页码 (从 1 开始)
+     * @param size 每页大小
+     * @return 目录浏览结果
+     * @throws FileNotFoundException 如果目录不存在或路径无效
+     * @throws IOException 如果读取目录失败
+     */
+    @Override
+    public DirectoryListingDto browseEncryptedDirectory(String relativePath, String sortBy, int page, int size) throws IOException {
+        log.debug("浏览加密目录 (Source Dir)。相对路径: '{}', 排序: {}, 页码: {}, 大小: {}", relativePath, sortBy, page, size);
+        return browseDirectoryInternal(this.sourceDirectory, relativePath, sortBy, page, size);
+    }
+
+    // --- 打包下载 ---
+
+    /**
+     * 将解密目录中的指定文件和/或目录以 ZIP 格式流式写出。
+     * @param request 打包请求
+     * @param out 输出流
+     * @throws IOException 如果请求无效或写出失败
+     */
+    @Override
+    public void writeDecryptedFilesAsZip(FileZipRequestDto request, OutputStream out) throws IOException {
+        log.debug("打包下载解密文件 (Target Dir)。请求: {}", request);
+        writeZipInternal(this.targetDirectory, request, out);
+    }
+
+    /**
+     * 将加密源目录中的指定文件和/或目录以 ZIP 格式流式写出。
+     * @param request 打包请求
+     * @param out 输出流
+     * @throws IOException 如果请求无效或写出失败
+     */
+    @Override
+    public void writeEncryptedFilesAsZip(FileZipRequestDto request, OutputStream out) throws IOException {
+        log.debug("打包下载加密文件 (Source Dir)。请求: {}", request);
+        writeZipInternal(this.sourceDirectory, request, out);
+    }
+
+
     // --- 内部文件操作辅助方法 ---
 
     /**
-     * 在指定的根目录下搜索文件（内部实现）。
-     * @param baseDirectory 要搜索的根目录 (源目录或目标目录)
+     * 搜索文件（内部实现）。
+     * 结果完全来自 file_sync_map 中记录的元数据 (文件名、大小、修改时间)，不遍历目录也不读取文件属性；
+     * 元数据在复制 / 移动时写入，并由后台元数据校验任务修正偏差。
+     * @param decrypted true 搜索解密目录 (已同步记录的目标文件)，false 搜索加密源目录 (源文件)
      * @param keyword 文件名关键字
      * @param page 页码
      * @param size 每页大小
      * @return 分页结果
      */
-    private PageDto<DecryptedFileDto> searchFilesInternal(Path baseDirectory, String keyword, int page, int size) {
+    private PageDto<DecryptedFileDto> searchFilesInternal(boolean decrypted, String keyword, int page, int size) {
         // 验证分页参数
         if (page < 1) page = 1;
         if (size < 1) size = 10; // 默认大小
         if (size > 100) size = 100; // 防止过大分页
 
-        List<Path> allMatchingFiles = new ArrayList<>();
-        try (Stream<Path> stream = Files.walk(baseDirectory)) {
-            // 收集所有匹配的文件路径
-            allMatchingFiles = stream
-                    .filter(Files::isRegularFile) // 只查找文件
-                    .filter(path -> { // 根据关键字过滤
-                        if (!StringUtils.hasText(keyword)) return true; // 关键字为空则匹配所有
-                        // 文件名包含关键字（忽略大小写）
-                        return path.getFileName().toString().toLowerCase().contains(keyword.toLowerCase());
-                    })
-                    // 按最后修改时间降序排序
-                    .sorted(Comparator.comparing((Path path) -> { // 显式指定类型
-                        try { return Files.getLastModifiedTime(path); }
-                        catch (IOException | SecurityException e) { // 捕获可能的异常
-                            log.warn("无法获取文件 {} 的最后修改时间，使用纪元时间代替。", path, e);
-                            return FileTime.fromMillis(0); // 返回默认值以保证排序继续
-                        }
-                    }).reversed())
-                    .collect(Collectors.toList());
-        } catch (IOException | SecurityException e) { // 捕获遍历目录时可能发生的异常
-            log.error("遍历目录 {} 时出错。", baseDirectory, e);
-            // 出错时返回空的分页结果
-            return new PageDto<>(new ArrayList<>(), page, size, 0);
-        }
+        String escapedKeyword = StringUtils.hasText(keyword) ? escapeLikePattern(keyword.trim()) : null;
+        long totalElements = decrypted
+                ? fileSyncMapMapper.countSyncedByTargetFilenameKeyword(escapedKeyword)
+                : fileSyncMapMapper.countSourceByFilenameKeyword(escapedKeyword);
 
         // 计算分页信息
-        long totalElements = allMatchingFiles.size();
-        int totalPages = (size > 0) ? (int) Math.ceil((double) totalElements / size) : 0;
+        int totalPages = (int) Math.ceil((double) totalElements / size);
         // 校正当前页码
         int currentPage = Math.max(1, Math.min(page, totalPages == 0 ? 1 : totalPages)); // 确保 currentPage 至少为 1
         if (page > totalPages && totalPages > 0) log.warn("请求的页码 {} 超出范围 (总页数 {})。返回最后一页。", page, totalPages);
-        else if (page < 1) log.warn("请求的页码 {} 无效。返回第一页。", page);
 
-        // 计算当前页的索引范围
-        int startIndex = (currentPage - 1) * size;
-        int endIndex = Math.min(startIndex + size, (int) totalElements);
-
-        // 获取当前页的数据并转换为 DTO
         List<DecryptedFileDto> pageContent = new ArrayList<>();
-        if (startIndex < endIndex) {
-            List<Path> filesOnPage = allMatchingFiles.subList(startIndex, endIndex);
-            for (Path filePath : filesOnPage) {
-                try {
-                    BasicFileAttributes attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
-                    // 计算相对于指定根目录的相对路径
-                    String relativePathStr = baseDirectory.relativize(filePath.getParent()).toString();
-                    // 格式化相对路径 (使用 / 并确保末尾有 /，除非是根目录)
-                    if (StringUtils.hasText(relativePathStr) && !relativePathStr.endsWith(FileSystems.getDefault().getSeparator())) {
-                        relativePathStr += FileSystems.getDefault().getSeparator();
-                    }
-                    relativePathStr = relativePathStr.replace(FileSystems.getDefault().getSeparator(), "/");
-
-                    // 格式化最后修改时间
-                    LocalDateTime lastModified = LocalDateTime.ofInstant(attrs.lastModifiedTime().toInstant(), ZoneId.systemDefault());
-
-                    String formattedDate = DateUtils.formatDateTime(DateUtils.convertlocalDateTimeToDate(lastModified)); // 使用 DateUtils
-
-                    // 创建 DTO 对象
-                    pageContent.add(new DecryptedFileDto(
-                            filePath.getFileName().toString(),
-                            relativePathStr,
-                            attrs.size(),
-                            formattedDate != null ? formattedDate : "N/A" // 处理可能的 null 返回
-                    ));
-                } catch (IOException | SecurityException e) { // 捕获读取属性时可能发生的异常
-                    log.error("读取文件 {} 属性时出错。", filePath, e);
-                    // 可以选择跳过该文件或添加一个表示错误的 DTO
-                }
+        if (totalElements > 0) {
+            int offset = (currentPage - 1) * size;
+            List<FileSyncMap> records = decrypted
+                    ? fileSyncMapMapper.selectSyncedByTargetFilenameKeyword(escapedKeyword, offset, size)
+                    : fileSyncMapMapper.selectSourceByFilenameKeyword(escapedKeyword, offset, size);
+            for (FileSyncMap record : records) {
+                Long fileSize = decrypted ? record.getTargetFileSize() : record.getSourceFileSize();
+                LocalDateTime lastModified = decrypted ? record.getTargetLastModified() : record.getSourceLastModified();
+                String formattedDate = lastModified != null
+                        ? DateUtils.formatDateTime(DateUtils.convertlocalDateTimeToDate(lastModified)) : null; // 使用 DateUtils
+                pageContent.add(new DecryptedFileDto(
+                        decrypted ? record.getTargetFilename() : record.getOriginalFilename(),
+                        record.getRelativeDirPath(), // 记录中已是 / 分隔并以 / 结尾的格式 (根目录为空字符串)
+                        fileSize != null ? fileSize : -1,
+                        formattedDate != null ? formattedDate : "N/A" // 处理可能的 null 返回
+                ));
             }
         }
 
-        log.debug("在 {} 中找到 {} 个匹配文件，返回第 {} 页，包含 {} 个文件。", baseDirectory.getFileName(), totalElements, currentPage, pageContent.size());
+        log.debug("在 {} 中找到 {} 个匹配文件，返回第 {} 页，包含 {} 个文件。",
+                decrypted ? "解密目录" : "加密目录", totalElements, currentPage, pageContent.size());
         // 返回分页结果 DTO
         return new PageDto<>(pageContent, currentPage, size, totalElements);
     }
 
+    /**
+     * 转义 LIKE / ILIKE 模式中的通配符，使关键字按字面匹配 (PostgreSQL 默认转义字符为反斜杠)。
+     */
+    private String escapeLikePattern(String keyword) {
+        return keyword.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * 浏览指定根目录下的单层目录（内部实现）。
+     * 子项列表来自 DirectoryListingCache，排序视图和子目录的子项数量在缓存中复用，因此超大目录的翻页只做一次遍历和排序。
+     * @param baseDirectory 根目录 (源目录或目标目录)
+     * @param relativePath 目录相对路径
+     * @param sortBy 排序方式
+     * @param page 页码
+     * @param size 每页大小
+     * @return 目录浏览结果
+     * @throws FileNotFoundException 如果目录不存在或路径无效
+     * @throws IOException 如果读取目录失败
+     */
+    private DirectoryListingDto browseDirectoryInternal(Path baseDirectory, String relativePath, String sortBy,
+                                                        int page, int size) throws IOException {
+        if (page < 1) page = 1;
+        if (size < 1) size = 50;
+        if (size > 500) size = 500; // 目录浏览允许比搜索更大的分页
+
+        Path directory = resolveDirectoryInternal(baseDirectory, relativePath);
+        String currentRelativePath = formatRelativeDirPath(baseDirectory.relativize(directory));
+        String parentPath = directory.equals(baseDirectory) ? null
+                : formatRelativeDirPath(baseDirectory.relativize(directory.getParent()));
+
+        DirectoryListingCache.Listing listing;
+        try {
+            listing = directoryListingCache.getListing(directory);
+        } catch (SecurityException e) {
+            throw new IOException("无权读取目录: " + directory, e);
+        }
+
+        List<DirectoryListingCache.Entry> sortedEntries = listing.getSorted(sortBy);
+        long totalElements = sortedEntries.size();
+        int totalPages = (int) Math.ceil((double) totalElements / size);
+        int currentPage = Math.max(1, Math.min(page, totalPages == 0 ? 1 : totalPages));
+        int startIndex = (currentPage - 1) * size;
+        int endIndex = Math.min(startIndex + size, (int) totalElements);
+
+        List<DirectoryEntryDto> pageContent = new ArrayList<>();
+        for (int i = startIndex; i < endIndex; i++) {
+            DirectoryListingCache.Entry entry = sortedEntries.get(i);
+            Integer childCount = entry.directory() ? countChildren(listing, directory.resolve(entry.name())) : null;
+            String formattedDate = DateUtils.formatDateTime(new Date(entry.lastModifiedMillis()));
+            pageContent.add(new DirectoryEntryDto(
+                    entry.name(),
+                    currentRelativePath,
+                    entry.directory(),
+                    entry.size(),
+                    formattedDate != null ? formattedDate : "N/A",
+                    childCount
+            ));
+        }
+
+        log.debug("目录 {} 共 {} 个子目录、{} 个文件，返回第 {} 页，包含 {} 项。",
+                directory, listing.getDirectoryCount(), listing.getFileCount(), currentPage, pageContent.size());
+        return new DirectoryListingDto(currentRelativePath, parentPath,
+                listing.getDirectoryCount(), listing.getFileCount(), listing.getTotalFileSize(),
+                new PageDto<>(pageContent, currentPage, size, totalElements));
+    }
+
+    /**
+     * 获取子目录的直接子项数量 (随上级目录列表缓存，见 DirectoryListingCache#getChildCount)。
+     * @param listing 上级目录列表
+     * @param subDirectory 子目录
+     * @return 子项数量，单个子目录无法读取时返回 null (不影响整个列表)
+     */
+    private Integer countChildren(DirectoryListingCache.Listing listing, Path subDirectory) {
+        try {
+            return directoryListingCache.getChildCount(listing, subDirectory);
+        } catch (IOException | SecurityException e) {
+            log.warn("统计子目录 {} 的子项数量失败: {}", subDirectory, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 将相对目录路径格式化为使用 / 分隔且以 / 结尾的形式 (根目录为空字符串)。
+     */
+    private String formatRelativeDirPath(Path relativeDir) {
+        String pathStr = relativeDir.toString().replace(FileSystems.getDefault().getSeparator(), "/");
+        if (!pathStr.isEmpty() && !pathStr.endsWith("/")) {
+            pathStr += "/";
+        }
+        return pathStr;
+    }
+
     /**
      * 从指定的根目录获取文件资源（内部实现）。
      * @param baseDirectory 根目录 (源目录或目标目录)
@@ -275,6 +422,21 @@ public class FileManagementServiceImpl implements FileManagementService {
      * @throws FileNotFoundException 如果文件无效或找不到
      */
     private Resource getFileResourceInternal(Path baseDirectory, String relativePath, String filename) throws FileNotFoundException {
+        Path targetFile = resolveFileInternal(baseDirectory, relativePath, filename);
+        log.info("提供文件资源: {}", targetFile);
+        // 返回 PathResource，Spring 会处理流的传输
+        return new PathResource(targetFile);
+    }
+
+    /**
+     * 在指定的根目录下解析并校验文件路径（内部实现）。
+     * @param baseDirectory 根目录 (源目录或目标目录)
+     * @param relativePath 相对路径
+     * @param filename 文件名
+     * @return 校验通过的文件路径
+     * @throws FileNotFoundException 如果文件无效或找不到
+     */
+    private Path resolveFileInternal(Path baseDirectory, String relativePath, String filename) throws FileNotFoundException {
         // 基础验证
         if (!StringUtils.hasText(filename)) {
             log.warn("请求下载的文件名为空或 null。");
@@ -312,9 +474,156 @@ public class FileManagementServiceImpl implements FileManagementService {
             // 可以抛出 FileNotFoundException 或 AccessDeniedException，前者更通用
             throw new FileNotFoundException("文件无法访问: " + filename);
         }
+        return targetFile;
+    }
+
+    /**
+     * 在指定的根目录下解析并校验目录路径（内部实现）。
+     * @param baseDirectory 根目录 (源目录或目标目录)
+     * @param relativePath 目录相对路径，空字符串表示根目录本身
+     * @return 校验通过的目录路径
+     * @throws FileNotFoundException 如果目录无效或找不到
+     */
+    private Path resolveDirectoryInternal(Path baseDirectory, String relativePath) throws FileNotFoundException {
+        Path directory = baseDirectory;
+        if (StringUtils.hasText(relativePath)) {
+            String systemRelativePath = relativePath.replace("/", FileSystems.getDefault().getSeparator());
+            directory = directory.resolve(systemRelativePath).normalize();
+        }
+        if (!directory.startsWith(baseDirectory)) {
+            log.error("检测到路径遍历尝试！请求目录 '{}' 解析后超出了根目录 '{}'", directory, baseDirectory);
+            throw new FileNotFoundException("指定的目录路径无效。");
+        }
+        if (!Files.isDirectory(directory) || !Files.isReadable(directory)) {
+            log.warn("目录在路径 {} 未找到或不可读。", directory);
+            throw new FileNotFoundException("目录未找到: " + relativePath);
+        }
+        return directory;
+    }
 
-        log.info("提供文件资源: {}", targetFile);
-        // 返回 PathResource，Spring 会处理流的传输
-        return new PathResource(targetFile);
+    /**
+     * 将指定根目录下的文件和/或目录以 ZIP 格式流式写出（内部实现）。
+     * 目录通过 Files.walkFileTree 惰性遍历 (不跟随符号链接)，文件内容以固定大小的缓冲区逐块复制，
+     * 因此内存占用恒定；超过 4GB 的条目和超过 65535 个条目由 ZipOutputStream 自动使用 ZIP64 格式。
+     * @param baseDirectory 根目录 (源目录或目标目录)
+     * @param request 打包请求
+     * @param out 输出流 (不会被关闭)
+     * @throws IOException 如果请求无效或写出失败
+     */
+    private void writeZipInternal(Path baseDirectory, FileZipRequestDto request, OutputStream out) throws IOException {
+        if (request == null || (request.getDirectory() == null && CollectionUtils.isEmpty(request.getFiles()))) {
+            throw new FileNotFoundException("未指定要打包的文件或目录。");
+        }
+
+        // 1. 先完成所有校验，保证出错时尚未向响应写出任何数据
+        Map<String, Path> explicitEntries = new LinkedHashMap<>();
+        if (!CollectionUtils.isEmpty(request.getFiles())) {
+            for (FileZipRequestDto.FileRef fileRef : request.getFiles()) {
+                if (fileRef == null) {
+                    continue;
+                }
+                Path file = resolveFileInternal(baseDirectory, fileRef.getRelativePath(), fileRef.getFilename());
+                ensureInsideBaseDirectory(baseDirectory, file);
+                explicitEntries.putIfAbsent(toZipEntryName(baseDirectory.relativize(file)), file);
+            }
+        }
+        Path directory = null;
+        if (request.getDirectory() != null) {
+            directory = resolveDirectoryInternal(baseDirectory, request.getDirectory());
+            ensureInsideBaseDirectory(baseDirectory, directory);
+        }
+
+        // 2. 流式写出
+        long startTime = System.currentTimeMillis();
+        byte[] buffer = new byte[ZIP_COPY_BUFFER_SIZE];
+        long entryCount = 0;
+        ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(out, ZIP_COPY_BUFFER_SIZE));
+        // 单个文件相对根目录的路径: 目录内的文件按同一基准 (根目录) 与之比较去重
+        Set<Path> explicitFiles = new HashSet<>();
+        for (Map.Entry<String, Path> entry : explicitEntries.entrySet()) {
+            writeZipEntry(zos, entry.getKey(), entry.getValue(), request.isStoreCompressedFormats(), buffer);
+            explicitFiles.add(baseDirectory.relativize(entry.getValue()));
+            entryCount++;
+        }
+        if (directory != null) {
+            // 目录内条目名以目录自身名称开头 (根目录除外)，与解压后的目录结构一致
+            Path entryBase = directory.equals(baseDirectory) ? baseDirectory : directory.getParent();
+            long[] directoryEntryCount = {0};
+            // walkFileTree 默认不跟随符号链接: 链接 (包括指向目录的链接) 以链接本身的属性访问，不是普通文件，因此被跳过
+            Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (!attrs.isRegularFile() || explicitFiles.contains(baseDirectory.relativize(file))) {
+                        return FileVisitResult.CONTINUE; // 符号链接等非普通文件，或已作为单个文件写出
+                    }
+                    // 目录内的条目名互不重复，只可能与单个文件的条目名 (以根目录为基准) 重名
+                    String entryName = toZipEntryName(entryBase.relativize(file));
+                    if (explicitEntries.containsKey(entryName)) {
+                        log.warn("打包时跳过与已有条目重名的文件 {}", file);
+                        return FileVisitResult.CONTINUE;
+                    }
+                    try {
+                        writeZipEntry(zos, entryName, file, request.isStoreCompressedFormats(), buffer);
+                        directoryEntryCount[0]++;
+                    } catch (NoSuchFileException | AccessDeniedException e) {
+                        // 遍历期间被删除或无权限的文件跳过，不中断整个下载
+                        log.warn("打包时跳过无法读取的文件 {}: {}", file, e.getMessage());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    // 遍历期间被删除或无权限读取的文件 / 子目录同样跳过
+                    log.warn("打包时跳过无法访问的路径 {}: {}", file, e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            entryCount += directoryEntryCount[0];
+        }
+        zos.finish();
+        zos.flush();
+        log.info("ZIP 打包下载完成 (根目录 {})，共 {} 个条目，耗时 {} 毫秒。",
+                baseDirectory.getFileName(), entryCount, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 写出单个 ZIP 条目。已压缩格式使用 NO_COMPRESSION 级别，避免重复压缩消耗 CPU。
+     * (STORED 方式要求预先计算 CRC，需要把文件完整读取两次，因此这里使用 0 级 DEFLATE 代替。)
+     */
+    private void writeZipEntry(ZipOutputStream zos, String entryName, Path file,
+                               boolean storeCompressedFormats, byte[] buffer) throws IOException {
+        boolean alreadyCompressed = storeCompressedFormats && isAlreadyCompressed(file.getFileName().toString());
+        zos.setLevel(alreadyCompressed ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+
+        ZipEntry zipEntry = new ZipEntry(entryName);
+        zipEntry.setLastModifiedTime(Files.getLastModifiedTime(file));
+        try (InputStream in = Files.newInputStream(file)) {
+            zos.putNextEntry(zipEntry);
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                zos.write(buffer, 0, read);
+            }
+            zos.closeEntry();
+        }
+    }
+
+    /**
+     * 确认路径解析符号链接后仍位于根目录下，防止通过根目录内指向外部的符号链接打包外部文件。
+     * @throws FileNotFoundException 如果路径指向根目录以外
+     */
+    private void ensureInsideBaseDirectory(Path baseDirectory, Path path) throws IOException {
+        if (!path.toRealPath().startsWith(baseDirectory.toRealPath())) {
+            log.error("检测到符号链接指向根目录以外！请求路径 '{}' 不在根目录 '{}' 下", path, baseDirectory);
+            throw new FileNotFoundException("指定的文件路径无效。");
+        }
+    }
+
+    private boolean isAlreadyCompressed(String filename) {
+        return COMPRESSED_EXTENSIONS.contains(FileExtensionUtils.getExtension(filename));
+    }
+
+    private String toZipEntryName(Path relativePath) {
+        return relativePath.toString().replace(FileSystems.getDefault().getSeparator(), "/");
     }
 }
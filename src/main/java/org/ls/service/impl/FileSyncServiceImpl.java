@@ -5,6 +5,9 @@
  * 作者: Gemini
  * 用途: 文件同步服务实现类，负责后台实时监控源目录、定时全量扫描、管理数据库同步记录、
  * 提供同步状态查询、待处理文件查询以及手动同步控制接口。
+ * 本次更新: 索引事件的主题、文档 ID 和消息体改由 FileIndexEvents 构建，与索引对账任务共用。
+ * 本次更新: 启动时为旧记录补写目标文件名；元数据校验同时核对源文件修改时间，不一致时重新同步该文件。
+ * 本次更新: 发布索引事件后不再清空全文搜索结果缓存 (缓存改为短过期时间刷新)。
  */
 package org.ls.service.impl;
 
@@ -24,12 +27,15 @@ import org.ls.utils.DateUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value; // +++ 引入 Value 注解 +++
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.env.Environment;
 import org.springframework.core.task.TaskExecutor; // 引入 Spring 的 TaskExecutor
 import org.springframework.kafka.core.KafkaTemplate; // +++ 引入 KafkaTemplate +++
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled; // 引入 Scheduled 注解
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
@@ -55,8 +61,11 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID; // 用于生成 eventId
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap; // 使用线程安全的 Map
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -80,6 +89,8 @@ public class FileSyncServiceImpl implements FileSyncService {
     // +++ 注入 KafkaTemplate 和 ObjectMapper +++
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper; // Jackson ObjectMapper for JSON conversion
+    private final DirectoryListingCache directoryListingCache; // 目录浏览缓存，目录内容变化时在此失效
+    private final FileTransformPipeline fileTransformPipeline; // 临时文件 -> 目标文件的转换阶段 (直接移动或流式解密)
 
     // --- 目录路径配置 ---
     private final Path sourceDirectory; // 加密源文件目录
@@ -92,6 +103,8 @@ public class FileSyncServiceImpl implements FileSyncService {
     private final String targetFilenameRemoveSuffix; // 目标文件名需要移除的后缀 (可选配置)
     private final boolean kafkaEventsEnabled; // +++ 新增 Kafka 事件发布开关成员变量 +++
     private final List<String> excludePatterns; // +++ 新增：文件排除模式列表 +++
+    private final boolean metadataVerifyEnabled; // 是否启用定时元数据校验
+    private final long metadataVerifyPauseMillis; // 元数据校验每批之间的暂停时间 (毫秒)
 
 
     // --- 实时监控状态 ---
@@ -108,6 +121,7 @@ public class FileSyncServiceImpl implements FileSyncService {
     private final AtomicInteger processedInCurrentRun = new AtomicInteger(0); // 当前运行轮次成功处理计数
     private final AtomicInteger failedInCurrentRun = new AtomicInteger(0); // 当前运行轮次失败处理计数
     private static final int SYNC_BATCH_SIZE = 100; // 手动同步时每批处理的文件数量
+    private static final int METADATA_VERIFY_BATCH_SIZE = 500; // 元数据校验时每批读取的记录数量
 
     // --- 状态常量定义 ---
     private static final String STATUS_PENDING = "pending_sync";         // 待同步
@@ -118,8 +132,8 @@ public class FileSyncServiceImpl implements FileSyncService {
     private static final String STATUS_PENDING_DELETION = "pending_deletion"; // 源文件已删除，等待用户确认删除目标文件
 
     // +++ 定义 Kafka Topic 名称常量 +++
-    private static final String TOPIC_FILE_UPSERT_EVENTS = "dms-file-upsert-events";
-    private static final String TOPIC_FILE_DELETE_EVENTS = "dms-file-delete-events";
+    private static final String TOPIC_FILE_UPSERT_EVENTS = FileIndexEvents.TOPIC_FILE_UPSERT_EVENTS;
+    private static final String TOPIC_FILE_DELETE_EVENTS = FileIndexEvents.TOPIC_FILE_DELETE_EVENTS;
 
     /**
      * 构造函数，注入所有依赖项并初始化配置。
@@ -134,6 +148,8 @@ public class FileSyncServiceImpl implements FileSyncService {
                                // +++ 但如果 kafkaEventsEnabled 为 true 时它们必须存在，则保持 required = true (默认) +++
                                KafkaTemplate<String, String> kafkaTemplate,
                                ObjectMapper objectMapper,
+                               DirectoryListingCache directoryListingCache,
+                               FileTransformPipeline fileTransformPipeline,
                                // +++ 使用 @Value 注解注入文件排除模式 +++
                                @Value("${file.sync.exclude-patterns:}") String excludePatternsRaw) {
         this.fileSyncMapMapper = fileSyncMapMapper;
@@ -143,6 +159,8 @@ public class FileSyncServiceImpl implements FileSyncService {
         this.applicationContext = applicationContext;
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
+        this.directoryListingCache = directoryListingCache;
+        this.fileTransformPipeline = fileTransformPipeline;
 
         // 读取并验证目录配置
         this.sourceDirectory = getRequiredDirectoryPath("file.sync.source-dir");
@@ -154,6 +172,8 @@ public class FileSyncServiceImpl implements FileSyncService {
         this.scanEnabled = Boolean.parseBoolean(env.getProperty("file.sync.scan.enabled", "false"));
         this.targetFilenameRemoveSuffix = env.getProperty("file.sync.target-filename.remove-suffix");
         this.kafkaEventsEnabled = Boolean.parseBoolean(env.getProperty("dms.kafka.events.enabled", "false"));
+        this.metadataVerifyEnabled = Boolean.parseBoolean(env.getProperty("file.metadata.verify.enabled", "false"));
+        this.metadataVerifyPauseMillis = Long.parseLong(env.getProperty("file.metadata.verify.batch-pause-ms", "200"));
 
         // +++ 处理文件排除模式配置 +++
         if (StringUtils.hasText(excludePatternsRaw)) {
@@ -465,6 +485,9 @@ public class FileSyncServiceImpl implements FileSyncService {
 
                 log.debug("检测到事件: {}，路径: {}", kind.name(), fullPath);
 
+                // 源目录内容发生变化，使该目录的浏览缓存失效 (被排除的文件同样会出现在目录列表中)
+                directoryListingCache.invalidate(watchedDir);
+
                 // +++ 在处理事件前，检查文件是否应被排除 +++
                 if (isFileExcluded(fullPath)) {
                     log.debug("文件 {} 被排除，跳过处理监控事件。", fullPath);
@@ -484,6 +507,7 @@ public class FileSyncServiceImpl implements FileSyncService {
                         } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
                             log.info("检测到目录删除事件（或 key 失效前兆）: {}", fullPath);
                         }
+                        directoryListingCache.invalidate(fullPath);
                     } else {
                         // 处理文件事件
                         if (kind == StandardWatchEventKinds.ENTRY_CREATE || kind == StandardWatchEventKinds.ENTRY_MODIFY) {
@@ -529,7 +553,10 @@ public class FileSyncServiceImpl implements FileSyncService {
         LocalDateTime sourceLastModifiedTimeTruncated = null;
 
         try {
-            Instant sourceInstant = Files.getLastModifiedTime(sourceFilePath).toInstant();
+            // 一次读取源文件的修改时间和大小，大小随记录一起保存，列表接口无需再读取文件属性
+            BasicFileAttributes sourceAttrs = Files.readAttributes(sourceFilePath, BasicFileAttributes.class);
+            long sourceFileSize = sourceAttrs.size();
+            Instant sourceInstant = sourceAttrs.lastModifiedTime().toInstant();
             Instant sourceInstantTruncatedToSecond = sourceInstant.truncatedTo(ChronoUnit.SECONDS);
             sourceLastModifiedTimeTruncated = LocalDateTime.ofInstant(sourceInstantTruncatedToSecond, ZoneId.systemDefault());
 
@@ -568,11 +595,12 @@ public class FileSyncServiceImpl implements FileSyncService {
             log.info("已复制源文件 {} 到临时文件 {}", sourceFilePath, tempFilePath);
 
             if (isNewEntry) {
-                FileSyncMap newRecord = new FileSyncMap(null, relativeDirPath, originalFilename, tempFilename, STATUS_PENDING, null, sourceLastModifiedTimeTruncated);
+                FileSyncMap newRecord = new FileSyncMap(null, relativeDirPath, originalFilename, tempFilename, STATUS_PENDING, null,
+                        sourceLastModifiedTimeTruncated, sourceFileSize, null, null, null, null);
                 fileSyncMapMapper.insert(newRecord);
                 log.debug("已插入新记录到数据库，temp 文件名: {}，源文件修改时间(秒级): {}", tempFilename, sourceLastModifiedTimeTruncated);
             } else {
-                fileSyncMapMapper.updateStatusAndTimestampsById(existingRecord.getId(), STATUS_PENDING, sourceLastModifiedTimeTruncated);
+                fileSyncMapMapper.updateSourceMetadataById(existingRecord.getId(), STATUS_PENDING, sourceLastModifiedTimeTruncated, sourceFileSize);
                 log.debug("已更新记录状态为 pending，temp 文件名: {}，源文件修改时间(秒级): {}", tempFilename, sourceLastModifiedTimeTruncated);
             }
         } catch (NoSuchFileException e) {
@@ -817,6 +845,8 @@ public class FileSyncServiceImpl implements FileSyncService {
                             try {
                                 Files.delete(targetDirPath); // 使用 Files.delete()，如果目录非空会抛出 DirectoryNotEmptyException
                                 log.info("全量扫描：已删除空的目标目录 {}", targetDirPath);
+                                directoryListingCache.invalidate(targetDirPath);
+                                directoryListingCache.invalidateWithAncestors(targetDirPath.getParent(), this.targetDirectory);
                             } catch (DirectoryNotEmptyException dne) {
                                 // 这个警告是合理的，因为文件删除是异步的，或者目录可能包含其他未追踪的文件/目录
                                 log.warn("全量扫描：尝试删除目录 {} 失败，因为它非空。这可能是因为文件删除尚未完成，或包含未追踪的内容。", targetDirPath);
@@ -844,6 +874,147 @@ public class FileSyncServiceImpl implements FileSyncService {
         log.info("定时全量扫描执行完毕，耗时: {} 毫秒", (endTime - startTime));
     }
 
+    // --- 定时元数据校验任务 ---
+
+    /**
+     * 应用启动后为添加 target_filename 列之前已同步的记录补写目标文件名。
+     * 否则这些记录在首次元数据校验前不会出现在解密文件搜索和索引对账中。已补写过的库上该语句不更新任何行。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillTargetFilenames() {
+        try {
+            int updated = fileSyncMapMapper.backfillTargetFilenames(targetFilenameRemoveSuffix);
+            if (updated > 0) {
+                log.info("已为 {} 条已同步记录补写目标文件名，目标文件大小和修改时间由元数据校验任务补齐。", updated);
+            }
+        } catch (Exception e) {
+            log.error("补写已同步记录的目标文件名失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 分批校验记录中的元数据与文件系统是否一致。
+     * 每批之间按配置暂停，避免在网络存储上集中产生大量 stat 请求。
+     */
+    @Async
+    @Scheduled(cron = "${file.metadata.verify.cron:0 30 2 * * ?}")
+    @Transactional(propagation = Propagation.NEVER)
+    @Override
+    public void verifyFileMetadata() {
+        if (!metadataVerifyEnabled) {
+            log.debug("元数据校验已在配置中禁用，跳过执行。");
+            return;
+        }
+        log.info("开始执行文件元数据校验...");
+        long startTime = System.currentTimeMillis();
+        long checked = 0;
+        long corrected = 0;
+        long lastId = 0;
+
+        while (true) {
+            List<FileSyncMap> batch = fileSyncMapMapper.selectForMetadataVerification(lastId, METADATA_VERIFY_BATCH_SIZE);
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (FileSyncMap record : batch) {
+                lastId = record.getId();
+                checked++;
+                try {
+                    if (verifySingleRecordMetadata(record)) {
+                        corrected++;
+                    }
+                } catch (Exception e) {
+                    log.error("校验记录 ID {} 的元数据时出错，跳过。", record.getId(), e);
+                }
+            }
+            if (batch.size() < METADATA_VERIFY_BATCH_SIZE) {
+                break;
+            }
+            if (metadataVerifyPauseMillis > 0) {
+                try {
+                    Thread.sleep(metadataVerifyPauseMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("元数据校验被中断，已校验 {} 条记录。", checked);
+                    return;
+                }
+            }
+        }
+        log.info("文件元数据校验完成。共校验 {} 条记录，修正 {} 条，耗时 {} 毫秒。",
+                checked, corrected, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 校验单条记录。源文件大小和修改时间始终核对；已同步的记录额外核对目标文件。
+     * 源文件修改时间与记录不一致说明文件变化未被监控捕获，此时按修改事件重新同步该文件 (重新复制并记录新的时间和大小)，
+     * 不直接改写记录中的修改时间，否则全量扫描也无法再发现这次修改。
+     *
+     * @return 如果元数据有偏差并已修正 (或已重新同步) 则返回 true
+     */
+    private boolean verifySingleRecordMetadata(FileSyncMap record) {
+        Long sourceFileSize;
+        Path sourceFilePath = sourceDirectory.resolve(record.getRelativeDirPath()).resolve(record.getOriginalFilename());
+        try {
+            BasicFileAttributes sourceAttrs = Files.readAttributes(sourceFilePath, BasicFileAttributes.class);
+            sourceFileSize = sourceAttrs.size();
+            LocalDateTime sourceLastModified = LocalDateTime.ofInstant(
+                    sourceAttrs.lastModifiedTime().toInstant().truncatedTo(ChronoUnit.SECONDS), ZoneId.systemDefault());
+            LocalDateTime recordedSourceLastModified = record.getSourceLastModified() != null
+                    ? record.getSourceLastModified().truncatedTo(ChronoUnit.SECONDS) : null;
+            if (!sourceLastModified.equals(recordedSourceLastModified)) {
+                log.info("元数据校验：记录 ID {} 的源文件 {} 修改时间 ({}) 与记录 ({}) 不一致，重新同步该文件。",
+                        record.getId(), sourceFilePath, sourceLastModified, recordedSourceLastModified);
+                FileSyncService self = applicationContext.getBean(FileSyncService.class);
+                ((FileSyncServiceImpl) self).handleFileCreateOrModify(sourceFilePath);
+                return true;
+            }
+        } catch (NoSuchFileException e) {
+            // 源文件已不存在：交由监控或全量扫描标记为待删除，这里保持原值
+            sourceFileSize = record.getSourceFileSize();
+        } catch (IOException | SecurityException e) {
+            log.warn("元数据校验：读取源文件 {} 属性失败: {}", sourceFilePath, e.getMessage());
+            sourceFileSize = record.getSourceFileSize();
+        }
+
+        String targetFilename = record.getTargetFilename();
+        Long targetFileSize = record.getTargetFileSize();
+        LocalDateTime targetLastModified = record.getTargetLastModified();
+        if (STATUS_SYNCED.equals(record.getStatus())) {
+            String expectedTargetFilename = generateTargetFilename(record.getOriginalFilename());
+            Path targetFilePath = targetDirectory.resolve(record.getRelativeDirPath()).resolve(expectedTargetFilename).normalize();
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(targetFilePath, BasicFileAttributes.class);
+                targetFilename = expectedTargetFilename;
+                targetFileSize = attrs.size();
+                targetLastModified = LocalDateTime.ofInstant(
+                        attrs.lastModifiedTime().toInstant().truncatedTo(ChronoUnit.SECONDS), ZoneId.systemDefault());
+            } catch (NoSuchFileException e) {
+                log.warn("元数据校验：已同步记录 ID {} 的目标文件 {} 不存在，清除目标元数据。", record.getId(), targetFilePath);
+                targetFilename = null;
+                targetFileSize = null;
+                targetLastModified = null;
+            } catch (IOException | SecurityException e) {
+                log.warn("元数据校验：读取目标文件 {} 属性失败: {}", targetFilePath, e.getMessage());
+            }
+        }
+
+        boolean drifted = !Objects.equals(sourceFileSize, record.getSourceFileSize())
+                || !Objects.equals(targetFilename, record.getTargetFilename())
+                || !Objects.equals(targetFileSize, record.getTargetFileSize())
+                || !Objects.equals(targetLastModified, record.getTargetLastModified());
+        if (drifted) {
+            log.info("元数据校验：记录 ID {} ({}{}) 的元数据与文件系统不一致，已修正。", record.getId(),
+                    record.getRelativeDirPath(), record.getOriginalFilename());
+            fileSyncMapMapper.updateVerifiedMetadataById(record.getId(), sourceFileSize, targetFilename, targetFileSize, targetLastModified);
+            if (STATUS_SYNCED.equals(record.getStatus())) {
+                directoryListingCache.invalidate(targetDirectory.resolve(record.getRelativeDirPath()));
+            }
+        } else {
+            fileSyncMapMapper.touchMetadataVerifiedById(record.getId());
+        }
+        return drifted;
+    }
+
     private Map<String, FileSystemInfo> scanSourceDirectory() {
         Map<String, FileSystemInfo> fileSystemState = new HashMap<>();
         try (Stream<Path> stream = Files.walk(sourceDirectory)) {
@@ -957,27 +1128,12 @@ public class FileSyncServiceImpl implements FileSyncService {
         return new PageDto<>(dtoList, currentPage, size, totalElements);
     }
 
+    /**
+     * 将记录转换为待处理列表 DTO。大小和修改时间直接取自记录中的源文件元数据，不访问文件系统。
+     */
     private PendingFileSyncDto mapToPendingDto(FileSyncMap entity) {
-        long fileSize = -1;
-        LocalDateTime lastModifiedSeconds = null;
-        try {
-            Path tempFilePath = tempDirectory.resolve(entity.getTempFilename());
-            if (Files.exists(tempFilePath)) {
-                BasicFileAttributes attrs = Files.readAttributes(tempFilePath, BasicFileAttributes.class);
-                fileSize = attrs.size();
-
-                Instant originalInstant = attrs.lastModifiedTime().toInstant();
-                Instant truncatedInstant = originalInstant.truncatedTo(ChronoUnit.SECONDS);
-                lastModifiedSeconds = LocalDateTime.ofInstant(truncatedInstant, ZoneId.systemDefault());
-
-            } else {
-                if (!STATUS_PENDING_DELETION.equals(entity.getStatus())) {
-                    log.warn("临时文件 {} 未找到 (状态: {})", tempFilePath, entity.getStatus());
-                }
-            }
-        } catch (IOException e) {
-            log.error("读取临时文件 {} 属性时出错", entity.getTempFilename(), e);
-        }
+        long fileSize = entity.getSourceFileSize() != null ? entity.getSourceFileSize() : -1;
+        LocalDateTime lastModifiedSeconds = entity.getSourceLastModified();
         String formattedDate = (lastModifiedSeconds != null) ? DateUtils.formatDateTime(DateUtils.convertlocalDateTimeToDate(lastModifiedSeconds)) : "N/A";
 
         return new PendingFileSyncDto(
@@ -1012,7 +1168,8 @@ public class FileSyncServiceImpl implements FileSyncService {
                 errorCopyingCount + errorSyncingCount + syncingCount + pendingDeletionCount,
                 syncProcessStatus.get(),
                 processedInCurrentRun.get(),
-                failedInCurrentRun.get()
+                failedInCurrentRun.get(),
+                fileTransformPipeline.getMetrics()
         );
     }
 
@@ -1106,6 +1263,11 @@ public class FileSyncServiceImpl implements FileSyncService {
     @Async
     public Future<?> runSyncCycle() {
         log.info("Starting asynchronous sync cycle...");
+        // 工作线程数大于 1 时按文件并行处理，每个文件的转换 (例如解密) 在独立线程中完成
+        int workerCount = fileTransformPipeline.getWorkers();
+        ExecutorService syncWorkers = workerCount > 1
+                ? Executors.newFixedThreadPool(workerCount, new CustomizableThreadFactory("FileSyncWorker-"))
+                : null;
         try {
             while (!cancelFlag.get()) {
                 while (pauseFlag.get() && !cancelFlag.get()) {
@@ -1127,6 +1289,7 @@ public class FileSyncServiceImpl implements FileSyncService {
                 }
 
                 log.info("Processing batch of {} files...", batchToProcess.size());
+                List<Future<?>> batchFutures = new ArrayList<>();
                 for (FileSyncMap record : batchToProcess) {
                     // +++ 在处理单个记录前，再次检查其源文件是否被排除 +++
                     // 这可以处理在批处理锁定后，但在单个文件处理前，排除规则发生变化的情况（虽然罕见）
@@ -1156,8 +1319,14 @@ public class FileSyncServiceImpl implements FileSyncService {
                         }
                     }
                     if (cancelFlag.get()) break;
-                    processSingleFileSyncRecord(record);
+                    if (syncWorkers != null) {
+                        batchFutures.add(syncWorkers.submit(() -> processRecordUnlessCancelled(record)));
+                    } else {
+                        processSingleFileSyncRecord(record);
+                    }
                 }
+                // 等待本批文件全部处理完成后再锁定下一批
+                waitForBatch(batchFutures);
             }
         } catch (Exception e) {
             log.error("Unhandled exception in asynchronous sync cycle!", e);
@@ -1168,10 +1337,44 @@ public class FileSyncServiceImpl implements FileSyncService {
             syncProcessStatus.compareAndSet("paused", "idle");
             syncProcessStatus.compareAndSet("stopping", "idle");
             currentSyncTaskFuture.set(null);
+            if (syncWorkers != null) {
+                syncWorkers.shutdownNow();
+            }
         }
         return null;
     }
 
+    /**
+     * 工作线程中处理单个记录：开始前遵循暂停 / 停止信号 (已提交但尚未开始的任务在停止时直接跳过)。
+     */
+    private void processRecordUnlessCancelled(FileSyncMap record) {
+        while (pauseFlag.get() && !cancelFlag.get()) {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (cancelFlag.get()) {
+            return;
+        }
+        processSingleFileSyncRecord(record);
+    }
+
+    /**
+     * 等待一批并行任务全部完成。单个任务的异常已在 processSingleFileSyncRecord 内部处理，这里只记录意外错误。
+     */
+    private void waitForBatch(List<Future<?>> batchFutures) throws InterruptedException {
+        for (Future<?> future : batchFutures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                log.error("并行处理同步记录时发生意外错误。", e.getCause());
+            }
+        }
+    }
+
     /**
      * Selects a batch of pending files, locks them by updating status to 'syncing'.
      * +++ 此方法现在也应考虑排除规则，不选择那些源文件已被排除的记录。 +++
@@ -1265,8 +1468,11 @@ public class FileSyncServiceImpl implements FileSyncService {
                     log.error("目标路径 {} (记录 ID {}) 存在目录遍历风险。", targetPath, record.getId());
                 } else {
                     Files.createDirectories(targetPath.getParent());
-                    Files.move(tempFilePath, targetPath, StandardCopyOption.REPLACE_EXISTING);
-                    log.info("成功将临时文件 {} 移动到目标位置 {}", tempFilePath, targetPath);
+                    // 转换阶段：默认直接移动，配置解密转换器时流式解密后写入目标位置
+                    fileTransformPipeline.transform(tempFilePath, targetPath);
+                    log.info("成功将临时文件 {} 转换到目标位置 {}", tempFilePath, targetPath);
+                    // 上级目录的大小和子项计数可能都会变化 (createDirectories 可能新建了多级目录)
+                    directoryListingCache.invalidateWithAncestors(targetPath.getParent(), targetDirectory);
                     finalStatus = STATUS_SYNCED;
                     processedInCurrentRun.incrementAndGet();
 
@@ -1299,7 +1505,18 @@ public class FileSyncServiceImpl implements FileSyncService {
         def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
         TransactionStatus txStatus = transactionManager.getTransaction(def);
         try {
-            int updated = fileSyncMapMapper.updateStatusById(id, status);
+            int updated;
+            if (STATUS_SYNCED.equals(status) && targetFullPathForEvent != null) {
+                // 移动完成时记录目标文件元数据，解密文件搜索直接读取这些字段
+                // (移动成功但读取属性失败时大小和时间为 -1，此时留空，由后台元数据校验任务补齐)
+                Long targetSize = targetSizeForEvent >= 0 ? targetSizeForEvent : null;
+                LocalDateTime targetLastModified = targetModTimeForEvent >= 0
+                        ? LocalDateTime.ofInstant(Instant.ofEpochSecond(targetModTimeForEvent), ZoneId.systemDefault()) : null;
+                updated = fileSyncMapMapper.updateSyncedMetadataById(id, status,
+                        targetFullPathForEvent.getFileName().toString(), targetSize, targetLastModified);
+            } else {
+                updated = fileSyncMapMapper.updateStatusById(id, status);
+            }
             transactionManager.commit(txStatus); // Commit DB transaction first
             if (updated > 0) {
                 log.debug("已将记录 ID {} 的状态更新为 '{}'。", status, id);
@@ -1404,6 +1621,7 @@ public class FileSyncServiceImpl implements FileSyncService {
             try {
                 Files.deleteIfExists(targetFilePath); // 尝试删除目标文件
                 log.info("删除解密文件 {} (尝试操作)", targetFilePath);
+                directoryListingCache.invalidate(targetFilePath.getParent());
             } catch (IOException | SecurityException e) {
                 log.error("确认删除失败：删除解密文件 {} 时出错。", targetFilePath, e);
                 transactionManager.rollback(txStatus);
@@ -1462,23 +1680,10 @@ public class FileSyncServiceImpl implements FileSyncService {
             return;
         }
 
-        String eventId = UUID.randomUUID().toString();
-        String esDocumentId = generateElasticsearchDocumentId(fileRecord.getRelativeDirPath(), fileRecord.getOriginalFilename());
-
-        Map<String, Object> messagePayload = new HashMap<>();
-        messagePayload.put("eventId", eventId);
-        messagePayload.put("eventType", "FILE_UPSERTED");
-        messagePayload.put("eventTimestamp", Instant.now().toString());
-        messagePayload.put("fileSyncMapId", fileRecord.getId());
-        messagePayload.put("sourceRelativePath", fileRecord.getRelativeDirPath());
-        messagePayload.put("sourceFilename", fileRecord.getOriginalFilename());
-
         Path targetRelativeDir = targetDirectory.relativize(targetFullPath.getParent());
-        messagePayload.put("targetRelativePath", formatRelativePath(targetRelativeDir));
-        messagePayload.put("targetFilename", targetFullPath.getFileName().toString());
-        messagePayload.put("targetFileSizeInBytes", targetSize);
-        messagePayload.put("targetFileLastModifiedEpochSeconds", targetModTimeEpochSeconds);
-        messagePayload.put("elasticsearchDocumentId", esDocumentId);
+        Map<String, Object> messagePayload = FileIndexEvents.upsertPayload(fileRecord, formatRelativePath(targetRelativeDir),
+                targetFullPath.getFileName().toString(), targetSize, targetModTimeEpochSeconds);
+        String esDocumentId = (String) messagePayload.get("elasticsearchDocumentId");
 
         try {
             String jsonMessage = objectMapper.writeValueAsString(messagePayload);
@@ -1512,16 +1717,9 @@ public class FileSyncServiceImpl implements FileSyncService {
             return;
         }
 
-        String eventId = UUID.randomUUID().toString();
-        String esDocumentId = generateElasticsearchDocumentId(fileRecord.getRelativeDirPath(), fileRecord.getOriginalFilename());
-
-        Map<String, Object> messagePayload = new HashMap<>();
-        messagePayload.put("eventId", eventId);
-        messagePayload.put("eventType", "FILE_DELETED");
-        messagePayload.put("eventTimestamp", Instant.now().toString());
-        messagePayload.put("elasticsearchDocumentId", esDocumentId);
-        messagePayload.put("sourceRelativePath", fileRecord.getRelativeDirPath());
-        messagePayload.put("sourceFilename", fileRecord.getOriginalFilename());
+        String esDocumentId = FileIndexEvents.documentId(fileRecord.getRelativeDirPath(), fileRecord.getOriginalFilename());
+        Map<String, Object> messagePayload = FileIndexEvents.deletePayload(esDocumentId,
+                fileRecord.getRelativeDirPath(), fileRecord.getOriginalFilename());
 
         try {
             String jsonMessage = objectMapper.writeValueAsString(messagePayload);
@@ -1542,42 +1740,4 @@ public class FileSyncServiceImpl implements FileSyncService {
             log.error("准备或发起向 Kafka 发布记录 ID {} 的 FILE_DELETED 事件时出错: {}", fileRecord.getId(), e.getMessage(), e);
         }
     }
-
-    /**
-     * 根据源文件的相对目录路径和原始文件名生成 Elasticsearch 文档 ID。
-     * 使用 SHA-256 哈希以确保唯一性和固定长度。
-     * @param sourceRelativeDirPath 源文件的相对目录路径 (例如 "docs/projectA/")
-     * @param sourceOriginalFilename 源文件的原始文件名 (例如 "report.docx.enc")
-     * @return SHA-256 哈希字符串作为 ES 文档 ID
-     */
-    private String generateElasticsearchDocumentId(String sourceRelativeDirPath, String sourceOriginalFilename) {
-        String normalizedDirPath = sourceRelativeDirPath;
-        if (normalizedDirPath == null) {
-            normalizedDirPath = ""; // 处理 null 情况
-        }
-        if (!normalizedDirPath.isEmpty() && !normalizedDirPath.endsWith("/")) {
-            normalizedDirPath += "/";
-        }
-        if (normalizedDirPath.equals("/")) { // 避免根目录变成 "//"
-            normalizedDirPath = "";
-        }
-
-        String uniqueFileIdentifier = normalizedDirPath + sourceOriginalFilename;
-        try {
-            java.security.MessageDigest digest = java.security.MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(uniqueFileIdentifier.getBytes(java.nio.charset.StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder(2 * hash.length);
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (java.security.NoSuchAlgorithmException e) {
-            log.error("未找到 SHA-256 算法用于生成 Elasticsearch 文档 ID。将回退到普通标识符（不推荐）。", e);
-            return uniqueFileIdentifier.replaceAll("[^a-zA-Z0-9_\\-/.]", "_");
-        }
-    }
 }
@@ -0,0 +1,103 @@
+/**
+ * 目录结构: src/main/java/org/ls/service/impl/FileTypeFilterQueries.java
+ * 文件名称: FileTypeFilterQueries.java
+ * 开发时间: 2026-10-19 16:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 代码用途: 全文搜索文件类型筛选条件的构建方法。
+ * 默认使用 extension keyword 字段上的 terms 查询；Painless 脚本方式仅保留用于回填完成前的退回和性能对比。
+ * 本次更新: tar.gz 等多段扩展名在 extension 字段中只有最后一段，terms 查询改为按最后一段筛选后再匹配文件名后缀。
+ */
+package org.ls.service.impl;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.Script;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.json.JsonData;
+import org.ls.utils.FileExtensionUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+final class FileTypeFilterQueries {
+
+    static final String ES_FIELD_FILENAME = "filename";
+    static final String ES_FIELD_EXTENSION = "extension";
+
+    private FileTypeFilterQueries() {
+    }
+
+    /**
+     * 规范化文件类型列表 (去除前导点、转小写、去重、去空)。
+     */
+    static List<String> normalize(Collection<String> fileTypes) {
+        return fileTypes.stream()
+                .filter(Objects::nonNull)
+                .map(FileExtensionUtils::normalizeFileType)
+                .filter(type -> !type.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * extension 字段上的 terms 查询，直接使用倒排索引，不加载 _source。
+     * extension 字段只保存最后一个点之后的部分，tar.gz 这类多段扩展名按最后一段 (gz) 缩小范围后，
+     * 再在 filename.keyword 上按后缀 (*.tar.gz，不区分大小写) 匹配。
+     *
+     * @param extensions 已规范化的扩展名列表 (非空)
+     */
+    static Query terms(List<String> extensions) {
+        List<FieldValue> simple = extensions.stream().filter(e -> e.indexOf('.') < 0).map(FieldValue::of).toList();
+        List<String> compound = extensions.stream().filter(e -> e.indexOf('.') >= 0).toList();
+        Query simpleQuery = Query.of(q -> q.terms(t -> t.field(ES_FIELD_EXTENSION).terms(tv -> tv.value(simple))));
+        if (compound.isEmpty()) {
+            return simpleQuery;
+        }
+        return Query.of(q -> q.bool(b -> {
+            if (!simple.isEmpty()) {
+                b.should(simpleQuery);
+            }
+            for (String extension : compound) {
+                String lastPart = FileExtensionUtils.getExtension(extension);
+                b.should(s -> s.bool(cb -> cb
+                        .filter(f -> f.term(t -> t.field(ES_FIELD_EXTENSION).value(lastPart)))
+                        .filter(f -> f.wildcard(w -> w.field(ES_FIELD_FILENAME + ".keyword")
+                                .value("*." + escapeWildcard(extension))
+                                .caseInsensitive(true)))));
+            }
+            return b.minimumShouldMatch("1");
+        }));
+    }
+
+    private static String escapeWildcard(String value) {
+        return value.replace("\\", "\\\\").replace("*", "\\*").replace("?", "\\?");
+    }
+
+    /**
+     * 旧的筛选方式：对每个候选文档读取 _source 中的 filename 并执行 Painless 脚本判断后缀。
+     *
+     * @param extensions 已规范化的扩展名列表 (非空)
+     */
+    static Query legacyScript(List<String> extensions) {
+        String scriptCode =
+                "if (params._source.containsKey('" + ES_FIELD_FILENAME + "') && params._source['" + ES_FIELD_FILENAME + "'] instanceof String) { " +
+                        "    return params._source['" + ES_FIELD_FILENAME + "'].toLowerCase().endsWith(params.suffix);" +
+                        "} else { " +
+                        "    return false;" +
+                        "}";
+        return Query.of(queryBuilder -> queryBuilder
+                .bool(shouldBool -> {
+                    for (String extension : extensions) {
+                        Script script = new Script.Builder()
+                                .source(scriptCode)
+                                .params("suffix", JsonData.of("." + extension))
+                                .lang("painless")
+                                .build();
+                        shouldBool.should(s -> s.script(sc -> sc.script(script)));
+                    }
+                    shouldBool.minimumShouldMatch("1");
+                    return shouldBool;
+                })
+        );
+    }
+}
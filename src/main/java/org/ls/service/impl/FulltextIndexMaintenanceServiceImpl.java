@@ -0,0 +1,384 @@
+/**
+ * 目录结构: src/main/java/org/ls/service/impl/FulltextIndexMaintenanceServiceImpl.java
+ * 文件名称: FulltextIndexMaintenanceServiceImpl.java
+ * 开发时间: 2026-10-19 16:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 代码用途: FulltextIndexMaintenanceService 接口的实现类。
+ * 负责 extension、summary 字段的映射和存量数据回填，以及文件类型筛选两种实现的耗时对比。
+ * 本次更新: 增加 content.offsets 子字段的映射和回填，以及正文高亮两种模式的耗时对比。
+ * 本次更新: extension、summary 字段映射改为应用启动时预先创建，避免事件先写入字段被动态映射为 text 后无法修改。
+ * 本次更新: summary 多存一个字符 (SUMMARY_STORED_LENGTH)，搜索结果据此判断正文是否被截断。
+ * 本次更新: 添加 content.offsets 子字段时同时复制 content 的 norms、index_options、similarity 等参数，子字段与原字段评分一致。
+ */
+package org.ls.service.impl;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch._types.SlicesCalculation;
+import co.elastic.clients.elasticsearch._types.mapping.IndexOptions;
+import co.elastic.clients.elasticsearch._types.mapping.Property;
+import co.elastic.clients.elasticsearch._types.mapping.TextProperty;
+import co.elastic.clients.elasticsearch._types.query_dsl.NumberRangeQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.UpdateByQueryResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.indices.GetMappingResponse;
+import co.elastic.clients.elasticsearch.indices.get_mapping.IndexMappingRecord;
+import co.elastic.clients.json.JsonData;
+import jakarta.annotation.PostConstruct;
+import org.ls.entity.FulltextDocument;
+import org.ls.config.properties.ElasticsearchProperties;
+import org.ls.dto.FileTypeFilterBenchmarkDto;
+import org.ls.dto.FulltextIndexerMetricsDto;
+import org.ls.dto.HighlightBenchmarkDto;
+import org.ls.service.FulltextIndexMaintenanceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+@Service
+public class FulltextIndexMaintenanceServiceImpl implements FulltextIndexMaintenanceService {
+
+    private static final Logger log = LoggerFactory.getLogger(FulltextIndexMaintenanceServiceImpl.class);
+
+    private static final int MAX_BENCHMARK_ITERATIONS = 200;
+
+    /**
+     * summary 字段截取的 content 字符数 (与原先搜索结果中截取 content 作为摘要的长度一致)
+     */
+    static final int SUMMARY_LENGTH = 200;
+    /**
+     * summary 字段实际存储的字符数。多存一个字符，长度超过 SUMMARY_LENGTH 即表示正文被截断 (恰好 200 字符的正文不加省略号)
+     */
+    static final int SUMMARY_STORED_LENGTH = SUMMARY_LENGTH + 1;
+
+    /**
+     * 回填任务的限速 (每秒处理文档数)，避免回填期间影响在线查询和索引写入。
+     */
+    private static final float BACKFILL_REQUESTS_PER_SECOND = 1000f;
+
+    /**
+     * 与 FileExtensionUtils.getExtension 的规则一致：取最后一个点之后的部分并转小写，
+     * 没有点、点在开头或结尾时为空字符串。空字符串同样会被索引，重复执行回填时这些文档不会再被处理。
+     */
+    private static final String BACKFILL_SCRIPT =
+            "def name = ctx._source['" + FileTypeFilterQueries.ES_FIELD_FILENAME + "'];" +
+                    "if (!(name instanceof String)) { ctx.op = 'noop'; return; }" +
+                    "int dot = name.lastIndexOf('.');" +
+                    "ctx._source['" + FileTypeFilterQueries.ES_FIELD_EXTENSION + "'] = " +
+                    "(dot > 0 && dot < name.length() - 1) ? name.substring(dot + 1).toLowerCase() : '';";
+
+    /**
+     * summary 字段只存储不索引，无法使用 exists 查询筛选，因此在脚本中跳过已有摘要的文档。
+     */
+    private static final String SUMMARY_BACKFILL_SCRIPT =
+            "if (ctx._source.containsKey('" + FulltextDocument.FIELD_SUMMARY + "')) { ctx.op = 'noop'; return; }" +
+                    "def content = ctx._source['content'];" +
+                    "ctx._source['" + FulltextDocument.FIELD_SUMMARY + "'] = !(content instanceof String) ? '' : " +
+                    "(content.length() > params.length ? content.substring(0, params.length) : content);";
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchProperties elasticsearchProperties;
+    // 内置索引服务仅在 dms.indexer.enabled=true 时存在
+    private final ObjectProvider<FulltextIndexer> indexerProvider;
+    private volatile boolean fieldMappingsEnsured = false;
+
+    @Autowired
+    public FulltextIndexMaintenanceServiceImpl(ElasticsearchClient elasticsearchClient,
+                                               ElasticsearchProperties elasticsearchProperties,
+                                               ObjectProvider<FulltextIndexer> indexerProvider) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.elasticsearchProperties = elasticsearchProperties;
+        this.indexerProvider = indexerProvider;
+    }
+
+    /**
+     * 在 Bean 初始化阶段 (Kafka 监听容器和定时任务启动之前) 创建字段映射。Elasticsearch 不可用时只记录日志，
+     * 内置索引服务在写入前会再次尝试，失败时整批重试。
+     */
+    @PostConstruct
+    public void initFieldMappings() {
+        try {
+            ensureFieldMappings();
+        } catch (IOException | RuntimeException e) {
+            log.error("启动时创建索引 {} 的 {}、{} 字段映射失败 (内置索引服务写入前会重试): {}", elasticsearchProperties.getIndexName(),
+                    FileTypeFilterQueries.ES_FIELD_EXTENSION, FulltextDocument.FIELD_SUMMARY, e.getMessage());
+        }
+    }
+
+    @Override
+    public void ensureFieldMappings() throws IOException {
+        if (fieldMappingsEnsured) {
+            return;
+        }
+        String indexName = elasticsearchProperties.getIndexName();
+        // 新增字段的映射可以直接追加到现有索引，无需重建索引；映射已存在且类型相同时为空操作
+        elasticsearchClient.indices().putMapping(p -> p
+                .index(indexName)
+                .properties(FileTypeFilterQueries.ES_FIELD_EXTENSION, pr -> pr.keyword(k -> k))
+                .properties(FulltextDocument.FIELD_SUMMARY, pr -> pr.text(t -> t.index(false))));
+        fieldMappingsEnsured = true;
+        log.info("已确认索引 {} 的 {} (keyword)、{} (仅存储) 字段映射。", indexName,
+                FileTypeFilterQueries.ES_FIELD_EXTENSION, FulltextDocument.FIELD_SUMMARY);
+    }
+
+    @Override
+    public String backfillExtensionField() throws IOException {
+        String indexName = elasticsearchProperties.getIndexName();
+        ensureFieldMappings();
+
+        UpdateByQueryResponse response = elasticsearchClient.updateByQuery(u -> u
+                .index(indexName)
+                .query(q -> q.bool(b -> b.mustNot(mn -> mn.exists(e -> e.field(FileTypeFilterQueries.ES_FIELD_EXTENSION)))))
+                .script(s -> s.source(BACKFILL_SCRIPT).lang("painless"))
+                .conflicts(Conflicts.Proceed)
+                .slices(sl -> sl.computed(SlicesCalculation.Auto))
+                .requestsPerSecond(BACKFILL_REQUESTS_PER_SECOND)
+                .waitForCompletion(false));
+        log.info("已提交索引 {} 的 {} 字段回填任务，任务 ID: {}", indexName, FileTypeFilterQueries.ES_FIELD_EXTENSION, response.task());
+        return response.task();
+    }
+
+    @Override
+    public String backfillSummaryField() throws IOException {
+        String indexName = elasticsearchProperties.getIndexName();
+        ensureFieldMappings();
+
+        UpdateByQueryResponse response = elasticsearchClient.updateByQuery(u -> u
+                .index(indexName)
+                .query(q -> q.matchAll(m -> m))
+                .script(s -> s.source(SUMMARY_BACKFILL_SCRIPT).lang("painless")
+                        .params("length", JsonData.of(SUMMARY_STORED_LENGTH)))
+                .conflicts(Conflicts.Proceed)
+                .slices(sl -> sl.computed(SlicesCalculation.Auto))
+                .requestsPerSecond(BACKFILL_REQUESTS_PER_SECOND)
+                .waitForCompletion(false));
+        log.info("已提交索引 {} 的 {} 字段回填任务，任务 ID: {}", indexName, FulltextDocument.FIELD_SUMMARY, response.task());
+        return response.task();
+    }
+
+    @Override
+    public FileTypeFilterBenchmarkDto benchmarkFileTypeFilter(List<String> fileTypes, int iterations) throws IOException {
+        List<String> extensions = FileTypeFilterQueries.normalize(fileTypes);
+        if (extensions.isEmpty()) {
+            throw new IllegalArgumentException("至少需要指定一个文件类型。");
+        }
+        int rounds = Math.max(1, Math.min(iterations, MAX_BENCHMARK_ITERATIONS));
+
+        Query scriptFilter = FileTypeFilterQueries.legacyScript(extensions);
+        Query termsFilter = FileTypeFilterQueries.terms(extensions);
+        long[] scriptTook = new long[rounds];
+        long[] scriptRoundTrip = new long[rounds];
+        long[] termsTook = new long[rounds];
+        long[] termsRoundTrip = new long[rounds];
+        long scriptHits = 0;
+        long termsHits = 0;
+
+        // 两种查询交替执行，减少集群负载波动和缓存预热对单一方式的影响
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            SearchResponse<FulltextDocument> scriptResponse = countMatches(scriptFilter);
+            scriptRoundTrip[i] = (System.nanoTime() - start) / 1_000_000;
+            scriptTook[i] = scriptResponse.took();
+            scriptHits = totalHits(scriptResponse);
+
+            start = System.nanoTime();
+            SearchResponse<FulltextDocument> termsResponse = countMatches(termsFilter);
+            termsRoundTrip[i] = (System.nanoTime() - start) / 1_000_000;
+            termsTook[i] = termsResponse.took();
+            termsHits = totalHits(termsResponse);
+        }
+
+        FileTypeFilterBenchmarkDto.Stats scriptStats = toStats(scriptHits, scriptTook, scriptRoundTrip);
+        FileTypeFilterBenchmarkDto.Stats termsStats = toStats(termsHits, termsTook, termsRoundTrip);
+        log.info("文件类型筛选对比 ({}，{} 轮): 脚本平均 {} 毫秒/命中 {}，terms 平均 {} 毫秒/命中 {}",
+                extensions, rounds, scriptStats.getAvgTookMillis(), scriptHits, termsStats.getAvgTookMillis(), termsHits);
+        return new FileTypeFilterBenchmarkDto(extensions, rounds, scriptStats, termsStats, scriptHits == termsHits);
+    }
+
+    /**
+     * 只统计命中数 (size = 0)，并禁用分片请求缓存，确保每次都真实执行筛选。
+     */
+    private SearchResponse<FulltextDocument> countMatches(Query filter) throws IOException {
+        return elasticsearchClient.search(s -> s
+                        .index(elasticsearchProperties.getIndexName())
+                        .size(0)
+                        .requestCache(false)
+                        .trackTotalHits(t -> t.enabled(true))
+                        .query(q -> q.bool(b -> b.filter(filter))),
+                FulltextDocument.class);
+    }
+
+    private static long totalHits(SearchResponse<FulltextDocument> response) {
+        return response.hits().total() != null ? response.hits().total().value() : 0L;
+    }
+
+    @Override
+    public String backfillContentOffsets() throws IOException {
+        String indexName = elasticsearchProperties.getIndexName();
+        TextProperty content = getContentMapping(indexName);
+
+        // 已有字段可以追加 multi-field，但必须保留原字段的分析器、norms、index_options 等参数；
+        // 子字段除 index_options 外使用相同的参数，高亮结果与查询一致、评分不变
+        elasticsearchClient.indices().putMapping(p -> p
+                .index(indexName)
+                .properties(ContentHighlights.ES_FIELD_CONTENT, pr -> pr.text(t -> {
+                    copyTextParameters(content, t);
+                    t.fields(ContentHighlights.OFFSETS_SUBFIELD, f -> f.text(sub -> {
+                        copyTextParameters(content, sub);
+                        return sub.indexOptions(IndexOptions.Offsets);
+                    }));
+                    return t;
+                })));
+        log.info("已为索引 {} 添加 {} 子字段映射 (index_options: offsets, analyzer: {}, norms: {})。", indexName,
+                ContentHighlights.ES_FIELD_CONTENT_OFFSETS, content.analyzer(), content.norms());
+
+        // 不带脚本的 update_by_query 会按当前映射重新索引文档，从而写入新的子字段
+        UpdateByQueryResponse response = elasticsearchClient.updateByQuery(u -> u
+                .index(indexName)
+                .query(q -> q.bool(b -> b
+                        .filter(f -> f.exists(e -> e.field(ContentHighlights.ES_FIELD_CONTENT)))
+                        .mustNot(mn -> mn.exists(e -> e.field(ContentHighlights.ES_FIELD_CONTENT_OFFSETS)))))
+                .conflicts(Conflicts.Proceed)
+                .slices(sl -> sl.computed(SlicesCalculation.Auto))
+                .requestsPerSecond(BACKFILL_REQUESTS_PER_SECOND)
+                .waitForCompletion(false));
+        log.info("已提交索引 {} 的 {} 子字段回填任务，任务 ID: {}", indexName, ContentHighlights.ES_FIELD_CONTENT_OFFSETS, response.task());
+        return response.task();
+    }
+
+    private TextProperty getContentMapping(String indexName) throws IOException {
+        GetMappingResponse mapping = elasticsearchClient.indices().getMapping(g -> g.index(indexName));
+        // index-name 可能是别名，结果以实际索引名为键
+        Property content = mapping.result().values().stream()
+                .map(IndexMappingRecord::mappings)
+                .map(m -> m.properties().get(ContentHighlights.ES_FIELD_CONTENT))
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(null);
+        if (content == null || !content.isText()) {
+            throw new IllegalStateException("索引 " + indexName + " 中的 " + ContentHighlights.ES_FIELD_CONTENT + " 字段不存在或不是 text 类型。");
+        }
+        return content.text();
+    }
+
+    /**
+     * 复制 content 字段中影响分词和评分的映射参数。重新提交 content 映射时缺省的参数会按默认值处理
+     * (与现有映射冲突时 put mapping 失败)，子字段缺少这些参数则评分与 content 不一致。
+     */
+    private static void copyTextParameters(TextProperty source, TextProperty.Builder target) {
+        if (source.analyzer() != null) {
+            target.analyzer(source.analyzer());
+        }
+        if (source.searchAnalyzer() != null) {
+            target.searchAnalyzer(source.searchAnalyzer());
+        }
+        if (source.searchQuoteAnalyzer() != null) {
+            target.searchQuoteAnalyzer(source.searchQuoteAnalyzer());
+        }
+        if (source.norms() != null) {
+            target.norms(source.norms());
+        }
+        if (source.indexOptions() != null) {
+            target.indexOptions(source.indexOptions());
+        }
+        if (source.similarity() != null) {
+            target.similarity(source.similarity());
+        }
+        if (source.positionIncrementGap() != null) {
+            target.positionIncrementGap(source.positionIncrementGap());
+        }
+    }
+
+    @Override
+    public HighlightBenchmarkDto benchmarkHighlight(String query, long minFileSizeBytes, int iterations) throws IOException {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("查询关键字不能为空。");
+        }
+        int rounds = Math.max(1, Math.min(iterations, MAX_BENCHMARK_ITERATIONS));
+        int maxAnalyzedOffset = elasticsearchProperties.getHighlightMaxAnalyzedOffset();
+
+        long[] analyzedTook = new long[rounds];
+        long[] analyzedRoundTrip = new long[rounds];
+        long[] offsetsTook = new long[rounds];
+        long[] offsetsRoundTrip = new long[rounds];
+        long analyzedHits = 0;
+        long offsetsHits = 0;
+        int offsetsReturned = 0;
+        int offsetsHighlighted = 0;
+
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            SearchResponse<FulltextDocument> analyzedResponse = searchWithHighlight(query, minFileSizeBytes, false, maxAnalyzedOffset);
+            analyzedRoundTrip[i] = (System.nanoTime() - start) / 1_000_000;
+            analyzedTook[i] = analyzedResponse.took();
+            analyzedHits = totalHits(analyzedResponse);
+
+            start = System.nanoTime();
+            SearchResponse<FulltextDocument> offsetsResponse = searchWithHighlight(query, minFileSizeBytes, true, maxAnalyzedOffset);
+            offsetsRoundTrip[i] = (System.nanoTime() - start) / 1_000_000;
+            offsetsTook[i] = offsetsResponse.took();
+            offsetsHits = totalHits(offsetsResponse);
+            if (i == 0) {
+                for (Hit<FulltextDocument> hit : offsetsResponse.hits().hits()) {
+                    offsetsReturned++;
+                    List<String> fragments = ContentHighlights.fragments(hit.highlight());
+                    if (fragments != null && !fragments.isEmpty()) {
+                        offsetsHighlighted++;
+                    }
+                }
+            }
+        }
+
+        FileTypeFilterBenchmarkDto.Stats analyzedStats = toStats(analyzedHits, analyzedTook, analyzedRoundTrip);
+        FileTypeFilterBenchmarkDto.Stats offsetsStats = toStats(offsetsHits, offsetsTook, offsetsRoundTrip);
+        double coverage = offsetsReturned > 0 ? Math.round(offsetsHighlighted * 100.0 / offsetsReturned) / 100.0 : 0;
+        log.info("正文高亮对比 ('{}'，文件 >= {} 字节，{} 轮): 重新分析平均 {} 毫秒，offsets 平均 {} 毫秒，命中 {}",
+                query, minFileSizeBytes, rounds, analyzedStats.getAvgTookMillis(), offsetsStats.getAvgTookMillis(), analyzedHits);
+        return new HighlightBenchmarkDto(query, minFileSizeBytes, rounds, maxAnalyzedOffset, analyzedStats, offsetsStats, coverage);
+    }
+
+    /**
+     * 与全文搜索相同的查询和高亮参数，只在文件大小不小于指定值的文档中查询。
+     */
+    private SearchResponse<FulltextDocument> searchWithHighlight(String query, long minFileSizeBytes, boolean useOffsets,
+                                                                 int maxAnalyzedOffset) throws IOException {
+        NumberRangeQuery sizeFilter = NumberRangeQuery.of(r -> r.field(FulltextDocument.FIELD_FILE_SIZE).gte((double) minFileSizeBytes));
+        return elasticsearchClient.search(s -> s
+                        .index(elasticsearchProperties.getIndexName())
+                        .size(10)
+                        .trackTotalHits(t -> t.enabled(true))
+                        .source(src -> src.filter(f -> f.includes(FulltextDocument.SOURCE_FIELDS)))
+                        .query(q -> q.bool(b -> b
+                                .must(m -> m.multiMatch(mm -> mm.query(query).fields(ContentHighlights.ES_FIELD_CONTENT, "title^2")))
+                                .filter(f -> f.range(r -> r.number(sizeFilter)))))
+                        .highlight(ContentHighlights.build(useOffsets, maxAnalyzedOffset)),
+                FulltextDocument.class);
+    }
+
+    private static FileTypeFilterBenchmarkDto.Stats toStats(long hits, long[] tookMillis, long[] roundTripMillis) {
+        long[] sorted = tookMillis.clone();
+        Arrays.sort(sorted);
+        double avgTook = Arrays.stream(tookMillis).average().orElse(0);
+        double avgRoundTrip = Arrays.stream(roundTripMillis).average().orElse(0);
+        return new FileTypeFilterBenchmarkDto.Stats(hits,
+                Math.round(avgTook * 100) / 100.0,
+                sorted[sorted.length / 2],
+                sorted[sorted.length - 1],
+                Math.round(avgRoundTrip * 100) / 100.0);
+    }
+
+    @Override
+    public FulltextIndexerMetricsDto getIndexerMetrics() {
+        FulltextIndexer indexer = indexerProvider.getIfAvailable();
+        return indexer != null ? indexer.getMetrics() : new FulltextIndexerMetricsDto();
+    }
+}
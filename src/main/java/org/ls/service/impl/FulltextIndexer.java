@@ -0,0 +1,586 @@
+/**
+ * 目录: src/main/java/org/ls/service/impl/FulltextIndexer.java
+ * 文件名: FulltextIndexer.java
+ * 开发时间: 2026-10-19 19:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 内置全文索引服务。消费文件同步发布的 upsert/delete 事件，抽取目标文件文本，
+ * 按文档数和字节数分批写入 Elasticsearch (_bulk)，并使用 if_seq_no/if_primary_term 防止覆盖并发写入。
+ * 仅在 dms.indexer.enabled=true 时启用。
+ * 本次更新: 一个批次内的文件在抽取线程池中并行抽取文本，超大、超时的文件只索引元数据，content 按片段写入。
+ * 本次更新: _bulk 中被拒绝 (429) 或服务端出错 (5xx) 的文档退避后重试，仍失败时整批交给 Kafka 重试，只丢弃永久性错误的文档。
+ * 本次更新: 写入前确认 extension、summary 字段映射已创建，避免被动态映射为 text。
+ * 本次更新: 删除事件与 upsert 一样读取现有文档的序列号，索引中的版本比删除事件更新 (删除后重新上传) 时不删除。
+ * 本次更新: summary 按 SUMMARY_STORED_LENGTH 截取。
+ */
+package org.ls.service.impl;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.get.GetResult;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import co.elastic.clients.util.BinaryData;
+import co.elastic.clients.util.ContentType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.ls.config.IndexerKafkaConfig;
+import org.ls.config.properties.ElasticsearchProperties;
+import org.ls.config.properties.IndexerProperties;
+import org.ls.dto.FulltextIndexerMetricsDto;
+import org.ls.entity.FulltextDocument;
+import org.ls.service.FulltextIndexMaintenanceService;
+import org.ls.utils.FileExtensionUtils;
+import org.ls.utils.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+@Component
+@ConditionalOnProperty(name = "dms.indexer.enabled", havingValue = "true")
+@Slf4j
+public class FulltextIndexer {
+
+    public static final String LISTENER_ID = "dms-fulltext-indexer";
+
+    private static final String ES_FIELD_CONTENT = "content";
+    private static final String ES_FIELD_TITLE = "title";
+    private static final String ES_FIELD_FILE_SYNC_MAP_ID = "file_sync_map_id";
+    private static final String ES_FIELD_INDEXED_AT = "indexed_at";
+
+    // _bulk 请求中每个操作的元数据行 (action/metadata) 的估算字节数
+    private static final int BULK_ACTION_OVERHEAD_BYTES = 200;
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchProperties elasticsearchProperties;
+    private final IndexerProperties indexerProperties;
+    private final TikaTextExtractor textExtractor;
+    private final FulltextIndexMaintenanceService maintenanceService;
+    private final ObjectMapper objectMapper;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final Path targetDirectory;
+
+    // --- 统计 ---
+    private final long startedAtMillis = System.currentTimeMillis();
+    private final LongAdder eventsConsumed = new LongAdder();
+    private final LongAdder documentsIndexed = new LongAdder();
+    private final LongAdder documentsDeleted = new LongAdder();
+    private final LongAdder staleSkipped = new LongAdder();
+    private final LongAdder missingFiles = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder bulkRequests = new LongAdder();
+    private final LongAdder bulkBytes = new LongAdder();
+    private final LongAdder bulkNanos = new LongAdder();
+    private final LongAdder extractNanos = new LongAdder();
+    private final LongAdder extractedFiles = new LongAdder();
+    private final LongAdder extractTimeouts = new LongAdder();
+    private final LongAdder oversizedFiles = new LongAdder();
+    private final LongAdder truncatedDocuments = new LongAdder();
+    private final AtomicLong lastEventDelayMillis = new AtomicLong(0);
+
+    public FulltextIndexer(ElasticsearchClient elasticsearchClient,
+                           ElasticsearchProperties elasticsearchProperties,
+                           IndexerProperties indexerProperties,
+                           TikaTextExtractor textExtractor,
+                           FulltextIndexMaintenanceService maintenanceService,
+                           ObjectMapper objectMapper,
+                           KafkaListenerEndpointRegistry listenerRegistry,
+                           @Value("${file.sync.target-dir}") String targetDir) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.elasticsearchProperties = elasticsearchProperties;
+        this.indexerProperties = indexerProperties;
+        this.textExtractor = textExtractor;
+        this.maintenanceService = maintenanceService;
+        this.objectMapper = objectMapper;
+        this.listenerRegistry = listenerRegistry;
+        this.targetDirectory = Paths.get(targetDir).toAbsolutePath().normalize();
+        log.info("内置索引服务已启用。索引: {}, 目标目录: {}, 每个 _bulk 最多 {} 个文档 / {} 字节, if_seq_no: {}, 抽取线程数: {}",
+                elasticsearchProperties.getIndexName(), targetDirectory, indexerProperties.getBulkMaxDocuments(),
+                indexerProperties.getBulkMaxBytes(), elasticsearchProperties.isIfSeqNoEnabled(), textExtractor.getWorkerCount());
+    }
+
+    /**
+     * Kafka 批量监听入口。方法正常返回后容器提交整批偏移量；抛出异常时整批按退避策略重试。
+     */
+    @KafkaListener(id = LISTENER_ID, topics = {FileIndexEvents.TOPIC_FILE_UPSERT_EVENTS, FileIndexEvents.TOPIC_FILE_DELETE_EVENTS},
+            containerFactory = IndexerKafkaConfig.CONTAINER_FACTORY)
+    public void onEvents(List<ConsumerRecord<String, String>> records) throws IOException {
+        processBatch(records.stream().map(ConsumerRecord::value).toList());
+    }
+
+    /**
+     * 处理一批事件 JSON。与 Kafka 无关，可直接调用。
+     *
+     * @param messages 事件 JSON 列表 (按消费顺序)
+     * @throws IOException Elasticsearch 请求失败 (整批需要重试)
+     */
+    public void processBatch(List<String> messages) throws IOException {
+        // 启动时 Elasticsearch 不可用导致映射未创建时，在第一次写入前补建；失败时抛出异常整批重试
+        maintenanceService.ensureFieldMappings();
+        eventsConsumed.add(messages.size());
+
+        // 事件以文档 ID 为键发送，同一文档的事件在同一分区内有序；批内只保留每个文档的最后一个事件
+        Map<String, Map<String, Object>> latestEvents = new LinkedHashMap<>();
+        for (String message : messages) {
+            Map<String, Object> event;
+            try {
+                event = objectMapper.readValue(message, new TypeReference<>() {
+                });
+            } catch (JsonProcessingException e) {
+                failures.increment();
+                log.error("无法解析文件事件，已跳过: {}", e.getMessage());
+                continue;
+            }
+            String documentId = asString(event.get("elasticsearchDocumentId"));
+            if (StringUtils.isBlank(documentId)) {
+                failures.increment();
+                log.error("文件事件缺少 elasticsearchDocumentId，已跳过: {}", message);
+                continue;
+            }
+            latestEvents.remove(documentId);
+            latestEvents.put(documentId, event);
+            recordEventDelay(event);
+        }
+
+        // 先为所有 upsert 事件提交文本抽取任务，在抽取线程池中并行执行
+        Map<String, UpsertTask> upsertTasks = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, Object>> entry : latestEvents.entrySet()) {
+            if (!FileIndexEvents.EVENT_TYPE_DELETED.equals(entry.getValue().get("eventType"))) {
+                UpsertTask task = submitExtraction(entry.getKey(), entry.getValue());
+                if (task != null) {
+                    upsertTasks.put(entry.getKey(), task);
+                }
+            }
+        }
+
+        // 按事件顺序收集抽取结果并构建操作
+        List<PendingOperation> pending = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Object>> entry : latestEvents.entrySet()) {
+            if (FileIndexEvents.EVENT_TYPE_DELETED.equals(entry.getValue().get("eventType"))) {
+                pending.add(new PendingOperation(entry.getKey(), null, eventEpochSeconds(entry.getValue())));
+            } else if (upsertTasks.containsKey(entry.getKey())) {
+                pending.add(buildUpsert(upsertTasks.get(entry.getKey())));
+            }
+        }
+        execute(pending);
+    }
+
+    /**
+     * 校验目标文件并提交文本抽取任务。目标文件已不存在 (之后会收到删除事件) 时返回 null。
+     */
+    private UpsertTask submitExtraction(String documentId, Map<String, Object> event) {
+        String targetRelativePath = asString(event.get("targetRelativePath"));
+        String targetFilename = asString(event.get("targetFilename"));
+        Path file = targetDirectory.resolve(targetRelativePath != null ? targetRelativePath : "")
+                .resolve(targetFilename != null ? targetFilename : "").normalize();
+        if (StringUtils.isBlank(targetFilename) || !file.startsWith(targetDirectory)) {
+            failures.increment();
+            log.error("文件事件的目标路径无效，已跳过。文档 ID: {}, 路径: {}", documentId, file);
+            return null;
+        }
+        if (!Files.isRegularFile(file)) {
+            missingFiles.increment();
+            log.warn("目标文件 {} 不存在 (可能已被删除或再次修改)，跳过文档 {} 的索引。", file, documentId);
+            return null;
+        }
+
+        long extractStart = System.nanoTime();
+        CompletableFuture<TikaTextExtractor.ExtractedText> extraction = textExtractor.extractAsync(file);
+        extraction.whenComplete((text, error) -> {
+            extractNanos.add(System.nanoTime() - extractStart);
+            extractedFiles.increment();
+        });
+        return new UpsertTask(documentId, event, file, extraction);
+    }
+
+    /**
+     * 等待文本抽取完成并构建索引文档。无法抽取文本时仍然索引文件元数据，文件可以按文件名、类型和日期检索到。
+     */
+    private PendingOperation buildUpsert(UpsertTask task) throws JsonProcessingException {
+        Map<String, Object> event = task.event();
+        String targetFilename = asString(event.get("targetFilename"));
+        List<String> chunks = List.of();
+        String title = null;
+        try {
+            TikaTextExtractor.ExtractedText extracted = task.extraction().get();
+            chunks = extracted.chunks();
+            title = extracted.title();
+            if (extracted.oversized()) {
+                oversizedFiles.increment();
+            }
+            if (extracted.truncated()) {
+                truncatedDocuments.increment();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof TimeoutException) {
+                extractTimeouts.increment();
+                log.warn("抽取文件 {} 的文本超过 {} 毫秒，仅索引元数据。", task.file(), indexerProperties.getExtractTimeoutMillis());
+            } else {
+                failures.increment();
+                log.warn("抽取文件 {} 的文本失败，仅索引元数据: {}", task.file(), cause != null ? cause.getMessage() : e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待文本抽取时被中断", e);
+        }
+        String summary = chunks.isEmpty() ? "" : chunks.get(0);
+        if (summary.length() > FulltextIndexMaintenanceServiceImpl.SUMMARY_STORED_LENGTH) {
+            summary = summary.substring(0, FulltextIndexMaintenanceServiceImpl.SUMMARY_STORED_LENGTH);
+        }
+
+        String sourceFilename = asString(event.get("sourceFilename"));
+        String sourceRelativePath = asString(event.get("sourceRelativePath"));
+        long lastModified = asLong(event.get("targetFileLastModifiedEpochSeconds"));
+
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put(FulltextDocument.FIELD_FILENAME, sourceFilename);
+        // 与原有索引保持一致: source_path 为源文件的相对路径 (包含文件名)
+        document.put(FulltextDocument.FIELD_SOURCE_PATH, FileIndexEvents.sourcePath(sourceRelativePath, sourceFilename));
+        document.put(FulltextDocument.FIELD_LAST_MODIFIED, lastModified);
+        document.put(FulltextDocument.FIELD_FILE_SIZE, asLong(event.get("targetFileSizeInBytes")));
+        document.put(FileTypeFilterQueries.ES_FIELD_EXTENSION, event.get("extension") != null
+                ? event.get("extension") : FileExtensionUtils.getExtension(targetFilename));
+        document.put(ES_FIELD_TITLE, StringUtils.isNotBlank(title) ? title : stripExtension(targetFilename));
+        // text 字段接受数组，每个片段作为独立的值索引，高亮片段也在单个片段内生成
+        document.put(ES_FIELD_CONTENT, chunks);
+        document.put(FulltextDocument.FIELD_SUMMARY, summary);
+        document.put(ES_FIELD_FILE_SYNC_MAP_ID, event.get("fileSyncMapId"));
+        document.put(ES_FIELD_INDEXED_AT, Instant.now().getEpochSecond());
+        return new PendingOperation(task.documentId(), objectMapper.writeValueAsBytes(document), lastModified);
+    }
+
+    /**
+     * 写入一批操作。启用 if_seq_no 时先读取现有文档的序列号，写入时带上序列号；
+     * 读取后被其他写入修改过的文档 (409 冲突) 重新读取后重试。
+     * 被拒绝 (429) 或服务端出错 (5xx) 的文档按指数退避重试，重试耗尽后抛出异常，由 Kafka 错误处理器整批重试，偏移量不提交。
+     */
+    private void execute(List<PendingOperation> pending) throws IOException {
+        List<PendingOperation> remaining = pending;
+        int conflictAttempts = 0;
+        int rejectedAttempts = 0;
+        while (!remaining.isEmpty()) {
+            Map<String, GetResult<FulltextDocument>> current = elasticsearchProperties.isIfSeqNoEnabled()
+                    ? fetchCurrent(remaining) : Map.of();
+
+            List<PendingOperation> operations = new ArrayList<>();
+            List<BulkOperation> bulkOperations = new ArrayList<>();
+            for (PendingOperation operation : remaining) {
+                BulkOperation bulkOperation = toBulkOperation(operation, current.get(operation.documentId()));
+                if (bulkOperation != null) {
+                    operations.add(operation);
+                    bulkOperations.add(bulkOperation);
+                }
+            }
+
+            BulkOutcome outcome = sendInChunks(operations, bulkOperations);
+            List<PendingOperation> retry = new ArrayList<>();
+            List<PendingOperation> conflicted = outcome.conflicted();
+            if (!conflicted.isEmpty()) {
+                conflicts.add(conflicted.size());
+                if (conflictAttempts >= indexerProperties.getMaxConflictRetries()) {
+                    failures.add(conflicted.size());
+                    log.error("{} 个文档在重试 {} 次后仍然存在版本冲突，已放弃: {}", conflicted.size(), conflictAttempts,
+                            conflicted.stream().map(PendingOperation::documentId).toList());
+                } else {
+                    conflictAttempts++;
+                    log.info("{} 个文档写入时发生版本冲突，重新读取后重试 (第 {} 次)。", conflicted.size(), conflictAttempts);
+                    retry.addAll(conflicted);
+                }
+            }
+            List<PendingOperation> rejected = outcome.rejected();
+            if (!rejected.isEmpty()) {
+                if (rejectedAttempts >= indexerProperties.getMaxRejectedRetries()) {
+                    throw new IOException(String.format("%d 个文档在重试 %d 次后仍被 Elasticsearch 拒绝 (429/5xx)，整批重试",
+                            rejected.size(), rejectedAttempts));
+                }
+                long backoffMillis = indexerProperties.getRejectedRetryBackoffMillis() << Math.min(rejectedAttempts, 10);
+                rejectedAttempts++;
+                log.warn("{} 个文档被 Elasticsearch 拒绝 (429/5xx)，{} 毫秒后重试 (第 {} 次)。", rejected.size(), backoffMillis, rejectedAttempts);
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("等待重试写入时被中断", e);
+                }
+                retry.addAll(rejected);
+            }
+            remaining = retry;
+        }
+    }
+
+    private BulkOperation toBulkOperation(PendingOperation operation, GetResult<FulltextDocument> existing) {
+        String indexName = elasticsearchProperties.getIndexName();
+        if (existing != null && existing.source() != null && existing.source().getLastModified() instanceof Number indexedModified
+                && indexedModified.longValue() > operation.lastModified()) {
+            // 索引中的版本比本事件更新 (事件重放或乱序，例如延迟到达的删除事件晚于重新上传)，不覆盖也不删除
+            staleSkipped.increment();
+            return null;
+        }
+        if (operation.isDelete()) {
+            if (existing == null) {
+                // 文档不存在或未启用 if_seq_no，直接删除 (不存在时返回 404，视为成功)
+                return BulkOperation.of(b -> b.delete(d -> d.index(indexName).id(operation.documentId())));
+            }
+            return BulkOperation.of(b -> b.delete(d -> d
+                    .index(indexName)
+                    .id(operation.documentId())
+                    .ifSeqNo(existing.seqNo())
+                    .ifPrimaryTerm(existing.primaryTerm())));
+        }
+        BinaryData data = BinaryData.of(operation.document(), ContentType.APPLICATION_JSON);
+        if (!elasticsearchProperties.isIfSeqNoEnabled()) {
+            return BulkOperation.of(b -> b.index(i -> i.index(indexName).id(operation.documentId()).document(data)));
+        }
+        if (existing == null) {
+            // 文档不存在时使用 create，期间被其他写入创建会返回 409 冲突
+            return BulkOperation.of(b -> b.create(c -> c.index(indexName).id(operation.documentId()).document(data)));
+        }
+        return BulkOperation.of(b -> b.index(i -> i
+                .index(indexName)
+                .id(operation.documentId())
+                .ifSeqNo(existing.seqNo())
+                .ifPrimaryTerm(existing.primaryTerm())
+                .document(data)));
+    }
+
+    private Map<String, GetResult<FulltextDocument>> fetchCurrent(List<PendingOperation> operations) throws IOException {
+        List<String> ids = operations.stream().map(PendingOperation::documentId).toList();
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        MgetResponse<FulltextDocument> response = elasticsearchClient.mget(m -> m
+                        .index(elasticsearchProperties.getIndexName())
+                        .ids(ids)
+                        .sourceIncludes(FulltextDocument.FIELD_LAST_MODIFIED),
+                FulltextDocument.class);
+        Map<String, GetResult<FulltextDocument>> current = new HashMap<>();
+        for (MultiGetResponseItem<FulltextDocument> item : response.docs()) {
+            if (item.isResult() && item.result().found()) {
+                current.put(item.result().id(), item.result());
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 按文档数和字节数上限拆分为多个 _bulk 请求发送。
+     *
+     * @return 发生版本冲突、被拒绝等需要重试的操作
+     */
+    private BulkOutcome sendInChunks(List<PendingOperation> operations, List<BulkOperation> bulkOperations) throws IOException {
+        BulkOutcome outcome = new BulkOutcome(new ArrayList<>(), new ArrayList<>());
+        int chunkStart = 0;
+        long chunkBytes = 0;
+        for (int i = 0; i < operations.size(); i++) {
+            long operationBytes = operations.get(i).sizeInBytes();
+            int chunkSize = i - chunkStart;
+            if (chunkSize > 0 && (chunkSize >= indexerProperties.getBulkMaxDocuments()
+                    || chunkBytes + operationBytes > indexerProperties.getBulkMaxBytes())) {
+                sendBulk(operations.subList(chunkStart, i), bulkOperations.subList(chunkStart, i), chunkBytes, outcome);
+                chunkStart = i;
+                chunkBytes = 0;
+            }
+            chunkBytes += operationBytes;
+        }
+        if (chunkStart < operations.size()) {
+            sendBulk(operations.subList(chunkStart, operations.size()),
+                    bulkOperations.subList(chunkStart, bulkOperations.size()), chunkBytes, outcome);
+        }
+        return outcome;
+    }
+
+    /**
+     * 发送一个 _bulk 请求并按条目状态归类: 409 记为冲突，429 和 5xx 记为可重试，
+     * 其余错误 (映射错误、解析错误等永久性 4xx) 记为失败并丢弃。
+     */
+    private void sendBulk(List<PendingOperation> operations, List<BulkOperation> bulkOperations, long bytes,
+                          BulkOutcome outcome) throws IOException {
+        long start = System.nanoTime();
+        BulkResponse response = elasticsearchClient.bulk(b -> b.operations(bulkOperations));
+        bulkNanos.add(System.nanoTime() - start);
+        bulkRequests.increment();
+        bulkBytes.add(bytes);
+
+        int conflicted = 0;
+        int rejected = 0;
+        List<BulkResponseItem> items = response.items();
+        for (int i = 0; i < items.size(); i++) {
+            BulkResponseItem item = items.get(i);
+            PendingOperation operation = operations.get(i);
+            if (item.status() == 409) {
+                outcome.conflicted().add(operation);
+                conflicted++;
+            } else if (item.status() == 429 || item.status() >= 500) {
+                // es_rejected_execution_exception 等暂时性错误，退避后重试
+                outcome.rejected().add(operation);
+                rejected++;
+                log.debug("写入文档 {} 被拒绝: 状态 {}, {}", item.id(), item.status(),
+                        item.error() != null ? item.error().reason() : "");
+            } else if (operation.isDelete() && (item.error() == null || item.status() == 404)) {
+                // 删除不存在的文档视为成功
+                documentsDeleted.increment();
+            } else if (item.error() != null) {
+                failures.increment();
+                log.error("写入文档 {} 失败: 状态 {}, {}", item.id(), item.status(), item.error().reason());
+            } else {
+                documentsIndexed.increment();
+            }
+        }
+        log.debug("_bulk 请求完成: {} 个操作, {} 字节, 耗时 {} 毫秒, 冲突 {} 个, 被拒绝 {} 个", operations.size(), bytes,
+                (System.nanoTime() - start) / 1_000_000, conflicted, rejected);
+    }
+
+    /**
+     * @return 自应用启动以来的索引统计，以及 Kafka 消费延迟
+     */
+    public FulltextIndexerMetricsDto getMetrics() {
+        FulltextIndexerMetricsDto metrics = new FulltextIndexerMetricsDto();
+        metrics.setEnabled(true);
+        metrics.setEventsConsumed(eventsConsumed.sum());
+        metrics.setDocumentsIndexed(documentsIndexed.sum());
+        metrics.setDocumentsDeleted(documentsDeleted.sum());
+        metrics.setStaleSkipped(staleSkipped.sum());
+        metrics.setMissingFiles(missingFiles.sum());
+        metrics.setConflicts(conflicts.sum());
+        metrics.setFailures(failures.sum());
+        metrics.setBulkRequests(bulkRequests.sum());
+        metrics.setBulkBytes(bulkBytes.sum());
+        long requests = bulkRequests.sum();
+        metrics.setAvgBulkMillis(requests > 0 ? Math.round(bulkNanos.sum() / 1_000_000.0 / requests * 100) / 100.0 : 0);
+        long extracted = extractedFiles.sum();
+        metrics.setAvgExtractMillis(extracted > 0 ? Math.round(extractNanos.sum() / 1_000_000.0 / extracted * 100) / 100.0 : 0);
+        metrics.setExtractWorkers(textExtractor.getWorkerCount());
+        metrics.setExtractedFiles(extracted);
+        metrics.setExtractTimeouts(extractTimeouts.sum());
+        metrics.setOversizedFiles(oversizedFiles.sum());
+        metrics.setTruncatedDocuments(truncatedDocuments.sum());
+        double elapsedSeconds = Math.max(1, (System.currentTimeMillis() - startedAtMillis) / 1000.0);
+        metrics.setDocumentsPerSecond(Math.round((documentsIndexed.sum() + documentsDeleted.sum()) / elapsedSeconds * 100) / 100.0);
+        metrics.setConsumerLag(readConsumerLag());
+        metrics.setLastEventDelayMillis(lastEventDelayMillis.get());
+        return metrics;
+    }
+
+    /**
+     * 从 Kafka 消费者指标中读取各分区最大的落后消息数 (records-lag-max)。
+     */
+    private Long readConsumerLag() {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(LISTENER_ID);
+        if (container == null) {
+            return null;
+        }
+        double maxLag = -1;
+        for (Map<MetricName, ? extends Metric> clientMetrics : container.metrics().values()) {
+            for (Map.Entry<MetricName, ? extends Metric> entry : clientMetrics.entrySet()) {
+                if ("records-lag-max".equals(entry.getKey().name())
+                        && "consumer-fetch-manager-metrics".equals(entry.getKey().group())
+                        && entry.getValue().metricValue() instanceof Number value
+                        && !Double.isNaN(value.doubleValue())) {
+                    maxLag = Math.max(maxLag, value.doubleValue());
+                }
+            }
+        }
+        return maxLag >= 0 ? (long) maxLag : null;
+    }
+
+    private void recordEventDelay(Map<String, Object> event) {
+        String timestamp = asString(event.get("eventTimestamp"));
+        if (timestamp != null) {
+            try {
+                lastEventDelayMillis.set(System.currentTimeMillis() - Instant.parse(timestamp).toEpochMilli());
+            } catch (RuntimeException e) {
+                log.debug("无法解析事件时间 {}", timestamp);
+            }
+        }
+    }
+
+    /**
+     * 删除事件的版本: 事件时间 (纪元秒)，与索引中文档的 last_modified (同步写入目标文件的时间) 比较。
+     * 缺少或无法解析事件时间时不做版本比较。
+     */
+    private static long eventEpochSeconds(Map<String, Object> event) {
+        String timestamp = asString(event.get("eventTimestamp"));
+        if (timestamp != null) {
+            try {
+                return Instant.parse(timestamp).getEpochSecond();
+            } catch (RuntimeException e) {
+                log.debug("无法解析删除事件时间 {}", timestamp);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static String stripExtension(String filename) {
+        int dotIndex = filename.lastIndexOf('.');
+        return dotIndex > 0 ? filename.substring(0, dotIndex) : filename;
+    }
+
+    private static String asString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private static long asLong(Object value) {
+        return value instanceof Number number ? number.longValue() : 0L;
+    }
+
+    /**
+     * 已提交文本抽取的 upsert 事件。
+     */
+    private record UpsertTask(String documentId, Map<String, Object> event, Path file,
+                              CompletableFuture<TikaTextExtractor.ExtractedText> extraction) {
+    }
+
+    /**
+     * 一轮写入中需要重试的操作。
+     *
+     * @param conflicted 版本冲突 (409)，重新读取序列号后重试
+     * @param rejected   被拒绝 (429) 或服务端出错 (5xx)，退避后重试
+     */
+    private record BulkOutcome(List<PendingOperation> conflicted, List<PendingOperation> rejected) {
+    }
+
+    /**
+     * 待写入的操作。
+     *
+     * @param documentId   文档 ID
+     * @param document     序列化后的文档 JSON，删除操作为 null
+     * @param lastModified upsert 为文件最后修改时间、删除为事件时间 (纪元秒)，用于丢弃比索引中更旧的事件
+     */
+    private record PendingOperation(String documentId, byte[] document, long lastModified) {
+        boolean isDelete() {
+            return document == null;
+        }
+
+        long sizeInBytes() {
+            return (document != null ? document.length : 0) + BULK_ACTION_OVERHEAD_BYTES;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+/**
+ * 目录: src/main/java/org/ls/service/impl/FulltextReconciliationServiceImpl.java
+ * 文件名: FulltextReconciliationServiceImpl.java
+ * 开发时间: 2026-10-19 20:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: FulltextReconciliationService 接口的实现类。在后台线程中比对 file_sync_map 与 dms_files 索引，
+ * 只为缺失、过期和多余的文档发布 upsert / delete 事件，按速率限制发布并在每批完成后保存断点。
+ * 本次更新: 只有记录不存在或已待删除的文档才视为多余，正在重新同步或同步出错的文件不再被删除出索引。
+ */
+package org.ls.service.impl;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.ls.config.properties.ElasticsearchProperties;
+import org.ls.dto.FulltextReconcileStatusDto;
+import org.ls.entity.FileSyncMap;
+import org.ls.entity.FulltextDocument;
+import org.ls.entity.FulltextReconcileCheckpoint;
+import org.ls.mapper.FileSyncMapMapper;
+import org.ls.mapper.FulltextReconcileCheckpointMapper;
+import org.ls.service.FulltextReconciliationService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@Slf4j
+public class FulltextReconciliationServiceImpl implements FulltextReconciliationService {
+
+    private static final String JOB_NAME = "dms_files";
+    private static final String PHASE_RECORDS = "records";
+    private static final String PHASE_DOCUMENTS = "documents";
+    private static final String PHASE_DONE = "done";
+    private static final String ES_FIELD_SOURCE_PATH_KEYWORD = FulltextDocument.FIELD_SOURCE_PATH + ".keyword";
+    private static final long SEND_TIMEOUT_SECONDS = 60;
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchProperties elasticsearchProperties;
+    private final FileSyncMapMapper fileSyncMapMapper;
+    private final FulltextReconcileCheckpointMapper checkpointMapper;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final FulltextSearchResultCache fulltextSearchResultCache;
+    private final boolean kafkaEventsEnabled;
+    private final int batchSize;
+    private final int maxEventsPerSecond;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("FulltextReconcile-"));
+
+    // --- 运行状态 ---
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicBoolean stopRequested = new AtomicBoolean(false);
+    private volatile FulltextReconcileCheckpoint checkpoint;
+    private volatile LocalDateTime finishedAt;
+    private volatile String message;
+    private final AtomicLong recordsChecked = new AtomicLong();
+    private final AtomicLong documentsChecked = new AtomicLong();
+    private final AtomicLong missingDocuments = new AtomicLong();
+    private final AtomicLong staleDocuments = new AtomicLong();
+    private final AtomicLong orphanDocuments = new AtomicLong();
+    private final AtomicLong eventsPublished = new AtomicLong();
+
+    public FulltextReconciliationServiceImpl(ElasticsearchClient elasticsearchClient,
+                                             ElasticsearchProperties elasticsearchProperties,
+                                             FileSyncMapMapper fileSyncMapMapper,
+                                             FulltextReconcileCheckpointMapper checkpointMapper,
+                                             KafkaTemplate<String, String> kafkaTemplate,
+                                             ObjectMapper objectMapper,
+                                             FulltextSearchResultCache fulltextSearchResultCache,
+                                             @Value("${dms.kafka.events.enabled:false}") boolean kafkaEventsEnabled,
+                                             @Value("${dms.reconcile.batch-size:500}") int batchSize,
+                                             @Value("${dms.reconcile.max-events-per-second:200}") int maxEventsPerSecond) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.elasticsearchProperties = elasticsearchProperties;
+        this.fileSyncMapMapper = fileSyncMapMapper;
+        this.checkpointMapper = checkpointMapper;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.fulltextSearchResultCache = fulltextSearchResultCache;
+        this.kafkaEventsEnabled = kafkaEventsEnabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxEventsPerSecond = maxEventsPerSecond;
+    }
+
+    @Override
+    public FulltextReconcileStatusDto start(boolean fullReindex, boolean resume) {
+        if (!kafkaEventsEnabled) {
+            throw new IllegalStateException("未启用 Kafka 事件发布 (dms.kafka.events.enabled)，无法执行索引对账。");
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("索引对账任务已在运行。");
+        }
+        try {
+            FulltextReconcileCheckpoint saved = resume ? checkpointMapper.selectByJobName(JOB_NAME) : null;
+            if (saved != null && !PHASE_DONE.equals(saved.getPhase())) {
+                log.info("从断点继续索引对账。阶段: {}, 记录 ID: {}, source_path: {}, 全量重建: {}",
+                        saved.getPhase(), saved.getLastSyncMapId(), saved.getLastSourcePath(), saved.getFullReindex());
+                checkpoint = saved;
+            } else {
+                checkpoint = new FulltextReconcileCheckpoint(JOB_NAME, PHASE_RECORDS, fullReindex, 0L, null,
+                        LocalDateTime.now(), null);
+                checkpointMapper.upsert(checkpoint);
+            }
+            stopRequested.set(false);
+            finishedAt = null;
+            message = null;
+            recordsChecked.set(0);
+            documentsChecked.set(0);
+            missingDocuments.set(0);
+            staleDocuments.set(0);
+            orphanDocuments.set(0);
+            eventsPublished.set(0);
+            executor.submit(this::run);
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        return getStatus();
+    }
+
+    @Override
+    public FulltextReconcileStatusDto stop() {
+        if (running.get()) {
+            log.info("请求停止索引对账任务。");
+            stopRequested.set(true);
+        }
+        return getStatus();
+    }
+
+    @Override
+    public FulltextReconcileStatusDto getStatus() {
+        FulltextReconcileStatusDto status = new FulltextReconcileStatusDto();
+        status.setRunning(running.get());
+        FulltextReconcileCheckpoint current = checkpoint;
+        if (current == null && !running.get()) {
+            current = checkpointMapper.selectByJobName(JOB_NAME);
+        }
+        if (current != null) {
+            status.setPhase(current.getPhase());
+            status.setFullReindex(Boolean.TRUE.equals(current.getFullReindex()));
+            status.setStartedAt(current.getStartedAt());
+            status.setLastSyncMapId(current.getLastSyncMapId());
+            status.setLastSourcePath(current.getLastSourcePath());
+        }
+        status.setFinishedAt(finishedAt);
+        status.setRecordsChecked(recordsChecked.get());
+        status.setDocumentsChecked(documentsChecked.get());
+        status.setMissingDocuments(missingDocuments.get());
+        status.setStaleDocuments(staleDocuments.get());
+        status.setOrphanDocuments(orphanDocuments.get());
+        status.setEventsPublished(eventsPublished.get());
+        status.setMessage(message);
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopRequested.set(true);
+        executor.shutdownNow();
+    }
+
+    private void run() {
+        long startTime = System.currentTimeMillis();
+        try {
+            if (PHASE_RECORDS.equals(checkpoint.getPhase())) {
+                reconcileRecords();
+                if (!stopRequested.get()) {
+                    checkpoint.setPhase(PHASE_DOCUMENTS);
+                    checkpoint.setLastSourcePath(null);
+                    checkpointMapper.upsert(checkpoint);
+                }
+            }
+            if (PHASE_DOCUMENTS.equals(checkpoint.getPhase()) && !stopRequested.get()) {
+                reconcileDocuments();
+                if (!stopRequested.get()) {
+                    checkpoint.setPhase(PHASE_DONE);
+                    checkpointMapper.upsert(checkpoint);
+                }
+            }
+            message = stopRequested.get() ? "已停止，可从断点继续。" : "已完成。";
+            log.info("索引对账任务{}检查记录 {} 条、文档 {} 个，缺失 {}，过期 {}，多余 {}，发布事件 {} 个，耗时 {} 毫秒。",
+                    stopRequested.get() ? "已停止。" : "完成。", recordsChecked.get(), documentsChecked.get(),
+                    missingDocuments.get(), staleDocuments.get(), orphanDocuments.get(), eventsPublished.get(),
+                    System.currentTimeMillis() - startTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            message = "任务被中断，可从断点继续。";
+            log.warn("索引对账任务被中断。");
+        } catch (Exception e) {
+            message = "任务失败，可从断点继续: " + e.getMessage();
+            log.error("索引对账任务失败，断点: 阶段 {}, 记录 ID {}, source_path {}", checkpoint.getPhase(),
+                    checkpoint.getLastSyncMapId(), checkpoint.getLastSourcePath(), e);
+        } finally {
+            finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+    }
+
+    /**
+     * records 阶段: 按 ID 顺序分批读取已同步记录，使用 mget 检查索引中是否存在对应文档以及修改时间和大小是否一致。
+     */
+    private void reconcileRecords() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        boolean fullReindex = Boolean.TRUE.equals(checkpoint.getFullReindex());
+        while (!stopRequested.get()) {
+            long batchStart = System.currentTimeMillis();
+            List<FileSyncMap> batch = fileSyncMapMapper.selectSyncedForReconciliation(checkpoint.getLastSyncMapId(), batchSize);
+            if (batch.isEmpty()) {
+                return;
+            }
+            Map<String, FulltextDocument> indexed = fullReindex ? Map.of() : fetchIndexed(batch);
+
+            List<Map<String, Object>> upserts = new ArrayList<>();
+            for (FileSyncMap record : batch) {
+                String documentId = FileIndexEvents.documentId(record.getRelativeDirPath(), record.getOriginalFilename());
+                FulltextDocument document = indexed.get(documentId);
+                if (!fullReindex && document != null && isUpToDate(record, document)) {
+                    continue;
+                }
+                if (!fullReindex) {
+                    (document == null ? missingDocuments : staleDocuments).incrementAndGet();
+                }
+                long targetSize = record.getTargetFileSize() != null ? record.getTargetFileSize() : 0L;
+                long targetModified = record.getTargetLastModified() != null
+                        ? record.getTargetLastModified().atZone(ZoneId.systemDefault()).toEpochSecond() : 0L;
+                upserts.add(FileIndexEvents.upsertPayload(record, record.getRelativeDirPath(), record.getTargetFilename(),
+                        targetSize, targetModified));
+            }
+            publish(FileIndexEvents.TOPIC_FILE_UPSERT_EVENTS, upserts);
+
+            recordsChecked.addAndGet(batch.size());
+            checkpoint.setLastSyncMapId(batch.get(batch.size() - 1).getId());
+            checkpointMapper.upsert(checkpoint);
+            throttle(batchStart, upserts.size());
+            if (batch.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private Map<String, FulltextDocument> fetchIndexed(List<FileSyncMap> batch) throws IOException {
+        List<String> ids = batch.stream()
+                .map(record -> FileIndexEvents.documentId(record.getRelativeDirPath(), record.getOriginalFilename()))
+                .toList();
+        MgetResponse<FulltextDocument> response = elasticsearchClient.mget(m -> m
+                        .index(elasticsearchProperties.getIndexName())
+                        .ids(ids)
+                        .sourceIncludes(FulltextDocument.FIELD_LAST_MODIFIED, FulltextDocument.FIELD_FILE_SIZE),
+                FulltextDocument.class);
+        Map<String, FulltextDocument> indexed = new HashMap<>();
+        for (MultiGetResponseItem<FulltextDocument> item : response.docs()) {
+            if (item.isFailure()) {
+                throw new IOException("mget 读取文档 " + item.failure().id() + " 失败: " + item.failure().error().reason());
+            }
+            if (item.result().found()) {
+                indexed.put(item.result().id(), item.result().source() != null ? item.result().source() : new FulltextDocument());
+            }
+        }
+        return indexed;
+    }
+
+    private boolean isUpToDate(FileSyncMap record, FulltextDocument document) {
+        Long indexedModified = document.getLastModified() instanceof Number number ? Long.valueOf(number.longValue()) : null;
+        Long recordModified = record.getTargetLastModified() != null
+                ? record.getTargetLastModified().atZone(ZoneId.systemDefault()).toEpochSecond() : null;
+        return Objects.equals(indexedModified, recordModified)
+                && Objects.equals(document.getFileSizeBytes(), record.getTargetFileSize());
+    }
+
+    /**
+     * documents 阶段: 使用 PIT + search_after 按 source_path 顺序遍历索引，检查每个文档是否仍有对应的已同步记录。
+     * source_path 唯一 (文档 ID 即其哈希)，断点保存最后一个 source_path，PIT 过期或应用重启后可以从该值继续。
+     */
+    private void reconcileDocuments() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        String indexName = elasticsearchProperties.getIndexName();
+        String pitId = elasticsearchClient.openPointInTime(o -> o
+                .index(indexName)
+                .keepAlive(t -> t.time(elasticsearchProperties.getPitKeepAlive()))).id();
+        try {
+            while (!stopRequested.get()) {
+                long batchStart = System.currentTimeMillis();
+                String currentPitId = pitId;
+                String lastSourcePath = checkpoint.getLastSourcePath();
+                SearchResponse<FulltextDocument> response = elasticsearchClient.search(s -> {
+                    s.pit(p -> p.id(currentPitId).keepAlive(t -> t.time(elasticsearchProperties.getPitKeepAlive())))
+                            .size(batchSize)
+                            .trackTotalHits(t -> t.enabled(false))
+                            .source(src -> src.filter(f -> f.includes(FulltextDocument.FIELD_SOURCE_PATH)))
+                            .sort(so -> so.field(f -> f.field(ES_FIELD_SOURCE_PATH_KEYWORD).order(SortOrder.Asc)));
+                    if (lastSourcePath != null) {
+                        s.searchAfter(FieldValue.of(lastSourcePath));
+                    }
+                    return s;
+                }, FulltextDocument.class);
+                if (response.pitId() != null) {
+                    pitId = response.pitId();
+                }
+                List<Hit<FulltextDocument>> hits = response.hits().hits();
+                if (hits.isEmpty()) {
+                    return;
+                }
+
+                Map<String, Hit<FulltextDocument>> hitsBySourcePath = new HashMap<>();
+                List<FileSyncMap> sourcePaths = new ArrayList<>();
+                for (Hit<FulltextDocument> hit : hits) {
+                    String sourcePath = hit.source() != null ? hit.source().getSourcePath() : null;
+                    if (sourcePath == null) {
+                        continue;
+                    }
+                    hitsBySourcePath.put(sourcePath, hit);
+                    FileSyncMap key = new FileSyncMap();
+                    int slashIndex = sourcePath.lastIndexOf('/');
+                    key.setRelativeDirPath(slashIndex >= 0 ? sourcePath.substring(0, slashIndex + 1) : "");
+                    key.setOriginalFilename(sourcePath.substring(slashIndex + 1));
+                    sourcePaths.add(key);
+                }
+
+                // 待同步、同步中和出错的记录目标文件仍然存在，只有没有记录或记录已待删除的文档才是多余的
+                Set<String> indexable = new HashSet<>();
+                if (!sourcePaths.isEmpty()) {
+                    for (FileSyncMap record : fileSyncMapMapper.selectIndexableBySourcePaths(sourcePaths)) {
+                        indexable.add(FileIndexEvents.sourcePath(record.getRelativeDirPath(), record.getOriginalFilename()));
+                    }
+                }
+                List<Map<String, Object>> deletes = new ArrayList<>();
+                for (FileSyncMap key : sourcePaths) {
+                    String sourcePath = FileIndexEvents.sourcePath(key.getRelativeDirPath(), key.getOriginalFilename());
+                    if (!indexable.contains(sourcePath)) {
+                        orphanDocuments.incrementAndGet();
+                        deletes.add(FileIndexEvents.deletePayload(hitsBySourcePath.get(sourcePath).id(),
+                                key.getRelativeDirPath(), key.getOriginalFilename()));
+                    }
+                }
+                publish(FileIndexEvents.TOPIC_FILE_DELETE_EVENTS, deletes);
+
+                documentsChecked.addAndGet(hits.size());
+                List<FieldValue> sort = hits.get(hits.size() - 1).sort();
+                if (sort.isEmpty() || !sort.get(0).isString()) {
+                    // 最后一个文档没有 source_path (缺失值排在最后)，之后不会再有可比对的文档
+                    return;
+                }
+                checkpoint.setLastSourcePath(sort.get(0).stringValue());
+                checkpointMapper.upsert(checkpoint);
+                throttle(batchStart, deletes.size());
+                if (hits.size() < batchSize) {
+                    return;
+                }
+            }
+        } finally {
+            String closingPitId = pitId;
+            try {
+                elasticsearchClient.closePointInTime(c -> c.id(closingPitId));
+            } catch (IOException | RuntimeException e) {
+                log.warn("关闭 PIT 失败 (将在 keep_alive 到期后自动释放): {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 发布一批事件并等待 Kafka 确认，确认失败时抛出异常，断点不会越过这一批。
+     */
+    private void publish(String topic, List<Map<String, Object>> payloads)
+            throws JsonProcessingException, InterruptedException, ExecutionException, TimeoutException {
+        if (payloads.isEmpty()) {
+            return;
+        }
+        List<CompletableFuture<?>> sends = new ArrayList<>(payloads.size());
+        for (Map<String, Object> payload : payloads) {
+            String key = (String) payload.get("elasticsearchDocumentId");
+            sends.add(kafkaTemplate.send(topic, key, objectMapper.writeValueAsString(payload)));
+        }
+        CompletableFuture.allOf(sends.toArray(new CompletableFuture[0])).get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        eventsPublished.addAndGet(payloads.size());
+        fulltextSearchResultCache.invalidateAll();
+        log.debug("索引对账: 已向主题 {} 发布 {} 个事件。", topic, payloads.size());
+    }
+
+    /**
+     * 按 max-events-per-second 限速: 本批发布的事件数至少需要的时间未用完时暂停。
+     */
+    private void throttle(long batchStartMillis, int events) throws InterruptedException {
+        if (maxEventsPerSecond <= 0 || events == 0) {
+            return;
+        }
+        long minimumMillis = events * 1000L / maxEventsPerSecond;
+        long remaining = minimumMillis - (System.currentTimeMillis() - batchStartMillis);
+        if (remaining > 0) {
+            Thread.sleep(remaining);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * 目录: src/main/java/org/ls/service/impl/FulltextSearchResultCache.java
+ * 文件名: FulltextSearchResultCache.java
+ * 开发时间: 2026-10-19 17:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 全文搜索结果缓存。以规范化后的搜索请求为键缓存页码分页的结果，重复查询不再访问 Elasticsearch；
+ * 文件同步发布 upsert/delete 事件时整体失效。
+ * 本次更新: 读写都使用结果页的副本，调用方修改返回结果不会影响缓存；单个文件的索引事件不再使缓存整体失效，
+ * 改为较短的过期时间 (索引服务本身异步消费事件，结果原本就有秒级延迟)，只有索引对账等批量修复才整体失效。
+ */
+package org.ls.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.ls.dto.FulltextSearchCacheStatsDto;
+import org.ls.dto.FulltextSearchPageDto;
+import org.ls.dto.FulltextSearchRequestDto;
+import org.ls.utils.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+@Component
+@Slf4j
+public class FulltextSearchResultCache {
+
+    private final boolean enabled;
+    private final long invalidationGraceMillis;
+    private final Cache<Key, FulltextSearchPageDto> cache;
+    private final LongAdder bypassCount = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+    private volatile long bypassUntilMillis;
+
+    /**
+     * 构造函数。
+     *
+     * @param enabled                  是否启用缓存
+     * @param maxEntries               最多缓存的结果页数量 (Caffeine 按 W-TinyLFU 策略淘汰)
+     * @param expireSeconds            缓存过期时间 (秒)，即文件新增、修改或删除后最长多久反映到缓存的查询结果中
+     * @param invalidationGraceSeconds 整体失效后不写入缓存的时长 (秒)。索引服务异步消费事件，
+     *                                 这段时间内的查询结果可能还未包含最新变更
+     */
+    public FulltextSearchResultCache(@Value("${fulltext.search.cache.enabled:true}") boolean enabled,
+                                     @Value("${fulltext.search.cache.max-entries:2000}") long maxEntries,
+                                     @Value("${fulltext.search.cache.expire-seconds:30}") long expireSeconds,
+                                     @Value("${fulltext.search.cache.invalidation-grace-seconds:30}") long invalidationGraceSeconds) {
+        this.enabled = enabled;
+        this.invalidationGraceMillis = Duration.ofSeconds(invalidationGraceSeconds).toMillis();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(expireSeconds))
+                .recordStats()
+                .build();
+        log.info("全文搜索结果缓存初始化完成。启用: {}, 容量: {}, 过期时间: {} 秒, 失效保护期: {} 秒",
+                enabled, maxEntries, expireSeconds, invalidationGraceSeconds);
+    }
+
+    /**
+     * 根据请求生成缓存键。游标分页依赖 point-in-time 状态，不参与缓存，返回 null。
+     *
+     * @param requestDto 搜索请求
+     * @return 缓存键，不可缓存时为 null
+     */
+    public Key keyOf(FulltextSearchRequestDto requestDto) {
+        if (!enabled || requestDto.isScroll() || StringUtils.isNotBlank(requestDto.getCursor())) {
+            return null;
+        }
+        FulltextSearchRequestDto.Filters filters = requestDto.getFilters();
+        List<String> fileTypes = filters != null && filters.getFileTypes() != null
+                ? FileTypeFilterQueries.normalize(filters.getFileTypes()).stream().sorted().toList()
+                : List.of();
+        String sortBy = StringUtils.isBlank(requestDto.getSortBy()) ? "relevance" : requestDto.getSortBy().trim().toLowerCase(Locale.ROOT);
+        return new Key(normalizeText(requestDto.getQuery()), fileTypes,
+                filters != null ? normalizeText(filters.getDateFrom()) : "",
+                filters != null ? normalizeText(filters.getDateTo()) : "",
+                sortBy, requestDto.getPage(), requestDto.getSize(), requestDto.isIncludeFacets());
+    }
+
+    /**
+     * @param key 缓存键 (可为 null)
+     * @return 已缓存结果的副本，未命中时为 null
+     */
+    public FulltextSearchPageDto get(Key key) {
+        FulltextSearchPageDto cached = key != null ? cache.getIfPresent(key) : null;
+        return cached != null ? copyOf(cached) : null;
+    }
+
+    /**
+     * 缓存成功的查询结果。刚发生失效的保护期内不写入，避免缓存索引服务尚未处理完变更时的旧结果。
+     *
+     * @param key    缓存键 (可为 null)
+     * @param result 查询结果
+     */
+    public void put(Key key, FulltextSearchPageDto result) {
+        if (key == null) {
+            return;
+        }
+        if (System.currentTimeMillis() < bypassUntilMillis) {
+            bypassCount.increment();
+            return;
+        }
+        cache.put(key, copyOf(result));
+    }
+
+    /**
+     * 使全部缓存结果失效。用于索引对账等批量修复索引的场景；单个文件的变更依靠过期时间刷新，
+     * 否则持续同步文件时缓存会被不断清空而失去作用。
+     */
+    public void invalidateAll() {
+        if (!enabled) {
+            return;
+        }
+        bypassUntilMillis = System.currentTimeMillis() + invalidationGraceMillis;
+        cache.invalidateAll();
+        invalidationCount.increment();
+    }
+
+    /**
+     * @return 自应用启动以来的缓存统计快照
+     */
+    public FulltextSearchCacheStatsDto getStats() {
+        CacheStats stats = cache.stats();
+        return new FulltextSearchCacheStatsDto(enabled, cache.estimatedSize(), stats.hitCount(), stats.missCount(),
+                Math.round(stats.hitRate() * 10000) / 10000.0, stats.evictionCount(),
+                invalidationCount.sum(), bypassCount.sum());
+    }
+
+    /**
+     * 复制结果页 (内容列表复制，结果项本身不被修改，共享即可)。
+     */
+    private static FulltextSearchPageDto copyOf(FulltextSearchPageDto source) {
+        FulltextSearchPageDto copy = new FulltextSearchPageDto(new ArrayList<>(source.getContent()),
+                source.getPageNumber(), source.getPageSize(), source.getTotalElements());
+        copy.setTotalPages(source.getTotalPages());
+        copy.setFirst(source.isFirst());
+        copy.setLast(source.isLast());
+        copy.setNextCursor(source.getNextCursor());
+        copy.setDegraded(source.isDegraded());
+        copy.setMessage(source.getMessage());
+        copy.setFacets(source.getFacets());
+        copy.setResultWindowExceeded(source.isResultWindowExceeded());
+        copy.setPitId(source.getPitId());
+        return copy;
+    }
+
+    private static String normalizeText(String text) {
+        return text == null ? "" : text.trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * 规范化后的搜索请求 (不可变)。
+     */
+    public record Key(String query, List<String> fileTypes, String dateFrom, String dateTo,
+                      String sortBy, int page, int size, boolean includeFacets) {
+    }
+}
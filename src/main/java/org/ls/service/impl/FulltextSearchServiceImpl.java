@@ -4,25 +4,39 @@
  * 开发时间: 2025-06-03 22:15:00 (Asia/Shanghai)
  * 作者: Gemini
  * 代码用途: FulltextSearchService 接口的实现类。
- * 本次更新: 使用 script 查询替换 regexp 查询，以最可靠的方式修复文件类型筛选器。
+ * 本次更新: 正文高亮可切换为使用 content.offsets 子字段存储的偏移量，并限制每个文档参与高亮的字符数。
+ * 本次更新: 页码超出最大结果窗口时返回实际总数并标记 resultWindowExceeded；游标分页可复用调用方传入的 PIT。
+ * 本次更新: extension 字段未启用 (回填前) 时，文件类型分面改为按 filename.keyword 计算的运行时字段统计。
+ * 本次更新: 游标中的 PIT 已过期时返回"游标已过期"提示，不再作为搜索服务降级。
+ * 本次更新: 摘要只在正文超过 SUMMARY_LENGTH 时截断并加省略号，恰好等于该长度时原样显示。
  */
 package org.ls.service.impl;
 
-import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
 import co.elastic.clients.elasticsearch._types.FieldValue;
-import co.elastic.clients.elasticsearch._types.Script;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.CalendarInterval;
+import co.elastic.clients.elasticsearch._types.mapping.RuntimeFieldType;
 import co.elastic.clients.elasticsearch._types.query_dsl.DateRangeQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch._types.query_dsl.RangeQuery;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.OpenPointInTimeResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.elasticsearch.core.search.TotalHits;
-import co.elastic.clients.json.JsonData;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.ls.config.properties.ElasticsearchProperties;
+import org.ls.dto.FulltextSearchCacheStatsDto;
+import org.ls.dto.FulltextSearchFacetsDto;
+import org.ls.dto.FulltextSearchPageDto;
 import org.ls.dto.FulltextSearchRequestDto;
 import org.ls.dto.FulltextSearchResultDto;
-import org.ls.dto.PageDto;
+import org.ls.entity.FulltextDocument;
+import org.ls.exception.SearchUnavailableException;
 import org.ls.service.FulltextSearchService;
 import org.ls.utils.DateUtils;
 import org.ls.utils.StringUtils;
@@ -32,12 +46,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 
@@ -48,35 +67,104 @@ public class FulltextSearchServiceImpl implements FulltextSearchService {
 
     private static final Logger log = LoggerFactory.getLogger(FulltextSearchServiceImpl.class);
 
-    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchAsyncClient elasticsearchAsyncClient;
     private final ElasticsearchProperties elasticsearchProperties;
+    private final ObjectMapper objectMapper;
+    private final FulltextSearchResultCache resultCache;
+    private final ElasticsearchSearchGuard searchGuard;
 
     // 根据后台日志确认的、在Elasticsearch中实际使用的字段名
-    private static final String ES_FIELD_FILENAME = "filename";
-    private static final String ES_FIELD_RELATIVE_PATH = "source_path";
-    private static final String ES_FIELD_LAST_MODIFIED = "last_modified";
-    private static final String ES_FIELD_FILE_SIZE = "file_size_bytes";
+    private static final String ES_FIELD_FILENAME = FulltextDocument.FIELD_FILENAME;
+    private static final String ES_FIELD_LAST_MODIFIED = FulltextDocument.FIELD_LAST_MODIFIED;
     private static final String ES_FIELD_CONTENT = "content";
     private static final String ES_FIELD_TITLE = "title";
+    // PIT 内的隐式分片文档序号，作为游标分页的唯一排序决胜字段
+    private static final String ES_FIELD_SHARD_DOC = "_shard_doc";
+
+    // 分面统计
+    private static final int FACET_SIZE = 20;
+    private static final String AGG_FILE_TYPES = "file_types";
+    private static final String AGG_DIRECTORIES = "directories";
+    private static final String AGG_MODIFIED_MONTHS = "modified_months";
+    // 请求级运行时字段，从 doc values 计算，无需修改映射或重建索引
+    private static final String RUNTIME_FIELD_TOP_DIRECTORY = "top_directory";
+    private static final String RUNTIME_FIELD_MODIFIED_AT = "modified_at";
+    private static final String RUNTIME_FIELD_FILE_EXTENSION = "file_extension";
+    private static final String TOP_DIRECTORY_SCRIPT =
+            "if (!doc.containsKey('" + FulltextDocument.FIELD_SOURCE_PATH + ".keyword') || doc['" + FulltextDocument.FIELD_SOURCE_PATH + ".keyword'].size() == 0) { return; }" +
+                    "String path = doc['" + FulltextDocument.FIELD_SOURCE_PATH + ".keyword'].value.replace('\\\\', '/');" +
+                    "while (path.startsWith('/')) { path = path.substring(1); }" +
+                    "int slash = path.indexOf('/');" +
+                    "emit(slash > 0 ? path.substring(0, slash) : '/');";
+    // 与 FileExtensionUtils.getExtension 一致: 最后一个点之后的部分转小写，没有扩展名的文件不计入
+    private static final String FILE_EXTENSION_SCRIPT =
+            "if (!doc.containsKey('" + FulltextDocument.FIELD_FILENAME + ".keyword') || doc['" + FulltextDocument.FIELD_FILENAME + ".keyword'].size() == 0) { return; }" +
+                    "String name = doc['" + FulltextDocument.FIELD_FILENAME + ".keyword'].value;" +
+                    "int dot = name.lastIndexOf('.');" +
+                    "if (dot > 0 && dot < name.length() - 1) { emit(name.substring(dot + 1).toLowerCase()); }";
+    // last_modified 在旧索引中可能是纪元秒 (long)，也可能映射为 date
+    private static final String MODIFIED_AT_SCRIPT =
+            "if (!doc.containsKey('" + FulltextDocument.FIELD_LAST_MODIFIED + "') || doc['" + FulltextDocument.FIELD_LAST_MODIFIED + "'].size() == 0) { return; }" +
+                    "def value = doc['" + FulltextDocument.FIELD_LAST_MODIFIED + "'].value;" +
+                    "emit(value instanceof ZonedDateTime ? value.toInstant().toEpochMilli() : ((Number) value).longValue() * 1000L);";
 
     @Autowired
-    public FulltextSearchServiceImpl(ElasticsearchClient elasticsearchClient,
-                                     ElasticsearchProperties elasticsearchProperties) {
-        this.elasticsearchClient = elasticsearchClient;
+    public FulltextSearchServiceImpl(ElasticsearchAsyncClient elasticsearchAsyncClient,
+                                     ElasticsearchProperties elasticsearchProperties,
+                                     ObjectMapper objectMapper,
+                                     FulltextSearchResultCache resultCache,
+                                     ElasticsearchSearchGuard searchGuard) {
+        this.elasticsearchAsyncClient = elasticsearchAsyncClient;
         this.elasticsearchProperties = elasticsearchProperties;
+        this.objectMapper = objectMapper;
+        this.resultCache = resultCache;
+        this.searchGuard = searchGuard;
     }
 
     @Override
-    public PageDto<FulltextSearchResultDto> search(FulltextSearchRequestDto requestDto) {
+    public FulltextSearchPageDto search(FulltextSearchRequestDto requestDto) {
+        return searchAsync(requestDto).join();
+    }
+
+    @Override
+    public CompletableFuture<FulltextSearchPageDto> searchAsync(FulltextSearchRequestDto requestDto) {
         if (requestDto == null) {
             log.warn("全文搜索请求 DTO 为空。");
-            return new PageDto<>(new ArrayList<>(), 1, 0, 0L);
+            return CompletableFuture.completedFuture(new FulltextSearchPageDto(new ArrayList<>(), 1, 0, 0L));
         }
 
         String indexName = elasticsearchProperties.getIndexName();
         if (StringUtils.isBlank(indexName)) {
             log.error("Elasticsearch 索引名称未配置。");
-            return new PageDto<>(new ArrayList<>(), requestDto.getPage(), requestDto.getSize(), 0L);
+            return CompletableFuture.completedFuture(
+                    degradedPage(requestDto, new IllegalStateException("Elasticsearch 索引名称未配置")));
+        }
+
+        if (requestDto.isScroll() || StringUtils.isNotBlank(requestDto.getCursor())) {
+            return searchWithCursor(requestDto, indexName);
+        }
+
+        int from = (requestDto.getPage() - 1) * requestDto.getSize();
+        if (from + requestDto.getSize() > elasticsearchProperties.getMaxResultWindow()) {
+            log.warn("请求的页码 {} 超出最大结果窗口 {}，深层翻页请使用游标分页 (scroll=true)。",
+                    requestDto.getPage(), elasticsearchProperties.getMaxResultWindow());
+            // 只统计总数 (不取回命中)，调用方据此区分“页码超出窗口”和“没有匹配结果”
+            return countTotalHits(indexName, requestDto)
+                    .thenApply(total -> {
+                        FulltextSearchPageDto page = new FulltextSearchPageDto(new ArrayList<>(), requestDto.getPage(), requestDto.getSize(), total);
+                        page.setResultWindowExceeded(true);
+                        page.setMessage("页码超出最大结果窗口 " + elasticsearchProperties.getMaxResultWindow()
+                                + "，共 " + total + " 条结果，深层翻页请使用游标分页 (scroll=true)。");
+                        return page;
+                    })
+                    .exceptionally(ex -> degradedPage(requestDto, ex));
+        }
+
+        FulltextSearchResultCache.Key cacheKey = resultCache.keyOf(requestDto);
+        FulltextSearchPageDto cached = resultCache.get(cacheKey);
+        if (cached != null) {
+            log.debug("全文搜索命中结果缓存: {}", cacheKey);
+            return CompletableFuture.completedFuture(cached);
         }
 
         SearchRequest.Builder searchRequestBuilder = new SearchRequest.Builder();
@@ -84,26 +172,244 @@ public class FulltextSearchServiceImpl implements FulltextSearchService {
 
         buildQuery(searchRequestBuilder, requestDto.getQuery(), requestDto.getFilters());
 
-        int from = (requestDto.getPage() - 1) * requestDto.getSize();
         searchRequestBuilder.from(from).size(requestDto.getSize());
+        buildSourceFilter(searchRequestBuilder);
 
         buildSort(searchRequestBuilder, requestDto.getSortBy());
 
         buildHighlight(searchRequestBuilder, requestDto.getQuery());
 
+        if (requestDto.isIncludeFacets()) {
+            buildAggregations(searchRequestBuilder);
+        }
+
         SearchRequest esSearchRequest = searchRequestBuilder.build();
         log.debug("执行 Elasticsearch 查询: {}", esSearchRequest.toString());
 
+        return searchGuard.execute(() -> elasticsearchAsyncClient.search(esSearchRequest, FulltextDocument.class))
+                .thenApply(response -> {
+                    FulltextSearchPageDto page = parseSearchResponse(response, requestDto.getPage(), requestDto.getSize());
+                    // 只缓存成功的结果，降级响应不进入缓存
+                    resultCache.put(cacheKey, page);
+                    return page;
+                })
+                .exceptionally(ex -> degradedPage(requestDto, ex));
+    }
+
+    /**
+     * 统计查询和筛选条件命中的精确总数 (size = 0，不受默认 10000 条总数统计上限影响)。
+     */
+    private CompletableFuture<Long> countTotalHits(String indexName, FulltextSearchRequestDto requestDto) {
+        SearchRequest.Builder searchRequestBuilder = new SearchRequest.Builder();
+        searchRequestBuilder.index(indexName);
+        buildQuery(searchRequestBuilder, requestDto.getQuery(), requestDto.getFilters());
+        searchRequestBuilder.size(0).trackTotalHits(t -> t.enabled(true));
+        SearchRequest searchRequest = searchRequestBuilder.build();
+        return searchGuard.execute(() -> elasticsearchAsyncClient.search(searchRequest, FulltextDocument.class))
+                .thenApply(response -> response.hits().total() != null ? response.hits().total().value() : 0L);
+    }
+
+    /**
+     * 构建降级响应：空结果并标记 degraded，调用方可以区分“没有匹配结果”和“暂时无法搜索”。
+     */
+    private FulltextSearchPageDto degradedPage(FulltextSearchRequestDto requestDto, Throwable ex) {
+        Throwable cause = ElasticsearchSearchGuard.unwrap(ex);
+        FulltextSearchPageDto page = new FulltextSearchPageDto(new ArrayList<>(), requestDto.getPage(), requestDto.getSize(), 0L);
+        page.setDegraded(true);
+        if (cause instanceof SearchUnavailableException) {
+            log.warn("全文搜索降级: {}", cause.getMessage());
+            page.setMessage(cause.getMessage());
+        } else {
+            log.error("执行 Elasticsearch 搜索时发生异常: {}", cause.getMessage(), cause);
+            page.setMessage("全文搜索暂时不可用，请稍后重试。");
+        }
+        return page;
+    }
+
+    @Override
+    public FulltextSearchCacheStatsDto getResultCacheStats() {
+        return resultCache.getStats();
+    }
+
+    /**
+     * 游标分页：在 point-in-time 快照上使用 search_after 逐页向后读取。
+     * 每页只需收集 size 条结果，不会像 from/size 那样随页码增长而收集并排序前面所有页的命中。
+     * 未提供 cursor 时优先复用调用方传入的 pitId (例如滚动中途修改排序或筛选条件后重新从第一页开始)，
+     * 不再每次打开新的 PIT；传入的 PIT 已过期或已关闭时打开新的 PIT。
+     */
+    private CompletableFuture<FulltextSearchPageDto> searchWithCursor(FulltextSearchRequestDto requestDto, String indexName) {
+        int size = requestDto.getSize();
+        String fingerprint = fingerprint(requestDto);
+        CompletableFuture<SearchCursor> cursorFuture;
+        boolean reusedPit = false;
+        if (StringUtils.isNotBlank(requestDto.getCursor())) {
+            SearchCursor cursor = decodeCursor(requestDto.getCursor());
+            if (cursor == null || !fingerprint.equals(cursor.fingerprint())) {
+                log.warn("无效的全文搜索游标，或游标与当前查询条件不一致。");
+                FulltextSearchPageDto page = new FulltextSearchPageDto(new ArrayList<>(), requestDto.getPage(), size, 0L);
+                page.setMessage("游标无效或与当前查询条件不一致，请重新搜索。");
+                return CompletableFuture.completedFuture(page);
+            }
+            cursorFuture = CompletableFuture.completedFuture(cursor);
+        } else if (StringUtils.isNotBlank(requestDto.getPitId())) {
+            reusedPit = true;
+            cursorFuture = CompletableFuture.completedFuture(new SearchCursor(requestDto.getPitId(), 1, null, fingerprint));
+        } else {
+            cursorFuture = openPointInTime(indexName, fingerprint);
+        }
+
+        CompletableFuture<FulltextSearchPageDto> pageFuture = cursorFuture
+                .thenCompose(cursor -> searchCursorPage(requestDto, cursor, fingerprint));
+        if (reusedPit) {
+            pageFuture = pageFuture.exceptionallyCompose(ex -> {
+                if (!isPointInTimeMissing(ex)) {
+                    return CompletableFuture.failedFuture(ex);
+                }
+                log.debug("调用方传入的 point-in-time 已失效，打开新的 point-in-time。");
+                return openPointInTime(indexName, fingerprint)
+                        .thenCompose(cursor -> searchCursorPage(requestDto, cursor, fingerprint));
+            });
+        }
+        // 游标中的 PIT 超过保持时间后会被释放 (返回 404)，用同一游标重试仍会失败，提示调用方重新发起第一页查询
+        return pageFuture.exceptionally(ex -> {
+            if (isPointInTimeMissing(ex)) {
+                log.debug("全文搜索游标中的 point-in-time 已过期。");
+                FulltextSearchPageDto page = new FulltextSearchPageDto(new ArrayList<>(), requestDto.getPage(), size, 0L);
+                page.setMessage("游标已过期，请重新搜索。");
+                return page;
+            }
+            return degradedPage(requestDto, ex);
+        });
+    }
+
+    private CompletableFuture<SearchCursor> openPointInTime(String indexName, String fingerprint) {
+        return searchGuard.execute(() -> elasticsearchAsyncClient.openPointInTime(o -> o
+                        .index(indexName)
+                        .keepAlive(t -> t.time(elasticsearchProperties.getPitKeepAlive()))))
+                .thenApply(OpenPointInTimeResponse::id)
+                .thenApply(pitId -> new SearchCursor(pitId, 1, null, fingerprint));
+    }
+
+    private CompletableFuture<FulltextSearchPageDto> searchCursorPage(FulltextSearchRequestDto requestDto, SearchCursor cursor,
+                                                                      String fingerprint) {
+        SearchRequest searchRequest = buildCursorSearchRequest(requestDto, cursor);
+        return searchGuard.execute(() -> elasticsearchAsyncClient.search(searchRequest, FulltextDocument.class))
+                .thenApply(response -> toCursorPage(response, cursor, requestDto.getSize(), fingerprint));
+    }
+
+    private boolean isPointInTimeMissing(Throwable ex) {
+        return ElasticsearchSearchGuard.unwrap(ex) instanceof ElasticsearchException esException
+                && esException.status() == 404;
+    }
+
+    private SearchRequest buildCursorSearchRequest(FulltextSearchRequestDto requestDto, SearchCursor cursor) {
+        SearchRequest.Builder searchRequestBuilder = new SearchRequest.Builder();
+        // PIT 请求不能再指定索引，索引由 PIT 决定
+        searchRequestBuilder.pit(p -> p
+                .id(cursor.pitId())
+                .keepAlive(t -> t.time(elasticsearchProperties.getPitKeepAlive())));
+        buildQuery(searchRequestBuilder, requestDto.getQuery(), requestDto.getFilters());
+        searchRequestBuilder.size(requestDto.getSize());
+        buildSourceFilter(searchRequestBuilder);
+        if (!buildSort(searchRequestBuilder, requestDto.getSortBy())) {
+            // 相关度排序也需要显式声明，才能和决胜字段组合成稳定的排序
+            searchRequestBuilder.sort(s -> s.score(sc -> sc.order(SortOrder.Desc)));
+        }
+        searchRequestBuilder.sort(s -> s.field(f -> f.field(ES_FIELD_SHARD_DOC).order(SortOrder.Asc)));
+        if (cursor.searchAfter() != null) {
+            searchRequestBuilder.searchAfter(cursor.searchAfter().stream().map(this::toFieldValue).toList());
+        }
+        buildHighlight(searchRequestBuilder, requestDto.getQuery());
+        // 分面统计与翻页无关，游标分页只在第一页计算
+        if (requestDto.isIncludeFacets() && cursor.searchAfter() == null) {
+            buildAggregations(searchRequestBuilder);
+        }
+        return searchRequestBuilder.build();
+    }
+
+    private FulltextSearchPageDto toCursorPage(SearchResponse<FulltextDocument> response, SearchCursor cursor,
+                                                         int size, String fingerprint) {
+        FulltextSearchPageDto page = parseSearchResponse(response, cursor.page(), size);
+        List<Hit<FulltextDocument>> hits = response.hits().hits();
+        // PIT ID 在每次搜索后可能变化，后续请求应使用最新返回的 ID
+        String pitId = StringUtils.isNotBlank(response.pitId()) ? response.pitId() : cursor.pitId();
+        if (hits.size() == size) {
+            List<Object> searchAfter = hits.get(hits.size() - 1).sort().stream().map(this::fromFieldValue).toList();
+            page.setNextCursor(encodeCursor(new SearchCursor(pitId, cursor.page() + 1, searchAfter, fingerprint)));
+            page.setPitId(pitId);
+            page.setLast(false);
+        } else {
+            // 最后一页后关闭 PIT，不再返回 pitId，之后的新查询会打开新的 PIT
+            page.setLast(true);
+            closePointInTime(pitId);
+        }
+        return page;
+    }
+
+    private void closePointInTime(String pitId) {
+        // PIT 到期后也会被自动释放，关闭失败不影响结果
+        elasticsearchAsyncClient.closePointInTime(c -> c.id(pitId))
+                .whenComplete((response, ex) -> {
+                    if (ex != null) {
+                        log.debug("关闭 point-in-time 失败: {}", ex.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * 查询条件和排序方式的指纹，防止游标被用于与第一页不同的查询。
+     */
+    private String fingerprint(FulltextSearchRequestDto requestDto) {
+        return Integer.toHexString(Objects.hash(requestDto.getQuery(), requestDto.getFilters(),
+                requestDto.getSortBy(), requestDto.getSize()));
+    }
+
+    private String encodeCursor(SearchCursor cursor) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(cursor));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private SearchCursor decodeCursor(String token) {
         try {
-            SearchResponse<Map> response = elasticsearchClient.search(esSearchRequest, Map.class);
-            return parseSearchResponse(response, requestDto.getPage(), requestDto.getSize());
-        } catch (IOException e) {
-            log.error("执行 Elasticsearch 搜索时发生 IO 异常: {}", e.getMessage(), e);
-            return new PageDto<>(new ArrayList<>(), requestDto.getPage(), requestDto.getSize(), 0L);
-        } catch (Exception e) {
-            log.error("执行 Elasticsearch 搜索时发生未知异常: {}", e.getMessage(), e);
-            return new PageDto<>(new ArrayList<>(), requestDto.getPage(), requestDto.getSize(), 0L);
+            return objectMapper.readValue(Base64.getUrlDecoder().decode(token.getBytes(StandardCharsets.US_ASCII)), SearchCursor.class);
+        } catch (IllegalArgumentException | IOException e) {
+            log.debug("解析全文搜索游标失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Object fromFieldValue(FieldValue value) {
+        return value.isNull() ? null : value._get();
+    }
+
+    private FieldValue toFieldValue(Object value) {
+        if (value == null) {
+            return FieldValue.NULL;
+        }
+        if (value instanceof Integer || value instanceof Long) {
+            return FieldValue.of(((Number) value).longValue());
         }
+        if (value instanceof Number number) {
+            return FieldValue.of(number.doubleValue());
+        }
+        if (value instanceof Boolean bool) {
+            return FieldValue.of(bool);
+        }
+        return FieldValue.of(value.toString());
+    }
+
+    /**
+     * 游标内容，序列化为 JSON 后以 Base64 (URL 安全) 编码返回给调用方。
+     *
+     * @param pitId       point-in-time ID
+     * @param page        游标指向的页码 (仅用于展示)
+     * @param searchAfter 上一页最后一条命中的排序值，第一页为 null
+     * @param fingerprint 查询条件指纹
+     */
+    record SearchCursor(String pitId, int page, List<Object> searchAfter, String fingerprint) {
     }
 
     private void buildQuery(SearchRequest.Builder searchRequestBuilder, String queryText, FulltextSearchRequestDto.Filters filters) {
@@ -125,47 +431,15 @@ public class FulltextSearchServiceImpl implements FulltextSearchService {
                     // 2. 构建 filter 子句，用于精确匹配和范围查询，不影响评分，性能更高
                     if (filters != null) {
 
-                        // --- 关键修复：使用 script 查询替代 regexp 查询，以最可靠的方式实现文件类型筛选 ---
+                        // 文件类型筛选：extension 是索引时写入的 keyword 字段，terms 查询直接走倒排索引，
+                        // 不再对每个候选文档加载 _source 并执行脚本。存量文档回填完成前可通过配置临时退回脚本方式。
                         if (filters.getFileTypes() != null && !filters.getFileTypes().isEmpty()) {
-                            // 为所有文件类型创建一个 should 列表，它们之间是 OR 的关系
-                            Query fileTypeQuery = Query.of(queryBuilder -> queryBuilder
-                                    .bool(shouldBool -> {
-                                        for (String fileType : filters.getFileTypes()) {
-                                            // Painless 脚本，用于检查字段是否以指定后缀结尾（不区分大小写）
-//                                            String scriptCode = "doc['" + ES_FIELD_FILENAME + ".keyword'].value.toLowerCase().endsWith(params.suffix)";
-
-                                            // Painless 脚本，用于检查 _source 中的字段是否以指定后缀结尾（不区分大小写）
-                                            // ctx._source 允许我们直接访问原始文档内容
-                                            // 先检查字段是否存在，避免 NullPointerException
-                                            // Painless 脚本。在查询脚本中，应使用 `params._source` 来访问原始文档。
-                                            // 'ctx' 变量是用于更新脚本的。
-                                            // 我们还加入了对字段存在性和类型的检查，以增加脚本的健壮性。
-                                            String scriptCode =
-                                                    "if (params._source.containsKey('" + ES_FIELD_FILENAME + "') && params._source['" + ES_FIELD_FILENAME + "'] instanceof String) { " +
-                                                            "    return params._source['" + ES_FIELD_FILENAME + "'].toLowerCase().endsWith(params.suffix);" +
-                                                            "} else { " +
-                                                            "    return false;" +
-                                                            "}";
-
-                                            // --- 正确的脚本构建方式 (ES Client 8.15.0+) ---
-                                            // 在新版本中，不再有 InlineScript 类和 .inline() 方法。
-                                            // 直接在 Script.Builder 上设置 source 和 params 来创建内联脚本。
-                                            Script script = new Script.Builder()
-                                                    .source(scriptCode)
-                                                    .params("suffix", JsonData.of("." + fileType.toLowerCase()))
-                                                    .lang("painless") // 可选，因为 "painless" 是默认语言
-                                                    .build();
-
-                                            // 在 should 子句中使用最终的 Script 对象
-                                            shouldBool.should(s -> s.script(sc -> sc.script(script)));
-                                        }
-                                        // 至少需要匹配一个 "should" 子句才算命中
-                                        shouldBool.minimumShouldMatch("1");
-                                        return shouldBool;
-                                    })
-                            );
-                            // 将这个包含多个脚本查询的 bool 查询作为 filter 添加到主查询中
-                            b.filter(fileTypeQuery);
+                            List<String> extensions = FileTypeFilterQueries.normalize(filters.getFileTypes());
+                            if (!extensions.isEmpty()) {
+                                b.filter(elasticsearchProperties.isExtensionFieldEnabled()
+                                        ? FileTypeFilterQueries.terms(extensions)
+                                        : FileTypeFilterQueries.legacyScript(extensions));
+                            }
                         }
 
                         // --- 使用您验证过的正确日期范围筛选代码 ---
@@ -216,9 +490,12 @@ public class FulltextSearchServiceImpl implements FulltextSearchService {
         );
     }
 
-    private void buildSort(SearchRequest.Builder searchRequestBuilder, String sortBy) {
+    /**
+     * @return 是否添加了字段排序 (false 表示按相关度排序)
+     */
+    private boolean buildSort(SearchRequest.Builder searchRequestBuilder, String sortBy) {
         if (StringUtils.isBlank(sortBy) || "relevance".equalsIgnoreCase(sortBy)) {
-            return;
+            return false;
         }
         switch (sortBy.toLowerCase()) {
             case "modifieddate_desc":
@@ -235,24 +512,82 @@ public class FulltextSearchServiceImpl implements FulltextSearchService {
                 break;
             default:
                 log.warn("不支持的排序方式: '{}'，将使用默认相关度排序。", sortBy);
+                return false;
         }
+        return true;
+    }
+
+    /**
+     * 只取回结果列表展示的字段。content 可能有数 MB，不再随每条命中返回；
+     * 高亮片段由 Elasticsearch 在服务端生成，不依赖返回的 _source。
+     */
+    private void buildSourceFilter(SearchRequest.Builder searchRequestBuilder) {
+        searchRequestBuilder.source(s -> s.filter(f -> f.includes(FulltextDocument.SOURCE_FIELDS)));
+    }
+
+    /**
+     * 分面统计：扩展名 terms、顶层目录 terms 和按月的修改日期直方图，与搜索在同一次请求中计算。
+     * 扩展名与文件类型筛选一致：extension 字段启用后使用索引字段，回填前 (存量文档没有该字段) 使用从 filename.keyword 计算的运行时字段。
+     */
+    private void buildAggregations(SearchRequest.Builder searchRequestBuilder) {
+        boolean extensionFieldEnabled = elasticsearchProperties.isExtensionFieldEnabled();
+        String fileTypeField = extensionFieldEnabled ? FileTypeFilterQueries.ES_FIELD_EXTENSION : RUNTIME_FIELD_FILE_EXTENSION;
+        if (!extensionFieldEnabled) {
+            searchRequestBuilder.runtimeMappings(RUNTIME_FIELD_FILE_EXTENSION, r -> r
+                    .type(RuntimeFieldType.Keyword)
+                    .script(sc -> sc.source(FILE_EXTENSION_SCRIPT)));
+        }
+        searchRequestBuilder
+                .runtimeMappings(RUNTIME_FIELD_TOP_DIRECTORY, r -> r
+                        .type(RuntimeFieldType.Keyword)
+                        .script(sc -> sc.source(TOP_DIRECTORY_SCRIPT)))
+                .runtimeMappings(RUNTIME_FIELD_MODIFIED_AT, r -> r
+                        .type(RuntimeFieldType.Date)
+                        .script(sc -> sc.source(MODIFIED_AT_SCRIPT)))
+                .aggregations(AGG_FILE_TYPES, a -> a.terms(t -> t
+                        .field(fileTypeField)
+                        .size(FACET_SIZE)))
+                .aggregations(AGG_DIRECTORIES, a -> a.terms(t -> t
+                        .field(RUNTIME_FIELD_TOP_DIRECTORY)
+                        .size(FACET_SIZE)))
+                .aggregations(AGG_MODIFIED_MONTHS, a -> a.dateHistogram(d -> d
+                        .field(RUNTIME_FIELD_MODIFIED_AT)
+                        .calendarInterval(CalendarInterval.Month)
+                        .format("yyyy-MM")
+                        .minDocCount(1)));
+    }
+
+    private FulltextSearchFacetsDto parseFacets(Map<String, Aggregate> aggregations) {
+        FulltextSearchFacetsDto facets = new FulltextSearchFacetsDto();
+        facets.setFileTypes(parseTermsBuckets(aggregations.get(AGG_FILE_TYPES)));
+        facets.setDirectories(parseTermsBuckets(aggregations.get(AGG_DIRECTORIES)));
+        Aggregate months = aggregations.get(AGG_MODIFIED_MONTHS);
+        if (months != null && months.isDateHistogram()) {
+            months.dateHistogram().buckets().array().forEach(bucket -> facets.getModifiedMonths().add(
+                    new FulltextSearchFacetsDto.Bucket(bucket.keyAsString(), bucket.docCount())));
+        }
+        return facets;
+    }
+
+    private List<FulltextSearchFacetsDto.Bucket> parseTermsBuckets(Aggregate aggregate) {
+        List<FulltextSearchFacetsDto.Bucket> buckets = new ArrayList<>();
+        // 字段尚未映射 (例如 extension 回填前) 时返回 unmapped terms 聚合，没有桶
+        if (aggregate != null && aggregate.isSterms()) {
+            aggregate.sterms().buckets().array().forEach(bucket -> buckets.add(
+                    new FulltextSearchFacetsDto.Bucket(bucket.key().stringValue(), bucket.docCount())));
+        }
+        return buckets;
     }
 
     private void buildHighlight(SearchRequest.Builder searchRequestBuilder, String queryText) {
         if (StringUtils.isNotBlank(queryText)) {
-            searchRequestBuilder.highlight(h -> h
-                    .fields(ES_FIELD_CONTENT, hf -> hf
-                            .preTags("<mark>")
-                            .postTags("</mark>")
-                            .numberOfFragments(5)
-                            .fragmentSize(200)
-                    )
-            );
+            searchRequestBuilder.highlight(ContentHighlights.build(elasticsearchProperties.isHighlightOffsetsEnabled(),
+                    elasticsearchProperties.getHighlightMaxAnalyzedOffset()));
         }
     }
 
 
-    private PageDto<FulltextSearchResultDto> parseSearchResponse(SearchResponse<Map> response, int requestPage, int requestSize) {
+    private FulltextSearchPageDto parseSearchResponse(SearchResponse<FulltextDocument> response, int requestPage, int requestSize) {
         List<FulltextSearchResultDto> results = new ArrayList<>();
         TotalHits totalHits = response.hits().total();
         long totalElements = (totalHits != null) ? totalHits.value() : 0;
@@ -261,7 +596,7 @@ public class FulltextSearchServiceImpl implements FulltextSearchService {
             log.debug("第一条搜索结果的 _source 内容: {}", response.hits().hits().get(0).source());
         }
 
-        for (Hit<Map> hit : response.hits().hits()) {
+        for (Hit<FulltextDocument> hit : response.hits().hits()) {
             FulltextSearchResultDto dto = new FulltextSearchResultDto();
             dto.setId(hit.id());
             if (hit.score() != null) {
@@ -270,17 +605,13 @@ public class FulltextSearchServiceImpl implements FulltextSearchService {
                 dto.setScore(0.0d);
             }
 
-            Map<String, Object> source = hit.source();
+            FulltextDocument source = hit.source();
             if (source != null) {
-                dto.setSourceFilename((String) source.get(ES_FIELD_FILENAME));
-                dto.setSourceRelativePath((String) source.get(ES_FIELD_RELATIVE_PATH));
+                dto.setSourceFilename(source.getFilename());
+                dto.setSourceRelativePath(source.getSourcePath());
+                dto.setFileSize(source.getFileSizeBytes());
 
-                Object fileSizeObj = source.get(ES_FIELD_FILE_SIZE);
-                if (fileSizeObj instanceof Number) {
-                    dto.setFileSize(((Number) fileSizeObj).longValue());
-                }
-
-                Object lastModifiedObj = source.get(ES_FIELD_LAST_MODIFIED);
+                Object lastModifiedObj = source.getLastModified();
                 if (lastModifiedObj instanceof Number) {
                     long epochSeconds = ((Number) lastModifiedObj).longValue();
                     dto.setLastModifiedDate(
@@ -293,19 +624,23 @@ public class FulltextSearchServiceImpl implements FulltextSearchService {
                 }
             }
 
-            Map<String, List<String>> highlightFields = hit.highlight();
-            if (highlightFields != null && highlightFields.containsKey(ES_FIELD_CONTENT)) {
-                dto.setMatchedParagraph(String.join(" ... ", highlightFields.get(ES_FIELD_CONTENT)));
-            } else if (source != null && source.containsKey(ES_FIELD_CONTENT)) {
-                String originalContent = (String) source.get(ES_FIELD_CONTENT);
-                dto.setMatchedParagraph(StringUtils.isNotBlank(originalContent) ?
-                        (originalContent.length() > 200 ? originalContent.substring(0, 200) + "..." : originalContent)
-                        : "无内容摘要。");
+            List<String> fragments = ContentHighlights.fragments(hit.highlight());
+            if (fragments != null && !fragments.isEmpty()) {
+                dto.setMatchedParagraph(String.join(" ... ", fragments));
+            } else if (source != null && StringUtils.isNotBlank(source.getSummary())) {
+                String summary = source.getSummary();
+                // summary 多存了一个字符，超过 SUMMARY_LENGTH 才说明正文被截断
+                dto.setMatchedParagraph(summary.length() > FulltextIndexMaintenanceServiceImpl.SUMMARY_LENGTH
+                        ? summary.substring(0, FulltextIndexMaintenanceServiceImpl.SUMMARY_LENGTH) + "..." : summary);
             } else {
-                dto.setMatchedParagraph("无匹配内容段落。");
+                dto.setMatchedParagraph("无内容摘要。");
             }
             results.add(dto);
         }
-        return new PageDto<>(results, requestPage, requestSize, totalElements);
+        FulltextSearchPageDto page = new FulltextSearchPageDto(results, requestPage, requestSize, totalElements);
+        if (response.aggregations() != null && !response.aggregations().isEmpty()) {
+            page.setFacets(parseFacets(response.aggregations()));
+        }
+        return page;
     }
 }
@@ -0,0 +1,32 @@
+/**
+ * 目录: src/main/java/org/ls/service/impl/PassThroughFileTransformer.java
+ * 文件名: PassThroughFileTransformer.java
+ * 开发时间: 2026-10-19 15:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 默认转换器，不修改文件内容，直接把临时文件移动到目标位置 (与引入转换阶段之前的行为一致)。
+ */
+package org.ls.service.impl;
+
+import org.ls.service.FileTransformer;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+@Component
+public class PassThroughFileTransformer implements FileTransformer {
+
+    public static final String NAME = "none";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void transform(Path input, Path output) throws IOException {
+        Files.move(input, output, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * 目录: src/main/java/org/ls/service/impl/TikaTextExtractor.java
+ * 文件名: TikaTextExtractor.java
+ * 开发时间: 2026-10-19 19:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 使用 Apache Tika 从目标文件 (PDF、Office 文档、纯文本等) 中抽取正文和标题，供内置索引服务使用。
+ * 本次更新: 抽取在固定大小的工作线程池中并行执行，按文件大小、耗时和字符数限制单个文件的开销，
+ * 正文以流的方式按固定字符数切分为多个片段。
+ * 本次更新: 抽取超时从工作线程开始处理文件时计时，在队列中等待的文件不再提前超时。
+ */
+package org.ls.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.exception.WriteLimitReachedException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.apache.tika.sax.WriteOutContentHandler;
+import org.ls.config.properties.IndexerProperties;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Component
+@Slf4j
+public class TikaTextExtractor {
+
+    private final Parser parser = new AutoDetectParser();
+    private final IndexerProperties properties;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService timeoutTimer;
+    private final int workerCount;
+
+    public TikaTextExtractor(IndexerProperties properties) {
+        this.properties = properties;
+        this.workerCount = properties.getExtractWorkers() > 0
+                ? properties.getExtractWorkers() : Runtime.getRuntime().availableProcessors();
+        this.workers = Executors.newFixedThreadPool(workerCount, new CustomizableThreadFactory("TextExtractWorker-"));
+        this.timeoutTimer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("TextExtractTimeout-"));
+    }
+
+    /**
+     * 在工作线程池中抽取文件的正文和标题。
+     * <ul>
+     *     <li>超过 max-extract-file-bytes 的文件不解析，返回空正文 (仍可按元数据索引)；</li>
+     *     <li>从工作线程开始解析起超过 extract-timeout-millis 时中断解析并以 {@link TimeoutException} 完成
+     *     (在队列中等待的时间不计入)；</li>
+     *     <li>正文超过 max-content-chars 时截断，已抽取的部分保留。</li>
+     * </ul>
+     *
+     * @param file 文件路径
+     * @return 抽取结果；读取或解析失败时以 IOException 完成
+     */
+    public CompletableFuture<ExtractedText> extractAsync(Path file) {
+        CompletableFuture<ExtractedText> result = new CompletableFuture<>();
+        workers.execute(() -> {
+            // 超时在工作线程开始处理时才计时，超时后中断工作线程，避免单个异常文件长期占用线程
+            Thread worker = Thread.currentThread();
+            Object lock = new Object();
+            boolean[] finished = {false};
+            ScheduledFuture<?> deadline = timeoutTimer.schedule(() -> {
+                synchronized (lock) {
+                    if (!finished[0] && result.completeExceptionally(new TimeoutException("抽取文件 " + file + " 的文本超时"))) {
+                        worker.interrupt();
+                    }
+                }
+            }, properties.getExtractTimeoutMillis(), TimeUnit.MILLISECONDS);
+            try {
+                result.complete(extract(file));
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            } finally {
+                synchronized (lock) {
+                    finished[0] = true;
+                    deadline.cancel(false);
+                }
+                // 清除超时设置的中断标记，工作线程继续处理下一个文件
+                Thread.interrupted();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 在当前线程中抽取文件的正文和标题 (限制同 {@link #extractAsync(Path)}，但不限制耗时)。
+     *
+     * @param file 文件路径
+     * @return 抽取结果
+     * @throws IOException 读取或解析失败
+     */
+    public ExtractedText extract(Path file) throws IOException {
+        long size = Files.size(file);
+        if (size > properties.getMaxExtractFileBytes()) {
+            log.info("文件 {} 大小 {} 字节超过抽取上限 {} 字节，仅索引元数据。", file, size, properties.getMaxExtractFileBytes());
+            return new ExtractedText(List.of(), null, false, true);
+        }
+
+        Metadata metadata = new Metadata();
+        ChunkWriter writer = new ChunkWriter(properties.getContentChunkChars());
+        boolean truncated = false;
+        try (TikaInputStream in = TikaInputStream.get(file, metadata)) {
+            // 正文直接写入分片，不在内存中拼接完整字符串；达到字符上限时 Tika 抛出 WriteLimitReachedException 停止解析
+            BodyContentHandler handler = new BodyContentHandler(new WriteOutContentHandler(writer, properties.getMaxContentChars()));
+            parser.parse(in, handler, metadata, new ParseContext());
+        } catch (SAXException e) {
+            if (!WriteLimitReachedException.isWriteLimitReached(e)) {
+                throw new IOException("解析文件 " + file + " 失败: " + e.getMessage(), e);
+            }
+            truncated = true;
+        } catch (TikaException e) {
+            throw new IOException("解析文件 " + file + " 失败: " + e.getMessage(), e);
+        }
+        return new ExtractedText(writer.finish(), metadata.get(TikaCoreProperties.TITLE), truncated, false);
+    }
+
+    /**
+     * @return 抽取工作线程数
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+        timeoutTimer.shutdownNow();
+    }
+
+    /**
+     * 抽取结果。
+     *
+     * @param chunks    按固定字符数切分的正文片段，没有正文时为空列表
+     * @param title     文档元数据中的标题，没有时为 null
+     * @param truncated 正文是否因超过字符上限被截断
+     * @param oversized 文件是否因超过大小上限未被解析
+     */
+    public record ExtractedText(List<String> chunks, String title, boolean truncated, boolean oversized) {
+    }
+
+    /**
+     * 把写入的字符按固定长度切分为片段。
+     */
+    private static class ChunkWriter extends Writer {
+
+        private final int chunkChars;
+        private final List<String> chunks = new ArrayList<>();
+        private final StringBuilder current;
+
+        ChunkWriter(int chunkChars) {
+            this.chunkChars = Math.max(1, chunkChars);
+            this.current = new StringBuilder(Math.min(this.chunkChars, 8192));
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            if (Thread.currentThread().isInterrupted()) {
+                // 解析器本身不响应中断时，在写出正文时检查，及时结束超时的任务
+                throw new UncheckedIOException(new IOException("文本抽取已超时被取消"));
+            }
+            while (length > 0) {
+                int count = Math.min(length, chunkChars - current.length());
+                current.append(buffer, offset, count);
+                offset += count;
+                length -= count;
+                if (current.length() == chunkChars) {
+                    chunks.add(current.toString());
+                    current.setLength(0);
+                }
+            }
+        }
+
+        List<String> finish() {
+            if (!current.isEmpty()) {
+                chunks.add(current.toString());
+                current.setLength(0);
+            }
+            return chunks;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
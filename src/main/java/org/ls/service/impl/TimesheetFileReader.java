@@ -0,0 +1,158 @@
+/**
+ * 目录: src/main/java/org/ls/service/impl/TimesheetFileReader.java
+ * 文件名: TimesheetFileReader.java
+ * 开发时间: 2026-10-19 21:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 工时导入文件的流式读取。XLSX 使用 POI 的 SAX 事件模式逐行读取第一个工作表，CSV 使用 commons-csv 逐条读取，
+ * 不构建整个工作簿对象，内存占用与行数无关 (XLSX 的共享字符串表除外)。
+ * 本次更新: XLSX 中非日期的数值单元格按原始值读取，不再按显示格式四舍五入。
+ */
+package org.ls.service.impl;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+
+final class TimesheetFileReader {
+
+    /**
+     * 每行读取的列数，与导入模板的列数一致，多余的列被忽略。
+     */
+    static final int COLUMN_COUNT = 18;
+
+    /**
+     * 逐行回调。
+     */
+    @FunctionalInterface
+    interface RowHandler {
+        /**
+         * @param rowIndex 行号 (从 0 开始，表头为第 0 行)
+         * @param cells    长度为 {@link #COLUMN_COUNT} 的单元格文本，空单元格为 null
+         */
+        void row(int rowIndex, String[] cells);
+    }
+
+    private TimesheetFileReader() {
+    }
+
+    /**
+     * 以 SAX 事件模式读取 XLSX 文件的第一个工作表。
+     * 日期格式的单元格统一输出为 yyyy-MM-dd，其他单元格输出 Excel 中显示的文本。
+     */
+    static void readXlsx(Path file, RowHandler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                throw new IOException("工作簿中没有工作表");
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings,
+                        new SheetRowCollector(handler), new IsoDateDataFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("解析 XLSX 文件失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 逐条读取 CSV 文件 (RFC 4180，允许带引号的字段中包含逗号和换行)，忽略 UTF-8 BOM。
+     */
+    static void readCsv(Path file, Charset charset, RowHandler handler) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, charset);
+             CSVParser parser = CSVFormat.DEFAULT.parse(reader)) {
+            for (CSVRecord record : parser) {
+                String[] cells = new String[COLUMN_COUNT];
+                for (int i = 0; i < Math.min(record.size(), COLUMN_COUNT); i++) {
+                    String value = record.get(i);
+                    if (i == 0 && record.getRecordNumber() == 1 && value.startsWith("\uFEFF")) {
+                        value = value.substring(1);
+                    }
+                    cells[i] = value.isEmpty() ? null : value;
+                }
+                handler.row((int) (record.getRecordNumber() - 1), cells);
+            }
+        }
+    }
+
+    /**
+     * 把 SAX 单元格事件组装成行。没有任何单元格的行不会触发回调。
+     */
+    private static final class SheetRowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final RowHandler handler;
+        private String[] cells;
+        private int nextColumn;
+
+        SheetRowCollector(RowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells = new String[COLUMN_COUNT];
+            nextColumn = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (Arrays.stream(cells).anyMatch(cell -> cell != null)) {
+                handler.row(rowNum, cells);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference != null ? new CellReference(cellReference).getCol() : nextColumn;
+            nextColumn = column + 1;
+            if (column < COLUMN_COUNT && formattedValue != null && !formattedValue.isEmpty()) {
+                cells[column] = formattedValue;
+            }
+        }
+    }
+
+    /**
+     * 日期格式的数值单元格输出 ISO 日期 (yyyy-MM-dd)，避免受单元格显示格式 (如 "m/d/yy") 影响；
+     * 其他数值单元格输出原始值 (如 7.75)，避免按显示格式 (如 "0.0") 四舍五入后导入工时、人月等数值。
+     */
+    private static final class IsoDateDataFormatter extends DataFormatter {
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return DateUtil.getLocalDateTime(value, use1904Windowing).toLocalDate().toString();
+            }
+            return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+        }
+    }
+}
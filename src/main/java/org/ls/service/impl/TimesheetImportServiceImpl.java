@@ -0,0 +1,458 @@
+/**
+ * 目录: src/main/java/org/ls/service/impl/TimesheetImportServiceImpl.java
+ * 文件名: TimesheetImportServiceImpl.java
+ * 开发时间: 2026-10-19 21:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: TimesheetImportService 接口的实现类。上传文件落盘后由后台线程流式读取，逐行解析校验，
+ * 每满 timesheet.import.chunk-size 行调用 TimesheetService.batchAddTimesheets (或 upsert 模式下的 upsertTimesheets)
+ * 写入一次，并记录进度和失败行。
+ * 本次更新: 导入结束后有新增或更新的行时自动执行维度数据同步 (SyncService.syncAll)，可通过 timesheet.import.sync-dimensions 关闭。
+ * 本次更新: 维度同步在任务结束之前执行，任务状态变为完成时维表已更新；同步入口供批量新增、批量 upsert 接口共用。
+ */
+package org.ls.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.ls.config.properties.TimesheetImportProperties;
+import org.ls.dto.BatchInsertResult;
+import org.ls.dto.SyncResult;
+import org.ls.dto.TimesheetImportJobDto;
+import org.ls.dto.TimesheetUpsertSummary;
+import org.ls.entity.TimesheetWork;
+import org.ls.service.SyncService;
+import org.ls.service.TimesheetImportService;
+import org.ls.service.TimesheetService;
+import org.ls.utils.FileExtensionUtils;
+import org.ls.utils.StringUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@Slf4j
+public class TimesheetImportServiceImpl implements TimesheetImportService {
+
+    private static final String FORMAT_XLSX = "xlsx";
+    private static final String FORMAT_CSV = "csv";
+
+    /**
+     * 导入模板各列的名称 (与页面导入模板的列顺序一致)，用于错误提示
+     */
+    private static final String[] COLUMN_LABELS = {
+            "工时申请单号", "工时区间", "员工", "部门", "实际填报工时部门", "申请状态", "财务年月", "自然年月", "工时日期",
+            "工时小时数", "人月数", "项目编码", "工时编码", "工时名称", "利润中心", "支持工时编码", "支持工时名称", "工时备注"
+    };
+    /**
+     * 必填列的下标: tsId, tr, employee, dep, tsStatus, tsYm, natureYm, tsDate, tsHours, tsMonth, tsBm
+     */
+    private static final int[] REQUIRED_COLUMNS = {0, 1, 2, 3, 5, 6, 7, 8, 9, 10, 12};
+    private static final DateTimeFormatter FLEXIBLE_DATE = DateTimeFormatter.ofPattern("yyyy-M-d");
+
+    private final TimesheetService timesheetService;
+    private final SyncService syncService;
+    private final TimesheetImportProperties properties;
+    private final ExecutorService executor;
+    private final Cache<String, ImportJob> jobs;
+
+    public TimesheetImportServiceImpl(TimesheetService timesheetService, SyncService syncService,
+                                      TimesheetImportProperties properties) {
+        this.timesheetService = timesheetService;
+        this.syncService = syncService;
+        this.properties = properties;
+        int workers = Math.max(1, properties.getWorkers());
+        this.executor = Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("TimesheetImport-"));
+        long retentionNanos = Duration.ofMinutes(properties.getJobRetentionMinutes()).toNanos();
+        // 未结束的任务不过期；任务结束时重新写入缓存，从结束时刻开始计算保留时间
+        this.jobs = Caffeine.newBuilder()
+                .expireAfter(new Expiry<String, ImportJob>() {
+                    @Override
+                    public long expireAfterCreate(String key, ImportJob job, long currentTime) {
+                        return job.isFinished() ? retentionNanos : Long.MAX_VALUE;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, ImportJob job, long currentTime, long currentDuration) {
+                        return job.isFinished() ? retentionNanos : Long.MAX_VALUE;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, ImportJob job, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        log.info("工时文件导入服务初始化完成。并行任务数: {}, 每批行数: {}", workers, properties.getChunkSize());
+    }
+
+    @Override
+    public TimesheetImportJobDto submit(MultipartFile file, String charset, String mode) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("上传的文件为空");
+        }
+        String fileName = StringUtils.isNotBlank(file.getOriginalFilename()) ? file.getOriginalFilename() : "upload";
+        String format = FileExtensionUtils.getExtension(fileName);
+        if ("xls".equals(format)) {
+            throw new IllegalArgumentException("不支持旧版 .xls 格式，请在 Excel 中另存为 .xlsx 或 .csv 后上传");
+        }
+        if (!FORMAT_XLSX.equals(format) && !FORMAT_CSV.equals(format)) {
+            throw new IllegalArgumentException("不支持的文件类型，请上传 .xlsx 或 .csv 文件");
+        }
+        Charset csvCharset = resolveCharset(charset);
+        boolean upsert;
+        if (StringUtils.isBlank(mode) || TimesheetImportJobDto.MODE_INSERT.equalsIgnoreCase(mode.trim())) {
+            upsert = false;
+        } else if (TimesheetImportJobDto.MODE_UPSERT.equalsIgnoreCase(mode.trim())) {
+            upsert = true;
+        } else {
+            throw new IllegalArgumentException("不支持的导入模式: " + mode + "，可选值: insert、upsert");
+        }
+
+        // 请求结束后 Servlet 容器会删除上传的临时文件，先转存到自己的临时文件再交给后台线程
+        Path tempDir = StringUtils.isNotBlank(properties.getTempDir())
+                ? Files.createDirectories(Paths.get(properties.getTempDir()))
+                : Paths.get(System.getProperty("java.io.tmpdir"));
+        Path tempFile = Files.createTempFile(tempDir, "timesheet-import-", "." + format);
+        try {
+            file.transferTo(tempFile);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), fileName, file.getSize(), upsert);
+        jobs.put(job.jobId, job);
+        try {
+            executor.execute(() -> runImport(job, tempFile, format, csvCharset));
+        } catch (RejectedExecutionException e) {
+            jobs.invalidate(job.jobId);
+            Files.deleteIfExists(tempFile);
+            throw new IllegalStateException("导入服务正在关闭，无法提交任务", e);
+        }
+        log.info("已提交工时导入任务 {}: 文件 {} ({} 字节)，模式: {}", job.jobId, fileName, file.getSize(),
+                upsert ? TimesheetImportJobDto.MODE_UPSERT : TimesheetImportJobDto.MODE_INSERT);
+        return job.snapshot(properties.getMaxErrors());
+    }
+
+    @Override
+    public TimesheetImportJobDto getJob(String jobId) {
+        ImportJob job = jobs.getIfPresent(jobId);
+        return job != null ? job.snapshot(properties.getMaxErrors()) : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static Charset resolveCharset(String charset) {
+        if (StringUtils.isBlank(charset)) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(charset.trim());
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            throw new IllegalArgumentException("不支持的字符集: " + charset);
+        }
+    }
+
+    private void runImport(ImportJob job, Path file, String format, Charset charset) {
+        job.startedAt = LocalDateTime.now();
+        job.state = TimesheetImportJobDto.STATE_RUNNING;
+        long startTime = System.currentTimeMillis();
+        ChunkWriter writer = new ChunkWriter(job, Math.max(1, properties.getChunkSize()));
+        try {
+            TimesheetFileReader.RowHandler handler = (rowIndex, cells) -> {
+                if (rowIndex == 0) {
+                    return; // 表头
+                }
+                if (Arrays.stream(cells).allMatch(StringUtils::isBlank)) {
+                    return;
+                }
+                job.rowsRead.incrementAndGet();
+                try {
+                    writer.add(rowIndex, toTimesheetWork(cells));
+                } catch (IllegalArgumentException e) {
+                    job.rowsProcessed.incrementAndGet();
+                    job.addFailure(BatchInsertResult.create(rowIndex, false, "导入失败: " + e.getMessage(),
+                            trim(cells[0]), trim(cells[2]), null, trim(cells[12])), properties.getMaxErrors());
+                }
+            };
+            if (FORMAT_XLSX.equals(format)) {
+                TimesheetFileReader.readXlsx(file, handler);
+            } else {
+                TimesheetFileReader.readCsv(file, charset, handler);
+            }
+            writer.flush();
+            String summary = job.upsert
+                    ? String.format("导入完成: 共 %d 行，新增 %d 行，更新 %d 行，未变化 %d 行，失败 %d 行", job.rowsRead.get(),
+                    job.inserted.get(), job.updated.get(), job.unchanged.get(), job.failed.get())
+                    : String.format("导入完成: 共 %d 行，成功 %d 行，失败 %d 行", job.rowsRead.get(), job.succeeded.get(), job.failed.get());
+            syncDimensions(job);
+            job.finish(TimesheetImportJobDto.STATE_COMPLETED, summary);
+            log.info("工时导入任务 {} 完成: 文件 {}，共 {} 行，成功 {} 行，失败 {} 行，耗时 {} 毫秒", job.jobId, job.fileName,
+                    job.rowsRead.get(), job.succeeded.get(), job.failed.get(), System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            log.error("工时导入任务 {} 失败: 文件 {}，已处理 {} 行", job.jobId, job.fileName, job.rowsProcessed.get(), e);
+            syncDimensions(job);
+            job.finish(TimesheetImportJobDto.STATE_FAILED, "导入中断: " + e.getMessage()
+                    + " (中断前已写入的数据不会回滚，修正文件后可重新导入，已存在的记录会按主键冲突跳过)");
+        } finally {
+            jobs.put(job.jobId, job);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("删除导入临时文件 {} 失败: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 导入写入了新行或更新了行 (包括中断前已写入的部分) 时，在任务结束之前同步维度数据。
+     * 同步期间任务仍为 RUNNING 状态，轮询的客户端看到完成状态时维表已经更新。
+     */
+    private void syncDimensions(ImportJob job) {
+        long changedRows = job.inserted.get() + job.updated.get();
+        if (!properties.isSyncDimensions() || changedRows == 0) {
+            return;
+        }
+        job.message = "数据已写入，正在同步部门、员工、工时编码和利润中心...";
+        syncDimensionsAfterImport("工时导入任务 " + job.jobId, changedRows);
+    }
+
+    @Override
+    public void syncDimensionsAfterImport(String source, long changedRows) {
+        if (!properties.isSyncDimensions() || changedRows <= 0) {
+            return;
+        }
+        try {
+            List<SyncResult> results = syncService.syncAll();
+            for (SyncResult result : results) {
+                log.info("{} 完成后维度同步: {}", source, result.getMessage());
+            }
+        } catch (Exception e) {
+            log.error("{} 完成后维度同步失败: {}", source, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 把一行单元格转换为工时记录。
+     *
+     * @throws IllegalArgumentException 必填列为空或日期、数字格式无效
+     */
+    private static TimesheetWork toTimesheetWork(String[] cells) {
+        for (int column : REQUIRED_COLUMNS) {
+            if (StringUtils.isBlank(cells[column])) {
+                throw new IllegalArgumentException("必需列 \"" + COLUMN_LABELS[column] + "\" (第 " + (column + 1) + " 列) 不能为空");
+            }
+        }
+        TimesheetWork record = new TimesheetWork();
+        record.setTsId(trim(cells[0]));
+        record.setTr(trim(cells[1]));
+        record.setEmployee(trim(cells[2]));
+        record.setDep(trim(cells[3]));
+        record.setTsDep(trim(cells[4]));
+        record.setTsStatus(trim(cells[5]));
+        record.setTsYm(trim(cells[6]));
+        record.setNatureYm(trim(cells[7]));
+        record.setTsDate(parseDate(trim(cells[8])));
+        record.setTsHours(parseNonNegative(trim(cells[9]), 9));
+        record.setTsMonth(parseNonNegative(trim(cells[10]), 10));
+        record.setProjBm(trim(cells[11]));
+        record.setTsBm(trim(cells[12]));
+        record.setTsName(trim(cells[13]));
+        record.setZone(trim(cells[14]));
+        record.setSProjBm(trim(cells[15]));
+        record.setSTsBm(trim(cells[16]));
+        record.setTsComments(trim(cells[17]));
+        return record;
+    }
+
+    /**
+     * 解析工时日期，支持 yyyy-MM-dd、yyyy/M/d 以及带时间部分的写法。
+     */
+    private static LocalDate parseDate(String value) {
+        String datePart = value.replace('/', '-');
+        int timeIndex = datePart.indexOf(' ');
+        if (timeIndex > 0) {
+            datePart = datePart.substring(0, timeIndex);
+        }
+        try {
+            return LocalDate.parse(datePart, FLEXIBLE_DATE);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("\"" + COLUMN_LABELS[8] + "\" 格式无效 (\"" + value + "\")，请使用 YYYY-MM-DD 格式");
+        }
+    }
+
+    private static Float parseNonNegative(String value, int column) {
+        try {
+            float number = Float.parseFloat(value);
+            if (number >= 0 && Float.isFinite(number)) {
+                return number;
+            }
+        } catch (NumberFormatException ignored) {
+            // 统一在下方抛出
+        }
+        throw new IllegalArgumentException("\"" + COLUMN_LABELS[column] + "\" 必须是非负数字 (\"" + value + "\")");
+    }
+
+    private static String trim(String value) {
+        return value != null ? value.trim() : null;
+    }
+
+    /**
+     * 缓存待写入的行，满一批后写入数据库，并把批内下标换算回工作表行号。
+     */
+    private final class ChunkWriter {
+
+        private final ImportJob job;
+        private final int chunkSize;
+        private final List<TimesheetWork> records;
+        private final List<Integer> rowIndexes;
+
+        ChunkWriter(ImportJob job, int chunkSize) {
+            this.job = job;
+            this.chunkSize = chunkSize;
+            this.records = new ArrayList<>(chunkSize);
+            this.rowIndexes = new ArrayList<>(chunkSize);
+        }
+
+        void add(int rowIndex, TimesheetWork record) {
+            records.add(record);
+            rowIndexes.add(rowIndex);
+            if (records.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (records.isEmpty()) {
+                return;
+            }
+            List<BatchInsertResult> results;
+            if (job.upsert) {
+                TimesheetUpsertSummary summary = timesheetService.upsertTimesheets(records);
+                job.inserted.addAndGet(summary.getInserted());
+                job.updated.addAndGet(summary.getUpdated());
+                job.unchanged.addAndGet(summary.getUnchanged());
+                results = summary.getResults();
+            } else {
+                results = timesheetService.batchAddTimesheets(records);
+            }
+            for (BatchInsertResult result : results) {
+                if (result.isSuccess()) {
+                    job.succeeded.incrementAndGet();
+                    if (!job.upsert) {
+                        job.inserted.incrementAndGet();
+                    }
+                } else {
+                    result.setOriginalIndex(rowIndexes.get(result.getOriginalIndex()));
+                    job.addFailure(result, properties.getMaxErrors());
+                }
+            }
+            job.rowsProcessed.addAndGet(records.size());
+            records.clear();
+            rowIndexes.clear();
+        }
+    }
+
+    /**
+     * 导入任务的运行状态 (后台线程更新，查询线程读取)。
+     */
+    private static final class ImportJob {
+
+        final String jobId;
+        final String fileName;
+        final long fileSizeBytes;
+        final boolean upsert;
+        final LocalDateTime createdAt = LocalDateTime.now();
+        final AtomicLong rowsRead = new AtomicLong();
+        final AtomicLong rowsProcessed = new AtomicLong();
+        final AtomicLong succeeded = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong inserted = new AtomicLong();
+        final AtomicLong updated = new AtomicLong();
+        final AtomicLong unchanged = new AtomicLong();
+        final List<BatchInsertResult> errors = new ArrayList<>();
+        volatile String state = TimesheetImportJobDto.STATE_QUEUED;
+        volatile LocalDateTime startedAt;
+        volatile LocalDateTime finishedAt;
+        volatile String message;
+
+        ImportJob(String jobId, String fileName, long fileSizeBytes, boolean upsert) {
+            this.jobId = jobId;
+            this.fileName = fileName;
+            this.fileSizeBytes = fileSizeBytes;
+            this.upsert = upsert;
+        }
+
+        boolean isFinished() {
+            return finishedAt != null;
+        }
+
+        void addFailure(BatchInsertResult result, int maxErrors) {
+            failed.incrementAndGet();
+            synchronized (errors) {
+                if (errors.size() < maxErrors) {
+                    errors.add(result);
+                }
+            }
+        }
+
+        void finish(String finalState, String finalMessage) {
+            message = finalMessage;
+            state = finalState;
+            finishedAt = LocalDateTime.now();
+        }
+
+        TimesheetImportJobDto snapshot(int maxErrors) {
+            TimesheetImportJobDto dto = new TimesheetImportJobDto();
+            dto.setJobId(jobId);
+            dto.setFileName(fileName);
+            dto.setFileSizeBytes(fileSizeBytes);
+            dto.setMode(upsert ? TimesheetImportJobDto.MODE_UPSERT : TimesheetImportJobDto.MODE_INSERT);
+            dto.setState(state);
+            dto.setRowsRead(rowsRead.get());
+            dto.setRowsProcessed(rowsProcessed.get());
+            dto.setSucceeded(succeeded.get());
+            long failedCount = failed.get();
+            dto.setFailed(failedCount);
+            dto.setInserted(inserted.get());
+            dto.setUpdated(updated.get());
+            dto.setUnchanged(unchanged.get());
+            dto.setCreatedAt(createdAt);
+            dto.setStartedAt(startedAt);
+            dto.setFinishedAt(finishedAt);
+            dto.setMessage(message);
+            synchronized (errors) {
+                dto.setErrors(new ArrayList<>(errors));
+            }
+            dto.setErrorsTruncated(failedCount > maxErrors);
+            return dto;
+        }
+    }
+}
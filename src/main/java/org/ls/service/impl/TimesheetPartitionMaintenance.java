@@ -0,0 +1,62 @@
+/**
+ * 目录: src/main/java/org/ls/service/impl/TimesheetPartitionMaintenance.java
+ * 文件名: TimesheetPartitionMaintenance.java
+ * 开发时间: 2026-10-20 00:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: t_wkt 月度分区的维护。应用启动时和每天定时预建当月及未来几个月的分区，
+ * 并把默认分区中已有对应月份的行迁移到新分区，保证新数据写入月份分区、统计查询能够按日期裁剪分区。
+ * t_wkt 尚未执行 db/4.partition-timesheet.sql 改为分区表时不做任何操作。
+ */
+package org.ls.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.ls.mapper.TimesheetWorkMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+@Component
+@Slf4j
+public class TimesheetPartitionMaintenance {
+
+    private final TimesheetWorkMapper timesheetWorkMapper;
+    private final int monthsAhead;
+
+    public TimesheetPartitionMaintenance(TimesheetWorkMapper timesheetWorkMapper,
+                                         @Value("${timesheet.partition.months-ahead:3}") int monthsAhead) {
+        this.timesheetWorkMapper = timesheetWorkMapper;
+        this.monthsAhead = Math.max(monthsAhead, 1);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        ensurePartitions();
+    }
+
+    /**
+     * 创建从当月到未来 monthsAhead 个月缺少的分区。
+     */
+    @Scheduled(cron = "${timesheet.partition.maintain-cron:0 10 0 * * ?}")
+    public void ensurePartitions() {
+        try {
+            if (!timesheetWorkMapper.isTimesheetPartitioned()) {
+                log.debug("t_wkt 不是分区表，跳过分区维护");
+                return;
+            }
+            LocalDate from = LocalDate.now().withDayOfMonth(1);
+            LocalDate to = from.plusMonths(monthsAhead);
+            int created = timesheetWorkMapper.createMonthlyPartitions(from, to);
+            if (created > 0) {
+                log.info("t_wkt 分区维护完成，新建分区 {} 个 (范围: {} ~ {}，含默认分区中已有数据的月份)", created, from, to);
+            } else {
+                log.debug("t_wkt 分区维护完成，无需新建分区 (范围: {} ~ {})", from, to);
+            }
+        } catch (Exception e) {
+            log.error("t_wkt 分区维护失败: {}", e.getMessage(), e);
+        }
+    }
+}
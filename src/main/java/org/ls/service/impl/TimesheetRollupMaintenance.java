@@ -0,0 +1,45 @@
+/**
+ * 目录: src/main/java/org/ls/service/impl/TimesheetRollupMaintenance.java
+ * 文件名: TimesheetRollupMaintenance.java
+ * 开发时间: 2026-10-20 02:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 工时按月汇总表的维护。t_wkt 触发器只把增量追加到队列表 t_wkt_rollup_delta，
+ * 由本任务定时把队列合并到 t_wkt_monthly_rollup，写入 t_wkt 的语句不再在热点汇总行上互相阻塞。
+ * 多个实例同时执行时只有一个实际合并 (数据库咨询锁)。未执行 db/5.rollup-timesheet.sql 时不做任何操作。
+ */
+package org.ls.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.ls.mapper.TimesheetWorkMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@Slf4j
+public class TimesheetRollupMaintenance {
+
+    private final TimesheetWorkMapper timesheetWorkMapper;
+
+    public TimesheetRollupMaintenance(TimesheetWorkMapper timesheetWorkMapper) {
+        this.timesheetWorkMapper = timesheetWorkMapper;
+    }
+
+    /**
+     * 把汇总增量队列合并到按月汇总表。统计查询同时读取未合并的增量，合并间隔只影响队列大小，不影响统计结果。
+     */
+    @Scheduled(fixedDelayString = "${timesheet.rollup.apply-delay-millis:60000}")
+    public void applyDeltas() {
+        try {
+            if (!timesheetWorkMapper.isMonthlyRollupAvailable()) {
+                log.debug("未执行 db/5.rollup-timesheet.sql，跳过工时汇总增量合并");
+                return;
+            }
+            long merged = timesheetWorkMapper.applyRollupDeltas();
+            if (merged > 0) {
+                log.debug("工时汇总增量合并完成，更新汇总键 {} 个", merged);
+            }
+        } catch (Exception e) {
+            log.error("工时汇总增量合并失败: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -1,40 +1,84 @@
 package org.ls.service.impl;
 
+import org.apache.ibatis.cursor.Cursor;
 import org.ls.dto.BatchInsertResult; // 导入 DTO
+import org.ls.dto.TimesheetStatisticsCountDto;
+import org.ls.dto.TimesheetUpsertRow;
+import org.ls.dto.TimesheetUpsertSummary;
 import org.ls.entity.TimesheetWork;
+import org.ls.exception.ExportLimitExceededException;
 import org.ls.mapper.TimesheetWorkMapper;
 import org.ls.service.TimesheetService;
 import org.ls.utils.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.DataIntegrityViolationException; // 用于捕获主键冲突等
-import org.springframework.dao.DuplicateKeyException; // 更具体的重复键异常
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional; // 单条记录的事务
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.util.ArrayList; // 引入 ArrayList
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * 工时记录服务实现类 (主键修正版)
  * 文件路径: src/main/java/org/ls/service/impl/TimesheetServiceImpl.java
  * 修正：适配新的四列组合主键 (ts_id, employee, ts_date, ts_bm)。
+ * 更新：批量导入改为分组多行 INSERT ... ON CONFLICT DO NOTHING，不再逐条调用 addTimesheet。
+ * 更新：增加批量 upsert (只写入内容有变化的行)，与批量导入共用校验和分组写入流程。
+ * 更新：增加工时统计查询执行计划检查。
+ * 更新：统计分页总数按过滤条件缓存，结果集较大时使用规划器估算值；写入 t_wkt 后缓存失效。
+ * 更新：增加工时统计的流式导出 (CSV / XLSX)，以 MyBatis 游标逐批读取。
+ * 更新：执行计划检查增加扫描的 t_wkt 分区列表。
+ * 更新：移除执行计划检查 (生产端点)，改由 TimesheetStatisticsPlanTest 在测试数据库上检查索引使用。
+ * 更新：工时统计导出限制最大行数和耗时，超出时抛出 ExportLimitExceededException。
  */
 @Service // 标记为 Spring Service 组件
 public class TimesheetServiceImpl implements TimesheetService {
 
     private static final Logger log = LoggerFactory.getLogger(TimesheetServiceImpl.class);
 
+    /**
+     * 多行插入每组的记录数。每条记录 18 个参数，1000 条约 18000 个参数，低于 PostgreSQL 单条语句 65535 的上限。
+     */
+    private static final int INSERT_CHUNK_SIZE = 1000;
+    private static final String DUPLICATE_KEY_MESSAGE = "导入失败: 主键冲突或违反唯一约束.组合主键为：工时申请单号、申请人、工时日期、工时编码";
+
+    /**
+     * 匹配 JSON 执行计划中的估算行数，第一个即顶层节点
+     */
+    private static final Pattern PLAN_ROWS_PATTERN = Pattern.compile("\"Plan Rows\":\\s*(\\d+)");
+
     private final TimesheetWorkMapper timesheetWorkMapper;
+    private final TimesheetStatisticsCountCache statisticsCountCache;
+    private final long exactCountThreshold;
+    private final long exportMaxRows;
+    private final long exportTimeoutMillis;
 
     @Autowired
-    public TimesheetServiceImpl(TimesheetWorkMapper timesheetWorkMapper) {
+    public TimesheetServiceImpl(TimesheetWorkMapper timesheetWorkMapper,
+                                TimesheetStatisticsCountCache statisticsCountCache,
+                                @Value("${timesheet.statistics.exact-count-threshold:100000}") long exactCountThreshold,
+                                @Value("${timesheet.statistics.export-max-rows:1000000}") long exportMaxRows,
+                                @Value("${timesheet.statistics.export-timeout-seconds:300}") long exportTimeoutSeconds) {
         this.timesheetWorkMapper = timesheetWorkMapper;
+        this.statisticsCountCache = statisticsCountCache;
+        this.exactCountThreshold = exactCountThreshold;
+        this.exportMaxRows = exportMaxRows;
+        this.exportTimeoutMillis = exportTimeoutSeconds * 1000;
     }
 
     /**
@@ -79,6 +123,86 @@ public class TimesheetServiceImpl implements TimesheetService {
         }
     }
 
+    /**
+     * 在只读事务中执行: PostgreSQL 驱动只有在关闭自动提交时才按 fetchSize 分批读取，否则会一次读入全部结果。
+     * 事务和游标在写完之前一直保持打开，因此行数和耗时都有上限，超出时中止导出。
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public long exportTimesheetStatistics(Map<String, Object> params, String format, OutputStream out) throws IOException {
+        if (!"csv".equals(format) && !"xlsx".equals(format)) {
+            throw new IllegalArgumentException("不支持的导出格式: " + format);
+        }
+        long start = System.currentTimeMillis();
+        try (Cursor<Map<String, Object>> cursor = timesheetWorkMapper.streamTimesheetStatistics(params)) {
+            Iterable<Map<String, Object>> bounded = bounded(cursor, start + exportTimeoutMillis);
+            long rows = "csv".equals(format)
+                    ? TimesheetStatisticsFileWriter.writeCsv(bounded, out)
+                    : TimesheetStatisticsFileWriter.writeXlsx(bounded, out);
+            log.info("工时统计导出完成: format={}, rows={}, 耗时 {} ms", format, rows, System.currentTimeMillis() - start);
+            return rows;
+        }
+    }
+
+    /**
+     * 包装导出游标: 读取的行数超过 exportMaxRows 或超过截止时间时抛出 ExportLimitExceededException。
+     */
+    private Iterable<Map<String, Object>> bounded(Cursor<Map<String, Object>> cursor, long deadlineMillis) {
+        return () -> new Iterator<>() {
+            private final Iterator<Map<String, Object>> delegate = cursor.iterator();
+            private long count;
+
+            @Override
+            public boolean hasNext() {
+                return delegate.hasNext();
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                if (++count > exportMaxRows) {
+                    throw new ExportLimitExceededException("导出记录数超过上限 " + exportMaxRows + "，请缩小过滤条件后重试");
+                }
+                if (System.currentTimeMillis() > deadlineMillis) {
+                    throw new ExportLimitExceededException("导出耗时超过上限 " + exportTimeoutMillis / 1000 + " 秒，请缩小过滤条件后重试");
+                }
+                return delegate.next();
+            }
+        };
+    }
+
+    @Override
+    public TimesheetStatisticsCountDto countTimesheetStatisticsForPaging(Map<String, Object> params) {
+        Map<String, String> filters = TimesheetStatisticsCountCache.filtersOf(params);
+        TimesheetStatisticsCountDto cached = statisticsCountCache.get(filters);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = statisticsCountCache.generation();
+        TimesheetStatisticsCountDto count;
+        try {
+            long estimate = estimateTimesheetStatisticsCount(params);
+            if (estimate >= exactCountThreshold) {
+                count = new TimesheetStatisticsCountDto(estimate, true);
+            } else {
+                count = new TimesheetStatisticsCountDto(timesheetWorkMapper.countTimesheetStatistics(params), false);
+            }
+        } catch (Exception e) {
+            log.error("统计工时统计数据时出错: error={}", e.getMessage(), e);
+            return new TimesheetStatisticsCountDto(0L, false);
+        }
+        statisticsCountCache.put(filters, generation, count);
+        return count;
+    }
+
+    /**
+     * @return 规划器估算的行数，无法解析时返回 -1 (调用方改用精确 COUNT)
+     */
+    private long estimateTimesheetStatisticsCount(Map<String, Object> params) {
+        String plan = timesheetWorkMapper.explainTimesheetStatisticsCount(params);
+        Matcher matcher = plan != null ? PLAN_ROWS_PATTERN.matcher(plan) : null;
+        return matcher != null && matcher.find() ? Long.parseLong(matcher.group(1)) : -1L;
+    }
+
     @Override
     public List<TimesheetWork> findAllTimesheets(Map<String, Object> params) {
         try {
@@ -102,6 +226,20 @@ public class TimesheetServiceImpl implements TimesheetService {
     @Override
     @Transactional // 添加事务管理
     public int addTimesheet(TimesheetWork timesheetWork) {
+        validateAndSanitize(timesheetWork);
+        log.info("准备添加工时记录 (单条): {}", timesheetWork);
+        // insert 操作本身可能会抛出 DuplicateKeyException 或其他 DataIntegrityViolationException
+        int inserted = timesheetWorkMapper.insert(timesheetWork);
+        statisticsCountCache.invalidateAll();
+        return inserted;
+    }
+
+    /**
+     * 校验新增工时记录的主键字段和必要字段，并清理备注。
+     *
+     * @throws IllegalArgumentException 关键字段为空
+     */
+    private void validateAndSanitize(TimesheetWork timesheetWork) {
         // 验证所有主键字段和必要字段
         if (timesheetWork == null
                 || StringUtils.isBlank(timesheetWork.getTsId())
@@ -124,34 +262,6 @@ public class TimesheetServiceImpl implements TimesheetService {
         if (StringUtils.isNotBlank(timesheetWork.getTsComments())) {
             timesheetWork.setTsComments(StringUtils.simpleSanitize(timesheetWork.getTsComments()));
         }
-
-// try-catch 移到 batchAddTimesheets 中处理
-//        try {
-//            // 检查记录是否已存在 (根据新的复合主键)
-//            TimesheetWork existing = timesheetWorkMapper.findById(
-//                    timesheetWork.getTsId(),
-//                    timesheetWork.getEmployee(),
-//                    timesheetWork.getTsDate(),
-//                    timesheetWork.getTsBm() // 使用新的主键检查
-//            );
-//            if (existing != null) {
-//                log.warn("添加工时记录失败：记录已存在。 Key: tsId={}, employee={}, tsDate={}, tsBm={}",
-//                        timesheetWork.getTsId(), timesheetWork.getEmployee(), timesheetWork.getTsDate(), timesheetWork.getTsBm());
-//                throw new IllegalStateException("工时记录已存在，无法重复添加。");
-//            }
-//
-//            log.info("准备添加工时记录: {}", timesheetWork);
-//            return timesheetWorkMapper.insert(timesheetWork);
-//        } catch (Exception e) {
-//            log.error("添加工时记录时数据库操作出错: {}, error={}", timesheetWork, e.getMessage(), e);
-//            throw new RuntimeException("添加工时记录时发生数据库错误。", e);
-//        }
-
-        log.info("准备添加工时记录 (单条): {}", timesheetWork);
-        // insert 操作本身可能会抛出 DuplicateKeyException 或其他 DataIntegrityViolationException
-        return timesheetWorkMapper.insert(timesheetWork);
-
-
     }
 
 
@@ -191,7 +301,9 @@ public class TimesheetServiceImpl implements TimesheetService {
         try {
             log.info("准备更新工时记录: {}", timesheetWork);
             // Mapper 的 update 方法依赖对象中的主键字段来定位 WHERE 条件
-            return timesheetWorkMapper.update(timesheetWork);
+            int updated = timesheetWorkMapper.update(timesheetWork);
+            statisticsCountCache.invalidateAll();
+            return updated;
         } catch (Exception e) {
             log.error("更新工时记录时数据库操作出错: {}, error={}", timesheetWork, e.getMessage(), e);
             throw new RuntimeException("更新工时记录时发生数据库错误。", e);
@@ -217,7 +329,9 @@ public class TimesheetServiceImpl implements TimesheetService {
         try {
             log.info("准备删除工时记录: tsId={}, employee={}, tsDate={}, tsBm={}", tsId, employee, tsDate, tsBm);
             // 调用 Mapper 时传递所有四个主键参数
-            return timesheetWorkMapper.delete(tsId, employee, tsDate, tsBm);
+            int deleted = timesheetWorkMapper.delete(tsId, employee, tsDate, tsBm);
+            statisticsCountCache.invalidateAll();
+            return deleted;
         } catch (Exception e) {
             log.error("删除工时记录时数据库操作出错: tsId={}, employee={}, tsDate={}, tsBm={}, error={}", tsId, employee, tsDate, tsBm, e.getMessage(), e);
             throw new RuntimeException("删除工时记录时发生数据库错误。", e);
@@ -227,7 +341,8 @@ public class TimesheetServiceImpl implements TimesheetService {
 
     /**
      * 批量添加工时记录的实现。
-     * 逐条处理，不使用整体事务，以便反馈单条结果。
+     * 按 {@link #INSERT_CHUNK_SIZE} 条一组执行多行 INSERT ... ON CONFLICT DO NOTHING RETURNING，
+     * 根据返回的主键判断每条记录是否插入 (未返回即主键已存在)。
      */
     @Override
     public List<BatchInsertResult> batchAddTimesheets(List<TimesheetWork> timesheets) {
@@ -235,55 +350,175 @@ public class TimesheetServiceImpl implements TimesheetService {
             return Collections.emptyList();
         }
 
-        List<BatchInsertResult> results = new ArrayList<>();
+        long startTime = System.currentTimeMillis();
         log.info("开始批量导入工时记录，共 {} 条", timesheets.size());
+        List<BatchInsertResult> resultList = writeInChunks(timesheets, this::insertChunk);
+        long succeeded = resultList.stream().filter(BatchInsertResult::isSuccess).count();
+        log.info("批量导入完成，共处理 {} 条记录，成功 {} 条，失败 {} 条，耗时 {} 毫秒。", timesheets.size(), succeeded,
+                timesheets.size() - succeeded, System.currentTimeMillis() - startTime);
+        return resultList;
+    }
 
-        for (int i = 0; i < timesheets.size(); i++) {
-            TimesheetWork record = timesheets.get(i);
-            BatchInsertResult result;
-            String errorMessage = null;
-            boolean success = false;
+    /**
+     * 批量 upsert 工时记录的实现。
+     * 按 {@link #INSERT_CHUNK_SIZE} 条一组执行多行 INSERT ... ON CONFLICT DO UPDATE ... WHERE 内容不同，
+     * 内容与库中相同的行不写入，重复导入同一文件时基本不产生写入。
+     */
+    @Override
+    public TimesheetUpsertSummary upsertTimesheets(List<TimesheetWork> timesheets) {
+        if (timesheets == null || timesheets.isEmpty()) {
+            return new TimesheetUpsertSummary(0, 0, 0, 0, Collections.emptyList());
+        }
 
-            // 提取关键字段用于结果 DTO
-            String tsId = record != null ? record.getTsId() : null;
-            String employee = record != null ? record.getEmployee() : null;
-            LocalDate tsDate = record != null ? record.getTsDate() : null;
-            String tsBm = record != null ? record.getTsBm() : null;
+        long startTime = System.currentTimeMillis();
+        log.info("开始批量 upsert 工时记录，共 {} 条", timesheets.size());
+        Boolean[] insertedFlags = new Boolean[timesheets.size()];
+        List<BatchInsertResult> resultList = writeInChunks(timesheets,
+                (records, indexes, results) -> upsertChunk(records, indexes, results, insertedFlags));
+
+        long inserted = 0;
+        long updated = 0;
+        long unchanged = 0;
+        long failed = 0;
+        for (int i = 0; i < resultList.size(); i++) {
+            if (!resultList.get(i).isSuccess()) {
+                failed++;
+            } else if (insertedFlags[i] == null) {
+                unchanged++;
+            } else if (insertedFlags[i]) {
+                inserted++;
+            } else {
+                updated++;
+            }
+        }
+        log.info("批量 upsert 完成，共处理 {} 条记录，新增 {} 条，更新 {} 条，未变化 {} 条，失败 {} 条，耗时 {} 毫秒。",
+                timesheets.size(), inserted, updated, unchanged, failed, System.currentTimeMillis() - startTime);
+        return new TimesheetUpsertSummary(inserted, updated, unchanged, failed, resultList);
+    }
+
+    /**
+     * 对一组记录执行一条多行写入语句，并为每条记录填写结果。
+     */
+    @FunctionalInterface
+    private interface ChunkWriter {
+        void write(List<TimesheetWork> timesheets, List<Integer> indexes, BatchInsertResult[] results);
+    }
 
+    /**
+     * 批量写入的公共流程: 先在内存中校验并找出批内重复的主键，再分组调用 chunkWriter。
+     * 每组是一条独立提交的语句，不使用整体事务，以便反馈单条结果；某组因其他原因 (例如字段超长) 失败时，
+     * 该组退回逐条写入，定位出错的记录。
+     */
+    private List<BatchInsertResult> writeInChunks(List<TimesheetWork> timesheets, ChunkWriter chunkWriter) {
+        BatchInsertResult[] results = new BatchInsertResult[timesheets.size()];
+
+        // 1. 校验，并找出批内重复的主键 (只保留第一条)
+        List<Integer> pendingIndexes = new ArrayList<>();
+        Set<String> seenKeys = new HashSet<>();
+        for (int i = 0; i < timesheets.size(); i++) {
+            TimesheetWork record = timesheets.get(i);
             try {
-                // 调用单条添加方法（该方法包含验证逻辑并会抛出异常）
-                // addTimesheet 方法本身有 @Transactional
-                int affectedRows = addTimesheet(record);
-                if (affectedRows > 0) {
-                    success = true;
-                    errorMessage = "导入成功";
-                    log.debug("记录 #{} 导入成功: ({}, {}, {}, {})", i, tsId, employee, tsDate, tsBm);
-                } else {
-                    // 理论上 addTimesheet 失败会抛异常，较少到这一步
-                    errorMessage = "导入失败 (未知原因)";
-                    log.warn("记录 #{} 导入返回 0 行受影响: ({}, {}, {}, {})", i, tsId, employee, tsDate, tsBm);
-                }
-            } catch (DataIntegrityViolationException e) {
-                // 捕获主键冲突或唯一约束违反异常
-                errorMessage = "导入失败: 主键冲突或违反唯一约束.组合主键为：工时申请单号、申请人、工时日期、工时编码";
-                log.warn("记录 #{} 导入失败 (主键冲突): ({}, {}, {}, {}). Error: {}", i, tsId, employee, tsDate, tsBm, e.getMessage());
+                validateAndSanitize(record);
             } catch (IllegalArgumentException e) {
-                // 捕获 addTimesheet 中的验证异常
-                errorMessage = "导入失败: " + e.getMessage();
-                log.warn("记录 #{} 导入失败 (验证错误): ({}, {}, {}, {}). Error: {}", i, tsId, employee, tsDate, tsBm, e.getMessage());
+                results[i] = result(i, record, false, "导入失败: " + e.getMessage());
+                log.warn("记录 #{} 导入失败 (验证错误): {}", i, e.getMessage());
+                continue;
+            }
+            if (!seenKeys.add(primaryKey(record))) {
+                results[i] = result(i, record, false, DUPLICATE_KEY_MESSAGE + " (与本次导入中的其他记录重复)");
+                continue;
+            }
+            pendingIndexes.add(i);
+        }
+
+        // 2. 分组多行写入
+        for (int from = 0; from < pendingIndexes.size(); from += INSERT_CHUNK_SIZE) {
+            List<Integer> chunk = pendingIndexes.subList(from, Math.min(from + INSERT_CHUNK_SIZE, pendingIndexes.size()));
+            try {
+                chunkWriter.write(timesheets, chunk, results);
             } catch (Exception e) {
-                // 捕获其他意外错误
-                errorMessage = "导入失败: " + e.getMessage();
-                log.error("记录 #{} 导入时发生意外错误: ({}, {}, {}, {}). Error: {}", i, tsId, employee, tsDate, tsBm, e.getMessage(), e);
+                log.warn("第 {} - {} 条记录批量写入失败，改为逐条写入以定位错误: {}", chunk.get(0), chunk.get(chunk.size() - 1), e.getMessage());
+                for (Integer index : chunk) {
+                    try {
+                        chunkWriter.write(timesheets, List.of(index), results);
+                    } catch (Exception rowError) {
+                        results[index] = result(index, timesheets.get(index), false, "导入失败: " + rootMessage(rowError));
+                        log.error("记录 #{} 导入时发生错误: {}", index, rowError.getMessage());
+                    }
+                }
             }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 插入一组记录，并根据 RETURNING 返回的主键为每条记录填写结果。
+     */
+    private void insertChunk(List<TimesheetWork> timesheets, List<Integer> indexes, BatchInsertResult[] results) {
+        Set<String> insertedKeys = new HashSet<>();
+        for (TimesheetWork inserted : timesheetWorkMapper.insertIgnoringDuplicates(select(timesheets, indexes))) {
+            insertedKeys.add(primaryKey(inserted));
+        }
+        if (!insertedKeys.isEmpty()) {
+            statisticsCountCache.invalidateAll();
+        }
+        for (Integer index : indexes) {
+            TimesheetWork record = timesheets.get(index);
+            boolean inserted = insertedKeys.contains(primaryKey(record));
+            results[index] = result(index, record, inserted, inserted ? "导入成功" : DUPLICATE_KEY_MESSAGE);
+        }
+    }
+
+    /**
+     * upsert 一组记录。返回的行为新增或更新，未返回的行内容未变化。
+     */
+    private void upsertChunk(List<TimesheetWork> timesheets, List<Integer> indexes, BatchInsertResult[] results, Boolean[] insertedFlags) {
+        Map<String, Boolean> writtenKeys = new HashMap<>();
+        for (TimesheetUpsertRow row : timesheetWorkMapper.upsertChanged(select(timesheets, indexes))) {
+            writtenKeys.put(primaryKey(row.getTsId(), row.getEmployee(), row.getTsDate(), row.getTsBm()), row.isInserted());
+        }
+        if (!writtenKeys.isEmpty()) {
+            statisticsCountCache.invalidateAll();
+        }
+        for (Integer index : indexes) {
+            TimesheetWork record = timesheets.get(index);
+            Boolean inserted = writtenKeys.get(primaryKey(record));
+            insertedFlags[index] = inserted;
+            String message = inserted == null ? "内容未变化，已跳过" : (inserted ? "新增成功" : "更新成功");
+            results[index] = result(index, record, true, message);
+        }
+    }
 
-            // 创建并添加结果
-            result = BatchInsertResult.create(i, success, errorMessage, tsId, employee, tsDate, tsBm);
-            results.add(result);
+    private static List<TimesheetWork> select(List<TimesheetWork> timesheets, List<Integer> indexes) {
+        List<TimesheetWork> records = new ArrayList<>(indexes.size());
+        for (Integer index : indexes) {
+            records.add(timesheets.get(index));
         }
+        return records;
+    }
+
+    private static String primaryKey(TimesheetWork record) {
+        return primaryKey(record.getTsId(), record.getEmployee(), record.getTsDate(), record.getTsBm());
+    }
+
+    private static String primaryKey(String tsId, String employee, LocalDate tsDate, String tsBm) {
+        return tsId + '\u0000' + employee + '\u0000' + tsDate + '\u0000' + tsBm;
+    }
 
-        log.info("批量导入完成，共处理 {} 条记录。", timesheets.size());
-        return results;
+    private static BatchInsertResult result(int index, TimesheetWork record, boolean success, String message) {
+        return BatchInsertResult.create(index, success, message,
+                record != null ? record.getTsId() : null,
+                record != null ? record.getEmployee() : null,
+                record != null ? record.getTsDate() : null,
+                record != null ? record.getTsBm() : null);
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
     }
 
     // --- 数据同步准备方法实现 (保持不变) ---
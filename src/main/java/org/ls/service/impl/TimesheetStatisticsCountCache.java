@@ -0,0 +1,118 @@
+/**
+ * 目录: src/main/java/org/ls/service/impl/TimesheetStatisticsCountCache.java
+ * 文件名: TimesheetStatisticsCountCache.java
+ * 开发时间: 2026-10-19 23:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 工时统计分页总记录数缓存。以规范化后的过滤条件为键，翻页时不再重复执行 COUNT；
+ * 通过本应用写入 t_wkt 时 (事务提交后) 整体失效，业务系统直接写库的变更由过期时间兜底。
+ */
+package org.ls.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.ls.dto.TimesheetStatisticsCountDto;
+import org.ls.utils.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+@Slf4j
+public class TimesheetStatisticsCountCache {
+
+    /**
+     * 参与统计查询过滤的参数名 (与 TimesheetWorkMapper.xml 中 Statistics_Conditions 一致)
+     */
+    static final List<String> FILTER_KEYS = List.of("tr", "employee", "dep", "tsStatus", "tsDateStart", "tsDateEnd",
+            "tsBm", "tsName", "zone");
+
+    private final boolean enabled;
+    private final Cache<Map<String, String>, TimesheetStatisticsCountDto> cache;
+    /**
+     * 每次失效加 1。计算总数前记下当前值，写入缓存时不一致说明计算期间发生了写入，结果不缓存
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    public TimesheetStatisticsCountCache(@Value("${timesheet.statistics.count-cache.enabled:true}") boolean enabled,
+                                         @Value("${timesheet.statistics.count-cache.max-entries:1000}") long maxEntries,
+                                         @Value("${timesheet.statistics.count-cache.expire-seconds:300}") long expireSeconds) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(expireSeconds))
+                .build();
+        log.info("工时统计总数缓存初始化完成。启用: {}, 容量: {}, 过期时间: {} 秒", enabled, maxEntries, expireSeconds);
+    }
+
+    /**
+     * 从查询参数中取出非空的过滤条件 (不含分页参数和游标)，作为缓存键。
+     */
+    static Map<String, String> filtersOf(Map<String, Object> params) {
+        Map<String, String> filters = new TreeMap<>();
+        for (String key : FILTER_KEYS) {
+            Object value = params.get(key);
+            if (value != null && StringUtils.isNotBlank(value.toString())) {
+                filters.put(key, value.toString());
+            }
+        }
+        return Collections.unmodifiableMap(filters);
+    }
+
+    /**
+     * @return 当前失效代数，计算总数前调用，并在 {@link #put} 时传回
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * @param filters {@link #filtersOf(Map)} 返回的过滤条件
+     * @return 已缓存的总数，未命中时为 null
+     */
+    public TimesheetStatisticsCountDto get(Map<String, String> filters) {
+        return enabled ? cache.getIfPresent(filters) : null;
+    }
+
+    /**
+     * 缓存总数。计算期间发生过失效时不写入，避免缓存写入前的旧值。
+     */
+    public void put(Map<String, String> filters, long expectedGeneration, TimesheetStatisticsCountDto count) {
+        if (enabled && generation.get() == expectedGeneration) {
+            cache.put(filters, count);
+        }
+    }
+
+    /**
+     * 使全部缓存失效。处于事务中时在事务提交后失效 (提交前其他连接仍读到旧数据)，否则立即失效。
+     * 任意一行的写入都可能改变任意过滤条件的总数，因此不按键失效。
+     */
+    public void invalidateAll() {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doInvalidate();
+                }
+            });
+        } else {
+            doInvalidate();
+        }
+    }
+
+    private void doInvalidate() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * 目录: src/main/java/org/ls/service/impl/TimesheetStatisticsFileWriter.java
+ * 文件名: TimesheetStatisticsFileWriter.java
+ * 开发时间: 2026-10-19 23:30:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 工时统计导出文件的流式写出。CSV 使用 commons-csv 逐行写出，XLSX 使用 POI 的 SXSSF (内存中只保留最近的少量行，
+ * 其余行写入压缩的临时文件)，内存占用与导出行数无关。
+ */
+package org.ls.service.impl;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.util.List;
+import java.util.Map;
+
+final class TimesheetStatisticsFileWriter {
+
+    /**
+     * 导出的列 (statistics 查询结果的列名)，顺序与表头一致
+     */
+    private static final List<String> COLUMNS = List.of("ts_id", "tr", "employee", "dep", "ts_status", "ts_date",
+            "ts_hours", "ts_bm", "ts_name", "zone");
+    private static final List<String> HEADERS = List.of("工时申请单号", "工时区间", "员工", "部门", "状态", "工时日期",
+            "小时数", "工时编码", "工时名称", "利润中心");
+
+    /**
+     * SXSSF 内存中保留的行数，超出的行刷写到临时文件
+     */
+    private static final int XLSX_WINDOW_SIZE = 100;
+    /**
+     * 每个工作表的数据行数上限 (Excel 最大行数减去表头)，超出后续写到新工作表
+     */
+    private static final int XLSX_ROWS_PER_SHEET = SpreadsheetVersion.EXCEL2007.getMaxRows() - 1;
+
+    private TimesheetStatisticsFileWriter() {
+    }
+
+    /**
+     * 写出 UTF-8 (带 BOM，便于 Excel 识别编码) CSV。写完后只刷新，不关闭输出流。
+     *
+     * @return 写出的数据行数
+     */
+    static long writeCsv(Iterable<Map<String, Object>> rows, OutputStream out) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write('\uFEFF');
+        CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT);
+        printer.printRecord(HEADERS);
+        long count = 0;
+        for (Map<String, Object> row : rows) {
+            for (String column : COLUMNS) {
+                Object value = row.get(column);
+                printer.print(value != null ? value.toString() : "");
+            }
+            printer.println();
+            count++;
+        }
+        printer.flush();
+        return count;
+    }
+
+    /**
+     * 写出 XLSX。工时日期写为日期单元格，小时数写为数值单元格。写完后不关闭输出流。
+     *
+     * @return 写出的数据行数
+     */
+    static long writeXlsx(Iterable<Map<String, Object>> rows, OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(XLSX_WINDOW_SIZE);
+        workbook.setCompressTempFiles(true);
+        try {
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+
+            SXSSFSheet sheet = null;
+            int rowIndex = 0;
+            long count = 0;
+            for (Map<String, Object> data : rows) {
+                if (sheet == null || rowIndex > XLSX_ROWS_PER_SHEET) {
+                    sheet = createSheet(workbook);
+                    rowIndex = 1;
+                }
+                Row row = sheet.createRow(rowIndex++);
+                for (int i = 0; i < COLUMNS.size(); i++) {
+                    Object value = data.get(COLUMNS.get(i));
+                    if (value == null) {
+                        continue;
+                    }
+                    Cell cell = row.createCell(i);
+                    if (value instanceof Date date) {
+                        cell.setCellValue(date.toLocalDate());
+                        cell.setCellStyle(dateStyle);
+                    } else if (value instanceof Number) {
+                        // 经字符串转换，避免 REAL 列 (float) 转 double 时出现 7.900000095 之类的尾数
+                        cell.setCellValue(Double.parseDouble(value.toString()));
+                    } else {
+                        cell.setCellValue(value.toString());
+                    }
+                }
+                count++;
+            }
+            if (sheet == null) {
+                createSheet(workbook);
+            }
+            workbook.write(out);
+            out.flush();
+            return count;
+        } finally {
+            // 删除 SXSSF 的临时文件
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private static SXSSFSheet createSheet(SXSSFWorkbook workbook) {
+        int number = workbook.getNumberOfSheets() + 1;
+        SXSSFSheet sheet = workbook.createSheet(number == 1 ? "工时统计" : "工时统计" + number);
+        Row header = sheet.createRow(0);
+        for (int i = 0; i < HEADERS.size(); i++) {
+            header.createCell(i).setCellValue(HEADERS.get(i));
+        }
+        return sheet;
+    }
+}
@@ -0,0 +1,310 @@
+/**
+ * 目录: src/main/java/org/ls/utils/FileDownloadUtils.java
+ * 文件名: FileDownloadUtils.java
+ * 开发时间: 2026-10-19 10:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 文件下载工具类。支持 HTTP Range (206/416)、强 ETag、If-None-Match / If-Modified-Since / If-Range 条件请求，
+ * 文件内容通过 FileChannel.transferTo (或 Tomcat sendfile) 直接写出，不经过堆内缓冲区。
+ * 本次更新: 多区间请求合并重叠和相邻的区间，区间数超过上限或请求的总字节数超过文件长度时忽略 Range 返回完整文件，
+ * 避免 "bytes=0-,0-,..." 把一次请求放大为多份完整文件。
+ */
+package org.ls.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 文件下载工具类
+ */
+public class FileDownloadUtils {
+
+    private static final Logger log = LoggerFactory.getLogger(FileDownloadUtils.class);
+
+    // Tomcat sendfile 相关的请求属性 (NIO/NIO2/APR 连接器支持，由容器在 socket 层完成零拷贝)
+    private static final String TOMCAT_SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String TOMCAT_SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String TOMCAT_SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String TOMCAT_SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // 小于该大小的文件不走 sendfile，与 Tomcat DefaultServlet 的默认阈值一致 (48KB)
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024L;
+
+    // 一次请求最多接受的区间数，超过时忽略 Range 返回完整文件
+    private static final int MAX_RANGES = 16;
+
+    private FileDownloadUtils() {
+    }
+
+    /**
+     * 将文件作为附件写出到响应，处理条件请求和 Range 请求。
+     *
+     * @param file             要下载的文件 (调用方需已完成存在性和路径安全校验)
+     * @param downloadFilename 下载时显示的文件名
+     * @param request          HttpServletRequest 对象
+     * @param response         HttpServletResponse 对象
+     * @throws IOException 读取文件属性或写出响应时发生 IO 错误
+     */
+    public static void writeFile(Path file, String downloadFilename,
+                                 HttpServletRequest request, HttpServletResponse response) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        long fileLength = attrs.size();
+        // HTTP 日期只精确到秒，比较 If-Modified-Since 时按秒截断
+        long lastModified = attrs.lastModifiedTime().toMillis() / 1000 * 1000;
+        String etag = buildEtag(fileLength, attrs.lastModifiedTime().toMillis());
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        // 1. 条件 GET：If-None-Match 优先于 If-Modified-Since (RFC 9110 13.2.2)
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String encodedFilename = URLEncoder.encode(downloadFilename, StandardCharsets.UTF_8).replace("+", "%20");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + encodedFilename);
+
+        // 2. Range 请求 (If-Range 不匹配时忽略 Range，返回完整文件)
+        List<ByteRange> ranges = List.of();
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (StringUtils.isNotBlank(rangeHeader) && isIfRangeSatisfied(request, etag, lastModified)) {
+            try {
+                List<HttpRange> requested = HttpRange.parseRanges(rangeHeader);
+                // 校验每个区间是否可满足 (起始位置必须小于文件长度)
+                for (HttpRange range : requested) {
+                    if (range.getRangeStart(fileLength) >= fileLength) {
+                        throw new IllegalArgumentException("Range 起始位置超出文件长度");
+                    }
+                }
+                ranges = mergeRanges(requested, fileLength);
+                if (ranges.isEmpty()) {
+                    log.debug("Range 请求头 '{}' 的区间数或总字节数超出限制 (文件长度 {})，返回完整文件", rangeHeader, fileLength);
+                }
+            } catch (IllegalArgumentException e) {
+                log.debug("无法满足的 Range 请求头 '{}' (文件长度 {}): {}", rangeHeader, fileLength, e.getMessage());
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileLength);
+                return;
+            }
+        }
+
+        boolean headRequest = "HEAD".equalsIgnoreCase(request.getMethod());
+
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setContentLengthLong(fileLength);
+            if (!headRequest) {
+                writeRegion(file, 0, fileLength, fileLength, request, response);
+            }
+        } else if (ranges.size() == 1) {
+            long start = ranges.get(0).start();
+            long end = ranges.get(0).end();
+            long length = end - start + 1;
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileLength);
+            response.setContentLengthLong(length);
+            if (!headRequest) {
+                writeRegion(file, start, length, fileLength, request, response);
+            }
+        } else {
+            writeMultipartRanges(file, ranges, fileLength, headRequest, response);
+        }
+    }
+
+    /**
+     * 按起始位置排序并合并重叠或相邻的区间 (RFC 9110 14.2 允许服务端合并区间或忽略 Range)。
+     * 区间数超过 MAX_RANGES，或各区间合计的字节数超过文件长度 (重复请求同一段内容) 时返回空列表，调用方按完整文件响应。
+     *
+     * @param requested  已校验起始位置的区间
+     * @param fileLength 文件长度
+     * @return 合并后的区间，按起始位置升序
+     */
+    private static List<ByteRange> mergeRanges(List<HttpRange> requested, long fileLength) {
+        if (requested.size() > MAX_RANGES) {
+            return List.of();
+        }
+        List<ByteRange> sorted = new ArrayList<>(requested.size());
+        long requestedBytes = 0;
+        for (HttpRange range : requested) {
+            ByteRange byteRange = new ByteRange(range.getRangeStart(fileLength), range.getRangeEnd(fileLength));
+            requestedBytes += byteRange.end() - byteRange.start() + 1;
+            sorted.add(byteRange);
+        }
+        if (requested.size() > 1 && requestedBytes > fileLength) {
+            return List.of();
+        }
+        sorted.sort(Comparator.comparingLong(ByteRange::start));
+        List<ByteRange> merged = new ArrayList<>(sorted.size());
+        for (ByteRange range : sorted) {
+            ByteRange last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range.start() <= last.end() + 1) {
+                merged.set(merged.size() - 1, new ByteRange(last.start(), Math.max(last.end(), range.end())));
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 根据文件大小和最后修改时间生成强 ETag。
+     *
+     * @param fileLength        文件大小 (字节)
+     * @param lastModifiedMillis 最后修改时间 (毫秒)
+     * @return 带双引号的 ETag 字符串
+     */
+    public static String buildEtag(long fileLength, long lastModifiedMillis) {
+        return "\"" + Long.toHexString(fileLength) + "-" + Long.toHexString(lastModifiedMillis) + "\"";
+    }
+
+    private static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return etagMatches(ifNoneMatch, etag, true);
+        }
+        long ifModifiedSince = getDateHeaderSafely(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince != -1 && lastModified <= ifModifiedSince;
+    }
+
+    private static boolean isIfRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (StringUtils.isBlank(ifRange)) {
+            return true;
+        }
+        if (ifRange.trim().startsWith("\"") || ifRange.trim().startsWith("W/")) {
+            // If-Range 只允许强比较
+            return etagMatches(ifRange, etag, false);
+        }
+        long ifRangeDate = getDateHeaderSafely(request, HttpHeaders.IF_RANGE);
+        return ifRangeDate != -1 && lastModified == ifRangeDate;
+    }
+
+    /**
+     * 比较请求头中的 ETag 列表与当前 ETag。
+     *
+     * @param headerValue 请求头值 (可能包含多个逗号分隔的 ETag 或 "*")
+     * @param etag        当前资源的强 ETag
+     * @param weak        是否使用弱比较 (忽略 W/ 前缀)
+     */
+    private static boolean etagMatches(String headerValue, String etag, boolean weak) {
+        for (String candidate : headerValue.split(",")) {
+            String tag = candidate.trim();
+            if ("*".equals(tag)) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                if (!weak) {
+                    continue;
+                }
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long getDateHeaderSafely(HttpServletRequest request, String headerName) {
+        try {
+            return request.getDateHeader(headerName);
+        } catch (IllegalArgumentException e) {
+            log.debug("无法解析日期请求头 {}: {}", headerName, request.getHeader(headerName));
+            return -1;
+        }
+    }
+
+    /**
+     * 写出文件的一个连续区间。容器支持 sendfile 时交由容器完成，否则使用 FileChannel.transferTo。
+     */
+    private static void writeRegion(Path file, long start, long length, long fileLength,
+                                    HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (length >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(TOMCAT_SENDFILE_SUPPORT))) {
+            request.setAttribute(TOMCAT_SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(TOMCAT_SENDFILE_START, start);
+            request.setAttribute(TOMCAT_SENDFILE_END, start + length);
+            log.debug("使用 Tomcat sendfile 输出文件 {} 区间 [{}, {}) / {}", file, start, start + length, fileLength);
+            return;
+        }
+        OutputStream out = response.getOutputStream();
+        transfer(file, start, length, Channels.newChannel(out));
+        out.flush();
+    }
+
+    /**
+     * 以 multipart/byteranges 格式写出多个区间。
+     */
+    private static void writeMultipartRanges(Path file, List<ByteRange> ranges, long fileLength,
+                                             boolean headRequest, HttpServletResponse response) throws IOException {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        if (headRequest) {
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        WritableByteChannel channel = Channels.newChannel(out);
+        for (ByteRange range : ranges) {
+            long start = range.start();
+            long end = range.end();
+            String partHeader = "\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + MediaType.APPLICATION_OCTET_STREAM_VALUE + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + start + "-" + end + "/" + fileLength + "\r\n\r\n";
+            out.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+            transfer(file, start, end - start + 1, channel);
+        }
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    /**
+     * 通过 FileChannel.transferTo 将文件区间写入目标通道。目标通道不会被关闭 (由容器管理响应流)。
+     */
+    private static void transfer(Path file, long start, long length, WritableByteChannel target) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long transferred = fileChannel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    // 文件在传输过程中被截断
+                    log.warn("文件 {} 在传输过程中提前结束，剩余 {} 字节未写出。", file, remaining);
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    /**
+     * 文件中的一个字节区间 (闭区间)。
+     */
+    private record ByteRange(long start, long end) {
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * 目录: src/main/java/org/ls/utils/FileExtensionUtils.java
+ * 文件名: FileExtensionUtils.java
+ * 开发时间: 2026-10-19 16:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 文件扩展名工具类。同步事件中的 extension 字段、全文搜索的文件类型筛选和打包下载都使用同一套规则。
+ */
+package org.ls.utils;
+
+import java.util.Locale;
+
+/**
+ * 文件扩展名工具类
+ */
+public class FileExtensionUtils {
+
+    private FileExtensionUtils() {
+    }
+
+    /**
+     * 获取文件扩展名 (小写，不含点)。
+     * 没有扩展名、以点结尾或仅以点开头的文件名 (例如 ".gitignore") 返回空字符串。
+     * 规则需与 Elasticsearch 回填脚本 (FulltextIndexMaintenanceServiceImpl) 保持一致。
+     *
+     * @param filename 文件名
+     * @return 扩展名，例如 "pdf"；null 输入返回空字符串
+     */
+    public static String getExtension(String filename) {
+        if (filename == null) {
+            return "";
+        }
+        int dotIndex = filename.lastIndexOf('.');
+        if (dotIndex <= 0 || dotIndex == filename.length() - 1) {
+            return "";
+        }
+        return filename.substring(dotIndex + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 规范化用户输入的文件类型 (去除首尾空白和前导点，转为小写)，例如 " .PDF" -> "pdf"。
+     *
+     * @param fileType 文件类型
+     * @return 规范化后的扩展名，空白输入返回空字符串
+     */
+    public static String normalizeFileType(String fileType) {
+        if (fileType == null) {
+            return "";
+        }
+        String normalized = fileType.trim();
+        while (normalized.startsWith(".")) {
+            normalized = normalized.substring(1);
+        }
+        return normalized.toLowerCase(Locale.ROOT);
+    }
+}
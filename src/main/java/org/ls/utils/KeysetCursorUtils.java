@@ -0,0 +1,69 @@
+/**
+ * 目录: src/main/java/org/ls/utils/KeysetCursorUtils.java
+ * 文件名: KeysetCursorUtils.java
+ * 开发时间: 2026-10-19 22:30:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 键集分页 (keyset pagination) 游标的编码与解码。
+ * 游标保存上一页最后一行的排序键值，下一页查询以 "排序键 > 游标" 为条件，代替越翻越慢的 OFFSET。
+ */
+package org.ls.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * 键集分页游标工具类。
+ * 游标格式为各排序键值的 Base64URL (无填充) 以 "." 连接，对前端是不透明字符串，可直接放在 URL 参数中。
+ */
+public class KeysetCursorUtils {
+
+    private static final String SEPARATOR = ".";
+
+    private KeysetCursorUtils() {
+    }
+
+    /**
+     * 把排序键值编码为游标。
+     *
+     * @param values 排序键值 (按排序顺序)，不能为 null
+     * @return 游标字符串
+     */
+    public static String encode(List<String> values) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        List<String> parts = new ArrayList<>(values.size());
+        for (String value : values) {
+            if (value == null) {
+                throw new IllegalArgumentException("键集分页的排序键不能为 null");
+            }
+            parts.add(encoder.encodeToString(value.getBytes(StandardCharsets.UTF_8)));
+        }
+        return String.join(SEPARATOR, parts);
+    }
+
+    /**
+     * 把游标解码为排序键值。
+     *
+     * @param cursor        游标字符串
+     * @param expectedCount 排序键个数
+     * @return 排序键值
+     * @throws IllegalArgumentException 游标格式无效
+     */
+    public static List<String> decode(String cursor, int expectedCount) {
+        String[] parts = cursor.trim().split("\\.", -1);
+        if (parts.length != expectedCount) {
+            throw new IllegalArgumentException("分页游标无效");
+        }
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        List<String> values = new ArrayList<>(expectedCount);
+        try {
+            for (String part : parts) {
+                values.add(new String(decoder.decode(part), StandardCharsets.UTF_8));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("分页游标无效", e);
+        }
+        return values;
+    }
+}
@@ -8,6 +8,7 @@ DROP TABLE IF EXISTS public.t_business_type CASCADE;
 DROP TABLE IF EXISTS public.t_profit_center CASCADE;
 
 -- 1. 工时主表 (t_wkt) - 结构按要求提供，不可更改
+-- 列结构不变，按 ts_date 月度分区的改造见 4.partition-timesheet.sql (在本脚本之后执行)
 CREATE TABLE IF NOT EXISTS public.t_wkt
 (
     ts_id         VARCHAR(30) NOT NULL,        -- 工时申请单号
@@ -252,6 +253,27 @@ COMMENT ON INDEX public.idx_t_wkt_dep IS '工时表按部门名称查询索引';
 -- 复合索引示例 (如果经常同时按这几个条件查询)
 -- CREATE INDEX IF NOT EXISTS idx_t_wkt_emp_date_bm ON public.t_wkt (employee, ts_date, ts_bm);
 
+-- 工时统计分页 (/api/timesheets/statistics) 的排序键索引，与查询的 ORDER BY ts_date DESC, employee, ts_id, ts_bm 一致，
+-- 键集分页时从上一页最后一行直接定位，不再扫描并丢弃 OFFSET 之前的行
+CREATE INDEX IF NOT EXISTS idx_t_wkt_stats_keyset ON public.t_wkt (ts_date DESC, employee, ts_id, ts_bm);
+COMMENT ON INDEX public.idx_t_wkt_stats_keyset IS '工时统计分页排序键索引 (键集分页)';
+
+-- 工时统计的子串过滤 (LIKE '%关键字%') 无法使用 B-tree 索引，使用 pg_trgm 三元组 GIN 索引 (关键字至少 3 个字符时生效)
+-- 已有数据的库上执行时，建议改用 CREATE INDEX CONCURRENTLY 避免长时间锁表
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_t_wkt_tr_trgm ON public.t_wkt USING gin (tr gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_t_wkt_employee_trgm ON public.t_wkt USING gin (employee gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_t_wkt_dep_trgm ON public.t_wkt USING gin (dep gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_t_wkt_ts_bm_trgm ON public.t_wkt USING gin (ts_bm gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_t_wkt_ts_name_trgm ON public.t_wkt USING gin (ts_name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_t_wkt_zone_trgm ON public.t_wkt USING gin (zone gin_trgm_ops);
+COMMENT ON INDEX public.idx_t_wkt_tr_trgm IS '工时表工时区间子串查询索引 (pg_trgm)';
+COMMENT ON INDEX public.idx_t_wkt_employee_trgm IS '工时表员工子串查询索引 (pg_trgm)';
+COMMENT ON INDEX public.idx_t_wkt_dep_trgm IS '工时表部门子串查询索引 (pg_trgm)';
+COMMENT ON INDEX public.idx_t_wkt_ts_bm_trgm IS '工时表工时编码子串查询索引 (pg_trgm)';
+COMMENT ON INDEX public.idx_t_wkt_ts_name_trgm IS '工时表工时名称子串查询索引 (pg_trgm)';
+COMMENT ON INDEX public.idx_t_wkt_zone_trgm IS '工时表利润中心子串查询索引 (pg_trgm)';
+
 -- === 为 t_employee 表添加索引 ===
 CREATE INDEX IF NOT EXISTS idx_t_employee_dep_id ON public.t_employee (dep_id);
 COMMENT ON INDEX public.idx_t_employee_dep_id IS '员工表按部门ID查询索引';
@@ -25,13 +25,48 @@ COMMENT ON COLUMN file_sync_map.source_last_modified IS '源文件在加密目
 COMMENT ON COLUMN file_sync_map.last_updated IS '记录最后更新时间戳';
 
 
+-- 1.1 文件元数据字段 (复制 / 移动时记录，列表类接口直接读取，不再逐个读取文件属性)
+-- 使用 ADD COLUMN IF NOT EXISTS，已有数据库可直接重复执行本段
+ALTER TABLE file_sync_map ADD COLUMN IF NOT EXISTS source_file_size BIGINT NULL;
+ALTER TABLE file_sync_map ADD COLUMN IF NOT EXISTS target_filename VARCHAR(255) NULL;
+ALTER TABLE file_sync_map ADD COLUMN IF NOT EXISTS target_file_size BIGINT NULL;
+ALTER TABLE file_sync_map ADD COLUMN IF NOT EXISTS target_last_modified TIMESTAMP NULL;
+ALTER TABLE file_sync_map ADD COLUMN IF NOT EXISTS metadata_verified_at TIMESTAMP NULL;
+
+COMMENT ON COLUMN file_sync_map.source_file_size IS '源文件大小 (字节)，复制到临时目录时记录';
+COMMENT ON COLUMN file_sync_map.target_filename IS '解密目标文件名 (目标路径 = 目标目录 + relative_dir_path + target_filename)，移动到目标目录时记录';
+COMMENT ON COLUMN file_sync_map.target_file_size IS '解密目标文件大小 (字节)，移动到目标目录时记录';
+COMMENT ON COLUMN file_sync_map.target_last_modified IS '解密目标文件最后修改时间 (秒级)，移动到目标目录时记录';
+COMMENT ON COLUMN file_sync_map.metadata_verified_at IS '后台校验任务最近一次核对元数据与文件系统的时间';
+
+
 -- 2. 创建索引
 -- 提高按源路径+文件名查询的性能
 CREATE INDEX IF NOT EXISTS idx_fsmap_path_file ON file_sync_map (relative_dir_path, original_filename);
 -- 提高按状态查询的性能
 CREATE INDEX IF NOT EXISTS idx_fsmap_status ON file_sync_map (status);
 -- temp_filename 的唯一约束通常会自动创建索引，无需手动创建
+-- 文件搜索按状态过滤、按修改时间倒序分页
+CREATE INDEX IF NOT EXISTS idx_fsmap_status_target_mtime ON file_sync_map (status, target_last_modified DESC);
+CREATE INDEX IF NOT EXISTS idx_fsmap_source_mtime ON file_sync_map (source_last_modified DESC);
+
+
+-- 2.1 全文索引对账任务断点表 (任务中断或应用重启后从断点继续)
+CREATE TABLE IF NOT EXISTS fulltext_reconcile_checkpoint (
+                                                             job_name VARCHAR(100) PRIMARY KEY,
+                                                             phase VARCHAR(20) NOT NULL,
+                                                             full_reindex BOOLEAN NOT NULL DEFAULT FALSE,
+                                                             last_sync_map_id BIGINT NOT NULL DEFAULT 0,
+                                                             last_source_path VARCHAR(1300) NULL,
+                                                             started_at TIMESTAMP NULL,
+                                                             updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
 
+COMMENT ON TABLE fulltext_reconcile_checkpoint IS '全文索引 (dms_files) 与 file_sync_map 对账任务的断点';
+COMMENT ON COLUMN fulltext_reconcile_checkpoint.phase IS '当前阶段 (records: 检查缺失和过期的文档, documents: 检查多余的文档, done: 已完成)';
+COMMENT ON COLUMN fulltext_reconcile_checkpoint.full_reindex IS '是否为全量重建 (所有已同步记录都重新发布 upsert 事件)';
+COMMENT ON COLUMN fulltext_reconcile_checkpoint.last_sync_map_id IS 'records 阶段已处理的最后一条记录 ID';
+COMMENT ON COLUMN fulltext_reconcile_checkpoint.last_source_path IS 'documents 阶段已处理的最后一个文档的 source_path';
 
 -- 3. 示例数据 (注释掉，需要时取消注释)
 /*
@@ -0,0 +1,140 @@
+-- 文件路径: src/main/resources/db/4.partition-timesheet.sql
+-- 用途: 将工时主表 t_wkt 改为按 ts_date 月度范围分区的分区表 (声明式分区)，列结构和组合主键不变。
+-- 统计查询都按 ts_date 范围过滤，分区后只扫描范围内的月份分区 (分区裁剪)，历史数据增长不影响按年 / 按月的统计。
+-- 执行顺序: 在 1.init-timesheet.sql 之后执行。脚本可重复执行，t_wkt 已是分区表时只补建分区和索引。
+-- 注意: 迁移在一个事务内完成，期间 t_wkt 被锁定，已有数据的库请在停机窗口执行。
+--       原表改名为 t_wkt_unpartitioned 保留，核对数据无误后手工删除:
+--       DROP TABLE public.t_wkt_unpartitioned;
+
+BEGIN;
+
+-- === 1. 分区维护函数 ===
+-- 为 [p_from, p_to] 覆盖的每个月创建分区 t_wkt_pYYYYMM (已存在的跳过)，返回新建的分区数。
+-- 默认分区 t_wkt_default 接收没有对应月份分区的行；其中已有的行所在的月份也会建分区，并把这些行迁移到新分区，
+-- 否则默认分区中存在该月的行时无法再创建该月的分区。
+-- 应用启动时和每天由 TimesheetPartitionMaintenance 调用，预建未来几个月的分区。
+CREATE OR REPLACE FUNCTION public.create_t_wkt_partitions(p_from DATE, p_to DATE)
+    RETURNS INTEGER
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    v_month   DATE;
+    v_next    DATE;
+    v_name    TEXT;
+    v_created INTEGER := 0;
+    v_min     DATE;
+    v_max     DATE;
+BEGIN
+    IF to_regclass('public.t_wkt_default') IS NOT NULL THEN
+        SELECT min(ts_date), max(ts_date) INTO v_min, v_max FROM public.t_wkt_default;
+        p_from := LEAST(p_from, v_min);
+        p_to := GREATEST(p_to, v_max);
+    END IF;
+
+    v_month := date_trunc('month', p_from)::date;
+    WHILE v_month <= p_to
+        LOOP
+            v_next := (v_month + INTERVAL '1 month')::date;
+            v_name := 't_wkt_p' || to_char(v_month, 'YYYYMM');
+            IF to_regclass('public.' || v_name) IS NULL THEN
+                -- 先建独立表并迁入默认分区中该月的行，再挂载为分区 (挂载时自动创建分区表上定义的索引)
+                EXECUTE format('CREATE TABLE public.%I (LIKE public.t_wkt INCLUDING DEFAULTS)', v_name);
+                IF to_regclass('public.t_wkt_default') IS NOT NULL THEN
+                    EXECUTE format('WITH moved AS (DELETE FROM public.t_wkt_default WHERE ts_date >= %L AND ts_date < %L RETURNING *) '
+                                       'INSERT INTO public.%I SELECT * FROM moved', v_month, v_next, v_name);
+                END IF;
+                EXECUTE format('ALTER TABLE public.t_wkt ATTACH PARTITION public.%I FOR VALUES FROM (%L) TO (%L)',
+                               v_name, v_month, v_next);
+                v_created := v_created + 1;
+            END IF;
+            v_month := v_next;
+        END LOOP;
+    RETURN v_created;
+END;
+$$;
+
+COMMENT ON FUNCTION public.create_t_wkt_partitions(DATE, DATE) IS '为工时主表 t_wkt 按月创建 [p_from, p_to] 范围内缺少的分区，并迁出默认分区中对应月份的行';
+
+-- === 2. 迁移: 原表改名，创建同结构的分区表并复制数据 ===
+DO
+$$
+DECLARE
+    v_index RECORD;
+    v_min   DATE;
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = 'public.t_wkt'::regclass) THEN
+        RAISE NOTICE 't_wkt 已是分区表，跳过迁移';
+        RETURN;
+    END IF;
+
+    ALTER TABLE public.t_wkt RENAME TO t_wkt_unpartitioned;
+    ALTER TABLE public.t_wkt_unpartitioned RENAME CONSTRAINT t_wkt_pkey TO t_wkt_unpartitioned_pkey;
+    -- 索引名在 schema 内唯一，原表的索引改名，由下面在分区表上以原名重新创建
+    FOR v_index IN SELECT indexname FROM pg_indexes
+                   WHERE schemaname = 'public' AND tablename = 't_wkt_unpartitioned' AND indexname LIKE 'idx_t_wkt%'
+        LOOP
+            EXECUTE format('ALTER INDEX public.%I RENAME TO %I', v_index.indexname, v_index.indexname || '_unpartitioned');
+        END LOOP;
+
+    -- 列定义、默认值和列注释与原表一致 (原表结构见 1.init-timesheet.sql，不可更改)
+    CREATE TABLE public.t_wkt
+    (
+        LIKE public.t_wkt_unpartitioned INCLUDING DEFAULTS INCLUDING COMMENTS,
+        PRIMARY KEY (ts_id, employee, ts_date, ts_bm)
+    ) PARTITION BY RANGE (ts_date);
+    COMMENT ON TABLE public.t_wkt IS '工时主表 (数据来源于业务系统，按 ts_date 月度分区)';
+    ALTER TABLE public.t_wkt OWNER TO postgres;
+
+    CREATE TABLE public.t_wkt_default PARTITION OF public.t_wkt DEFAULT;
+    COMMENT ON TABLE public.t_wkt_default IS '工时主表默认分区 (没有对应月份分区的行，由 create_t_wkt_partitions 迁出)';
+
+    -- 覆盖已有数据的最早月份到未来 12 个月
+    SELECT min(ts_date) INTO v_min FROM public.t_wkt_unpartitioned;
+    PERFORM public.create_t_wkt_partitions(COALESCE(v_min, CURRENT_DATE), (CURRENT_DATE + INTERVAL '12 months')::date);
+
+    INSERT INTO public.t_wkt SELECT * FROM public.t_wkt_unpartitioned;
+END;
+$$;
+
+-- === 3. 分区表索引 (在分区表上创建，自动应用到现有分区和以后挂载的分区) ===
+CREATE INDEX IF NOT EXISTS idx_t_wkt_ts_date ON public.t_wkt (ts_date);
+COMMENT ON INDEX public.idx_t_wkt_ts_date IS '工时表按日期查询索引';
+
+CREATE INDEX IF NOT EXISTS idx_t_wkt_employee ON public.t_wkt (employee);
+COMMENT ON INDEX public.idx_t_wkt_employee IS '工时表按员工查询索引';
+
+-- 按员工取最近一条记录 (findLatestDepByEmployee) 时，各分区按日期有序，可从最新的分区开始扫描并在取到一行后停止
+CREATE INDEX IF NOT EXISTS idx_t_wkt_employee_ts_date ON public.t_wkt (employee, ts_date);
+COMMENT ON INDEX public.idx_t_wkt_employee_ts_date IS '工时表按员工和日期查询索引';
+
+CREATE INDEX IF NOT EXISTS idx_t_wkt_ts_bm ON public.t_wkt (ts_bm);
+COMMENT ON INDEX public.idx_t_wkt_ts_bm IS '工时表按工时编码查询索引';
+
+CREATE INDEX IF NOT EXISTS idx_t_wkt_zone ON public.t_wkt (zone);
+COMMENT ON INDEX public.idx_t_wkt_zone IS '工时表按利润中心查询索引';
+
+CREATE INDEX IF NOT EXISTS idx_t_wkt_dep ON public.t_wkt (dep);
+COMMENT ON INDEX public.idx_t_wkt_dep IS '工时表按部门名称查询索引';
+
+CREATE INDEX IF NOT EXISTS idx_t_wkt_stats_keyset ON public.t_wkt (ts_date DESC, employee, ts_id, ts_bm);
+COMMENT ON INDEX public.idx_t_wkt_stats_keyset IS '工时统计分页排序键索引 (键集分页)';
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_t_wkt_tr_trgm ON public.t_wkt USING gin (tr gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_t_wkt_employee_trgm ON public.t_wkt USING gin (employee gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_t_wkt_dep_trgm ON public.t_wkt USING gin (dep gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_t_wkt_ts_bm_trgm ON public.t_wkt USING gin (ts_bm gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_t_wkt_ts_name_trgm ON public.t_wkt USING gin (ts_name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_t_wkt_zone_trgm ON public.t_wkt USING gin (zone gin_trgm_ops);
+COMMENT ON INDEX public.idx_t_wkt_tr_trgm IS '工时表工时区间子串查询索引 (pg_trgm)';
+COMMENT ON INDEX public.idx_t_wkt_employee_trgm IS '工时表员工子串查询索引 (pg_trgm)';
+COMMENT ON INDEX public.idx_t_wkt_dep_trgm IS '工时表部门子串查询索引 (pg_trgm)';
+COMMENT ON INDEX public.idx_t_wkt_ts_bm_trgm IS '工时表工时编码子串查询索引 (pg_trgm)';
+COMMENT ON INDEX public.idx_t_wkt_ts_name_trgm IS '工时表工时名称子串查询索引 (pg_trgm)';
+COMMENT ON INDEX public.idx_t_wkt_zone_trgm IS '工时表利润中心子串查询索引 (pg_trgm)';
+
+COMMIT;
+
+-- 收集分区表及各分区的统计信息 (autovacuum 只分析各分区，不分析分区表本身)
+ANALYZE public.t_wkt;
@@ -0,0 +1,206 @@
+-- 文件路径: src/main/resources/db/5.rollup-timesheet.sql
+-- 用途: 工时按月预聚合汇总表 t_wkt_monthly_rollup (月份、员工、工时编码、利润中心、项目编码 -> 工时合计)。
+-- 部门整体情况、重点项目、利润中心交叉表、月度项目数等统计读取汇总表，不再每次聚合全部明细，
+-- 统计耗时只与查询范围内的月份数有关，与历史数据量无关 (查询范围首尾不完整的月份仍读取明细，见 TimesheetWorkMapper.xml 的 Monthly_Hours_Source)。
+-- t_wkt 上的语句级触发器把每条写入语句 (本应用的导入 / 更新 / 删除以及业务系统直接写库) 的增量追加到队列表 t_wkt_rollup_delta，
+-- 不更新汇总表中的行，并发写入 t_wkt 的语句不会在热点汇总行上互相阻塞或死锁；
+-- 应用定时调用 apply_t_wkt_rollup_deltas() 把队列中的增量按固定顺序合并到汇总表 (多个实例只有一个执行)。
+-- 读取时汇总表与尚未合并的增量一起聚合，统计结果始终与明细一致。未执行本脚本时统计查询直接读取 t_wkt 明细。
+-- 执行顺序: 在 1.init-timesheet.sql 和 4.partition-timesheet.sql 之后执行 (先改分区再建触发器，原表改名时触发器会留在原表上)。
+-- 脚本可重复执行，每次执行都会按 t_wkt 全量重建汇总表。
+
+BEGIN;
+
+-- 阻止建触发器和回填期间的写入，保证汇总表与明细一致
+LOCK TABLE public.t_wkt IN SHARE MODE;
+
+-- === 1. 汇总表 ===
+-- zone、proj_bm 在明细中可以为空，汇总表中以空串代替 (主键列不能为 NULL)，读取时再转回 NULL
+CREATE TABLE IF NOT EXISTS public.t_wkt_monthly_rollup
+(
+    month_start DATE           NOT NULL, -- 月份 (当月第一天)
+    employee    VARCHAR(30)    NOT NULL, -- 员工信息 (工号+姓名)
+    ts_bm       VARCHAR(200)   NOT NULL, -- 工时编码
+    zone        VARCHAR(200)   NOT NULL, -- 利润中心 (明细为空时为空串)
+    proj_bm     VARCHAR(30)    NOT NULL, -- 项目编码 (明细为空时为空串)
+    total_hours NUMERIC        NOT NULL, -- 工时小时数合计
+    row_count   INTEGER        NOT NULL, -- 明细行数
+    PRIMARY KEY (month_start, employee, ts_bm, zone, proj_bm)
+);
+
+COMMENT ON TABLE public.t_wkt_monthly_rollup IS '工时按月汇总表 (由 t_wkt 触发器增量维护，用于部门统计)';
+COMMENT ON COLUMN public.t_wkt_monthly_rollup.month_start IS '月份 (当月第一天)';
+COMMENT ON COLUMN public.t_wkt_monthly_rollup.employee IS '员工信息，工号+姓名组合';
+COMMENT ON COLUMN public.t_wkt_monthly_rollup.ts_bm IS '工时编码';
+COMMENT ON COLUMN public.t_wkt_monthly_rollup.zone IS '利润中心全名，明细为空时为空串';
+COMMENT ON COLUMN public.t_wkt_monthly_rollup.proj_bm IS '项目编码，明细为空时为空串';
+COMMENT ON COLUMN public.t_wkt_monthly_rollup.total_hours IS '工时小时数合计';
+COMMENT ON COLUMN public.t_wkt_monthly_rollup.row_count IS '汇总的明细行数，为 0 时该行被删除';
+
+ALTER TABLE public.t_wkt_monthly_rollup OWNER TO postgres;
+
+CREATE INDEX IF NOT EXISTS idx_t_wkt_monthly_rollup_ts_bm ON public.t_wkt_monthly_rollup (ts_bm, month_start);
+COMMENT ON INDEX public.idx_t_wkt_monthly_rollup_ts_bm IS '工时汇总表按工时编码查询索引 (重点项目参与人员)';
+
+-- 明细全部删除后合计行的 row_count 变为 0，合并增量后只需通过该部分索引找到并删除这些行
+CREATE INDEX IF NOT EXISTS idx_t_wkt_monthly_rollup_empty ON public.t_wkt_monthly_rollup (month_start) WHERE row_count <= 0;
+COMMENT ON INDEX public.idx_t_wkt_monthly_rollup_empty IS '工时汇总表待清理的空行索引';
+
+-- === 2. 增量队列表 ===
+-- 只追加、没有唯一约束，触发器写入时不与其他语句争用同一行
+CREATE TABLE IF NOT EXISTS public.t_wkt_rollup_delta
+(
+    month_start DATE         NOT NULL, -- 月份 (当月第一天)
+    employee    VARCHAR(30)  NOT NULL, -- 员工信息 (工号+姓名)
+    ts_bm       VARCHAR(200) NOT NULL, -- 工时编码
+    zone        VARCHAR(200) NOT NULL, -- 利润中心 (明细为空时为空串)
+    proj_bm     VARCHAR(30)  NOT NULL, -- 项目编码 (明细为空时为空串)
+    total_hours NUMERIC      NOT NULL, -- 工时小时数增量
+    row_count   INTEGER      NOT NULL  -- 明细行数增量
+);
+
+COMMENT ON TABLE public.t_wkt_rollup_delta IS '工时按月汇总增量队列 (由 t_wkt 触发器追加，apply_t_wkt_rollup_deltas 合并到汇总表后删除)';
+COMMENT ON COLUMN public.t_wkt_rollup_delta.total_hours IS '工时小时数增量 (删除为负数)';
+COMMENT ON COLUMN public.t_wkt_rollup_delta.row_count IS '明细行数增量 (删除为负数)';
+
+ALTER TABLE public.t_wkt_rollup_delta OWNER TO postgres;
+
+CREATE INDEX IF NOT EXISTS idx_t_wkt_rollup_delta_month ON public.t_wkt_rollup_delta (month_start);
+COMMENT ON INDEX public.idx_t_wkt_rollup_delta_month IS '工时汇总增量队列按月份读取索引';
+
+-- === 3. 增量维护触发器 ===
+-- 语句级触发器: 每条 INSERT / UPDATE / DELETE 语句 (包括多行插入和 INSERT ... ON CONFLICT DO UPDATE) 只执行一次，
+-- 把变化的行按汇总键聚合为增量后追加到队列表
+CREATE OR REPLACE FUNCTION public.t_wkt_rollup_apply()
+    RETURNS TRIGGER
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO public.t_wkt_rollup_delta (month_start, employee, ts_bm, zone, proj_bm, total_hours, row_count)
+        SELECT date_trunc('month', ts_date)::date, employee, ts_bm, COALESCE(zone, ''), COALESCE(proj_bm, ''),
+               SUM(ts_hours::numeric), COUNT(*)
+        FROM new_rows
+        GROUP BY 1, 2, 3, 4, 5;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO public.t_wkt_rollup_delta (month_start, employee, ts_bm, zone, proj_bm, total_hours, row_count)
+        SELECT date_trunc('month', ts_date)::date, employee, ts_bm, COALESCE(zone, ''), COALESCE(proj_bm, ''),
+               -SUM(ts_hours::numeric), -COUNT(*)
+        FROM old_rows
+        GROUP BY 1, 2, 3, 4, 5;
+    ELSE
+        -- UPDATE: 新值计入、旧值扣除，汇总键和工时都没有变化的行相互抵消
+        INSERT INTO public.t_wkt_rollup_delta (month_start, employee, ts_bm, zone, proj_bm, total_hours, row_count)
+        SELECT date_trunc('month', ts_date)::date, employee, ts_bm, COALESCE(zone, ''), COALESCE(proj_bm, ''),
+               SUM(hours), SUM(cnt)
+        FROM (SELECT ts_date, employee, ts_bm, zone, proj_bm, ts_hours::numeric AS hours, 1 AS cnt FROM new_rows
+              UNION ALL
+              SELECT ts_date, employee, ts_bm, zone, proj_bm, -ts_hours::numeric, -1 FROM old_rows) d
+        GROUP BY 1, 2, 3, 4, 5
+        HAVING SUM(hours) <> 0 OR SUM(cnt) <> 0;
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+-- 把队列中已提交的增量合并到汇总表并删除 (由应用定时调用)。
+-- 只有持有咨询锁的一个会话执行合并，按汇总键顺序更新，其他实例同时调用时直接返回 0
+CREATE OR REPLACE FUNCTION public.apply_t_wkt_rollup_deltas()
+    RETURNS BIGINT
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    v_rows BIGINT;
+BEGIN
+    IF NOT pg_try_advisory_xact_lock(hashtext('t_wkt_monthly_rollup')) THEN
+        RETURN 0;
+    END IF;
+    WITH moved AS (
+        DELETE FROM public.t_wkt_rollup_delta RETURNING *
+    )
+    INSERT INTO public.t_wkt_monthly_rollup AS r (month_start, employee, ts_bm, zone, proj_bm, total_hours, row_count)
+    SELECT month_start, employee, ts_bm, zone, proj_bm, SUM(total_hours), SUM(row_count)
+    FROM moved
+    GROUP BY 1, 2, 3, 4, 5
+    ORDER BY 1, 2, 3, 4, 5
+    ON CONFLICT (month_start, employee, ts_bm, zone, proj_bm) DO UPDATE
+        SET total_hours = r.total_hours + EXCLUDED.total_hours,
+            row_count   = r.row_count + EXCLUDED.row_count;
+    GET DIAGNOSTICS v_rows = ROW_COUNT;
+
+    DELETE FROM public.t_wkt_monthly_rollup WHERE row_count <= 0;
+    RETURN v_rows;
+END;
+$$;
+
+CREATE OR REPLACE FUNCTION public.t_wkt_rollup_truncate()
+    RETURNS TRIGGER
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    TRUNCATE public.t_wkt_monthly_rollup, public.t_wkt_rollup_delta;
+    RETURN NULL;
+END;
+$$;
+
+-- 按 t_wkt 全量重建汇总表 (初始化，或怀疑汇总表与明细不一致时手工执行)
+CREATE OR REPLACE FUNCTION public.rebuild_t_wkt_monthly_rollup()
+    RETURNS BIGINT
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    v_rows BIGINT;
+BEGIN
+    LOCK TABLE public.t_wkt IN SHARE MODE;
+    PERFORM pg_advisory_xact_lock(hashtext('t_wkt_monthly_rollup'));
+    TRUNCATE public.t_wkt_monthly_rollup, public.t_wkt_rollup_delta;
+    INSERT INTO public.t_wkt_monthly_rollup (month_start, employee, ts_bm, zone, proj_bm, total_hours, row_count)
+    SELECT date_trunc('month', ts_date)::date, employee, ts_bm, COALESCE(zone, ''), COALESCE(proj_bm, ''),
+           SUM(ts_hours::numeric), COUNT(*)
+    FROM public.t_wkt
+    GROUP BY 1, 2, 3, 4, 5;
+    GET DIAGNOSTICS v_rows = ROW_COUNT;
+    RETURN v_rows;
+END;
+$$;
+
+COMMENT ON FUNCTION public.t_wkt_rollup_apply() IS '将 t_wkt 语句级变化 (转换表) 聚合为增量追加到汇总增量队列';
+COMMENT ON FUNCTION public.apply_t_wkt_rollup_deltas() IS '将汇总增量队列合并到工时按月汇总表，返回合并的汇总键数';
+COMMENT ON FUNCTION public.rebuild_t_wkt_monthly_rollup() IS '按 t_wkt 全量重建工时按月汇总表，返回汇总行数';
+
+-- 带转换表的触发器每个只能对应一种事件
+DROP TRIGGER IF EXISTS trg_t_wkt_rollup_insert ON public.t_wkt;
+DROP TRIGGER IF EXISTS trg_t_wkt_rollup_update ON public.t_wkt;
+DROP TRIGGER IF EXISTS trg_t_wkt_rollup_delete ON public.t_wkt;
+DROP TRIGGER IF EXISTS trg_t_wkt_rollup_truncate ON public.t_wkt;
+
+CREATE TRIGGER trg_t_wkt_rollup_insert
+    AFTER INSERT ON public.t_wkt
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION public.t_wkt_rollup_apply();
+
+CREATE TRIGGER trg_t_wkt_rollup_update
+    AFTER UPDATE ON public.t_wkt
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION public.t_wkt_rollup_apply();
+
+CREATE TRIGGER trg_t_wkt_rollup_delete
+    AFTER DELETE ON public.t_wkt
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION public.t_wkt_rollup_apply();
+
+CREATE TRIGGER trg_t_wkt_rollup_truncate
+    AFTER TRUNCATE ON public.t_wkt
+    FOR EACH STATEMENT EXECUTE FUNCTION public.t_wkt_rollup_truncate();
+
+-- === 4. 回填 ===
+SELECT public.rebuild_t_wkt_monthly_rollup();
+
+COMMIT;
+
+ANALYZE public.t_wkt_monthly_rollup;
+ANALYZE public.t_wkt_rollup_delta;
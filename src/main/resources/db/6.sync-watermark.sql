@@ -0,0 +1,236 @@
+-- 文件路径: src/main/resources/db/6.sync-watermark.sql
+-- 用途: 维度数据增量同步 (部门、员工、工时编码、利润中心) 所需的维度值登记表和同步水位表。
+-- t_wkt 的列结构不可更改 (没有导入批次号或入库时间列)，因此由 t_wkt 上的语句级触发器把每条语句写入的维度值登记到
+-- t_wkt_dimension_value，新出现的值记录写入它的事务号 seen_xid；同步时只读取 seen_xid 不低于上次同步水位的值，
+-- 员工和工时编码再按这些值通过索引读取 t_wkt 中对应的行，不再每次扫描整个 t_wkt。
+-- 触发器只登记新出现的值 (不锁定已有明细行的登记行)，各值的明细行数变化追加到只追加的队列表 t_wkt_dimension_delta，
+-- 应用定时调用 apply_t_wkt_dimension_deltas() 合并到登记表的 row_count (多个实例只有一个执行，不锁 t_wkt)；
+-- 同步页面的源表维度数量按登记表行数与尚未合并的增量之和计数，与明细一致。
+-- 执行顺序: 在 1.init-timesheet.sql 和 4.partition-timesheet.sql 之后执行。需要 PostgreSQL 13 及以上 (pg_current_xact_id)。
+-- 脚本可重复执行，每次执行都会按 t_wkt 全量重建登记表，并把水位重置为 0 (下一次同步检查全部维度值)。
+
+BEGIN;
+
+-- 阻止建触发器和回填期间的写入，保证登记表与明细一致
+LOCK TABLE public.t_wkt IN SHARE MODE;
+
+-- === 1. 维度值登记表 ===
+CREATE TABLE IF NOT EXISTS public.t_wkt_dimension_value
+(
+    dimension VARCHAR(20)  NOT NULL, -- 维度: department / employee / timesheet_code / profit_center
+    value     VARCHAR(200) NOT NULL, -- 维度值 (t_wkt 的 dep / employee / ts_bm / zone)
+    seen_xid  BIGINT       NOT NULL DEFAULT pg_current_xact_id()::text::bigint, -- 首次登记该值的事务号
+    row_count BIGINT       NOT NULL DEFAULT 0, -- 已合并的明细行数 (不含队列中尚未合并的增量)
+    PRIMARY KEY (dimension, value)
+);
+
+COMMENT ON TABLE public.t_wkt_dimension_value IS 't_wkt 维度值登记表 (由 t_wkt 触发器维护，用于维度增量同步和源表维度计数)';
+COMMENT ON COLUMN public.t_wkt_dimension_value.dimension IS '维度: department / employee / timesheet_code / profit_center';
+COMMENT ON COLUMN public.t_wkt_dimension_value.value IS '维度值';
+COMMENT ON COLUMN public.t_wkt_dimension_value.seen_xid IS '首次登记该值的事务号 (pg_current_xact_id)，与同步水位比较';
+COMMENT ON COLUMN public.t_wkt_dimension_value.row_count IS '已合并的明细行数，为 0 时不计入源表维度数量，再次写入时重新登记';
+
+ALTER TABLE public.t_wkt_dimension_value OWNER TO postgres;
+
+-- 早期版本的登记表没有行数列，或由触发器直接更新行数 (热点行)；统一为由队列合并维护
+DROP INDEX IF EXISTS public.idx_t_wkt_dimension_value_empty;
+ALTER TABLE public.t_wkt_dimension_value ADD COLUMN IF NOT EXISTS row_count BIGINT NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS idx_t_wkt_dimension_value_seen ON public.t_wkt_dimension_value (dimension, seen_xid);
+COMMENT ON INDEX public.idx_t_wkt_dimension_value_seen IS '维度值登记表按同步水位查询新值索引';
+
+-- 行数增量队列: 只追加、没有唯一约束，触发器写入时不与其他语句争用同一行
+CREATE TABLE IF NOT EXISTS public.t_wkt_dimension_delta
+(
+    dimension VARCHAR(20)  NOT NULL, -- 维度
+    value     VARCHAR(200) NOT NULL, -- 维度值
+    row_count BIGINT       NOT NULL  -- 明细行数增量 (删除为负数)
+);
+
+COMMENT ON TABLE public.t_wkt_dimension_delta IS '维度值明细行数增量队列 (由 t_wkt 触发器追加，apply_t_wkt_dimension_deltas 合并到登记表后删除)';
+COMMENT ON COLUMN public.t_wkt_dimension_delta.row_count IS '明细行数增量 (删除为负数)';
+
+ALTER TABLE public.t_wkt_dimension_delta OWNER TO postgres;
+
+-- === 2. 同步水位表 ===
+-- last_xmin 为上次成功同步时快照中最早的未结束事务号: 低于它的事务都已提交或回滚，其登记的值已被该次同步读到；
+-- 不低于它的值 (包括同步时尚未提交的导入) 由下一次同步读取，重复读取的值按冲突跳过
+CREATE TABLE IF NOT EXISTS public.t_sync_watermark
+(
+    dimension VARCHAR(20) NOT NULL PRIMARY KEY, -- 维度
+    last_xmin BIGINT      NOT NULL DEFAULT 0,   -- 同步水位 (事务号)
+    synced_at TIMESTAMP                         -- 上次成功同步的时间
+);
+
+COMMENT ON TABLE public.t_sync_watermark IS '维度增量同步水位表';
+COMMENT ON COLUMN public.t_sync_watermark.last_xmin IS '上次成功同步时快照中最早的未结束事务号，seen_xid 不低于该值的维度值需要同步';
+COMMENT ON COLUMN public.t_sync_watermark.synced_at IS '上次成功同步的时间';
+
+ALTER TABLE public.t_sync_watermark OWNER TO postgres;
+
+-- === 3. 增量维护触发器 ===
+-- 语句级触发器: 每条 INSERT / UPDATE / DELETE 语句只执行一次。
+-- 写入的值中登记表没有、或已合并行数为 0 的值重新登记为当前事务号 (供增量同步读取)；已有明细行的值先按 NOT EXISTS 过滤掉，
+-- 不进入 ON CONFLICT，不锁定热点登记行。各值的明细行数变化只追加到增量队列，由 apply_t_wkt_dimension_deltas() 定时合并，
+-- 并发写入 t_wkt 的语句 (导入分批、业务系统直接写库) 不会在登记表上互相阻塞或死锁
+CREATE OR REPLACE FUNCTION public.t_wkt_dimension_apply()
+    RETURNS TRIGGER
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        INSERT INTO public.t_wkt_dimension_value AS v (dimension, value)
+        SELECT DISTINCT d.dimension, d.value
+        FROM new_rows n
+                 CROSS JOIN LATERAL (VALUES ('department', n.dep), ('employee', n.employee),
+                                            ('timesheet_code', n.ts_bm), ('profit_center', n.zone)) AS d (dimension, value)
+        WHERE d.value IS NOT NULL
+          AND NOT EXISTS (SELECT 1
+                          FROM public.t_wkt_dimension_value e
+                          WHERE e.dimension = d.dimension
+                            AND e.value = d.value
+                            AND e.row_count > 0)
+        ORDER BY 1, 2
+        ON CONFLICT (dimension, value) DO UPDATE SET seen_xid = EXCLUDED.seen_xid;
+    END IF;
+
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO public.t_wkt_dimension_delta (dimension, value, row_count)
+        SELECT d.dimension, d.value, COUNT(*)
+        FROM new_rows n
+                 CROSS JOIN LATERAL (VALUES ('department', n.dep), ('employee', n.employee),
+                                            ('timesheet_code', n.ts_bm), ('profit_center', n.zone)) AS d (dimension, value)
+        WHERE d.value IS NOT NULL
+        GROUP BY 1, 2;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO public.t_wkt_dimension_delta (dimension, value, row_count)
+        SELECT d.dimension, d.value, -COUNT(*)
+        FROM old_rows o
+                 CROSS JOIN LATERAL (VALUES ('department', o.dep), ('employee', o.employee),
+                                            ('timesheet_code', o.ts_bm), ('profit_center', o.zone)) AS d (dimension, value)
+        WHERE d.value IS NOT NULL
+        GROUP BY 1, 2;
+    ELSE
+        -- UPDATE: 新值计入、旧值扣除，维度列没有变化的行相互抵消
+        INSERT INTO public.t_wkt_dimension_delta (dimension, value, row_count)
+        SELECT d.dimension, d.value, SUM(d.cnt)
+        FROM (SELECT dep, employee, ts_bm, zone, 1 AS cnt FROM new_rows
+              UNION ALL
+              SELECT dep, employee, ts_bm, zone, -1 FROM old_rows) r
+                 CROSS JOIN LATERAL (VALUES ('department', r.dep, r.cnt), ('employee', r.employee, r.cnt),
+                                            ('timesheet_code', r.ts_bm, r.cnt), ('profit_center', r.zone, r.cnt)) AS d (dimension, value, cnt)
+        WHERE d.value IS NOT NULL
+        GROUP BY 1, 2
+        HAVING SUM(d.cnt) <> 0;
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+-- 把队列中已提交的行数增量合并到登记表并删除 (由应用定时调用)。
+-- 只有持有咨询锁的一个会话执行合并，按维度值顺序更新，其他实例同时调用时直接返回 0；不锁 t_wkt，不阻塞写入。
+-- 行数合并为 0 的值保留在登记表中，不计入源表维度数量；该值再次写入时由触发器重新登记，由下一次增量同步读取
+CREATE OR REPLACE FUNCTION public.apply_t_wkt_dimension_deltas()
+    RETURNS BIGINT
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    v_rows BIGINT;
+BEGIN
+    IF NOT pg_try_advisory_xact_lock(hashtext('t_wkt_dimension_value')) THEN
+        RETURN 0;
+    END IF;
+    WITH moved AS (
+        DELETE FROM public.t_wkt_dimension_delta RETURNING *
+    )
+    INSERT INTO public.t_wkt_dimension_value AS v (dimension, value, row_count)
+    SELECT dimension, value, SUM(row_count)
+    FROM moved
+    GROUP BY 1, 2
+    ORDER BY 1, 2
+    ON CONFLICT (dimension, value) DO UPDATE SET row_count = v.row_count + EXCLUDED.row_count;
+    GET DIAGNOSTICS v_rows = ROW_COUNT;
+    RETURN v_rows;
+END;
+$$;
+
+CREATE OR REPLACE FUNCTION public.t_wkt_dimension_truncate()
+    RETURNS TRIGGER
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    TRUNCATE public.t_wkt_dimension_value, public.t_wkt_dimension_delta;
+    RETURN NULL;
+END;
+$$;
+
+-- 按 t_wkt 全量重建登记表并重置同步水位 (初始化，或怀疑登记表与明细不一致时手工执行)
+CREATE OR REPLACE FUNCTION public.rebuild_t_wkt_dimension_value()
+    RETURNS BIGINT
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    v_rows BIGINT;
+BEGIN
+    LOCK TABLE public.t_wkt IN SHARE MODE;
+    PERFORM pg_advisory_xact_lock(hashtext('t_wkt_dimension_value'));
+    TRUNCATE public.t_wkt_dimension_value, public.t_wkt_dimension_delta;
+    INSERT INTO public.t_wkt_dimension_value (dimension, value, row_count)
+    SELECT d.dimension, d.value, COUNT(*)
+    FROM public.t_wkt w
+             CROSS JOIN LATERAL (VALUES ('department', w.dep), ('employee', w.employee),
+                                        ('timesheet_code', w.ts_bm), ('profit_center', w.zone)) AS d (dimension, value)
+    WHERE d.value IS NOT NULL
+    GROUP BY 1, 2;
+    GET DIAGNOSTICS v_rows = ROW_COUNT;
+
+    INSERT INTO public.t_sync_watermark (dimension, last_xmin, synced_at)
+    VALUES ('department', 0, NULL), ('employee', 0, NULL), ('timesheet_code', 0, NULL), ('profit_center', 0, NULL)
+    ON CONFLICT (dimension) DO UPDATE SET last_xmin = 0;
+    RETURN v_rows;
+END;
+$$;
+
+-- 早期版本每天加表锁清理登记值，已由上面的行数增量合并代替
+DROP FUNCTION IF EXISTS public.prune_t_wkt_dimension_value();
+
+COMMENT ON FUNCTION public.t_wkt_dimension_apply() IS '登记 t_wkt 语句写入的新维度值，并把各值的明细行数变化 (转换表) 追加到增量队列';
+COMMENT ON FUNCTION public.apply_t_wkt_dimension_deltas() IS '将维度值行数增量队列合并到维度值登记表，返回合并的维度值数';
+COMMENT ON FUNCTION public.rebuild_t_wkt_dimension_value() IS '按 t_wkt 全量重建维度值登记表并重置同步水位，返回登记的维度值数';
+
+-- 带转换表的触发器每个只能对应一种事件
+DROP TRIGGER IF EXISTS trg_t_wkt_dimension_insert ON public.t_wkt;
+DROP TRIGGER IF EXISTS trg_t_wkt_dimension_update ON public.t_wkt;
+DROP TRIGGER IF EXISTS trg_t_wkt_dimension_delete ON public.t_wkt;
+DROP TRIGGER IF EXISTS trg_t_wkt_dimension_truncate ON public.t_wkt;
+
+CREATE TRIGGER trg_t_wkt_dimension_insert
+    AFTER INSERT ON public.t_wkt
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION public.t_wkt_dimension_apply();
+
+CREATE TRIGGER trg_t_wkt_dimension_update
+    AFTER UPDATE ON public.t_wkt
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION public.t_wkt_dimension_apply();
+
+CREATE TRIGGER trg_t_wkt_dimension_delete
+    AFTER DELETE ON public.t_wkt
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION public.t_wkt_dimension_apply();
+
+CREATE TRIGGER trg_t_wkt_dimension_truncate
+    AFTER TRUNCATE ON public.t_wkt
+    FOR EACH STATEMENT EXECUTE FUNCTION public.t_wkt_dimension_truncate();
+
+-- === 4. 回填 ===
+SELECT public.rebuild_t_wkt_dimension_value();
+
+COMMIT;
+
+ANALYZE public.t_wkt_dimension_value;
+ANALYZE public.t_wkt_dimension_delta;
@@ -80,6 +80,34 @@ window.fileManageApi = (() => {
         return url.toString();
     };
 
+    /**
+     * 生成目录打包下载 URL (GET 方式，浏览器直接流式下载)
+     * @param {string} scope - 'decrypted' 或 'encrypted'
+     * @param {string} relativePath - 目录相对路径，空字符串表示根目录
+     */
+    const getDirectoryZipDownloadUrl = (scope, relativePath) => {
+        const url = new URL(`${BASE_URL}/${scope}/zip`, window.location.origin);
+        url.searchParams.append('relativePath', encodeURIComponent(relativePath || ''));
+        console.debug(`Generated ZIP Download URL: ${url}`);
+        return url.toString();
+    };
+
+    /**
+     * 浏览单层目录 (分页，目录在前)
+     * @param {string} scope - 'decrypted' 或 'encrypted'
+     * @param {string} relativePath - 目录相对路径，空字符串表示根目录
+     * @param {string} sortBy - name_asc / name_desc / size_asc / size_desc / modified_asc / modified_desc
+     */
+    const browseDirectory = (scope, relativePath, sortBy, page, size) => {
+        // 与下载接口一致，后端会再做一次 URL 解码
+        return get(`/${scope}/browse`, {
+            relativePath: encodeURIComponent(relativePath || ''),
+            sortBy: sortBy || 'name_asc',
+            page,
+            size
+        });
+    };
+
     const getPendingFiles = (page, size) => {
         return get('/pending', { page, size });
     };
@@ -129,6 +157,8 @@ window.fileManageApi = (() => {
         getDecryptedFileDownloadUrl,
         searchEncryptedFiles,
         getEncryptedFileDownloadUrl,
+        getDirectoryZipDownloadUrl,
+        browseDirectory,
         getPendingFiles,
         getSyncStatus,
         startSync,
@@ -3,6 +3,7 @@
  * 文件路径: src/main/resources/static/js/timesheet_import.js
  * 职责：处理 Excel 文件上传、解析、预览、编辑、统计和提交导入。
  * 修正：使用 sheet_to_json, 延迟事件监听器绑定, 包含完整函数实现和日志。
+ * 更新：超过 SERVER_IMPORT_MIN_BYTES 的 .xlsx / .csv 文件不在浏览器解析，直接上传到 /api/timesheets/import 由服务端导入并轮询进度。
  * 依赖: common.js, pagination.js (分页在此处不需要), SheetJS (xlsx.full.min.js)
  */
 
@@ -27,6 +28,9 @@ document.addEventListener('DOMContentLoaded', function () {
 
     // --- 配置和常量 ---
     const API_BATCH_ENDPOINT = '/api/timesheets/batch';
+    const API_IMPORT_ENDPOINT = '/api/timesheets/import';
+    const SERVER_IMPORT_MIN_BYTES = 2 * 1024 * 1024; // 超过该大小的 .xlsx / .csv 交给服务端导入
+    const IMPORT_POLL_INTERVAL_MS = 1000;
     const MODAL_ID = 'import-modal';
     const CLOSE_BUTTON_ID = 'import-modal-close-button';
     const UPLOAD_BUTTON_ID = 'upload-excel-button';
@@ -405,6 +409,11 @@ document.addEventListener('DOMContentLoaded', function () {
                 fileErrors.push({fileName: file.name, message: "不支持的文件类型，请上传 .xls, .xlsx 或 .csv 文件。"});
                 continue; // 跳过不支持的文件
             }
+            // 大文件在浏览器中解析会卡住页面，且提交的 JSON 可能超过请求大小限制，改为上传到服务端导入
+            if (/\.(xlsx|csv)$/i.test(file.name) && file.size >= SERVER_IMPORT_MIN_BYTES) {
+                importFileOnServer(file);
+                continue;
+            }
 
             const reader = new FileReader();
             const promise = new Promise((resolve, reject) => {
@@ -489,6 +498,61 @@ document.addEventListener('DOMContentLoaded', function () {
             });
     }
 
+    /** 上传文件到服务端导入，并轮询任务进度 */
+    async function importFileOnServer(file) {
+        if (submitStatus) submitStatus.textContent = `正在上传 ${file.name} 到服务器导入...`;
+        const formData = new FormData();
+        formData.append('file', file);
+        try {
+            // 不使用 AppUtils.post：multipart 请求需由浏览器自动设置 Content-Type (含 boundary)
+            const response = await fetch(API_IMPORT_ENDPOINT, {method: 'POST', headers: {'Accept': 'application/json'}, body: formData});
+            const job = await response.json().catch(() => null);
+            if (!response.ok || !job || !job.jobId) {
+                throw new Error((job && job.message) || `HTTP ${response.status}`);
+            }
+            console.log(`[importFileOnServer] Import job ${job.jobId} created for ${file.name}`);
+            pollImportJob(job.jobId, file.name);
+        } catch (error) {
+            console.error(`上传文件 ${file.name} 失败:`, error);
+            AppUtils.showMessage(`上传文件 ${file.name} 失败: ${error.message}`, 'error');
+            if (submitStatus) submitStatus.textContent = `上传 ${file.name} 失败: ${error.message}`;
+        }
+    }
+
+    /** 轮询服务端导入任务，显示进度，结束后显示失败行 */
+    async function pollImportJob(jobId, fileName) {
+        let job;
+        try {
+            job = await AppUtils.get(`${API_IMPORT_ENDPOINT}/${encodeURIComponent(jobId)}`);
+        } catch (error) {
+            console.error(`查询导入任务 ${jobId} 失败:`, error);
+            if (submitStatus) submitStatus.textContent = `查询 ${fileName} 的导入进度失败。`;
+            return;
+        }
+        if (submitStatus) {
+            submitStatus.textContent = `${fileName}: 已读取 ${job.rowsRead} 行，已处理 ${job.rowsProcessed} 行 (成功 ${job.succeeded}，失败 ${job.failed})`;
+        }
+        if (job.state === 'QUEUED' || job.state === 'RUNNING') {
+            setTimeout(() => pollImportJob(jobId, fileName), IMPORT_POLL_INTERVAL_MS);
+            return;
+        }
+        if (submitStatus) submitStatus.textContent = `${fileName}: ${job.message || job.state}`;
+        AppUtils.showMessage(`${fileName}: ${job.message || job.state}`, job.state === 'COMPLETED' && job.failed === 0 ? 'success' : 'error');
+        displayServerImportErrors(fileName, job);
+    }
+
+    /** 显示服务端导入的失败行 */
+    function displayServerImportErrors(fileName, job) {
+        if (!parseErrorDisplay || !job.errors || job.errors.length === 0) return;
+        let errorHtml = `<strong class="block mb-1 text-red-700">[${AppUtils.escapeHTML(fileName)}] 以下行未导入${job.errorsTruncated ? ` (仅显示前 ${job.errors.length} 条，共 ${job.failed} 条)` : ''}:</strong><ul class="list-disc list-inside text-sm text-red-600">`;
+        job.errors.forEach(err => {
+            errorHtml += `<li class="ml-2">第 ${err.originalIndex + 1} 行${err.tsId ? ` (${AppUtils.escapeHTML(err.tsId)})` : ''}: ${AppUtils.escapeHTML(err.message || '')}</li>`;
+        });
+        errorHtml += '</ul>';
+        parseErrorDisplay.innerHTML = errorHtml;
+        parseErrorDisplay.classList.remove('hidden');
+    }
+
     /** 解析单个工作表的数据 */
     function parseSheetData(sheetData, fileName) {
         const dataFromFile = [];
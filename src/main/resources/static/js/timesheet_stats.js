@@ -8,6 +8,9 @@
  * 工时统计页面脚本
  * 文件路径: src/main/resources/static/js/timesheet_stats.js
  * 修正：使用固定列宽、文本截断和 title 提示解决横向滚动条问题，并减小字体。
+ * 更新：顺序翻页时携带上一页返回的 nextCursor，按键集分页查询。
+ * 更新：导出按钮按当前过滤条件由服务端流式生成 CSV / XLSX 文件下载。
+ * 更新：总数为估算值 (totalApproximate) 时显示为"约 N"；返回不满一页或空页时按实际行数确定总数并停止向后翻页。
  * 依赖: common.js, pagination.js
  */
 
@@ -16,6 +19,7 @@ document.addEventListener('DOMContentLoaded', function() {
 
     // --- 配置和常量 ---
     const API_ENDPOINT = '/api/timesheets/statistics';
+    const EXPORT_ENDPOINT = '/api/timesheets/statistics/export';
     const DEFAULT_PAGE_SIZE = 50;
     const DEBOUNCE_DELAY = 300;
 
@@ -29,6 +33,7 @@ document.addEventListener('DOMContentLoaded', function() {
     // --- 状态变量 ---
     let currentPage = 1;
     let currentFilters = {};
+    let pageCursors = {}; // 页码 -> 该页的键集分页游标 (由上一页响应的 nextCursor 得到)，过滤条件改变时清空
 
     // --- 函数定义 ---
 
@@ -163,6 +168,9 @@ document.addEventListener('DOMContentLoaded', function() {
 
     /** 获取数据并更新UI */
     async function fetchTimesheetData(page = 1, filters = {}) {
+        if (filters !== currentFilters) {
+            pageCursors = {};
+        }
         currentPage = page;
         currentFilters = filters;
 
@@ -177,22 +185,50 @@ document.addEventListener('DOMContentLoaded', function() {
         console.log("重置分页成功");
 
         const params = new URLSearchParams({ page: page, size: DEFAULT_PAGE_SIZE, ...filters });
+        // 顺序翻页时使用游标 (键集分页)，跳页时仍按页码 (OFFSET) 查询
+        if (pageCursors[page]) {
+            params.set('cursor', pageCursors[page]);
+        }
         const url = `${API_ENDPOINT}?${params.toString()}`;
 
         try {
             const response = await AppUtils.get(url);
-            renderTable(response.data || []); // 调用新的 renderTable
+            if (response.nextCursor) {
+                pageCursors[page + 1] = response.nextCursor;
+            }
+            const rows = response.data || [];
+            renderTable(rows); // 调用新的 renderTable
+
+            // 总数可能是规划器估算值 (可能与实际相差很大)。返回不满一页 (包括空页) 时已到最后一页，按实际行数确定总数；
+            // 估算值偏小而本页已满时至少保留下一页
+            const pageSize = response.pageSize || DEFAULT_PAGE_SIZE;
+            let totalRecords = response.totalRecords || 0;
+            let totalPages = response.totalPages || 1;
+            let approximate = response.totalApproximate === true;
+            if (rows.length < pageSize) {
+                totalRecords = (page - 1) * pageSize + rows.length;
+                totalPages = Math.max(page, 1);
+                approximate = false;
+                if (rows.length === 0 && page > 1) {
+                    AppUtils.showMessage('已没有更多数据，请返回上一页', 'info');
+                }
+            } else if (approximate) {
+                totalPages = Math.max(totalPages, page + 1);
+            }
 
             if (window.AppUtils && typeof window.AppUtils.setupPagination === 'function') {
                 window.AppUtils.setupPagination({
                     containerId: 'timesheet-pagination-container',
                     currentPage: response.currentPage || 1,
-                    totalPages: response.totalPages || 1,
-                    totalRecords: response.totalRecords || 0,
+                    totalPages: totalPages,
+                    totalRecords: totalRecords,
                     maxPagesToShow: 5,
                     onPageChange: (newPage) => fetchTimesheetData(newPage, currentFilters)
                 });
                 console.log("[Stats] Pagination setup attempted.");
+                if (approximate) {
+                    markTotalsApproximate('timesheet-pagination-container');
+                }
             }
         } catch (error) {
             console.error('获取工时数据失败:', error);
@@ -207,6 +243,28 @@ document.addEventListener('DOMContentLoaded', function() {
         }
     }
 
+    /**
+     * 总数为估算值时，在分页信息的总记录数和总页数前加"约"。
+     * @param {string} containerId - 分页容器 ID
+     */
+    function markTotalsApproximate(containerId) {
+        const container = document.getElementById(containerId);
+        if (!container) return;
+        ['total-records', 'total-pages'].forEach(role => {
+            const span = container.querySelector(`[data-pagination-role="${role}"]`);
+            if (span) span.textContent = `约 ${span.textContent}`;
+        });
+    }
+
+    /**
+     * 按当前过滤条件导出全部记录。文件由服务端边查询边生成，浏览器直接下载，不经过页面内存。
+     * @param {string} format - 'xlsx' 或 'csv'
+     */
+    function exportTimesheetData(format) {
+        const params = new URLSearchParams({ format: format, ...getFilterValues() });
+        window.location.href = `${EXPORT_ENDPOINT}?${params.toString()}`;
+    }
+
     /** 设置事件监听器 */
     function setupEventListeners() {
         if (!filterInputs || !tableBody) {
@@ -225,6 +283,10 @@ document.addEventListener('DOMContentLoaded', function() {
                 input.addEventListener('change', debouncedFetch);
             }
         });
+        const exportXlsxButton = document.getElementById('export-xlsx-button');
+        const exportCsvButton = document.getElementById('export-csv-button');
+        if (exportXlsxButton) exportXlsxButton.addEventListener('click', () => exportTimesheetData('xlsx'));
+        if (exportCsvButton) exportCsvButton.addEventListener('click', () => exportTimesheetData('csv'));
         console.log("Timesheet Stats event listeners setup complete.");
     }
 
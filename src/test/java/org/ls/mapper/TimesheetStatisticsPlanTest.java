@@ -0,0 +1,153 @@
+/**
+ * 目录: src/test/java/org/ls/mapper/TimesheetStatisticsPlanTest.java
+ * 文件名: TimesheetStatisticsPlanTest.java
+ * 开发时间: 2026-10-21 10:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: 工时统计查询的执行计划回归测试。在 PostgreSQL 容器中执行 db/1.init-timesheet.sql 并写入测试数据，
+ * 检查键集分页使用 idx_t_wkt_stats_keyset、子串过滤使用 pg_trgm 索引，且都不对 t_wkt 做顺序扫描。
+ * 没有 Docker 的环境中跳过。
+ */
+package org.ls.mapper;
+
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Testcontainers(disabledWithoutDocker = true)
+class TimesheetStatisticsPlanTest {
+
+    private static final String MAPPER_RESOURCE = "mapper/TimesheetWorkMapper.xml";
+
+    /**
+     * 20 万行、2 万名员工、1500 个工时日期: 数据量足以让规划器在没有索引时选择顺序扫描
+     */
+    private static final String SEED_SQL = """
+            INSERT INTO public.t_wkt (ts_id, tr, employee, dep, ts_dep, ts_status, ts_ym, nature_ym, ts_date,
+                                      ts_hours, ts_month, proj_bm, ts_bm, ts_name, zone)
+            SELECT 'TS' || g, to_char(x.d, 'YYYY-MM'), 'E' || (g % 20000) || '-员工' || (g % 20000),
+                   '研发中心-部门' || (g % 50), '研发中心-部门' || (g % 50), '已审批',
+                   to_char(x.d, 'YYYYMM'), to_char(x.d, 'YYYYMM'), x.d, 8, 0.05,
+                   'P' || (g % 500), 'BM' || (g % 3000), '工时名称' || (g % 3000), '基础业务-利润中心' || (g % 100)
+            FROM generate_series(1, 200000) AS g
+                     CROSS JOIN LATERAL (SELECT DATE '2020-01-01' + (g % 1500)) AS x (d)
+            """;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine")
+            .withUsername("postgres")
+            .withInitScript("db/1.init-timesheet.sql");
+
+    private static SqlSessionFactory sqlSessionFactory;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        try (Connection connection = DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute(SEED_SQL);
+            statement.execute("ANALYZE public.t_wkt");
+        }
+
+        PooledDataSource dataSource = new PooledDataSource(POSTGRES.getDriverClassName(), POSTGRES.getJdbcUrl(),
+                POSTGRES.getUsername(), POSTGRES.getPassword());
+        Configuration configuration = new Configuration(new Environment("plan-test", new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.getTypeAliasRegistry().registerAliases("org.ls.entity");
+        try (InputStream in = Resources.getResourceAsStream(MAPPER_RESOURCE)) {
+            new XMLMapperBuilder(in, configuration, MAPPER_RESOURCE, configuration.getSqlFragments()).parse();
+        }
+        sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+    }
+
+    @Test
+    void firstPageUsesKeysetIndex() {
+        Map<String, Object> params = pageParams();
+        params.put("offset", 0);
+
+        List<String> plan = explain(params);
+
+        assertUsesIndex(plan, "idx_t_wkt_stats_keyset");
+        assertNoSeqScan(plan);
+    }
+
+    @Test
+    void cursorPageUsesKeysetIndex() {
+        Map<String, Object> params = pageParams();
+        params.put("cursorTsDate", "2022-06-30");
+        params.put("cursorEmployee", "E10000-员工10000");
+        params.put("cursorTsId", "TS10000");
+        params.put("cursorTsBm", "BM1000");
+
+        List<String> plan = explain(params);
+
+        assertUsesIndex(plan, "idx_t_wkt_stats_keyset");
+        assertNoSeqScan(plan);
+    }
+
+    @Test
+    void employeeSubstringFilterUsesTrigramIndex() {
+        Map<String, Object> params = pageParams();
+        params.put("offset", 0);
+        params.put("employee", "E12345-");
+
+        List<String> plan = explain(params);
+
+        assertUsesIndex(plan, "idx_t_wkt_employee_trgm");
+        assertNoSeqScan(plan);
+    }
+
+    @Test
+    void timesheetCodeSubstringFilterUsesTrigramIndex() {
+        Map<String, Object> params = pageParams();
+        params.put("offset", 0);
+        params.put("tsBm", "BM2718");
+
+        List<String> plan = explain(params);
+
+        assertUsesIndex(plan, "idx_t_wkt_ts_bm_trgm");
+        assertNoSeqScan(plan);
+    }
+
+    private static Map<String, Object> pageParams() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("limit", 50);
+        return params;
+    }
+
+    private static List<String> explain(Map<String, Object> params) {
+        try (SqlSession session = sqlSessionFactory.openSession()) {
+            return session.getMapper(TimesheetWorkMapper.class).explainTimesheetStatistics(params);
+        }
+    }
+
+    private static void assertUsesIndex(List<String> plan, String indexName) {
+        assertTrue(plan.stream().anyMatch(line -> line.contains(indexName)),
+                () -> "执行计划未使用索引 " + indexName + ":\n" + String.join("\n", plan));
+    }
+
+    private static void assertNoSeqScan(List<String> plan) {
+        assertFalse(plan.stream().anyMatch(line -> line.contains("Seq Scan on t_wkt")),
+                () -> "执行计划对 t_wkt 做了顺序扫描:\n" + String.join("\n", plan));
+    }
+}
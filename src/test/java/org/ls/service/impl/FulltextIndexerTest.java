@@ -0,0 +1,218 @@
+/**
+ * 目录: src/test/java/org/ls/service/impl/FulltextIndexerTest.java
+ * 文件名: FulltextIndexerTest.java
+ * 开发时间: 2026-10-21 11:00:00 (Asia/Shanghai)
+ * 作者: Gemini
+ * 用途: FulltextIndexer.processBatch 的单元测试。Elasticsearch 客户端以 Mockito 替身返回预设的 _bulk / _mget 响应，
+ * 覆盖批内事件顺序、被拒绝 (429/5xx) 文档的退避重试与重试耗尽，以及删除事件的序列号和过期检查。
+ */
+package org.ls.service.impl;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.MgetRequest;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import co.elastic.clients.elasticsearch.core.get.GetResult;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ls.config.properties.ElasticsearchProperties;
+import org.ls.config.properties.IndexerProperties;
+import org.ls.entity.FulltextDocument;
+import org.ls.service.FulltextIndexMaintenanceService;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class FulltextIndexerTest {
+
+    private static final String INDEX_NAME = "dms_files_test";
+
+    @TempDir
+    Path targetDirectory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ElasticsearchProperties elasticsearchProperties = new ElasticsearchProperties();
+    private final IndexerProperties indexerProperties = new IndexerProperties();
+    private final Deque<List<Integer>> bulkStatuses = new ArrayDeque<>();
+
+    private ElasticsearchClient elasticsearchClient;
+    private FulltextIndexer indexer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        elasticsearchProperties.setIndexName(INDEX_NAME);
+        elasticsearchProperties.setIfSeqNoEnabled(false);
+        indexerProperties.setRejectedRetryBackoffMillis(1);
+        indexerProperties.setMaxRejectedRetries(2);
+
+        // 只替换 bulk(BulkRequest) 和 mget(MgetRequest, Class)，lambda 形式的重载按真实实现构建请求后调用它们
+        elasticsearchClient = mock(ElasticsearchClient.class, withSettings().defaultAnswer(CALLS_REAL_METHODS));
+        doAnswer(invocation -> bulkResponse(invocation.getArgument(0), bulkStatuses.poll()))
+                .when(elasticsearchClient).bulk(any(BulkRequest.class));
+
+        TikaTextExtractor textExtractor = mock(TikaTextExtractor.class);
+        when(textExtractor.extractAsync(any(Path.class))).thenReturn(CompletableFuture.completedFuture(
+                new TikaTextExtractor.ExtractedText(List.of("正文"), null, false, false)));
+
+        indexer = new FulltextIndexer(elasticsearchClient, elasticsearchProperties, indexerProperties, textExtractor,
+                mock(FulltextIndexMaintenanceService.class), objectMapper, mock(KafkaListenerEndpointRegistry.class),
+                targetDirectory.toString());
+    }
+
+    @Test
+    void keepsOnlyLatestEventPerDocumentInEventOrder() throws IOException {
+        bulkStatuses.add(List.of(201, 200));
+
+        indexer.processBatch(List.of(upsertEvent("a"), upsertEvent("b"), deleteEvent("a", Instant.now())));
+
+        List<BulkOperation> operations = captureBulkRequests(1).get(0).operations();
+        assertEquals(2, operations.size());
+        assertTrue(operations.get(0).isIndex());
+        assertEquals("b", operations.get(0).index().id());
+        assertTrue(operations.get(1).isDelete());
+        assertEquals("a", operations.get(1).delete().id());
+    }
+
+    @Test
+    void retriesRejectedItemsUntilAccepted() throws IOException {
+        bulkStatuses.add(List.of(201, 429, 503));
+        bulkStatuses.add(List.of(201, 201));
+
+        indexer.processBatch(List.of(upsertEvent("a"), upsertEvent("b"), upsertEvent("c")));
+
+        List<BulkRequest> requests = captureBulkRequests(2);
+        // 第二次只重发被拒绝的文档，并保持原来的顺序
+        assertEquals(List.of("b", "c"), requests.get(1).operations().stream().map(op -> op.index().id()).toList());
+        assertEquals(3, indexer.getMetrics().getDocumentsIndexed());
+    }
+
+    @Test
+    void throwsWhenRejectedRetriesAreExhausted() throws IOException {
+        bulkStatuses.add(List.of(429));
+        bulkStatuses.add(List.of(429));
+        bulkStatuses.add(List.of(503));
+
+        assertThrows(IOException.class, () -> indexer.processBatch(List.of(upsertEvent("a"))));
+
+        verify(elasticsearchClient, times(3)).bulk(any(BulkRequest.class));
+    }
+
+    @Test
+    void skipsDeleteOlderThanIndexedDocument() throws IOException {
+        elasticsearchProperties.setIfSeqNoEnabled(true);
+        Instant deletedAt = Instant.now().minusSeconds(600);
+        stubCurrentDocument("a", deletedAt.getEpochSecond() + 60, 7L);
+
+        indexer.processBatch(List.of(deleteEvent("a", deletedAt)));
+
+        verify(elasticsearchClient, never()).bulk(any(BulkRequest.class));
+        assertEquals(1, indexer.getMetrics().getStaleSkipped());
+    }
+
+    @Test
+    void deletesWithSequenceNumberOfIndexedDocument() throws IOException {
+        elasticsearchProperties.setIfSeqNoEnabled(true);
+        Instant deletedAt = Instant.now();
+        stubCurrentDocument("a", deletedAt.getEpochSecond() - 60, 7L);
+        bulkStatuses.add(List.of(200));
+
+        indexer.processBatch(List.of(deleteEvent("a", deletedAt)));
+
+        BulkOperation operation = captureBulkRequests(1).get(0).operations().get(0);
+        assertTrue(operation.isDelete());
+        assertEquals(7L, operation.delete().ifSeqNo());
+        assertEquals(1, indexer.getMetrics().getDocumentsDeleted());
+    }
+
+    private List<BulkRequest> captureBulkRequests(int expectedCount) throws IOException {
+        ArgumentCaptor<BulkRequest> captor = ArgumentCaptor.forClass(BulkRequest.class);
+        verify(elasticsearchClient, times(expectedCount)).bulk(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private void stubCurrentDocument(String id, long lastModified, long seqNo) throws IOException {
+        FulltextDocument source = new FulltextDocument();
+        source.setLastModified(lastModified);
+        GetResult<FulltextDocument> result = GetResult.<FulltextDocument>of(g -> g
+                .index(INDEX_NAME).id(id).found(true).seqNo(seqNo).primaryTerm(1L).source(source));
+        MgetResponse<FulltextDocument> response = MgetResponse.<FulltextDocument>of(m -> m
+                .docs(MultiGetResponseItem.<FulltextDocument>of(item -> item.result(result))));
+        doReturn(response).when(elasticsearchClient).mget(any(MgetRequest.class), eq(FulltextDocument.class));
+    }
+
+    private BulkResponse bulkResponse(BulkRequest request, List<Integer> statuses) {
+        List<BulkResponseItem> items = new ArrayList<>();
+        for (int i = 0; i < request.operations().size(); i++) {
+            BulkOperation operation = request.operations().get(i);
+            int status = statuses.get(i);
+            String id = operation.isDelete() ? operation.delete().id() : operation.index().id();
+            items.add(BulkResponseItem.of(item -> {
+                item.operationType(operation.isDelete() ? OperationType.Delete : OperationType.Index)
+                        .index(INDEX_NAME).id(id).status(status);
+                if (status >= 400) {
+                    item.error(e -> e.type("es_rejected_execution_exception").reason("测试: 状态 " + status));
+                }
+                return item;
+            }));
+        }
+        boolean errors = statuses.stream().anyMatch(status -> status >= 400);
+        return BulkResponse.of(b -> b.errors(errors).took(1).items(items));
+    }
+
+    private String upsertEvent(String documentId) throws IOException {
+        String filename = documentId + ".txt";
+        Files.writeString(targetDirectory.resolve(filename), "正文");
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("eventType", FileIndexEvents.EVENT_TYPE_UPSERTED);
+        event.put("eventTimestamp", Instant.now().toString());
+        event.put("elasticsearchDocumentId", documentId);
+        event.put("sourceRelativePath", "");
+        event.put("sourceFilename", filename);
+        event.put("targetRelativePath", "");
+        event.put("targetFilename", filename);
+        event.put("targetFileSizeInBytes", 6);
+        event.put("targetFileLastModifiedEpochSeconds", Instant.now().getEpochSecond());
+        return objectMapper.writeValueAsString(event);
+    }
+
+    private String deleteEvent(String documentId, Instant eventTime) throws IOException {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("eventType", FileIndexEvents.EVENT_TYPE_DELETED);
+        event.put("eventTimestamp", eventTime.toString());
+        event.put("elasticsearchDocumentId", documentId);
+        return objectMapper.writeValueAsString(event);
+    }
+}